@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.atom;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * A shared {@link JAXBContext} along with a per-thread pool of its marshallers and
+ * unmarshallers.  The context is expensive to create but thread-safe, so it is created
+ * once (the first time it is needed).  Marshallers and unmarshallers are cheaper but still
+ * not free, and they are not thread-safe - so each thread creates its own the first time
+ * it needs one and then keeps re-using it.
+ *
+ * Note that a pooled (un)marshaller must not be held on to beyond the (un)marshal call it
+ * was fetched for, and that nested (un)marshalling on the same thread (e.g. from within an
+ * XmlAdapter) must not use the same pool.
+ */
+public class PooledJaxbContext {
+
+    private final Class<?>[] classes;
+    private volatile JAXBContext context;
+    private final ThreadLocal<Marshaller> marshallers = new ThreadLocal<Marshaller>();
+    private final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<Unmarshaller>();
+
+    /**
+     * Constructor.
+     * @param classes the classes to be recognized by the context
+     */
+    public PooledJaxbContext(Class<?>... classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * Gets the context, creating it if necessary.
+     * @throws JAXBException
+     */
+    public JAXBContext getContext() throws JAXBException {
+        JAXBContext ctx = this.context;
+        if (ctx == null) {
+            synchronized (this) {
+                ctx = this.context;
+                if (ctx == null) {
+                    ctx = JAXBContext.newInstance(this.classes);
+                    this.context = ctx;
+                }
+            }
+        }
+        return ctx;
+    }
+
+    /**
+     * Gets the calling thread's (unformatted) marshaller.
+     * @throws JAXBException
+     */
+    public Marshaller getMarshaller() throws JAXBException {
+        return getMarshaller(false);
+    }
+
+    /**
+     * Gets the calling thread's marshaller.
+     * @param formatted true if the marshalled XML should be formatted (indented)
+     * @throws JAXBException
+     */
+    public Marshaller getMarshaller(boolean formatted) throws JAXBException {
+        Marshaller marshaller = this.marshallers.get();
+        if (marshaller == null) {
+            marshaller = getContext().createMarshaller();
+            this.marshallers.set(marshaller);
+        }
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.valueOf(formatted));
+        return marshaller;
+    }
+
+    /**
+     * Gets the calling thread's unmarshaller.
+     * @throws JAXBException
+     */
+    public Unmarshaller getUnmarshaller() throws JAXBException {
+        Unmarshaller unmarshaller = this.unmarshallers.get();
+        if (unmarshaller == null) {
+            unmarshaller = getContext().createUnmarshaller();
+            this.unmarshallers.set(unmarshaller);
+        }
+        return unmarshaller;
+    }
+
+}
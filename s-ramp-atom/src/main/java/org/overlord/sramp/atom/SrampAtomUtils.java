@@ -16,7 +16,6 @@
 package org.overlord.sramp.atom;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -35,6 +34,7 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedArtifactType;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedDocument;
 import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.common.ArtifactWrapperAccessors;
 import org.overlord.sramp.common.SrampConstants;
 import org.w3._1999._02._22_rdf_syntax_ns_.RDF;
 import org.w3c.dom.Element;
@@ -141,8 +141,7 @@ public final class SrampAtomUtils {
 			entry.setSummary(artifact.getDescription());
 
 		Artifact srampArty = new Artifact();
-		Method method = Artifact.class.getMethod("set" + artifact.getClass().getSimpleName(), artifact.getClass()); //$NON-NLS-1$
-		method.invoke(srampArty, artifact);
+		ArtifactWrapperAccessors.set(srampArty, artifact);
 		entry.setAnyOtherJAXBObject(srampArty);
 
 		return entry;
@@ -41,6 +41,7 @@ public class SrampArchiveEntry {
 	private BaseArtifactType metaData;
 	private File contentFile;
 	private File metaDataFile;
+	private boolean packedContent;
 
 	/**
 	 * Constructor.
@@ -61,6 +62,18 @@ public class SrampArchiveEntry {
 		this.contentFile = contentFile;
 	}
 
+	/**
+	 * Constructor (for an entry read straight from a packed archive).
+	 * @param path
+	 * @param metaData
+	 * @param hasContent
+	 */
+	SrampArchiveEntry(String path, BaseArtifactType metaData, boolean hasContent) {
+		setPath(path);
+		setMetaData(metaData);
+		this.packedContent = hasContent;
+	}
+
 	/**
 	 * @return the path
 	 */
@@ -101,7 +114,7 @@ public class SrampArchiveEntry {
 	 * meta-data.
 	 */
 	public boolean hasContent() {
-		return this.contentFile != null && this.contentFile.isFile();
+		return this.packedContent || (this.contentFile != null && this.contentFile.isFile());
 	}
 
 }
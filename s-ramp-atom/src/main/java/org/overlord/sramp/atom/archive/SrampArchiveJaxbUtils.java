@@ -16,9 +16,9 @@
 package org.overlord.sramp.atom.archive;
 
 import java.io.File;
+import java.io.InputStream;
 import java.io.OutputStream;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -26,6 +26,7 @@ import javax.xml.bind.Unmarshaller;
 import org.jboss.resteasy.plugins.providers.atom.Entry;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Artifact;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.overlord.sramp.atom.PooledJaxbContext;
 import org.overlord.sramp.atom.SrampAtomUtils;
 
 /**
@@ -35,13 +36,7 @@ import org.overlord.sramp.atom.SrampAtomUtils;
  */
 public class SrampArchiveJaxbUtils {
 
-	private static JAXBContext jaxbContext;
-	private static JAXBContext getJaxbContext() throws JAXBException {
-		if (jaxbContext == null) {
-			jaxbContext = JAXBContext.newInstance(Entry.class, Artifact.class);
-		}
-		return jaxbContext;
-	}
+	private static final PooledJaxbContext jaxbContext = new PooledJaxbContext(Entry.class, Artifact.class);
 
 	/**
 	 * Reads the meta-data (*.atom) file and returns a JAXB object.
@@ -50,7 +45,7 @@ public class SrampArchiveJaxbUtils {
 	 */
 	public static BaseArtifactType readMetaData(File metaDataFile) throws JAXBException {
 		try {
-			Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
+			Unmarshaller unmarshaller = jaxbContext.getUnmarshaller();
 			Entry entry = (Entry) unmarshaller.unmarshal(metaDataFile);
 			return SrampAtomUtils.unwrapSrampArtifact(entry);
 		} catch (JAXBException e) {
@@ -60,6 +55,24 @@ public class SrampArchiveJaxbUtils {
 		}
 	}
 
+	/**
+	 * Reads the meta-data (*.atom) from the given stream and returns a JAXB object.  Does
+	 * not close the stream.
+	 * @param metaDataStream
+	 * @throws JAXBException
+	 */
+	public static BaseArtifactType readMetaData(InputStream metaDataStream) throws JAXBException {
+		try {
+			Unmarshaller unmarshaller = jaxbContext.getUnmarshaller();
+			Entry entry = (Entry) unmarshaller.unmarshal(metaDataStream);
+			return SrampAtomUtils.unwrapSrampArtifact(entry);
+		} catch (JAXBException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new JAXBException(t);
+		}
+	}
+
 	/**
 	 * Writes the artifact meta-data to the given working path.
 	 * @param outputFile
@@ -67,7 +80,7 @@ public class SrampArchiveJaxbUtils {
 	 * @throws JAXBException
 	 */
 	public static void writeMetaData(File outputFile, BaseArtifactType artifact) throws JAXBException {
-		writeMetaData(outputFile, artifact, true);
+		writeMetaData(outputFile, artifact, true, false);
 	}
 
 	/**
@@ -78,9 +91,21 @@ public class SrampArchiveJaxbUtils {
 	 * @throws JAXBException
 	 */
 	public static void writeMetaData(File outputFile, BaseArtifactType artifact, boolean wrap) throws JAXBException {
+		writeMetaData(outputFile, artifact, wrap, false);
+	}
+
+	/**
+	 * Writes the artifact meta-data to the given working path.
+	 * @param outputFile
+	 * @param artifact
+	 * @param wrap
+	 * @param formatted true if the XML should be formatted (for human consumption)
+	 * @throws JAXBException
+	 */
+	public static void writeMetaData(File outputFile, BaseArtifactType artifact, boolean wrap, boolean formatted)
+			throws JAXBException {
 		try {
-			Marshaller marshaller = getJaxbContext().createMarshaller();
-			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+			Marshaller marshaller = jaxbContext.getMarshaller(formatted);
 			Entry atomEntry = SrampAtomUtils.wrapSrampArtifact(artifact);
 			if (wrap) {
 				marshaller.marshal(atomEntry, outputFile);
@@ -103,8 +128,7 @@ public class SrampArchiveJaxbUtils {
 	public static void writeMetaData(OutputStream outputStream, BaseArtifactType artifact) throws JAXBException {
 		try {
 			Entry atomEntry = SrampAtomUtils.wrapSrampArtifact(artifact);
-			Marshaller marshaller = getJaxbContext().createMarshaller();
-			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+			Marshaller marshaller = jaxbContext.getMarshaller();
 			marshaller.marshal(atomEntry, outputStream);
 		} catch (JAXBException e) {
 			throw e;
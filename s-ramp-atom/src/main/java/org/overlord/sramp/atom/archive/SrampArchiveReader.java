@@ -0,0 +1,209 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.atom.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.overlord.sramp.atom.i18n.Messages;
+
+/**
+ * Reads the entries of a (packed) S-RAMP archive straight out of the archive file, rather
+ * than unpacking it into a work directory first the way {@link SrampArchive} does.  This
+ * makes it the better choice when an archive only needs to be read (e.g. when processing
+ * an uploaded package): the archive's content is read once, and no temporary space is
+ * needed beyond (at most) a copy of the archive itself.
+ */
+public class SrampArchiveReader {
+
+    private File archiveFile;
+    private boolean shouldDeleteArchiveFile;
+    private ZipFile zipFile;
+    private List<SrampArchiveEntry> entries;
+    private Map<String, ZipArchiveEntry> contentEntries;
+
+    /**
+     * Reads the S-RAMP archive in the given file.
+     * @param file
+     * @throws SrampArchiveException
+     */
+    public SrampArchiveReader(File file) throws SrampArchiveException {
+        this.archiveFile = file;
+        this.shouldDeleteArchiveFile = false;
+        open();
+    }
+
+    /**
+     * Reads the S-RAMP archive from an {@link InputStream}.  This will consume and close the
+     * {@link InputStream}, copying it to a temporary local file (a zip can only be read
+     * randomly from a file) that is deleted when the reader is closed.
+     * @param input
+     * @throws SrampArchiveException
+     */
+    public SrampArchiveReader(InputStream input) throws SrampArchiveException {
+        this.shouldDeleteArchiveFile = true;
+        OutputStream output = null;
+        try {
+            this.archiveFile = File.createTempFile("s-ramp-archive", ".zip"); //$NON-NLS-1$ //$NON-NLS-2$
+            output = FileUtils.openOutputStream(this.archiveFile);
+            IOUtils.copy(input, output);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(output);
+            output = null;
+            FileUtils.deleteQuietly(this.archiveFile);
+            throw new SrampArchiveException(Messages.i18n.format("FAILED_TO_READ_ARCHIVE"), e); //$NON-NLS-1$
+        } finally {
+            IOUtils.closeQuietly(input);
+            IOUtils.closeQuietly(output);
+        }
+        open();
+    }
+
+    /**
+     * Opens the archive file and finds its entries: one for each *.atom file in the archive,
+     * paired with the content file of the same name (if any).
+     * @throws SrampArchiveException
+     */
+    private void open() throws SrampArchiveException {
+        try {
+            this.zipFile = new ZipFile(this.archiveFile);
+            Map<String, ZipArchiveEntry> metaDataEntries = new HashMap<String, ZipArchiveEntry>();
+            List<String> paths = new ArrayList<String>();
+            this.contentEntries = new HashMap<String, ZipArchiveEntry>();
+            Enumeration<ZipArchiveEntry> zipEntries = this.zipFile.getEntriesInPhysicalOrder();
+            while (zipEntries.hasMoreElements()) {
+                ZipArchiveEntry zipEntry = zipEntries.nextElement();
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                String path = toPath(zipEntry.getName());
+                if (path.endsWith(".atom")) { //$NON-NLS-1$
+                    path = path.substring(0, path.length() - 5);
+                    metaDataEntries.put(path, zipEntry);
+                    paths.add(path);
+                } else {
+                    this.contentEntries.put(path, zipEntry);
+                }
+            }
+
+            this.entries = new ArrayList<SrampArchiveEntry>(paths.size());
+            for (String path : paths) {
+                BaseArtifactType metaData = readMetaData(metaDataEntries.get(path));
+                this.entries.add(new SrampArchiveEntry(path, metaData, this.contentEntries.containsKey(path)));
+            }
+        } catch (Exception e) {
+            closeQuietly(this);
+            throw new SrampArchiveException(Messages.i18n.format("FAILED_TO_READ_ARCHIVE"), e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Reads the meta-data of an entry.
+     * @param metaDataEntry the entry's *.atom file
+     * @throws IOException
+     * @throws JAXBException
+     */
+    private BaseArtifactType readMetaData(ZipArchiveEntry metaDataEntry) throws IOException, JAXBException {
+        InputStream metaDataStream = this.zipFile.getInputStream(metaDataEntry);
+        try {
+            return SrampArchiveJaxbUtils.readMetaData(metaDataStream);
+        } finally {
+            IOUtils.closeQuietly(metaDataStream);
+        }
+    }
+
+    /**
+     * Converts a zip entry name to an archive entry path (the same path the entry would
+     * have had if the archive were unpacked).
+     * @param name
+     */
+    private static String toPath(String name) {
+        String path = name.replace('\\', '/');
+        while (path.startsWith("/")) { //$NON-NLS-1$
+            path = path.substring(1);
+        }
+        return path;
+    }
+
+    /**
+     * Gets all of the entries found in this S-RAMP archive (one per *.atom file, in the
+     * order they appear in the archive).
+     */
+    public Collection<SrampArchiveEntry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Gets the content {@link InputStream} for the given S-RAMP archive entry.  The stream
+     * reads the content straight out of the archive, so it must be closed before the reader
+     * is.
+     * @param entry the s-ramp archive entry
+     * @return an {@link InputStream} over the artifact content or null if no content found (meta-data only)
+     * @throws IOException
+     */
+    public InputStream getInputStream(SrampArchiveEntry entry) throws IOException {
+        ZipArchiveEntry contentEntry = this.contentEntries.get(entry.getPath());
+        if (contentEntry != null)
+            return this.zipFile.getInputStream(contentEntry);
+        else
+            return null;
+    }
+
+    /**
+     * The reader should always be closed when the client is done with it.  This will clean
+     * up the temporary copy of the archive (if one was made).
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            if (this.zipFile != null) {
+                this.zipFile.close();
+            }
+        } finally {
+            if (this.shouldDeleteArchiveFile) {
+                this.archiveFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Close the reader quietly (eat any {@link IOException}).
+     * @param reader
+     */
+    public static void closeQuietly(SrampArchiveReader reader) {
+        try {
+            if (reader != null)
+                reader.close();
+        } catch (IOException e) {
+        }
+    }
+
+}
@@ -152,11 +152,7 @@ public abstract class ZipToSrampArchive {
 	 * @throws ZipToSrampArchiveException
 	 */
 	public SrampArchive createSrampArchive() throws ZipToSrampArchiveException {
-	    this.artifactFilter.setContext(this.context);
-	    this.metaDataFactory.setContext(this.context);
-		DiscoveredArtifacts discoveredArtifacts = discoverArtifacts();
-		discoveredArtifacts.index(jarWorkDir);
-		generateMetaData(discoveredArtifacts);
+		DiscoveredArtifacts discoveredArtifacts = createDiscoveredArtifacts();
 		try {
 			SrampArchive archive = new SrampArchive();
 			for (DiscoveredArtifact artifact : discoveredArtifacts) {
@@ -169,6 +165,21 @@ public abstract class ZipToSrampArchive {
 		}
 	}
 
+	/**
+	 * Discovers the S-RAMP artifacts in this JAR and generates their meta-data, without
+	 * copying them into an S-RAMP archive.  The content of the discovered artifacts is read
+	 * straight from the unpacked JAR, so it is only available until this object is closed.
+	 * @return the discovered artifacts (with meta-data)
+	 */
+	public DiscoveredArtifacts createDiscoveredArtifacts() {
+	    this.artifactFilter.setContext(this.context);
+	    this.metaDataFactory.setContext(this.context);
+		DiscoveredArtifacts discoveredArtifacts = discoverArtifacts();
+		discoveredArtifacts.index(jarWorkDir);
+		generateMetaData(discoveredArtifacts);
+		return discoveredArtifacts;
+	}
+
 	/**
 	 * Generates the meta data for all of the artifacts found during discovery.
 	 * @param discoveredArtifacts
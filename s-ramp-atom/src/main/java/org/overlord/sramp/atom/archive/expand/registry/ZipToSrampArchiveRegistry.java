@@ -90,10 +90,11 @@ public final class ZipToSrampArchiveRegistry {
     }
 
     /**
-     * Gets a provider for the given artifact type.
+     * Gets a provider for the given artifact type.  Synchronized, since the server expands
+     * archives (and so fills the cache) on concurrent requests.
      * @param artifactType
      */
-    protected static ZipToSrampArchiveProvider getProvider(ArtifactType artifactType) {
+    protected static synchronized ZipToSrampArchiveProvider getProvider(ArtifactType artifactType) {
         ZipToSrampArchiveProvider provider = null;
         if (providerCache.containsKey(artifactType)) {
             provider = providerCache.get(artifactType);
@@ -16,6 +16,7 @@
 package org.overlord.sramp.atom.client;
 
 import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.ext.Providers;
 
 import org.jboss.resteasy.client.ClientExecutor;
 import org.jboss.resteasy.client.ClientResponse;
@@ -51,6 +52,13 @@ public class ClientRequest extends org.jboss.resteasy.client.ClientRequest {
 		providerFactory.registerProvider(HttpResponseProvider.class);
 	}
 
+	/**
+	 * @return the providers used to read and write request/response entities
+	 */
+	public static Providers getProviders() {
+		return providerFactory;
+	}
+
 	/**
 	 * Creates a {@link UriBuilder} for the given URI template.
 	 * @param uriTemplate
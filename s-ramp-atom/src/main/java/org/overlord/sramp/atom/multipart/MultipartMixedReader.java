@@ -0,0 +1,267 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.atom.multipart;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Providers;
+
+import org.overlord.sramp.atom.i18n.Messages;
+
+/**
+ * Reads a multipart/mixed body one part at a time, as the parts arrive - so only the part
+ * being read is held in memory.  The (JAX-RS) providers are used to read the part entities.
+ */
+public class MultipartMixedReader {
+
+    private final InputStream input;
+    private final byte[] delimiter;
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * Constructor.
+     * @param input the multipart body
+     * @param boundary the multipart boundary
+     */
+    public MultipartMixedReader(InputStream input, String boundary) {
+        this.input = new BufferedInputStream(input);
+        try {
+            this.delimiter = ("\r\n--" + boundary).getBytes("UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a reader for a multipart body of the given content type.
+     * @param input the multipart body
+     * @param contentType the multipart content type (including the boundary)
+     * @throws IOException if the content type has no boundary
+     */
+    public static MultipartMixedReader create(InputStream input, String contentType) throws IOException {
+        String boundary = getBoundary(contentType);
+        if (boundary == null) {
+            throw new IOException(Messages.i18n.format("MISSING_MULTIPART_BOUNDARY", contentType)); //$NON-NLS-1$
+        }
+        return new MultipartMixedReader(input, boundary);
+    }
+
+    /**
+     * Gets the boundary from the given multipart content type.
+     * @param contentType
+     * @return the boundary, or null if the content type has none
+     */
+    public static String getBoundary(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String boundary = MediaType.valueOf(contentType).getParameters().get("boundary"); //$NON-NLS-1$
+        if (boundary != null && boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) { //$NON-NLS-1$ //$NON-NLS-2$
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary;
+    }
+
+    /**
+     * Reads the next part.
+     * @return the part, or null if there are no more parts
+     * @throws IOException if the body can't be read, or ends before the closing delimiter
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (!started) {
+            // Skip the preamble (the first delimiter need not be preceded by a line break)
+            started = true;
+            PartBuffer preamble = new PartBuffer();
+            preamble.write('\r');
+            preamble.write('\n');
+            if (!readToDelimiter(preamble)) {
+                throw new IOException(Messages.i18n.format("TRUNCATED_MULTIPART")); //$NON-NLS-1$
+            }
+        }
+
+        // Right after a delimiter: either "--" (the closing delimiter) or the end of the line
+        int b1 = input.read();
+        int b2 = input.read();
+        if (b1 == '-' && b2 == '-') {
+            finished = true;
+            return null;
+        }
+        if (b1 == -1 || b2 == -1) {
+            throw new IOException(Messages.i18n.format("TRUNCATED_MULTIPART")); //$NON-NLS-1$
+        }
+        int b = b2;
+        while (b != '\n') {
+            b = input.read();
+            if (b == -1) {
+                throw new IOException(Messages.i18n.format("TRUNCATED_MULTIPART")); //$NON-NLS-1$
+            }
+        }
+
+        // The part headers
+        Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        String line = readLine();
+        while (line.length() > 0) {
+            int idx = line.indexOf(':');
+            if (idx > 0) {
+                headers.put(line.substring(0, idx).trim(), line.substring(idx + 1).trim());
+            }
+            line = readLine();
+        }
+
+        // The part body
+        PartBuffer body = new PartBuffer();
+        if (!readToDelimiter(body)) {
+            throw new IOException(Messages.i18n.format("TRUNCATED_MULTIPART")); //$NON-NLS-1$
+        }
+        return new Part(headers, body.toByteArray());
+    }
+
+    /**
+     * Reads up to (and including) the next delimiter.  The bytes before the delimiter are
+     * left in the given buffer.
+     * @param buffer
+     * @return false if the end of the stream was reached first
+     * @throws IOException
+     */
+    private boolean readToDelimiter(PartBuffer buffer) throws IOException {
+        int b = input.read();
+        while (b != -1) {
+            buffer.write(b);
+            if (b == delimiter[delimiter.length - 1] && buffer.endsWith(delimiter)) {
+                buffer.truncate(delimiter.length);
+                return true;
+            }
+            b = input.read();
+        }
+        return false;
+    }
+
+    /**
+     * Reads a (header) line, without the line break.
+     * @throws IOException
+     */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b = input.read();
+        while (b != '\n') {
+            if (b == -1) {
+                throw new IOException(Messages.i18n.format("TRUNCATED_MULTIPART")); //$NON-NLS-1$
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+            b = input.read();
+        }
+        return line.toString("UTF-8"); //$NON-NLS-1$
+    }
+
+    /**
+     * A single part of the multipart body.
+     */
+    public static class Part {
+
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        /**
+         * Constructor.
+         * @param headers
+         * @param body
+         */
+        public Part(Map<String, String> headers, byte[] body) {
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * Gets a part header.
+         * @param name the (case insensitive) header name
+         * @return the header value, or null if the part has no such header
+         */
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        /**
+         * @return the body of the part
+         */
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        /**
+         * Reads the part's entity, according to the part's content type.
+         * @param type
+         * @param providers
+         * @throws IOException
+         */
+        public <T> T getEntity(Class<T> type, Providers providers) throws IOException {
+            String contentType = getHeader("Content-Type"); //$NON-NLS-1$
+            MediaType mediaType = contentType == null ? MediaType.TEXT_PLAIN_TYPE : MediaType.valueOf(contentType);
+            MessageBodyReader<T> reader = providers.getMessageBodyReader(type, null, null, mediaType);
+            if (reader == null) {
+                throw new IOException(Messages.i18n.format("NO_PART_READER", type.getName(), mediaType)); //$NON-NLS-1$
+            }
+            return reader.readFrom(type, null, null, mediaType, null, getBody());
+        }
+
+    }
+
+    /**
+     * A byte buffer that can check (and drop) its tail.
+     */
+    private static class PartBuffer extends ByteArrayOutputStream {
+
+        /**
+         * Returns true if the buffer ends with the given bytes.
+         * @param tail
+         */
+        public boolean endsWith(byte[] tail) {
+            if (count < tail.length) {
+                return false;
+            }
+            int offset = count - tail.length;
+            for (int i = 0; i < tail.length; i++) {
+                if (buf[offset + i] != tail[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Drops the given number of bytes from the end of the buffer.
+         * @param length
+         */
+        public void truncate(int length) {
+            count -= length;
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.atom.multipart;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+
+import org.overlord.sramp.atom.i18n.Messages;
+
+/**
+ * Writes a multipart/mixed body one part at a time, straight to the output stream - so
+ * the parts never have to be collected in memory, and the receiver gets each part as soon
+ * as it has been written.  The (JAX-RS) providers are used to write the part entities.
+ */
+public class MultipartMixedWriter {
+
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private final OutputStream output;
+    private final Providers providers;
+    private final byte[] delimiter;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * @param output the stream to write the multipart body to
+     * @param providers the providers used to write the part entities
+     * @param boundary the multipart boundary
+     */
+    public MultipartMixedWriter(OutputStream output, Providers providers, String boundary) {
+        this.output = output;
+        this.providers = providers;
+        this.delimiter = bytes("--" + boundary); //$NON-NLS-1$
+    }
+
+    /**
+     * Writes a part (and flushes it out).
+     * @param entity the part's entity
+     * @param mediaType the part's media type
+     * @param headers additional part headers (may be null)
+     * @throws IOException
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void writePart(Object entity, MediaType mediaType, Map<String, String> headers) throws IOException {
+        Class<?> entityType = entity.getClass();
+        MessageBodyWriter writer = providers.getMessageBodyWriter(entityType, null, null, mediaType);
+        if (writer == null) {
+            throw new IOException(Messages.i18n.format("NO_PART_WRITER", entityType.getName(), mediaType)); //$NON-NLS-1$
+        }
+
+        output.write(delimiter);
+        output.write(CRLF);
+        writeHeader("Content-Type", mediaType.toString()); //$NON-NLS-1$
+        if (headers != null) {
+            for (Entry<String, String> header : headers.entrySet()) {
+                writeHeader(header.getKey(), header.getValue());
+            }
+        }
+        output.write(CRLF);
+        writer.writeTo(entity, entityType, null, null, mediaType, null, output);
+        output.write(CRLF);
+        output.flush();
+    }
+
+    /**
+     * Writes the closing delimiter.  Does not close the underlying stream.
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            output.write(delimiter);
+            output.write(bytes("--")); //$NON-NLS-1$
+            output.write(CRLF);
+            output.flush();
+        }
+    }
+
+    /**
+     * Writes a single part header.
+     * @param name
+     * @param value
+     * @throws IOException
+     */
+    private void writeHeader(String name, String value) throws IOException {
+        output.write(bytes(name + ": " + value)); //$NON-NLS-1$
+        output.write(CRLF);
+    }
+
+    /**
+     * Encodes a string of (header) text.
+     * @param text
+     */
+    private static byte[] bytes(String text) {
+        try {
+            return text.getBytes("UTF-8"); //$NON-NLS-1$
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -15,7 +15,6 @@
  */
 package org.overlord.sramp.atom.visitors;
 
-import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.List;
 import java.util.Set;
@@ -32,6 +31,7 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedDocument;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Property;
 import org.overlord.sramp.atom.MediaType;
 import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.common.ArtifactWrapperAccessors;
 import org.overlord.sramp.common.SrampConstants;
 import org.overlord.sramp.common.SrampModelUtils;
 import org.overlord.sramp.common.visitors.ArtifactVisitorAdapter;
@@ -181,8 +181,7 @@ public class ArtifactToSummaryAtomEntryVisitor extends ArtifactVisitorAdapter {
 			if (includeArtifact()) {
 				Artifact artifactWrapper = new Artifact();
 				BaseArtifactType includedArtifact = createIncludedArtifact(artifact);
-				Method method = Artifact.class.getMethod("set" + includedArtifact.getClass().getSimpleName(), includedArtifact.getClass()); //$NON-NLS-1$
-				method.invoke(artifactWrapper, includedArtifact);
+				ArtifactWrapperAccessors.set(artifactWrapper, includedArtifact);
 				entry.setAnyOtherJAXBObject(artifactWrapper);
 			}
 		} catch (Exception e) {
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.atom;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.bind.Marshaller;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Artifact;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdDocument;
+
+/**
+ * JUnit test for the {@link PooledJaxbContext} class.
+ */
+public class PooledJaxbContextTest {
+
+    /**
+     * Each thread gets its own (re-used) marshaller and unmarshaller.
+     */
+    @Test
+    public void testPooling() throws Exception {
+        final PooledJaxbContext context = new PooledJaxbContext(Artifact.class);
+        Assert.assertSame(context.getContext(), context.getContext());
+        Assert.assertSame(context.getMarshaller(), context.getMarshaller());
+        Assert.assertSame(context.getUnmarshaller(), context.getUnmarshaller());
+
+        final Object[] other = new Object[2];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    other[0] = context.getMarshaller();
+                    other[1] = context.getUnmarshaller();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        Assert.assertNotNull(other[0]);
+        Assert.assertNotSame(context.getMarshaller(), other[0]);
+        Assert.assertNotSame(context.getUnmarshaller(), other[1]);
+    }
+
+    /**
+     * Formatting is off unless asked for, and asking for it once doesn't stick.
+     */
+    @Test
+    public void testFormatting() throws Exception {
+        PooledJaxbContext context = new PooledJaxbContext(Artifact.class);
+        Assert.assertEquals(Boolean.FALSE, context.getMarshaller().getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+        Assert.assertEquals(Boolean.TRUE, context.getMarshaller(true).getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+        Assert.assertEquals(Boolean.FALSE, context.getMarshaller().getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+    }
+
+    /**
+     * Marshals an artifact and reads it back using the pooled (un)marshaller.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        PooledJaxbContext context = new PooledJaxbContext(Artifact.class);
+        for (int i = 0; i < 3; i++) {
+            XsdDocument xsd = new XsdDocument();
+            xsd.setName("PO-" + i + ".xsd"); //$NON-NLS-1$ //$NON-NLS-2$
+            Artifact wrapper = new Artifact();
+            wrapper.setXsdDocument(xsd);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            context.getMarshaller().marshal(wrapper, out);
+
+            Artifact read = (Artifact) context.getUnmarshaller().unmarshal(new ByteArrayInputStream(out.toByteArray()));
+            Assert.assertEquals(xsd.getName(), read.getXsdDocument().getName());
+        }
+    }
+
+}
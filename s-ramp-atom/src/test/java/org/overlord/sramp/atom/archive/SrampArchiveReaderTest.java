@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.atom.archive;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdDocument;
+
+/**
+ * JUnit test for the {@link SrampArchiveReader} class.
+ */
+public class SrampArchiveReaderTest {
+
+	/**
+	 * Reads an archive from a stream.
+	 */
+	@Test
+	public void testReadStream() throws Exception {
+		SrampArchiveReader reader = null;
+		try {
+			reader = new SrampArchiveReader(SrampArchiveReaderTest.class.getResourceAsStream("simple-sramp-archive.zip")); //$NON-NLS-1$
+			Collection<SrampArchiveEntry> entries = reader.getEntries();
+			Assert.assertEquals(1, entries.size());
+			SrampArchiveEntry entry = entries.iterator().next();
+			Assert.assertEquals("simple-sramp-archive/sample.xsd", entry.getPath()); //$NON-NLS-1$
+			Assert.assertTrue(entry.hasContent());
+			Assert.assertNotNull(entry.getMetaData());
+			InputStream content = reader.getInputStream(entry);
+			try {
+				Assert.assertEquals(359, IOUtils.toByteArray(content).length);
+			} finally {
+				IOUtils.closeQuietly(content);
+			}
+		} finally {
+			SrampArchiveReader.closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Packs an archive (including a meta-data only entry) and reads it back.
+	 */
+	@Test
+	public void testReadPackedArchive() throws Exception {
+		SrampArchive archive = null;
+		File archiveFile = null;
+		try {
+			XsdDocument xsd = new XsdDocument();
+			xsd.setArtifactType(BaseArtifactEnum.XSD_DOCUMENT);
+			xsd.setName("PO.xsd"); //$NON-NLS-1$
+			xsd.setVersion("2.1.4"); //$NON-NLS-1$
+			Document document = new Document();
+			document.setArtifactType(BaseArtifactEnum.DOCUMENT);
+			document.setName("meta-only.txt"); //$NON-NLS-1$
+
+			archive = new SrampArchive();
+			archive.addEntry("sample/PO.xsd", xsd, SrampArchiveReaderTest.class.getResourceAsStream("PO.xsd")); //$NON-NLS-1$ //$NON-NLS-2$
+			archive.addEntry("sample/meta-only.txt", document, null); //$NON-NLS-1$
+			archiveFile = archive.pack();
+		} finally {
+			SrampArchive.closeQuietly(archive);
+		}
+
+		SrampArchiveReader reader = null;
+		try {
+			reader = new SrampArchiveReader(archiveFile);
+			Map<String, SrampArchiveEntry> entryMap = new HashMap<String, SrampArchiveEntry>();
+			for (SrampArchiveEntry entry : reader.getEntries())
+				entryMap.put(entry.getPath(), entry);
+			Assert.assertEquals(2, entryMap.size());
+
+			SrampArchiveEntry entry = entryMap.get("sample/PO.xsd"); //$NON-NLS-1$
+			Assert.assertTrue(entry.hasContent());
+			Assert.assertEquals("2.1.4", entry.getMetaData().getVersion()); //$NON-NLS-1$
+			InputStream content = reader.getInputStream(entry);
+			InputStream expected = SrampArchiveReaderTest.class.getResourceAsStream("PO.xsd"); //$NON-NLS-1$
+			try {
+				Assert.assertTrue(IOUtils.contentEquals(expected, content));
+			} finally {
+				IOUtils.closeQuietly(content);
+				IOUtils.closeQuietly(expected);
+			}
+
+			entry = entryMap.get("sample/meta-only.txt"); //$NON-NLS-1$
+			Assert.assertFalse(entry.hasContent());
+			Assert.assertEquals("meta-only.txt", entry.getMetaData().getName()); //$NON-NLS-1$
+			Assert.assertNull(reader.getInputStream(entry));
+		} finally {
+			SrampArchiveReader.closeQuietly(reader);
+			FileUtils.deleteQuietly(archiveFile);
+		}
+	}
+
+}
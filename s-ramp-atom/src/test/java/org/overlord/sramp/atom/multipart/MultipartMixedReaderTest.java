@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.atom.multipart;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.overlord.sramp.atom.client.ClientRequest;
+
+/**
+ * JUnit test for the {@link MultipartMixedWriter} and {@link MultipartMixedReader} classes.
+ */
+public class MultipartMixedReaderTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MultipartMixedWriter writer = new MultipartMixedWriter(output, ClientRequest.getProviders(), "package"); //$NON-NLS-1$
+        writer.writePart("first part", MediaType.TEXT_PLAIN_TYPE, Collections.singletonMap("Content-ID", "<one@package>")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        writer.writePart("second\r\npart\r\n--pack", MediaType.TEXT_PLAIN_TYPE, null); //$NON-NLS-1$
+        writer.close();
+
+        MultipartMixedReader reader = MultipartMixedReader.create(new ByteArrayInputStream(output.toByteArray()),
+                "multipart/mixed; boundary=\"package\""); //$NON-NLS-1$
+        MultipartMixedReader.Part part = reader.nextPart();
+        Assert.assertNotNull(part);
+        Assert.assertEquals("<one@package>", part.getHeader("content-id")); //$NON-NLS-1$ //$NON-NLS-2$
+        Assert.assertEquals("first part", part.getEntity(String.class, ClientRequest.getProviders())); //$NON-NLS-1$
+        part = reader.nextPart();
+        Assert.assertNotNull(part);
+        Assert.assertNull(part.getHeader("Content-ID")); //$NON-NLS-1$
+        Assert.assertEquals("second\r\npart\r\n--pack", part.getEntity(String.class, ClientRequest.getProviders())); //$NON-NLS-1$
+        Assert.assertNull(reader.nextPart());
+        Assert.assertNull(reader.nextPart());
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MultipartMixedWriter writer = new MultipartMixedWriter(output, ClientRequest.getProviders(), "package"); //$NON-NLS-1$
+        writer.writePart("complete", MediaType.TEXT_PLAIN_TYPE, null); //$NON-NLS-1$
+        writer.writePart("torn", MediaType.TEXT_PLAIN_TYPE, null); //$NON-NLS-1$
+        byte[] bytes = output.toByteArray();
+
+        MultipartMixedReader reader = new MultipartMixedReader(new ByteArrayInputStream(bytes, 0, bytes.length - 4), "package"); //$NON-NLS-1$
+        Assert.assertNotNull(reader.nextPart());
+        try {
+            reader.nextPart();
+            Assert.fail("Expected the truncated part to fail."); //$NON-NLS-1$
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.client;
+
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.overlord.sramp.atom.err.SrampAtomException;
+
+/**
+ * Receives the results of a batch upload (see
+ * {@link SrampAtomApiClient#uploadBatch(org.overlord.sramp.atom.archive.SrampArchive, BatchResultHandler)})
+ * one entry at a time, as the server reports them.
+ */
+public interface BatchResultHandler {
+
+    /**
+     * Called when an entry of the s-ramp package was successfully created or updated.
+     * @param path the s-ramp archive entry path
+     * @param artifact the resulting artifact
+     * @throws Exception to stop processing the results
+     */
+    public void artifact(String path, BaseArtifactType artifact) throws Exception;
+
+    /**
+     * Called when an entry of the s-ramp package could not be processed.
+     * @param path the s-ramp archive entry path
+     * @param error the error
+     * @throws Exception to stop processing the results
+     */
+    public void error(String path, SrampAtomException error) throws Exception;
+
+}
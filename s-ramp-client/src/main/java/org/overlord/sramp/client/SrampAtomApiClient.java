@@ -18,9 +18,12 @@ package org.overlord.sramp.client;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -28,6 +31,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import javax.xml.bind.DatatypeConverter;
 import javax.xml.namespace.QName;
 
 import org.apache.commons.io.FileUtils;
@@ -51,10 +55,8 @@ import org.jboss.resteasy.plugins.providers.atom.app.AppCategories;
 import org.jboss.resteasy.plugins.providers.atom.app.AppCollection;
 import org.jboss.resteasy.plugins.providers.atom.app.AppService;
 import org.jboss.resteasy.plugins.providers.atom.app.AppWorkspace;
-import org.jboss.resteasy.plugins.providers.multipart.InputPart;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartConstants;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataOutput;
-import org.jboss.resteasy.plugins.providers.multipart.MultipartInput;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartRelatedOutput;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.overlord.sramp.atom.MediaType;
@@ -63,6 +65,7 @@ import org.overlord.sramp.atom.archive.SrampArchive;
 import org.overlord.sramp.atom.beans.HttpResponseBean;
 import org.overlord.sramp.atom.client.ClientRequest;
 import org.overlord.sramp.atom.err.SrampAtomException;
+import org.overlord.sramp.atom.multipart.MultipartMixedReader;
 import org.overlord.sramp.client.audit.AuditResultSet;
 import org.overlord.sramp.client.auth.AuthenticationProvider;
 import org.overlord.sramp.client.auth.BasicAuthenticationProvider;
@@ -376,11 +379,32 @@ public class SrampAtomApiClient {
 	 */
 	public BaseArtifactType uploadArtifact(ArtifactType artifactType, InputStream content, String artifactFileName)
 			throws SrampClientException, SrampAtomException {
+		return uploadArtifact(artifactType, content, artifactFileName, false);
+	}
+
+	/**
+	 * Creates a new artifact in the repository by uploading a document.  The document will
+	 * become the core of a new S-RAMP artifact.  If expansion is requested and the document
+	 * is an archive of an expandable type (e.g. a JAR or a SwitchYard application), the server
+	 * will also create the artifacts found inside it - which saves expanding the archive
+	 * locally and uploading the result with {@link #uploadBatch(SrampArchive)}.
+	 * @param artifactType
+	 * @param content
+	 * @param artifactFileName
+	 * @param expand whether the server should also create the artifacts found inside the archive
+	 * @throws SrampClientException
+	 * @throws SrampAtomException
+	 */
+	public BaseArtifactType uploadArtifact(ArtifactType artifactType, InputStream content, String artifactFileName,
+			boolean expand) throws SrampClientException, SrampAtomException {
 		assertFeatureEnabled(artifactType);
 		try {
 			String type = artifactType.getType();
 			String atomUrl = String.format("%1$s/%2$s/%3$s", this.endpoint, //$NON-NLS-1$
 					artifactType.getArtifactType().getModel(), type);
+			if (expand) {
+				atomUrl += "?expand=true"; //$NON-NLS-1$
+			}
 			ClientRequest request = createClientRequest(atomUrl);
 			if (artifactFileName != null)
 				request.header("Slug", artifactFileName); //$NON-NLS-1$
@@ -452,12 +476,40 @@ public class SrampAtomApiClient {
 	 * @throws SrampAtomException
 	 */
 	public Map<String, ?> uploadBatch(SrampArchive archive) throws SrampClientException, SrampAtomException {
+		final Map<String, Object> rval = new HashMap<String, Object>();
+		uploadBatch(archive, new BatchResultHandler() {
+			@Override
+			public void artifact(String path, BaseArtifactType artifact) {
+				rval.put(path, artifact);
+			}
+			@Override
+			public void error(String path, SrampAtomException error) {
+				rval.put(path, error);
+			}
+		});
+		return rval;
+	}
+
+	/**
+	 * Performs a batch operation by uploading an s-ramp package archive to the s-ramp server
+	 * for processing.  The server streams back the result of each entry in the s-ramp package
+	 * as soon as the entry has been processed, and each result is handed to the given handler
+	 * as it arrives - so the results of a large package are never all held in memory.
+	 *
+	 * @param archive the s-ramp package archive to upload
+	 * @param handler receives the results (one per entry in the s-ramp package)
+	 * @throws SrampClientException
+	 * @throws SrampAtomException
+	 */
+	public void uploadBatch(SrampArchive archive, BatchResultHandler handler) throws SrampClientException, SrampAtomException {
 		File packageFile = null;
 		InputStream packageStream = null;
+		ClientResponse<InputStream> clientResponse = null;
+		InputStream responseStream = null;
 
 		try {
 	        if (archive.getEntries().isEmpty()) {
-	            return new HashMap<String, Object>();
+	            return;
 	        }
 
 	        packageFile = archive.pack();
@@ -466,45 +518,93 @@ public class SrampAtomApiClient {
 			request.header("Content-Type", "application/zip"); //$NON-NLS-1$ //$NON-NLS-2$
 			request.body(MediaType.APPLICATION_ZIP, packageStream);
 
-			ClientResponse<MultipartInput> clientResponse = request.post(MultipartInput.class);
-			MultipartInput response = clientResponse.getEntity();
-			List<InputPart> parts = response.getParts();
+			clientResponse = request.post(InputStream.class);
+			responseStream = clientResponse.getEntity();
+			String contentType = clientResponse.getHeaders().getFirst("Content-Type"); //$NON-NLS-1$
+			MultipartMixedReader reader = MultipartMixedReader.create(responseStream, contentType);
 
-			Map<String, Object> rval = new HashMap<String, Object>(parts.size());
-			for (InputPart part : parts) {
-				String contentId = part.getHeaders().getFirst("Content-ID"); //$NON-NLS-1$
+			MultipartMixedReader.Part part = reader.nextPart();
+			while (part != null) {
+				String contentId = part.getHeader("Content-ID"); //$NON-NLS-1$
 				String path = contentId.substring(1, contentId.lastIndexOf('@'));
-				HttpResponseBean rbean = part.getBody(HttpResponseBean.class, null);
-				if (rbean.getCode() == 201) {
+				HttpResponseBean rbean = part.getEntity(HttpResponseBean.class, ClientRequest.getProviders());
+				if (rbean.getCode() == 201 || rbean.getCode() == 200) {
 					Entry entry = (Entry) rbean.getBody();
 					BaseArtifactType artifact = SrampAtomUtils.unwrapSrampArtifact(entry);
-					rval.put(path, artifact);
+					handler.artifact(path, artifact);
 				} else if (rbean.getCode() == 409) {
 					if (MediaType.APPLICATION_SRAMP_ATOM_EXCEPTION.equals(rbean.getHeaders().get("Content-Type"))) { //$NON-NLS-1$
 						SrampAtomException exception = (SrampAtomException) rbean.getBody();
-						rval.put(path, exception);
+						handler.error(path, exception);
 					} else {
 						String errorReason = (String) rbean.getBody();
 						SrampAtomException exception = new SrampAtomException(errorReason);
-						rval.put(path, exception);
+						handler.error(path, exception);
 					}
 				} else {
 					// Only a non-compliant s-ramp impl could cause this
 					SrampAtomException exception = new SrampAtomException(Messages.i18n.format("BAD_RETURN_CODE", rbean.getCode(), contentId));  //$NON-NLS-1$
-					rval.put(path, exception);
+					handler.error(path, exception);
 				}
+				part = reader.nextPart();
 			}
-			return rval;
 		} catch (SrampAtomException e) {
 			throw e;
 		} catch (Throwable e) {
 			throw new SrampClientException(e);
 		} finally {
+			IOUtils.closeQuietly(responseStream);
+			if (clientResponse != null) {
+				clientResponse.releaseConnection();
+			}
 			IOUtils.closeQuietly(packageStream);
 			FileUtils.deleteQuietly(packageFile);
 		}
 	}
 
+	/**
+	 * Checks which of the given artifacts exist in the s-ramp repository, all in one round
+	 * trip.  This is useful as a pre-flight check, e.g. to find out which entries of an s-ramp
+	 * package would be updates (rather than creates) before uploading it.
+	 * @param uuids the artifact UUIDs to check
+	 * @return the type of each existing artifact, keyed by UUID (UUIDs that do not exist are omitted)
+	 * @throws SrampClientException
+	 * @throws SrampAtomException
+	 */
+	public Map<String, ArtifactType> getArtifactTypes(Collection<String> uuids) throws SrampClientException, SrampAtomException {
+		Map<String, ArtifactType> rval = new HashMap<String, ArtifactType>();
+		if (uuids.isEmpty()) {
+			return rval;
+		}
+		try {
+			StringBuilder body = new StringBuilder();
+			for (String uuid : uuids) {
+				body.append(uuid).append('\n');
+			}
+			String atomUrl = String.format("%1$s/exists", this.endpoint); //$NON-NLS-1$
+			ClientRequest request = createClientRequest(atomUrl);
+			request.body(MediaType.TEXT_PLAIN, body.toString());
+
+			ClientResponse<String> response = request.post(String.class);
+			for (String line : response.getEntity().split("\n")) { //$NON-NLS-1$
+				String[] fields = line.trim().split("\t"); //$NON-NLS-1$
+				if (fields.length < 2) {
+					continue;
+				}
+				ArtifactType type = ArtifactType.valueOf(fields[1]);
+				if (fields.length > 2) {
+					type.setExtendedType(fields[2]);
+				}
+				rval.put(fields[0], type);
+			}
+			return rval;
+		} catch (SrampAtomException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new SrampClientException(e);
+		}
+	}
+
 	/**
 	 * Called to update the meta-data stored in the s-ramp repository for the given s-ramp
 	 * artifact.
@@ -632,6 +732,28 @@ public class SrampAtomApiClient {
 	 */
 	public QueryResultSet query(String srampQuery, int startIndex, int count, String orderBy, boolean ascending,
 	        Collection<String> propertyNames) throws SrampClientException, SrampAtomException {
+	    return query(srampQuery, startIndex, count, orderBy, ascending, propertyNames, null);
+	}
+
+	/**
+	 * Executes the given s-ramp query xpath and returns a Feed of the matching artifacts.  When
+	 * a continuation token is given (see {@link QueryResultSet#getContinuationToken()}), the
+	 * page of results that follows the page the token was returned with is fetched, and the
+	 * start index is ignored.  This is much cheaper for the server than paging by start index,
+	 * particularly deep into the result set.
+	 * @param srampQuery the s-ramp query (xpath formatted)
+	 * @param startIndex which index within the result to start (0 indexed)
+	 * @param count the size of the page of results to return
+	 * @param orderBy the s-ramp property to use for sorting (name, uuid, createdOn, etc)
+	 * @param ascending the direction of the sort
+	 * @param propertyNames an optional collection of names of custom s-ramp properties to be returned as part of the result set
+	 * @param continuationToken an optional continuation token returned with the previous page
+	 * @return an Atom {@link Feed}
+	 * @throws SrampClientException
+	 * @throws SrampAtomException
+	 */
+	public QueryResultSet query(String srampQuery, int startIndex, int count, String orderBy, boolean ascending,
+	        Collection<String> propertyNames, String continuationToken) throws SrampClientException, SrampAtomException {
 		try {
 			String xpath = srampQuery;
 			if (xpath == null)
@@ -657,6 +779,9 @@ public class SrampAtomApiClient {
                         formData.addFormData("propertyName", propertyName, MediaType.TEXT_PLAIN_TYPE); //$NON-NLS-1$
                     }
     			}
+    			if (continuationToken != null) {
+    			    formData.addFormData("continuationToken", continuationToken, MediaType.TEXT_PLAIN_TYPE); //$NON-NLS-1$
+    			}
 
     			request.body(MediaType.MULTIPART_FORM_DATA_TYPE, formData);
     			ClientResponse<Feed> response = request.post(Feed.class);
@@ -678,6 +803,10 @@ public class SrampAtomApiClient {
                     urlBuilder.append("&propertyName="); //$NON-NLS-1$
                     urlBuilder.append(URLEncoder.encode(propName, "UTF8")); //$NON-NLS-1$
                 }
+                if (continuationToken != null) {
+                    urlBuilder.append("&continuationToken="); //$NON-NLS-1$
+                    urlBuilder.append(URLEncoder.encode(continuationToken, "UTF8")); //$NON-NLS-1$
+                }
                 ClientRequest request = createClientRequest(urlBuilder.toString());
                 ClientResponse<Feed> response = request.get(Feed.class);
                 return new QueryResultSet(response.getEntity());
@@ -894,10 +1023,28 @@ public class SrampAtomApiClient {
      * @throws SrampAtomException
      */
     public AuditResultSet getAuditTrailForArtifact(String artifactUuid, int startIndex, int count) throws SrampClientException, SrampAtomException {
+        return getAuditTrailForArtifact(artifactUuid, null, null, startIndex, count);
+    }
+
+    /**
+     * Gets a page of the audit trail for the artifact with the given UUID, limited to the
+     * entries made in the given time range.  The entries are ordered newest first.  Note that
+     * the total number of results is only reported with the last page.
+     * @param artifactUuid
+     * @param since only entries made at or after this time (may be null)
+     * @param until only entries made before this time (may be null)
+     * @param startIndex
+     * @param count
+     * @throws SrampClientException
+     * @throws SrampAtomException
+     */
+    public AuditResultSet getAuditTrailForArtifact(String artifactUuid, Date since, Date until, int startIndex,
+            int count) throws SrampClientException, SrampAtomException {
         assertFeatureEnabled("audit"); //$NON-NLS-1$
         try {
-            String atomUrl = String.format("%1$s/audit/artifact/%2$s?startIndex=%3$s&count=%4$s", //$NON-NLS-1$
-                    this.endpoint, artifactUuid, String.valueOf(startIndex), String.valueOf(count));
+            String atomUrl = String.format("%1$s/audit/artifact/%2$s?startIndex=%3$s&count=%4$s%5$s", //$NON-NLS-1$
+                    this.endpoint, artifactUuid, String.valueOf(startIndex), String.valueOf(count),
+                    timeRangeParams(since, until));
             ClientRequest request = createClientRequest(atomUrl);
             ClientResponse<Feed> response = request.get(Feed.class);
             Feed feed = response.getEntity();
@@ -941,10 +1088,28 @@ public class SrampAtomApiClient {
      * @throws SrampAtomException
      */
     public AuditResultSet getAuditTrailForUser(String username, int startIndex, int count) throws SrampClientException, SrampAtomException {
+        return getAuditTrailForUser(username, null, null, startIndex, count);
+    }
+
+    /**
+     * Gets a page of the audit trail for the given user, limited to the entries made in the
+     * given time range.  The entries are ordered newest first.  Note that the total number
+     * of results is only reported with the last page.
+     * @param username
+     * @param since only entries made at or after this time (may be null)
+     * @param until only entries made before this time (may be null)
+     * @param startIndex
+     * @param count
+     * @throws SrampClientException
+     * @throws SrampAtomException
+     */
+    public AuditResultSet getAuditTrailForUser(String username, Date since, Date until, int startIndex,
+            int count) throws SrampClientException, SrampAtomException {
         assertFeatureEnabled("audit"); //$NON-NLS-1$
         try {
-            String atomUrl = String.format("%1$s/audit/user/%2$s?startIndex=%3$s&count=%4$s", //$NON-NLS-1$
-                    this.endpoint, username, String.valueOf(startIndex), String.valueOf(count));
+            String atomUrl = String.format("%1$s/audit/user/%2$s?startIndex=%3$s&count=%4$s%5$s", //$NON-NLS-1$
+                    this.endpoint, username, String.valueOf(startIndex), String.valueOf(count),
+                    timeRangeParams(since, until));
             ClientRequest request = createClientRequest(atomUrl);
             ClientResponse<Feed> response = request.get(Feed.class);
             Feed feed = response.getEntity();
@@ -957,6 +1122,27 @@ public class SrampAtomApiClient {
         }
     }
 
+    /**
+     * Creates the (xsd:dateTime formatted) since/until query params of an audit trail request.
+     * @param since
+     * @param until
+     * @throws UnsupportedEncodingException
+     */
+    private static String timeRangeParams(Date since, Date until) throws UnsupportedEncodingException {
+        StringBuilder params = new StringBuilder();
+        if (since != null) {
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(since);
+            params.append("&since=").append(URLEncoder.encode(DatatypeConverter.printDateTime(cal), "UTF8")); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (until != null) {
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(until);
+            params.append("&until=").append(URLEncoder.encode(DatatypeConverter.printDateTime(cal), "UTF8")); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return params.toString();
+    }
+
     /**
      * Gets the full audit entry for the given artifact + audit event pair.
      * @param artifactUuid
@@ -46,6 +46,7 @@ public class SrampClientQuery {
     private String orderBy = "name"; //$NON-NLS-1$
     private boolean ascending = true;
     private Set<String> propertyNames = new HashSet<String>();
+    private String continuationToken;
 
     /**
      * Constructor.
@@ -189,6 +190,17 @@ public class SrampClientQuery {
         return this;
     }
 
+    /**
+     * Continues the query from a previous page of results, rather than from the start
+     * index.  The token is the {@link QueryResultSet#getContinuationToken()} of the
+     * previous page, which must have been queried with the same ordering.
+     * @param continuationToken the continuationToken to set
+     */
+    public SrampClientQuery continuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+        return this;
+    }
+
     /**
      * Formats the query given the replacement params, then issues the query
      * to the S-RAMP repository and returns the result.
@@ -197,7 +209,7 @@ public class SrampClientQuery {
      */
     public QueryResultSet query() throws SrampClientException, SrampAtomException {
         String query = formatQuery();
-        return client.query(query, startIndex, count, orderBy, ascending, propertyNames);
+        return client.query(query, startIndex, count, orderBy, ascending, propertyNames, continuationToken);
     }
 
     /**
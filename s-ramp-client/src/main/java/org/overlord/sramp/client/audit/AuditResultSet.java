@@ -47,9 +47,10 @@ public class AuditResultSet implements Iterable<AuditEntrySummary> {
 	}
 
 	/**
-	 * Returns the total results matched by the query.
+	 * Returns the total results matched by the query.  The server only knows (and reports)
+	 * the total with the last page of the audit trail.
 	 *
-	 * Returns -1 if this feature is not supported by the server.
+	 * Returns -1 if the total is not known, or if this feature is not supported by the server.
 	 */
 	public long getTotalResults() {
         Object totalResultsAttr = this.currentFeed.getExtensionAttributes().get(SrampConstants.SRAMP_TOTAL_RESULTS_QNAME);
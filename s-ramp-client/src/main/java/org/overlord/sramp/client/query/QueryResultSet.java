@@ -49,7 +49,8 @@ public class QueryResultSet implements Iterable<ArtifactSummary> {
 	/**
 	 * Returns the total results matched by the query.
 	 *
-	 * Returns -1 if this feature is not supported by the server.
+	 * Returns -1 if the server did not report it:  the total is only reported on the last
+	 * page of a query (and never when paging with a continuation token).
 	 */
 	public long getTotalResults() {
         Object totalResultsAttr = this.currentFeed.getExtensionAttributes().get(SrampConstants.SRAMP_TOTAL_RESULTS_QNAME);
@@ -94,6 +95,16 @@ public class QueryResultSet implements Iterable<ArtifactSummary> {
         }
 	}
 
+    /**
+     * Returns the token that can be used to fetch the next page of results (see
+     * {@link org.overlord.sramp.client.SrampClientQuery#continuationToken(String)}).
+     *
+     * Returns null if this is the last page, or if this feature is not supported by the server.
+     */
+	public String getContinuationToken() {
+        return (String) this.currentFeed.getExtensionAttributes().get(SrampConstants.SRAMP_CONTINUATION_TOKEN_QNAME);
+	}
+
 	/**
 	 * Gets an item at the given index.
 	 * @param index
@@ -21,6 +21,7 @@ import static org.overlord.sramp.common.test.resteasy.TestPortProvider.generateU
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
@@ -414,9 +415,13 @@ public class SrampAtomApiClientTest extends AbstractNoAuditingClientTest {
             addXmlDoc();
         }
         QueryResultSet rs = client.buildQuery("/s-ramp/core").count(2).startIndex(5).query(); //$NON-NLS-1$
-        Assert.assertEquals(20, rs.getTotalResults());
+        Assert.assertEquals(-1, rs.getTotalResults());
         Assert.assertEquals(2, rs.getItemsPerPage());
         Assert.assertEquals(5, rs.getStartIndex());
+        // The total is only known on the last page
+        rs = client.buildQuery("/s-ramp/core").count(5).startIndex(18).query(); //$NON-NLS-1$
+        Assert.assertEquals(20, rs.getTotalResults());
+        Assert.assertEquals(2, rs.size());
     }
 
 	/**
@@ -613,6 +618,36 @@ public class SrampAtomApiClientTest extends AbstractNoAuditingClientTest {
 		}
 	}
 
+    /**
+     * Test method for {@link SrampAtomApiClient#getArtifactTypes(java.util.Collection)}.
+     */
+    @Test
+    public void testGetArtifactTypes() throws Exception {
+        SrampAtomApiClient client = new SrampAtomApiClient(generateURL("/s-ramp")); //$NON-NLS-1$
+        InputStream is = this.getClass().getResourceAsStream("/sample-files/xsd/PO.xsd"); //$NON-NLS-1$
+        BaseArtifactType xsd = null;
+        try {
+            xsd = client.uploadArtifact(ArtifactType.XsdDocument(), is, "PO.xsd"); //$NON-NLS-1$
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+        ExtendedArtifactType artifact = new ExtendedArtifactType();
+        artifact.setArtifactType(BaseArtifactEnum.EXTENDED_ARTIFACT_TYPE);
+        artifact.setExtendedType("TestArtifact"); //$NON-NLS-1$
+        artifact.setName("My Test Artifact"); //$NON-NLS-1$
+        BaseArtifactType extended = client.createArtifact(artifact);
+
+        Map<String, ArtifactType> types = client.getArtifactTypes(Arrays.asList(xsd.getUuid(), extended.getUuid(),
+                "no-such-artifact")); //$NON-NLS-1$
+        Assert.assertEquals(2, types.size());
+        Assert.assertEquals(ArtifactType.XsdDocument(), types.get(xsd.getUuid()));
+        ArtifactType extendedType = types.get(extended.getUuid());
+        Assert.assertNotNull(extendedType);
+        Assert.assertTrue(extendedType.isExtendedType());
+        Assert.assertEquals("TestArtifact", extendedType.getExtendedType()); //$NON-NLS-1$
+        Assert.assertTrue(client.getArtifactTypes(Arrays.asList("no-such-artifact")).isEmpty()); //$NON-NLS-1$
+    }
+
 	/**
      * Test method for {@link SrampAtomApiClient#uploadOntology(InputStream)}.
      */
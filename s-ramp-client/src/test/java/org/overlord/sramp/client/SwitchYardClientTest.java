@@ -22,10 +22,12 @@ import java.io.InputStream;
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.overlord.sramp.atom.archive.SrampArchive;
 import org.overlord.sramp.atom.archive.expand.ZipToSrampArchive;
 import org.overlord.sramp.atom.err.SrampAtomException;
 import org.overlord.sramp.client.query.QueryResultSet;
+import org.overlord.sramp.common.ArtifactType;
 import org.overlord.sramp.integration.switchyard.expand.SwitchYardAppToSrampArchive;
 
 /**
@@ -88,6 +90,29 @@ public class SwitchYardClientTest extends AbstractNoAuditingClientTest {
         doOrderServiceAssertions(client);
 	}
 
+	/**
+	 * Same as above (for the artifacts jar), except that the server expands the jar.
+	 */
+	@Test
+	public void testUploadArtifactWithServerExpansion() throws Exception {
+        SrampAtomApiClient client = new SrampAtomApiClient(generateURL("/s-ramp")); //$NON-NLS-1$
+
+        InputStream artifactsIS = this.getClass().getResourceAsStream("/sample-files/switchyard/artifacts.jar"); //$NON-NLS-1$
+        BaseArtifactType artifact = null;
+        try {
+            artifact = client.uploadArtifact(ArtifactType.valueOf("SwitchYardApplication"), artifactsIS, "artifacts.jar", true); //$NON-NLS-1$ //$NON-NLS-2$
+        } finally {
+            IOUtils.closeQuietly(artifactsIS);
+        }
+        Assert.assertNotNull(artifact);
+
+        doArtifactsJarAssertions(client);
+        QueryResultSet result = client.buildQuery("/s-ramp/xsd/XsdDocument[expandedFromDocument[@uuid = ?]]") //$NON-NLS-1$
+                .parameter(artifact.getUuid())
+                .query();
+        Assert.assertEquals(1, result.size());
+	}
+
     /**
      * Do some assertions to make sure that the content we expected to be extracted
      * from the switchyard app jar really was.
@@ -15,7 +15,6 @@
  */
 package org.overlord.sramp.common;
 
-import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -116,8 +115,7 @@ public class ArtifactType {
      */
     public BaseArtifactType unwrap(Artifact artifactWrapper) {
         try {
-            Method method = Artifact.class.getMethod("get" + getArtifactType().getType()); //$NON-NLS-1$
-            BaseArtifactType artifact = (BaseArtifactType) method.invoke(artifactWrapper);
+            BaseArtifactType artifact = ArtifactWrapperAccessors.get(artifactWrapper, getArtifactType().getTypeClass());
             artifact.setArtifactType(this.getArtifactType().getApiType());
             return artifact;
         } catch (Exception e) {
@@ -395,14 +393,11 @@ public class ArtifactType {
     public static ArtifactType valueOf(Artifact artifactWrapper, String hint) {
         ArtifactType type = null;
         // We were given a hint - try using that first.
-        if (hint != null) {
-            String methodName = "get" + hint; //$NON-NLS-1$
+        if (hint != null && ArtifactTypeEnum.hasEnum(hint)) {
             try {
-                Method method = artifactWrapper.getClass().getMethod(methodName);
-                Object o = method.invoke(artifactWrapper);
-                if (o != null && BaseArtifactType.class.isAssignableFrom(o.getClass())) {
-                    Class<? extends BaseArtifactType> artyClass = ((BaseArtifactType) o).getClass();
-                    return valueOf(artyClass);
+                BaseArtifactType o = ArtifactWrapperAccessors.get(artifactWrapper, ArtifactTypeEnum.valueOf(hint).getTypeClass());
+                if (o != null) {
+                    return valueOf(o.getClass());
                 }
             } catch (Exception e) {
                 // eat it
@@ -411,16 +406,10 @@ public class ArtifactType {
 
         // Didn't find it based on the hint - try them all!
         if (type == null) {
-            Method[] methods = artifactWrapper.getClass().getMethods();
             try {
-                for (Method method : methods) {
-                    if (method.getName().startsWith("get")) { //$NON-NLS-1$
-                        Object o = method.invoke(artifactWrapper);
-                        if (o != null && BaseArtifactType.class.isAssignableFrom(o.getClass())) {
-                            Class<? extends BaseArtifactType> artyClass = ((BaseArtifactType) o).getClass();
-                            return valueOf(artyClass);
-                        }
-                    }
+                BaseArtifactType o = ArtifactWrapperAccessors.get(artifactWrapper);
+                if (o != null) {
+                    return valueOf(o.getClass());
                 }
             } catch (Exception e) {
                 // eat it
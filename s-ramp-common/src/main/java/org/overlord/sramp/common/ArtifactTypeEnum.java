@@ -15,7 +15,6 @@
  */
 package org.overlord.sramp.common;
 
-import java.lang.reflect.Method;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -214,8 +213,7 @@ public enum ArtifactTypeEnum {
 	 */
 	public BaseArtifactType unwrap(Artifact artifactWrapper) {
 		try {
-			Method method = Artifact.class.getMethod("get" + this.name()); //$NON-NLS-1$
-			return (BaseArtifactType) method.invoke(artifactWrapper);
+			return ArtifactWrapperAccessors.get(artifactWrapper, getTypeClass());
 		} catch (Exception e) {
 			throw new RuntimeException(Messages.i18n.format("ARTIFACT_UNWRAP_ERROR", this.name()), e); //$NON-NLS-1$
 		}
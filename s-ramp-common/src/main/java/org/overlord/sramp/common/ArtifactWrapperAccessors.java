@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Artifact;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+
+/**
+ * Gets and sets the artifact held by an S-RAMP {@link Artifact} wrapper.  The wrapper has
+ * a getter/setter pair for each type of artifact - rather than finding the right one by
+ * name every time an artifact is wrapped or unwrapped, the accessors are looked up once
+ * (keyed by artifact class) and then simply invoked.
+ */
+public final class ArtifactWrapperAccessors {
+
+    private static final Map<Class<?>, Method> getters = new HashMap<Class<?>, Method>();
+    private static final Map<Class<?>, Method> setters = new HashMap<Class<?>, Method>();
+    static {
+        for (Method method : Artifact.class.getMethods()) {
+            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0 //$NON-NLS-1$
+                    && BaseArtifactType.class.isAssignableFrom(method.getReturnType())) {
+                getters.put(method.getReturnType(), method);
+            } else if (method.getName().startsWith("set") && method.getParameterTypes().length == 1 //$NON-NLS-1$
+                    && BaseArtifactType.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                setters.put(method.getParameterTypes()[0], method);
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    private ArtifactWrapperAccessors() {
+    }
+
+    /**
+     * Gets the artifact of the given type from the wrapper.
+     * @param artifactWrapper the S-RAMP artifact wrapper
+     * @param artifactClass the artifact's class
+     * @return the artifact (or null if the wrapper holds no artifact of that type)
+     * @throws NoSuchMethodException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     */
+    public static BaseArtifactType get(Artifact artifactWrapper, Class<? extends BaseArtifactType> artifactClass)
+            throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+        return (BaseArtifactType) accessor(getters, artifactClass).invoke(artifactWrapper);
+    }
+
+    /**
+     * Gets whichever artifact the wrapper holds.
+     * @param artifactWrapper the S-RAMP artifact wrapper
+     * @return the artifact (or null if the wrapper is empty)
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     */
+    public static BaseArtifactType get(Artifact artifactWrapper) throws IllegalAccessException,
+            InvocationTargetException {
+        for (Method method : getters.values()) {
+            Object artifact = method.invoke(artifactWrapper);
+            if (artifact != null) {
+                return (BaseArtifactType) artifact;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the given artifact on the wrapper.
+     * @param artifactWrapper the S-RAMP artifact wrapper
+     * @param artifact the artifact to wrap
+     * @throws NoSuchMethodException
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     */
+    public static void set(Artifact artifactWrapper, BaseArtifactType artifact) throws NoSuchMethodException,
+            IllegalAccessException, InvocationTargetException {
+        accessor(setters, artifact.getClass()).invoke(artifactWrapper, artifact);
+    }
+
+    /**
+     * Finds the accessor for the given artifact class.
+     * @param accessors
+     * @param artifactClass
+     * @throws NoSuchMethodException
+     */
+    private static Method accessor(Map<Class<?>, Method> accessors, Class<?> artifactClass)
+            throws NoSuchMethodException {
+        Method method = accessors.get(artifactClass);
+        if (method == null) {
+            throw new NoSuchMethodException(artifactClass.getName());
+        }
+        return method;
+    }
+
+}
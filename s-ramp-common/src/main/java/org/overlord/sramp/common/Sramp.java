@@ -74,4 +74,142 @@ public class Sramp {
         return configuration.getBoolean(SrampConstants.SRAMP_CONFIG_DERIVED_AUDITING, true);
     }
 
+    /**
+     * @return the user that the asynchronous audit writer (and the upgrade of audit entries
+     *         written by older versions) logs in as (may be null)
+     */
+    public String getAuditUser() {
+        return configuration.getString(SrampConstants.SRAMP_CONFIG_AUDIT_USER, null);
+    }
+
+    /**
+     * @return the password of the audit user
+     */
+    public String getAuditPassword() {
+        return configuration.getString(SrampConstants.SRAMP_CONFIG_AUDIT_PASS, null);
+    }
+
+    /**
+     * @return true if audit entries should be queued and written in batches by a background
+     *         writer, rather than as part of the change being audited
+     */
+    public boolean isAuditingAsyncEnabled() {
+        return configuration.getBoolean(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_ENABLED, false);
+    }
+
+    /**
+     * @return the maximum number of audit entries queued for the background writer (once
+     *         the queue is full, auditing blocks until the writer catches up)
+     */
+    public int getAuditingAsyncQueueSize() {
+        return configuration.getInt(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_QUEUE_SIZE, 10000);
+    }
+
+    /**
+     * @return the maximum number of audit entries written (and saved) together
+     */
+    public int getAuditingAsyncBatchSize() {
+        return configuration.getInt(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_BATCH_SIZE, 100);
+    }
+
+    /**
+     * @return the file queued audit entries are spooled to, so that they survive a crash
+     *         (null to use the default file in the repository's data directory)
+     */
+    public String getAuditingAsyncSpoolFile() {
+        return configuration.getString(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_SPOOL_FILE, null);
+    }
+
+    /**
+     * @return true if JCR sessions should be pooled and re-used across requests
+     */
+    public boolean isJcrSessionPoolEnabled() {
+        return configuration.getBoolean(SrampConstants.SRAMP_CONFIG_JCR_SESSION_POOL_ENABLED, true);
+    }
+
+    /**
+     * @return the maximum number of JCR sessions that may be in use at the same time
+     */
+    public int getJcrSessionPoolMaxActive() {
+        return configuration.getInt(SrampConstants.SRAMP_CONFIG_JCR_SESSION_POOL_MAX_ACTIVE, 100);
+    }
+
+    /**
+     * @return the maximum number of idle JCR sessions kept around for a single subject
+     */
+    public int getJcrSessionPoolMaxIdlePerSubject() {
+        return configuration.getInt(SrampConstants.SRAMP_CONFIG_JCR_SESSION_POOL_MAX_IDLE, 8);
+    }
+
+    /**
+     * @return how long (in millis) to wait for a JCR session when the pool is exhausted
+     */
+    public long getJcrSessionPoolMaxWait() {
+        return configuration.getLong(SrampConstants.SRAMP_CONFIG_JCR_SESSION_POOL_MAX_WAIT, 30000l);
+    }
+
+    /**
+     * @return how long (in millis) an idle JCR session is kept before it is logged out
+     */
+    public long getJcrSessionPoolIdleTimeout() {
+        return configuration.getLong(SrampConstants.SRAMP_CONFIG_JCR_SESSION_POOL_IDLE_TIMEOUT, 60000l);
+    }
+
+    /**
+     * @return the maximum number of entries in the artifact uuid to JCR node identifier index
+     *         (0 disables the index)
+     */
+    public int getJcrNodeIndexMaxSize() {
+        return configuration.getInt(SrampConstants.SRAMP_CONFIG_JCR_NODE_INDEX_MAX_SIZE, 100000);
+    }
+
+    /**
+     * @return true if artifact content should be copied to temporary files before it is
+     *         derived or served (by default it is streamed directly from the repository)
+     */
+    public boolean isJcrContentTempFilesEnabled() {
+        return configuration.getBoolean(SrampConstants.SRAMP_CONFIG_JCR_CONTENT_TEMP_FILES, false);
+    }
+
+    /**
+     * @return true if the s-ramp UUIDs of relationship targets should be stored alongside the
+     *         (JCR) references, so that reading a relationship doesn't need to load its targets
+     */
+    public boolean isJcrRelationshipTargetUuidsEnabled() {
+        return configuration.getBoolean(SrampConstants.SRAMP_CONFIG_JCR_RELATIONSHIP_TARGET_UUIDS, true);
+    }
+
+    /**
+     * @return the number of threads used to derive artifacts when persisting a batch
+     *         (1 derives on the calling thread)
+     */
+    public int getDeriverParallelism() {
+        return configuration.getInt(SrampConstants.SRAMP_CONFIG_DERIVER_PARALLELISM,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return true if XSD documents should be derived in a single streaming pass (rather
+     *         than by parsing them into a DOM)
+     */
+    public boolean isDeriverStreamingEnabled() {
+        return configuration.getBoolean(SrampConstants.SRAMP_CONFIG_DERIVER_STREAMING, true);
+    }
+
+    /**
+     * @return the maximum number of parsed and compiled query templates that are cached
+     *         (0 disables the cache)
+     */
+    public int getQueryCacheMaxSize() {
+        return configuration.getInt(SrampConstants.SRAMP_CONFIG_QUERY_CACHE_MAX_SIZE, 500);
+    }
+
+    /**
+     * @return how often (in millis) the cached ontologies are checked for changes made by
+     *         other servers in the cluster
+     */
+    public long getOntologyCacheCheckInterval() {
+        return configuration.getLong(SrampConstants.SRAMP_CONFIG_ONTOLOGY_CACHE_CHECK_INTERVAL, 5000l);
+    }
+
 }
@@ -38,6 +38,7 @@ public class SrampConstants {
     private static final String SRAMP_START_INDEX          = "startIndex"; //$NON-NLS-1$
     private static final String SRAMP_ITEMS_PER_PAGE_INDEX = "itemsPerPage"; //$NON-NLS-1$
     private static final String SRAMP_TOTAL_RESULTS        = "totalResults"; //$NON-NLS-1$
+    private static final String SRAMP_CONTINUATION_TOKEN   = "continuationToken"; //$NON-NLS-1$
 
     public static final QName S_RAMP_WRAPPER_ELEM         = new QName(SRAMP_NS, "artifact"); //$NON-NLS-1$
 
@@ -49,6 +50,7 @@ public class SrampConstants {
     public static final QName SRAMP_START_INDEX_QNAME     = new QName(SRAMP_NS, SRAMP_START_INDEX, SRAMP_PREFIX);
     public static final QName SRAMP_ITEMS_PER_PAGE_QNAME  = new QName(SRAMP_NS, SRAMP_ITEMS_PER_PAGE_INDEX, SRAMP_PREFIX);
     public static final QName SRAMP_TOTAL_RESULTS_QNAME   = new QName(SRAMP_NS, SRAMP_TOTAL_RESULTS, SRAMP_PREFIX);
+    public static final QName SRAMP_CONTINUATION_TOKEN_QNAME = new QName(SRAMP_NS, SRAMP_CONTINUATION_TOKEN, SRAMP_PREFIX);
 
     // Configuration constants
     public static final String SRAMP_CONFIG_FILE_NAME         = "sramp.config.file.name"; //$NON-NLS-1$
@@ -58,6 +60,32 @@ public class SrampConstants {
     public static final String SRAMP_CONFIG_DERIVED_AUDITING  = "sramp.config.auditing.enabled-derived"; //$NON-NLS-1$
     public static final String SRAMP_CONFIG_AUDIT_USER        = "sramp.config.auditing.user"; //$NON-NLS-1$
     public static final String SRAMP_CONFIG_AUDIT_PASS        = "sramp.config.auditing.password"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_JCR_SESSION_POOL_ENABLED      = "sramp.config.jcr.session-pool.enabled"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_JCR_SESSION_POOL_MAX_ACTIVE   = "sramp.config.jcr.session-pool.max-active"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_JCR_SESSION_POOL_MAX_IDLE     = "sramp.config.jcr.session-pool.max-idle-per-subject"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_JCR_SESSION_POOL_MAX_WAIT     = "sramp.config.jcr.session-pool.max-wait"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_JCR_SESSION_POOL_IDLE_TIMEOUT = "sramp.config.jcr.session-pool.idle-timeout"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_JCR_NODE_INDEX_MAX_SIZE       = "sramp.config.jcr.node-index.max-size"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_JCR_CONTENT_TEMP_FILES        = "sramp.config.jcr.content.temp-files"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_JCR_RELATIONSHIP_TARGET_UUIDS = "sramp.config.jcr.relationships.store-target-uuids"; //$NON-NLS-1$
+
+    // Asynchronous (queued and batched) writing of the audit entries
+    public static final String SRAMP_CONFIG_AUDIT_ASYNC_ENABLED    = "sramp.config.auditing.async.enabled"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_AUDIT_ASYNC_QUEUE_SIZE = "sramp.config.auditing.async.queue-size"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_AUDIT_ASYNC_BATCH_SIZE = "sramp.config.auditing.async.batch-size"; //$NON-NLS-1$
+    public static final String SRAMP_CONFIG_AUDIT_ASYNC_SPOOL_FILE = "sramp.config.auditing.async.spool-file"; //$NON-NLS-1$
+
+    // Maximum number of parsed/compiled query templates cached (0 disables the cache)
+    public static final String SRAMP_CONFIG_QUERY_CACHE_MAX_SIZE = "sramp.config.query.cache.max-size"; //$NON-NLS-1$
+
+    // How often (millis) the cached ontologies are checked for changes made by other (clustered) servers
+    public static final String SRAMP_CONFIG_ONTOLOGY_CACHE_CHECK_INTERVAL = "sramp.config.ontology.cache.check-interval"; //$NON-NLS-1$
+
+    // Number of threads used to derive artifacts when persisting a batch (1 disables parallel derivation)
+    public static final String SRAMP_CONFIG_DERIVER_PARALLELISM = "sramp.config.derivers.parallelism"; //$NON-NLS-1$
+
+    // Whether XSD documents are derived in a single streaming (StAX) pass rather than via a DOM
+    public static final String SRAMP_CONFIG_DERIVER_STREAMING = "sramp.config.derivers.streaming"; //$NON-NLS-1$
 
     // Location of a directory containing JARs which provide custom derivers
     public static final String SRAMP_CUSTOM_DERIVER_DIR   = "sramp.derivers.customDir"; //$NON-NLS-1$
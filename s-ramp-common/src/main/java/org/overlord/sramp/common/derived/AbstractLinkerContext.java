@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common.derived;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+
+/**
+ * Base class for linker contexts that have no better way to resolve a batch of
+ * references than to find the artifacts for each of them in turn.
+ */
+public abstract class AbstractLinkerContext implements LinkerContext {
+
+    /**
+     * Constructor.
+     */
+    public AbstractLinkerContext() {
+    }
+
+    /**
+     * @see org.overlord.sramp.common.derived.LinkerContext#resolveReferences(java.util.Collection)
+     */
+    @Override
+    public Map<LinkerReference, String> resolveReferences(Collection<LinkerReference> references) {
+        Map<LinkerReference, String> resolved = new HashMap<LinkerReference, String>();
+        for (LinkerReference reference : references) {
+            if (resolved.containsKey(reference)) {
+                continue;
+            }
+            Collection<BaseArtifactType> artifacts = findArtifacts(reference.getModel(), reference.getType(),
+                    reference.getCriteria());
+            if (artifacts != null && !artifacts.isEmpty()) {
+                resolved.put(reference, artifacts.iterator().next().getUuid());
+            }
+        }
+        return resolved;
+    }
+
+}
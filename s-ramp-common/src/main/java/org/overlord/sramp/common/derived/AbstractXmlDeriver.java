@@ -23,6 +23,7 @@ import java.util.Collection;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -47,6 +48,11 @@ import org.w3c.dom.Element;
  */
 public abstract class AbstractXmlDeriver implements ArtifactDeriver {
 
+    // Creating the parser and the XPath factory involves a (service) lookup, and neither is
+    // thread-safe - so each deriving thread creates its own once and then re-uses it.
+    private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
+    private static final ThreadLocal<XPathFactory> xpathFactories = new ThreadLocal<XPathFactory>();
+
 	/**
 	 * Constructor.
 	 */
@@ -61,15 +67,8 @@ public abstract class AbstractXmlDeriver implements ArtifactDeriver {
 	    Collection<BaseArtifactType> derivedArtifacts = createDerivedArtifactCollection();
 
 		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			factory.setNamespaceAware(true);
-			factory.setValidating(false);
-			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false); //$NON-NLS-1$
-			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false); //$NON-NLS-1$
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			Document document = builder.parse(content);
-			XPathFactory xPathfactory = XPathFactory.newInstance();
-			XPath xpath = xPathfactory.newXPath();
+			Document document = getDocumentBuilder().parse(content);
+			XPath xpath = new CachingXPath(getXPathFactory().newXPath());
 			StaticNamespaceContext nsCtx = new StaticNamespaceContext();
 			configureNamespaceMappings(nsCtx);
 			xpath.setNamespaceContext(nsCtx);
@@ -78,23 +77,7 @@ public abstract class AbstractXmlDeriver implements ArtifactDeriver {
 			XmlDeriverContext context = new XmlDeriverContext(rootElement, xpath);
 			derive(derivedArtifacts, artifact, context);
 
-			// Set the relatedDocument relationship for all derived artifacts
-			for (BaseArtifactType derivedArtifact : derivedArtifacts) {
-			    if (derivedArtifact instanceof DerivedArtifactType) {
-			        DerivedArtifactType dat = (DerivedArtifactType) derivedArtifact;
-			        if (dat.getRelatedDocument() == null) {
-			            DocumentArtifactTarget related = new DocumentArtifactTarget();
-			            related.setValue(artifact.getUuid());
-			            related.setArtifactType(DocumentArtifactEnum.fromValue(artifact.getArtifactType()));
-			            dat.setRelatedDocument(related);
-			        }
-			    } else {
-			        Relationship genericRelationship = SrampModelUtils.getGenericRelationship(derivedArtifact, "relatedDocument"); //$NON-NLS-1$
-			        if (genericRelationship == null) {
-			            SrampModelUtils.addGenericRelationship(derivedArtifact, "relatedDocument", artifact.getUuid()); //$NON-NLS-1$
-			        }
-			    }
-			}
+			setRelatedDocument(derivedArtifacts, artifact);
 		} catch (IOException e) {
 			throw e;
 		} catch (Exception e) {
@@ -104,6 +87,62 @@ public abstract class AbstractXmlDeriver implements ArtifactDeriver {
 		return derivedArtifacts;
 	}
 
+	/**
+	 * Sets the relatedDocument relationship for all derived artifacts.
+	 * @param derivedArtifacts
+	 * @param artifact
+	 */
+	protected void setRelatedDocument(Collection<BaseArtifactType> derivedArtifacts, BaseArtifactType artifact) {
+		for (BaseArtifactType derivedArtifact : derivedArtifacts) {
+		    if (derivedArtifact instanceof DerivedArtifactType) {
+		        DerivedArtifactType dat = (DerivedArtifactType) derivedArtifact;
+		        if (dat.getRelatedDocument() == null) {
+		            DocumentArtifactTarget related = new DocumentArtifactTarget();
+		            related.setValue(artifact.getUuid());
+		            related.setArtifactType(DocumentArtifactEnum.fromValue(artifact.getArtifactType()));
+		            dat.setRelatedDocument(related);
+		        }
+		    } else {
+		        Relationship genericRelationship = SrampModelUtils.getGenericRelationship(derivedArtifact, "relatedDocument"); //$NON-NLS-1$
+		        if (genericRelationship == null) {
+		            SrampModelUtils.addGenericRelationship(derivedArtifact, "relatedDocument", artifact.getUuid()); //$NON-NLS-1$
+		        }
+		    }
+		}
+	}
+
+	/**
+	 * Gets the calling thread's (namespace aware, non-validating) document builder.
+	 * @throws ParserConfigurationException
+	 */
+	private static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+		DocumentBuilder builder = documentBuilders.get();
+		if (builder == null) {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			factory.setValidating(false);
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false); //$NON-NLS-1$
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false); //$NON-NLS-1$
+			builder = factory.newDocumentBuilder();
+			documentBuilders.set(builder);
+		} else {
+			builder.reset();
+		}
+		return builder;
+	}
+
+	/**
+	 * Gets the calling thread's XPath factory.
+	 */
+	private static XPathFactory getXPathFactory() {
+		XPathFactory factory = xpathFactories.get();
+		if (factory == null) {
+			factory = XPathFactory.newInstance();
+			xpathFactories.set(factory);
+		}
+		return factory;
+	}
+
     /**
      * Sub-classes could provide an alternate collection here.  For example, the {@link WsdlDeriver}
      * creates an indexed artifact collection so that it can reference derived artifacts and make
@@ -114,7 +153,8 @@ public abstract class AbstractXmlDeriver implements ArtifactDeriver {
     }
 
 	/**
-	 * Performs an x-query against the given context node.
+	 * Performs an x-query against the given context node.  The XPath given to the
+	 * derivers compiles each distinct query only once per document.
 	 * @param xpath
 	 * @param query
 	 * @param returnType
@@ -169,6 +209,9 @@ public abstract class AbstractXmlDeriver implements ArtifactDeriver {
          */
         public void addNamespaceMapping(String prefix, String namespaceURI) {
             ((StaticNamespaceContext) xpath.getNamespaceContext()).addMapping(prefix, namespaceURI);
+            if (xpath instanceof CachingXPath) {
+                ((CachingXPath) xpath).clearCache();
+            }
         }
 
         /**
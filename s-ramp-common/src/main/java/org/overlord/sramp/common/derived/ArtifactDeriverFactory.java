@@ -33,6 +33,7 @@ import org.apache.commons.io.FileUtils;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.overlord.sramp.common.ArtifactType;
 import org.overlord.sramp.common.ArtifactTypeEnum;
+import org.overlord.sramp.common.Sramp;
 import org.overlord.sramp.common.SrampConstants;
 
 /**
@@ -53,7 +54,9 @@ public class ArtifactDeriverFactory {
      * Loads the built-in artifact derivers.
      */
     private static void loadBuiltInDerivers() {
-        derivers.put(ArtifactTypeEnum.XsdDocument, new XsdDeriver());
+        XsdDeriver xsdDeriver = new XsdDeriver();
+        xsdDeriver.setStreaming(new Sramp().isDeriverStreamingEnabled());
+        derivers.put(ArtifactTypeEnum.XsdDocument, xsdDeriver);
 		derivers.put(ArtifactTypeEnum.WsdlDocument, new WsdlDeriver());
 		derivers.put(ArtifactTypeEnum.PolicyDocument, new PolicyDeriver());
     }
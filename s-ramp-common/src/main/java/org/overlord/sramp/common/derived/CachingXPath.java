@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common.derived;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFunctionResolver;
+import javax.xml.xpath.XPathVariableResolver;
+
+import org.xml.sax.InputSource;
+
+/**
+ * An {@link XPath} that compiles each distinct expression only once.  The XML derivers
+ * evaluate the same handful of expressions against every message, operation, binding etc.
+ * in a document - this makes all but the first of those a simple lookup.
+ *
+ * Like any {@link XPath}, this is not thread-safe.  The compiled expressions depend on the
+ * namespace context, so they are discarded whenever it is changed (or reset).
+ */
+final class CachingXPath implements XPath {
+
+    private final XPath delegate;
+    private final Map<String, XPathExpression> expressions = new HashMap<String, XPathExpression>();
+
+    /**
+     * Constructor.
+     * @param delegate
+     */
+    public CachingXPath(XPath delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Discards all of the compiled expressions.  Must be called if the namespace context
+     * is modified (rather than replaced).
+     */
+    public void clearCache() {
+        expressions.clear();
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#compile(java.lang.String)
+     */
+    @Override
+    public XPathExpression compile(String expression) throws XPathExpressionException {
+        XPathExpression expr = expressions.get(expression);
+        if (expr == null) {
+            expr = delegate.compile(expression);
+            expressions.put(expression, expr);
+        }
+        return expr;
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#evaluate(java.lang.String, java.lang.Object, javax.xml.namespace.QName)
+     */
+    @Override
+    public Object evaluate(String expression, Object item, QName returnType) throws XPathExpressionException {
+        return compile(expression).evaluate(item, returnType);
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#evaluate(java.lang.String, java.lang.Object)
+     */
+    @Override
+    public String evaluate(String expression, Object item) throws XPathExpressionException {
+        return compile(expression).evaluate(item);
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#evaluate(java.lang.String, org.xml.sax.InputSource, javax.xml.namespace.QName)
+     */
+    @Override
+    public Object evaluate(String expression, InputSource source, QName returnType)
+            throws XPathExpressionException {
+        return compile(expression).evaluate(source, returnType);
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#evaluate(java.lang.String, org.xml.sax.InputSource)
+     */
+    @Override
+    public String evaluate(String expression, InputSource source) throws XPathExpressionException {
+        return compile(expression).evaluate(source);
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#reset()
+     */
+    @Override
+    public void reset() {
+        delegate.reset();
+        clearCache();
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#setNamespaceContext(javax.xml.namespace.NamespaceContext)
+     */
+    @Override
+    public void setNamespaceContext(NamespaceContext nsContext) {
+        delegate.setNamespaceContext(nsContext);
+        clearCache();
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#getNamespaceContext()
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return delegate.getNamespaceContext();
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#setXPathVariableResolver(javax.xml.xpath.XPathVariableResolver)
+     */
+    @Override
+    public void setXPathVariableResolver(XPathVariableResolver resolver) {
+        delegate.setXPathVariableResolver(resolver);
+        clearCache();
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#getXPathVariableResolver()
+     */
+    @Override
+    public XPathVariableResolver getXPathVariableResolver() {
+        return delegate.getXPathVariableResolver();
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#setXPathFunctionResolver(javax.xml.xpath.XPathFunctionResolver)
+     */
+    @Override
+    public void setXPathFunctionResolver(XPathFunctionResolver resolver) {
+        delegate.setXPathFunctionResolver(resolver);
+        clearCache();
+    }
+
+    /**
+     * @see javax.xml.xpath.XPath#getXPathFunctionResolver()
+     */
+    @Override
+    public XPathFunctionResolver getXPathFunctionResolver() {
+        return delegate.getXPathFunctionResolver();
+    }
+
+}
@@ -34,4 +34,12 @@ public interface LinkerContext {
      */
     public Collection<BaseArtifactType> findArtifacts(String model, String type, Map<String, String> criteria);
 
+    /**
+     * Resolves a batch of references at once.  Each reference is resolved to the UUID of
+     * the artifact that {@link #findArtifacts(String, String, Map)} would have returned
+     * first for it.  References that cannot be resolved are left out of the returned map.
+     * @param references
+     */
+    public Map<LinkerReference, String> resolveReferences(Collection<LinkerReference> references);
+
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common.derived;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A reference (found during the link phase) to an artifact of a particular type that
+ * matches some criteria - the same arguments that would be passed to
+ * {@link LinkerContext#findArtifacts(String, String, Map)}.  References are immutable
+ * and can be used as map keys, so that identical references are only resolved once.
+ */
+public final class LinkerReference {
+
+    private final String model;
+    private final String type;
+    private final Map<String, String> criteria;
+
+    /**
+     * Constructor.
+     * @param model
+     * @param type
+     * @param criteria
+     */
+    public LinkerReference(String model, String type, Map<String, String> criteria) {
+        this.model = model;
+        this.type = type;
+        this.criteria = Collections.unmodifiableMap(new HashMap<String, String>(criteria));
+    }
+
+    /**
+     * @return the model
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @return the type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the criteria (property name to value)
+     */
+    public Map<String, String> getCriteria() {
+        return criteria;
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        int result = model == null ? 0 : model.hashCode();
+        result = 31 * result + (type == null ? 0 : type.hashCode());
+        return 31 * result + criteria.hashCode();
+    }
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LinkerReference)) {
+            return false;
+        }
+        LinkerReference other = (LinkerReference) obj;
+        return (model == null ? other.model == null : model.equals(other.model))
+                && (type == null ? other.type == null : type.equals(other.type))
+                && criteria.equals(other.criteria);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "/s-ramp/" + model + "/" + type + criteria; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+}
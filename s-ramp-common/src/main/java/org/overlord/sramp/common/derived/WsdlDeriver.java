@@ -923,9 +923,7 @@ public class WsdlDeriver extends XsdDeriver {
 	public void link(LinkerContext context, BaseArtifactType sourceArtifact,
 	        Collection<BaseArtifactType> derivedArtifacts) {
 	    super.link(context, sourceArtifact, derivedArtifacts);
-	    for (BaseArtifactType derivedArtifact : derivedArtifacts) {
-	        linker.link(context, derivedArtifact);
-        }
+	    linker.link(context, derivedArtifacts);
 	}
 
 }
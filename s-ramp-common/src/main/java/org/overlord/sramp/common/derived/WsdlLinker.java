@@ -16,8 +16,11 @@
 package org.overlord.sramp.common.derived;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -32,6 +35,7 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.OperationOutput;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Part;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Port;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.PortTypeTarget;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Target;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdTypeTarget;
 import org.overlord.sramp.common.ArtifactTypeEnum;
 import org.overlord.sramp.common.visitors.ArtifactVisitorAdapter;
@@ -43,11 +47,15 @@ import org.overlord.sramp.common.visitors.ArtifactVisitorHelper;
  * and already-stored artifacts referenced by them.  This linker is designed to only pay attention to
  * references that could not be resolved internally to the WSDL.
  *
+ * Linking happens in two passes over the derived artifacts:  the first only collects the
+ * unresolved references, which are then resolved all at once by the {@link LinkerContext}
+ * (rather than one repository query per reference), and the second applies the results.
+ *
  * @author eric.wittmann@redhat.com
  */
 public class WsdlLinker extends ArtifactVisitorAdapter {
 
-    private static ThreadLocal<LinkerContext> linkerContext = new ThreadLocal<LinkerContext>();
+    private static ThreadLocal<LinkState> linkState = new ThreadLocal<LinkState>();
 
     /**
      * Constructor.
@@ -61,8 +69,31 @@ public class WsdlLinker extends ArtifactVisitorAdapter {
      * @param derivedArtifact
      */
     public void link(LinkerContext context, BaseArtifactType derivedArtifact) {
-        linkerContext.set(context);
-        ArtifactVisitorHelper.visitArtifact(this, derivedArtifact);
+        link(context, Collections.singletonList(derivedArtifact));
+    }
+
+    /**
+     * Resolves any missing references found on the given derived artifacts.
+     * @param context
+     * @param derivedArtifacts
+     */
+    public void link(LinkerContext context, Collection<BaseArtifactType> derivedArtifacts) {
+        LinkState state = new LinkState();
+        linkState.set(state);
+        try {
+            for (BaseArtifactType derivedArtifact : derivedArtifacts) {
+                ArtifactVisitorHelper.visitArtifact(this, derivedArtifact);
+            }
+            if (state.references.isEmpty()) {
+                return;
+            }
+            state.resolved = context.resolveReferences(state.references);
+            for (BaseArtifactType derivedArtifact : derivedArtifacts) {
+                ArtifactVisitorHelper.visitArtifact(this, derivedArtifact);
+            }
+        } finally {
+            linkState.remove();
+        }
     }
 
     /**
@@ -74,30 +105,14 @@ public class WsdlLinker extends ArtifactVisitorAdapter {
 
         ElementTarget element = artifact.getElement();
         XsdTypeTarget type = artifact.getType();
-        BaseArtifactType artifactRef = null;
 
         if (element != null && element.getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF)) {
-            String encodedRef = element.getOtherAttributes().remove(WsdlDeriver.UNRESOLVED_REF);
-            QName ref = QName.valueOf(encodedRef);
-            artifactRef = findArtifact(ArtifactTypeEnum.ElementDeclaration, ref);
-            if (artifactRef != null) {
-                element.setValue(artifactRef.getUuid());
-            } else {
+            if (!resolve(element, ArtifactTypeEnum.ElementDeclaration)) {
                 artifact.setElement(null);
             }
         } else if (type != null && type.getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF)) {
-            String encodedRef = type.getOtherAttributes().remove(WsdlDeriver.UNRESOLVED_REF);
-            QName ref = QName.valueOf(encodedRef);
-            artifactRef = findArtifact(ArtifactTypeEnum.ComplexTypeDeclaration, ref);
-            if (artifactRef != null) {
-                type.setValue(artifactRef.getUuid());
-            } else {
-                artifactRef = findArtifact(ArtifactTypeEnum.SimpleTypeDeclaration, ref);
-                if (artifactRef != null) {
-                    type.setValue(artifactRef.getUuid());
-                } else {
-                    artifact.setType(null);
-                }
+            if (!resolve(type, ArtifactTypeEnum.ComplexTypeDeclaration, ArtifactTypeEnum.SimpleTypeDeclaration)) {
+                artifact.setType(null);
             }
         }
     }
@@ -111,12 +126,7 @@ public class WsdlLinker extends ArtifactVisitorAdapter {
 
         MessageTarget message = artifact.getMessage();
         if (message != null && message.getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF)) {
-            String encodedRef = message.getOtherAttributes().remove(WsdlDeriver.UNRESOLVED_REF);
-            QName ref = QName.valueOf(encodedRef);
-            BaseArtifactType artifactRef = findArtifact(ArtifactTypeEnum.Message, ref);
-            if (artifactRef != null) {
-                message.setValue(artifactRef.getUuid());
-            } else {
+            if (!resolve(message, ArtifactTypeEnum.Message)) {
                 artifact.setMessage(null);
             }
         }
@@ -131,12 +141,7 @@ public class WsdlLinker extends ArtifactVisitorAdapter {
 
         MessageTarget message = artifact.getMessage();
         if (message != null && message.getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF)) {
-            String encodedRef = message.getOtherAttributes().remove(WsdlDeriver.UNRESOLVED_REF);
-            QName ref = QName.valueOf(encodedRef);
-            BaseArtifactType artifactRef = findArtifact(ArtifactTypeEnum.Message, ref);
-            if (artifactRef != null) {
-                message.setValue(artifactRef.getUuid());
-            } else {
+            if (!resolve(message, ArtifactTypeEnum.Message)) {
                 artifact.setMessage(null);
             }
         }
@@ -151,12 +156,7 @@ public class WsdlLinker extends ArtifactVisitorAdapter {
 
         MessageTarget message = artifact.getMessage();
         if (message != null && message.getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF)) {
-            String encodedRef = message.getOtherAttributes().remove(WsdlDeriver.UNRESOLVED_REF);
-            QName ref = QName.valueOf(encodedRef);
-            BaseArtifactType artifactRef = findArtifact(ArtifactTypeEnum.Message, ref);
-            if (artifactRef != null) {
-                message.setValue(artifactRef.getUuid());
-            } else {
+            if (!resolve(message, ArtifactTypeEnum.Message)) {
                 artifact.setMessage(null);
             }
         }
@@ -171,12 +171,7 @@ public class WsdlLinker extends ArtifactVisitorAdapter {
 
         PortTypeTarget portType = artifact.getPortType();
         if (portType != null && portType.getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF)) {
-            String encodedRef = portType.getOtherAttributes().remove(WsdlDeriver.UNRESOLVED_REF);
-            QName ref = QName.valueOf(encodedRef);
-            BaseArtifactType artifactRef = findArtifact(ArtifactTypeEnum.PortType, ref);
-            if (artifactRef != null) {
-                portType.setValue(artifactRef.getUuid());
-            } else {
+            if (!resolve(portType, ArtifactTypeEnum.PortType)) {
                 artifact.setPortType(null);
             }
         }
@@ -191,34 +186,58 @@ public class WsdlLinker extends ArtifactVisitorAdapter {
 
         BindingTarget binding = artifact.getBinding();
         if (binding != null && binding.getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF)) {
-            String encodedRef = binding.getOtherAttributes().remove(WsdlDeriver.UNRESOLVED_REF);
-            QName ref = QName.valueOf(encodedRef);
-            BaseArtifactType artifactRef = findArtifact(ArtifactTypeEnum.Binding, ref);
-            if (artifactRef != null) {
-                binding.setValue(artifactRef.getUuid());
-            } else {
+            if (!resolve(binding, ArtifactTypeEnum.Binding)) {
                 artifact.setBinding(null);
             }
         }
     }
 
     /**
-     * Uses the linker context to search for an artifact
+     * Resolves the (encoded QName) reference held by the given target to an artifact of the
+     * first of the given types that has a match.  During the first (collecting) pass the
+     * references are only recorded, and the target is left as it is.
+     * @param target
+     * @param artifactTypes
+     * @return false if the reference could not be resolved (so the target should be dropped)
+     */
+    private boolean resolve(Target target, ArtifactTypeEnum... artifactTypes) {
+        LinkState state = linkState.get();
+        if (state.resolved == null) {
+            QName ref = QName.valueOf(target.getOtherAttributes().get(WsdlDeriver.UNRESOLVED_REF));
+            for (ArtifactTypeEnum artifactType : artifactTypes) {
+                state.references.add(createReference(artifactType, ref));
+            }
+            return true;
+        }
+        QName ref = QName.valueOf(target.getOtherAttributes().remove(WsdlDeriver.UNRESOLVED_REF));
+        for (ArtifactTypeEnum artifactType : artifactTypes) {
+            String uuid = state.resolved.get(createReference(artifactType, ref));
+            if (uuid != null) {
+                target.setValue(uuid);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the reference to an artifact of the given type with the given QName.
      * @param artifactType
-     * @param reference
+     * @param qname
      */
-    private BaseArtifactType findArtifact(ArtifactTypeEnum artifactType, QName reference) {
-        LinkerContext lcontext = linkerContext.get();
+    private static LinkerReference createReference(ArtifactTypeEnum artifactType, QName qname) {
         Map<String, String> criteria = new HashMap<String, String>();
-        criteria.put("namespace", reference.getNamespaceURI()); //$NON-NLS-1$
-        criteria.put("ncName", reference.getLocalPart()); //$NON-NLS-1$
-        Collection<BaseArtifactType> artifacts = lcontext.findArtifacts(artifactType.getModel(), artifactType.getType(), criteria);
-        if (artifacts != null && !artifacts.isEmpty()) {
-            // TODO need a more interesting way to dis-ambiguate the results
-            return artifacts.iterator().next();
-        } else {
-            return null;
-        }
+        criteria.put("namespace", qname.getNamespaceURI()); //$NON-NLS-1$
+        criteria.put("ncName", qname.getLocalPart()); //$NON-NLS-1$
+        return new LinkerReference(artifactType.getModel(), artifactType.getType(), criteria);
+    }
+
+    /**
+     * The state of a single (two pass) link operation.
+     */
+    private static class LinkState {
+        private final Set<LinkerReference> references = new LinkedHashSet<LinkerReference>();
+        private Map<LinkerReference, String> resolved;
     }
 
 }
@@ -16,9 +16,17 @@
 package org.overlord.sramp.common.derived;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -46,16 +54,198 @@ import org.w3c.dom.NodeList;
  *   <li>SimpleTypeDeclaration</li>
  * </ul>
  *
+ * Since only the global (top level) declarations are of interest, a stand-alone XSD is
+ * (by default) derived in a single streaming pass over the document rather than by
+ * parsing it into a DOM first.
+ *
  * @author eric.wittmann@redhat.com
  */
 public class XsdDeriver extends AbstractXmlDeriver {
 
+    private static final ThreadLocal<XMLInputFactory> inputFactories = new ThreadLocal<XMLInputFactory>();
+
+    private boolean streaming = true;
+
 	/**
 	 * Constructor.
 	 */
 	public XsdDeriver() {
 	}
 
+	/**
+	 * @see org.overlord.sramp.common.derived.AbstractXmlDeriver#derive(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType, java.io.InputStream)
+	 */
+	@Override
+	public Collection<BaseArtifactType> derive(BaseArtifactType artifact, InputStream content) throws IOException {
+	    if (!streaming || !isStreamingSupported()) {
+	        return super.derive(artifact, content);
+	    }
+
+	    Collection<BaseArtifactType> derivedArtifacts = createDerivedArtifactCollection();
+	    try {
+	        streamSchema(derivedArtifacts, artifact, content);
+	    } catch (XMLStreamException e) {
+	        throw new IOException(e);
+	    }
+	    setRelatedDocument(derivedArtifacts, artifact);
+	    return derivedArtifacts;
+	}
+
+	/**
+	 * Derives the global declarations of the schema in a single pass over the content.  The
+	 * derived artifacts are the same (and in the same order) as those created by
+	 * {@link #processSchema(Collection, BaseArtifactType, Element, XPath)}.
+	 * @param derivedArtifacts
+	 * @param artifact
+	 * @param content
+	 * @throws XMLStreamException
+	 */
+	private void streamSchema(Collection<BaseArtifactType> derivedArtifacts, BaseArtifactType artifact,
+	        InputStream content) throws XMLStreamException {
+	    List<BaseArtifactType> elementDecls = new ArrayList<BaseArtifactType>();
+	    List<BaseArtifactType> attributeDecls = new ArrayList<BaseArtifactType>();
+	    List<BaseArtifactType> simpleTypeDecls = new ArrayList<BaseArtifactType>();
+	    List<BaseArtifactType> complexTypeDecls = new ArrayList<BaseArtifactType>();
+	    String targetNS = ""; //$NON-NLS-1$
+
+	    XMLStreamReader reader = getInputFactory().createXMLStreamReader(content);
+	    try {
+	        int depth = 0;
+	        while (reader.hasNext()) {
+	            int event = reader.next();
+	            if (event == XMLStreamConstants.START_ELEMENT) {
+	                depth++;
+	                if (depth == 1) {
+	                    String tns = getAttribute(reader, "targetNamespace"); //$NON-NLS-1$
+	                    if (tns != null)
+	                        targetNS = tns;
+	                } else if (depth == 2 && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI())) {
+	                    String name = getAttribute(reader, "name"); //$NON-NLS-1$
+	                    if (name != null) {
+	                        String localName = reader.getLocalName();
+	                        if ("element".equals(localName)) { //$NON-NLS-1$
+	                            ElementDeclaration elementDecl = new ElementDeclaration();
+	                            elementDecl.setArtifactType(BaseArtifactEnum.ELEMENT_DECLARATION);
+	                            elementDecl.setName(name);
+	                            elementDecl.setNCName(name);
+	                            elementDecls.add(elementDecl);
+	                        } else if ("attribute".equals(localName)) { //$NON-NLS-1$
+	                            AttributeDeclaration attributeDecl = new AttributeDeclaration();
+	                            attributeDecl.setArtifactType(BaseArtifactEnum.ATTRIBUTE_DECLARATION);
+	                            attributeDecl.setName(name);
+	                            attributeDecl.setNCName(name);
+	                            attributeDecls.add(attributeDecl);
+	                        } else if ("simpleType".equals(localName)) { //$NON-NLS-1$
+	                            SimpleTypeDeclaration simpleTypeDecl = new SimpleTypeDeclaration();
+	                            simpleTypeDecl.setArtifactType(BaseArtifactEnum.SIMPLE_TYPE_DECLARATION);
+	                            simpleTypeDecl.setName(name);
+	                            simpleTypeDecl.setNCName(name);
+	                            simpleTypeDecls.add(simpleTypeDecl);
+	                        } else if ("complexType".equals(localName)) { //$NON-NLS-1$
+	                            ComplexTypeDeclaration complexTypeDecl = new ComplexTypeDeclaration();
+	                            complexTypeDecl.setArtifactType(BaseArtifactEnum.COMPLEX_TYPE_DECLARATION);
+	                            complexTypeDecl.setName(name);
+	                            complexTypeDecl.setNCName(name);
+	                            complexTypeDecls.add(complexTypeDecl);
+	                        }
+	                    }
+	                }
+	            } else if (event == XMLStreamConstants.END_ELEMENT) {
+	                depth--;
+	            }
+	        }
+	    } finally {
+	        reader.close();
+	    }
+
+	    if (artifact instanceof XsdDocument)
+	        ((XsdDocument) artifact).setTargetNamespace(targetNS);
+	    addDeclarations(derivedArtifacts, elementDecls, targetNS);
+	    addDeclarations(derivedArtifacts, attributeDecls, targetNS);
+	    addDeclarations(derivedArtifacts, simpleTypeDecls, targetNS);
+	    addDeclarations(derivedArtifacts, complexTypeDecls, targetNS);
+	}
+
+	/**
+	 * Sets the namespace and (pre-set) UUID of the given declarations and adds them to the
+	 * derived artifacts.
+	 * @param derivedArtifacts
+	 * @param declarations
+	 * @param targetNS
+	 */
+	private static void addDeclarations(Collection<BaseArtifactType> derivedArtifacts,
+	        List<BaseArtifactType> declarations, String targetNS) {
+	    for (BaseArtifactType declaration : declarations) {
+	        if (declaration instanceof ElementDeclaration) {
+	            ((ElementDeclaration) declaration).setNamespace(targetNS);
+	        } else if (declaration instanceof AttributeDeclaration) {
+	            ((AttributeDeclaration) declaration).setNamespace(targetNS);
+	        } else if (declaration instanceof SimpleTypeDeclaration) {
+	            ((SimpleTypeDeclaration) declaration).setNamespace(targetNS);
+	        } else if (declaration instanceof ComplexTypeDeclaration) {
+	            ((ComplexTypeDeclaration) declaration).setNamespace(targetNS);
+	        }
+	        declaration.setUuid(UUID.randomUUID().toString());
+	        derivedArtifacts.add(declaration);
+	    }
+	}
+
+	/**
+	 * Gets the value of the given (un-qualified) attribute of the current element.
+	 * @param reader
+	 * @param localName
+	 * @return the attribute value or null if the element doesn't have the attribute
+	 */
+	private static String getAttribute(XMLStreamReader reader, String localName) {
+	    for (int idx = 0; idx < reader.getAttributeCount(); idx++) {
+	        String ns = reader.getAttributeNamespace(idx);
+	        if ((ns == null || ns.length() == 0) && localName.equals(reader.getAttributeLocalName(idx))) {
+	            return reader.getAttributeValue(idx);
+	        }
+	    }
+	    return null;
+	}
+
+	/**
+	 * Gets the calling thread's StAX input factory.  DTDs are not processed (the DOM based
+	 * derivation doesn't load external DTDs either).
+	 */
+	private static XMLInputFactory getInputFactory() {
+	    XMLInputFactory factory = inputFactories.get();
+	    if (factory == null) {
+	        factory = XMLInputFactory.newInstance();
+	        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+	        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	        inputFactories.set(factory);
+	    }
+	    return factory;
+	}
+
+	/**
+	 * Streaming only produces the global schema declarations, so sub-classes (e.g. the
+	 * {@link WsdlDeriver}) that derive more than that from the DOM are never streamed -
+	 * unless they override this.
+	 */
+	protected boolean isStreamingSupported() {
+	    return getClass() == XsdDeriver.class;
+	}
+
+	/**
+	 * @return true if stand-alone XSDs are derived in a single streaming pass
+	 */
+	public boolean isStreaming() {
+	    return streaming;
+	}
+
+	/**
+	 * @param streaming true to derive stand-alone XSDs in a single streaming pass, false to
+	 *        parse them into a DOM first
+	 */
+	public void setStreaming(boolean streaming) {
+	    this.streaming = streaming;
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.repository.derived.AbstractXmlDeriver#configureNamespaceMappings(org.overlord.sramp.common.query.xpath.StaticNamespaceContext)
 	 */
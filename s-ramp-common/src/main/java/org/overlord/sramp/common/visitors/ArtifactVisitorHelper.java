@@ -16,26 +16,432 @@
 package org.overlord.sramp.common.visitors;
 
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Actor;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.AttributeDeclaration;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Binding;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BindingOperation;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BindingOperationFault;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BindingOperationInput;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BindingOperationOutput;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Choreography;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ChoreographyProcess;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Collaboration;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.CollaborationProcess;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ComplexTypeDeclaration;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Composition;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Effect;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Element;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ElementDeclaration;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Event;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedDocument;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Fault;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.InformationType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Message;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Operation;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.OperationInput;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.OperationOutput;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Orchestration;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.OrchestrationProcess;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Organization;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Part;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Policy;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.PolicyAttachment;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.PolicyDocument;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.PolicyExpression;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.PolicySubject;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Port;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.PortType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Service;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ServiceComposition;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ServiceContract;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ServiceEndpoint;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ServiceInstance;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ServiceInterface;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ServiceOperation;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.SimpleTypeDeclaration;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.SoapAddress;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.SoapBinding;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Task;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.WsdlDocument;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.WsdlExtension;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.WsdlService;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XmlDocument;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdDocument;
 import org.overlord.sramp.common.i18n.Messages;
 
 /**
  * Helper class used to visit S-RAMP artifacts.  This should be replaced by "accept" methods implemented
  * on each of the generated S-RAMP artifact classes.  I think there might be a jax-b plugin that will do
- * that, but I haven't checked into yet.  This is important because currently the order of the instanceof
- * checks below is vital to the proper visiting of the artifact, which is not ideal.
+ * that, but I haven't checked into yet.  Until then, each artifact class is mapped (once) to a dispatcher
+ * that calls the matching visit method directly - so visiting an artifact is a map lookup rather than a
+ * reflective method lookup and invocation.
  *
  * @author eric.wittmann@redhat.com
  */
 public final class ArtifactVisitorHelper {
 
+    private static final Map<Class<?>, Dispatcher> dispatchers = new HashMap<Class<?>, Dispatcher>();
+    static {
+        dispatchers.put(Document.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Document) artifact);
+            }
+        });
+        dispatchers.put(XmlDocument.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((XmlDocument) artifact);
+            }
+        });
+        dispatchers.put(XsdDocument.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((XsdDocument) artifact);
+            }
+        });
+        dispatchers.put(AttributeDeclaration.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((AttributeDeclaration) artifact);
+            }
+        });
+        dispatchers.put(ElementDeclaration.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ElementDeclaration) artifact);
+            }
+        });
+        dispatchers.put(SimpleTypeDeclaration.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((SimpleTypeDeclaration) artifact);
+            }
+        });
+        dispatchers.put(ComplexTypeDeclaration.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ComplexTypeDeclaration) artifact);
+            }
+        });
+        dispatchers.put(PolicyDocument.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((PolicyDocument) artifact);
+            }
+        });
+        dispatchers.put(PolicyExpression.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((PolicyExpression) artifact);
+            }
+        });
+        dispatchers.put(PolicyAttachment.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((PolicyAttachment) artifact);
+            }
+        });
+        dispatchers.put(SoapAddress.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((SoapAddress) artifact);
+            }
+        });
+        dispatchers.put(SoapBinding.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((SoapBinding) artifact);
+            }
+        });
+        dispatchers.put(WsdlDocument.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((WsdlDocument) artifact);
+            }
+        });
+        dispatchers.put(WsdlService.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((WsdlService) artifact);
+            }
+        });
+        dispatchers.put(Port.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Port) artifact);
+            }
+        });
+        dispatchers.put(WsdlExtension.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((WsdlExtension) artifact);
+            }
+        });
+        dispatchers.put(Part.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Part) artifact);
+            }
+        });
+        dispatchers.put(Message.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Message) artifact);
+            }
+        });
+        dispatchers.put(Fault.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Fault) artifact);
+            }
+        });
+        dispatchers.put(PortType.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((PortType) artifact);
+            }
+        });
+        dispatchers.put(Operation.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Operation) artifact);
+            }
+        });
+        dispatchers.put(OperationInput.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((OperationInput) artifact);
+            }
+        });
+        dispatchers.put(OperationOutput.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((OperationOutput) artifact);
+            }
+        });
+        dispatchers.put(Binding.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Binding) artifact);
+            }
+        });
+        dispatchers.put(BindingOperation.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((BindingOperation) artifact);
+            }
+        });
+        dispatchers.put(BindingOperationInput.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((BindingOperationInput) artifact);
+            }
+        });
+        dispatchers.put(BindingOperationOutput.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((BindingOperationOutput) artifact);
+            }
+        });
+        dispatchers.put(BindingOperationFault.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((BindingOperationFault) artifact);
+            }
+        });
+        dispatchers.put(Organization.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Organization) artifact);
+            }
+        });
+        dispatchers.put(ServiceEndpoint.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ServiceEndpoint) artifact);
+            }
+        });
+        dispatchers.put(ServiceInstance.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ServiceInstance) artifact);
+            }
+        });
+        dispatchers.put(ServiceOperation.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ServiceOperation) artifact);
+            }
+        });
+        dispatchers.put(ExtendedArtifactType.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ExtendedArtifactType) artifact);
+            }
+        });
+        dispatchers.put(ExtendedDocument.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ExtendedDocument) artifact);
+            }
+        });
+        dispatchers.put(Actor.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Actor) artifact);
+            }
+        });
+        dispatchers.put(Choreography.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Choreography) artifact);
+            }
+        });
+        dispatchers.put(ChoreographyProcess.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ChoreographyProcess) artifact);
+            }
+        });
+        dispatchers.put(Collaboration.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Collaboration) artifact);
+            }
+        });
+        dispatchers.put(CollaborationProcess.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((CollaborationProcess) artifact);
+            }
+        });
+        dispatchers.put(Composition.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Composition) artifact);
+            }
+        });
+        dispatchers.put(Effect.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Effect) artifact);
+            }
+        });
+        dispatchers.put(Element.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Element) artifact);
+            }
+        });
+        dispatchers.put(Event.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Event) artifact);
+            }
+        });
+        dispatchers.put(InformationType.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((InformationType) artifact);
+            }
+        });
+        dispatchers.put(Orchestration.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Orchestration) artifact);
+            }
+        });
+        dispatchers.put(OrchestrationProcess.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((OrchestrationProcess) artifact);
+            }
+        });
+        dispatchers.put(Policy.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Policy) artifact);
+            }
+        });
+        dispatchers.put(PolicySubject.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((PolicySubject) artifact);
+            }
+        });
+        dispatchers.put(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Process.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Process) artifact);
+            }
+        });
+        dispatchers.put(Service.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Service) artifact);
+            }
+        });
+        dispatchers.put(ServiceContract.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ServiceContract) artifact);
+            }
+        });
+        dispatchers.put(ServiceComposition.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ServiceComposition) artifact);
+            }
+        });
+        dispatchers.put(ServiceInterface.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((ServiceInterface) artifact);
+            }
+        });
+        dispatchers.put(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.System.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((org.oasis_open.docs.s_ramp.ns.s_ramp_v1.System) artifact);
+            }
+        });
+        dispatchers.put(Task.class, new Dispatcher() {
+            @Override
+            public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact) {
+                visitor.visit((Task) artifact);
+            }
+        });
+    }
+
 	/**
 	 * Called to help the given visitor visit the provided artifact.
 	 * @param visitor
 	 * @param artifact
 	 */
 	public static void visitArtifact(ArtifactVisitor visitor, BaseArtifactType artifact) {
+	    Dispatcher dispatcher = dispatchers.get(artifact.getClass());
+	    if (dispatcher != null) {
+	        dispatcher.dispatch(visitor, artifact);
+	    } else {
+	        visitArtifactReflectively(visitor, artifact);
+	    }
+	}
+
+	/**
+	 * Visits the provided artifact by looking up the visitor's visit method reflectively.  Only
+	 * used for artifact classes that have no dispatcher (i.e. subclasses of the S-RAMP artifact
+	 * classes, for which the visitor may well have no matching visit method).
+	 * @param visitor
+	 * @param artifact
+	 */
+	static void visitArtifactReflectively(ArtifactVisitor visitor, BaseArtifactType artifact) {
 		try {
 			Method method = visitor.getClass().getMethod("visit", artifact.getClass()); //$NON-NLS-1$
 			method.invoke(visitor, artifact);
@@ -47,4 +453,18 @@ public final class ArtifactVisitorHelper {
 		}
 	}
 
+	/**
+	 * Calls the visit method for one type of artifact.
+	 */
+	private static interface Dispatcher {
+
+	    /**
+	     * Calls the visitor's visit method for the artifact.
+	     * @param visitor
+	     * @param artifact
+	     */
+	    public void dispatch(ArtifactVisitor visitor, BaseArtifactType artifact);
+
+	}
+
 }
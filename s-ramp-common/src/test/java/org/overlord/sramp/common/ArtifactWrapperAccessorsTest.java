@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Artifact;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+
+/**
+ * JUnit test for the {@link ArtifactWrapperAccessors} class.
+ */
+public class ArtifactWrapperAccessorsTest {
+
+    /**
+     * Every type of artifact can be wrapped and then unwrapped again.
+     */
+    @Test
+    public void testWrapUnwrapAllArtifactTypes() throws Exception {
+        for (ArtifactTypeEnum type : ArtifactTypeEnum.values()) {
+            BaseArtifactType artifact = type.getTypeClass().newInstance();
+            Artifact wrapper = new Artifact();
+            ArtifactWrapperAccessors.set(wrapper, artifact);
+            Assert.assertSame(type.name(), artifact, ArtifactWrapperAccessors.get(wrapper, type.getTypeClass()));
+            Assert.assertSame(type.name(), artifact, ArtifactWrapperAccessors.get(wrapper));
+            Assert.assertSame(type.name(), artifact, type.unwrap(wrapper));
+            Assert.assertEquals(type.name(), type.getTypeClass(),
+                    ArtifactType.valueOf(wrapper, null).getArtifactType().getTypeClass());
+        }
+    }
+
+    /**
+     * An empty wrapper holds no artifact.
+     */
+    @Test
+    public void testEmptyWrapper() throws Exception {
+        Artifact wrapper = new Artifact();
+        Assert.assertNull(ArtifactWrapperAccessors.get(wrapper));
+        Assert.assertNull(ArtifactWrapperAccessors.get(wrapper, ArtifactTypeEnum.XsdDocument.getTypeClass()));
+        Assert.assertNull(ArtifactType.valueOf(wrapper, "XsdDocument")); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common.derived;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Binding;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ElementTarget;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.MessageTarget;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.OperationInput;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Part;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.PortTypeTarget;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Target;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdTypeTarget;
+import org.overlord.sramp.common.ArtifactTypeEnum;
+
+/**
+ * Unit test for the {@link WsdlLinker} class.
+ */
+public class WsdlLinkerTest {
+
+    private static final String NS = "urn:test:linker"; //$NON-NLS-1$
+
+    /**
+     * All of the unresolved references of all of the artifacts are resolved together,
+     * once each.
+     */
+    @Test
+    public void testLinkResolvesInOneBatch() throws Exception {
+        Part part1 = new Part();
+        part1.setElement(unresolved(new ElementTarget(), "order")); //$NON-NLS-1$
+        Part part2 = new Part();
+        part2.setElement(unresolved(new ElementTarget(), "order")); //$NON-NLS-1$
+        Part part3 = new Part();
+        part3.setType(unresolved(new XsdTypeTarget(), "orderId")); //$NON-NLS-1$
+        OperationInput input = new OperationInput();
+        input.setMessage(unresolved(new MessageTarget(), "missing")); //$NON-NLS-1$
+        Binding binding = new Binding();
+        binding.setPortType(unresolved(new PortTypeTarget(), "orderPortType")); //$NON-NLS-1$
+        List<BaseArtifactType> artifacts = new ArrayList<BaseArtifactType>();
+        Collections.addAll(artifacts, part1, part2, part3, input, binding);
+
+        MockLinkerContext context = new MockLinkerContext();
+        context.addArtifact(ArtifactTypeEnum.ElementDeclaration, "order"); //$NON-NLS-1$
+        context.addArtifact(ArtifactTypeEnum.SimpleTypeDeclaration, "orderId"); //$NON-NLS-1$
+        context.addArtifact(ArtifactTypeEnum.PortType, "orderPortType"); //$NON-NLS-1$
+        new WsdlLinker().link(context, artifacts);
+
+        Assert.assertEquals(1, context.batches);
+        // order (element), orderId (complex + simple type), missing (message), orderPortType
+        Assert.assertEquals(5, context.references);
+
+        Assert.assertEquals("ElementDeclaration:order", part1.getElement().getValue()); //$NON-NLS-1$
+        Assert.assertEquals("ElementDeclaration:order", part2.getElement().getValue()); //$NON-NLS-1$
+        Assert.assertEquals("SimpleTypeDeclaration:orderId", part3.getType().getValue()); //$NON-NLS-1$
+        Assert.assertNull(input.getMessage());
+        Assert.assertEquals("PortType:orderPortType", binding.getPortType().getValue()); //$NON-NLS-1$
+        Assert.assertFalse(part1.getElement().getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF));
+        Assert.assertFalse(part3.getType().getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF));
+        Assert.assertFalse(binding.getPortType().getOtherAttributes().containsKey(WsdlDeriver.UNRESOLVED_REF));
+    }
+
+    /**
+     * Nothing to resolve means no trip to the linker context at all.
+     */
+    @Test
+    public void testLinkWithoutReferences() throws Exception {
+        Part part = new Part();
+        ElementTarget element = new ElementTarget();
+        element.setValue("local-uuid"); //$NON-NLS-1$
+        part.setElement(element);
+
+        MockLinkerContext context = new MockLinkerContext();
+        new WsdlLinker().link(context, part);
+
+        Assert.assertEquals(0, context.batches);
+        Assert.assertEquals("local-uuid", part.getElement().getValue()); //$NON-NLS-1$
+    }
+
+    /**
+     * Marks the given target as an unresolved reference to the given name.
+     * @param target
+     * @param localPart
+     */
+    private static <T extends Target> T unresolved(T target, String localPart) {
+        target.getOtherAttributes().put(WsdlDeriver.UNRESOLVED_REF, "{" + NS + "}" + localPart); //$NON-NLS-1$ //$NON-NLS-2$
+        return target;
+    }
+
+    /**
+     * A linker context that knows about a few artifacts, and counts the batches (and
+     * references) it is asked to resolve.
+     */
+    private static class MockLinkerContext extends AbstractLinkerContext {
+
+        private final List<String> known = new ArrayList<String>();
+        private int batches;
+        private int references;
+
+        public void addArtifact(ArtifactTypeEnum type, String ncName) {
+            known.add(type.getType() + ":" + ncName); //$NON-NLS-1$
+        }
+
+        @Override
+        public Map<LinkerReference, String> resolveReferences(Collection<LinkerReference> references) {
+            this.batches++;
+            this.references += references.size();
+            return super.resolveReferences(references);
+        }
+
+        @Override
+        public Collection<BaseArtifactType> findArtifacts(String model, String type, Map<String, String> criteria) {
+            Assert.assertEquals(NS, criteria.get("namespace")); //$NON-NLS-1$
+            String key = type + ":" + criteria.get("ncName"); //$NON-NLS-1$ //$NON-NLS-2$
+            if (!known.contains(key)) {
+                return Collections.emptyList();
+            }
+            BaseArtifactType artifact = new Document();
+            artifact.setUuid(key);
+            return Collections.singletonList(artifact);
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common.derived;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.WsdlDocument;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdDocument;
+
+/**
+ * Measures the throughput and (peak) heap use of the XML derivers.  By default the sample
+ * WSDL and XSD found in the test resources are derived, but any number of (large, real
+ * world) documents can be given instead.  This is not run as part of the normal build (the
+ * class name does not match the surefire includes) - run it explicitly, e.g.:
+ * <pre>
+ *   mvn test -Dtest=XmlDeriverBenchmark -Dsramp.benchmark.iterations=500 \
+ *       -Dsramp.benchmark.wsdls=/path/to/big1.wsdl,/path/to/big2.wsdl \
+ *       -Dsramp.benchmark.xsds=/path/to/big.xsd
+ * </pre>
+ */
+public class XmlDeriverBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("sramp.benchmark.iterations", 200); //$NON-NLS-1$
+
+    @Test
+    public void benchmarkWsdlDeriver() throws Exception {
+        List<byte[]> wsdls = load("sramp.benchmark.wsdls", "/sample-files/wsdl/ws-humantask-api.wsdl"); //$NON-NLS-1$ //$NON-NLS-2$
+        run("WSDL", new WsdlDeriver(), BaseArtifactEnum.WSDL_DOCUMENT, wsdls); //$NON-NLS-1$
+    }
+
+    @Test
+    public void benchmarkXsdDeriver() throws Exception {
+        List<byte[]> xsds = load("sramp.benchmark.xsds", "/sample-files/xsd/ws-humantask.xsd"); //$NON-NLS-1$ //$NON-NLS-2$
+        XsdDeriver domDeriver = new XsdDeriver();
+        domDeriver.setStreaming(false);
+        run("XSD (DOM)", domDeriver, BaseArtifactEnum.XSD_DOCUMENT, xsds); //$NON-NLS-1$
+        run("XSD (streaming)", new XsdDeriver(), BaseArtifactEnum.XSD_DOCUMENT, xsds); //$NON-NLS-1$
+    }
+
+    /**
+     * Derives each of the documents the configured number of times (after a warm-up) and
+     * reports the throughput and peak heap use.
+     * @param label
+     * @param deriver
+     * @param type
+     * @param documents
+     * @throws Exception
+     */
+    private void run(String label, ArtifactDeriver deriver, BaseArtifactEnum type, List<byte[]> documents)
+            throws Exception {
+        long bytes = 0;
+        for (byte[] document : documents) {
+            bytes += document.length;
+        }
+
+        derive(deriver, type, documents, Math.max(1, ITERATIONS / 10));
+
+        System.gc();
+        long heapBefore = usedHeap();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        long derived = derive(deriver, type, documents, ITERATIONS);
+        long elapsed = System.nanoTime() - start;
+        long peakHeap = peakHeap();
+
+        Assert.assertTrue(derived > 0);
+        double seconds = elapsed / 1000000000d;
+        System.out.println(String.format("Derive %1$s: %2$d documents (%3$d derived artifacts) in %4$.2fs = %5$.1f docs/s, %6$.2f MB/s, peak heap +%7$.1f MB", //$NON-NLS-1$
+                label, (long) ITERATIONS * documents.size(), derived, seconds,
+                ITERATIONS * documents.size() / seconds, ITERATIONS * bytes / seconds / (1024 * 1024),
+                (peakHeap - heapBefore) / (1024d * 1024d)));
+    }
+
+    /**
+     * Derives all of the documents the given number of times.
+     * @param deriver
+     * @param type
+     * @param documents
+     * @param iterations
+     * @return the total number of derived artifacts
+     * @throws Exception
+     */
+    private long derive(ArtifactDeriver deriver, BaseArtifactEnum type, List<byte[]> documents, int iterations)
+            throws Exception {
+        long derived = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (byte[] document : documents) {
+                BaseArtifactType artifact = type == BaseArtifactEnum.WSDL_DOCUMENT ? new WsdlDocument() : new XsdDocument();
+                artifact.setArtifactType(type);
+                artifact.setUuid(UUID.randomUUID().toString());
+                derived += deriver.derive(artifact, new ByteArrayInputStream(document)).size();
+            }
+        }
+        return derived;
+    }
+
+    /**
+     * Loads the documents listed (comma separated) in the given system property, or the
+     * given test resource if the property isn't set.
+     * @param property
+     * @param defaultResource
+     * @throws Exception
+     */
+    private List<byte[]> load(String property, String defaultResource) throws Exception {
+        List<byte[]> documents = new ArrayList<byte[]>();
+        String paths = System.getProperty(property);
+        if (paths != null && paths.trim().length() > 0) {
+            for (String path : paths.split(",")) { //$NON-NLS-1$
+                documents.add(FileUtils.readFileToByteArray(new File(path.trim())));
+            }
+        } else {
+            InputStream is = getClass().getResourceAsStream(defaultResource);
+            try {
+                documents.add(IOUtils.toByteArray(is));
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * @return the amount of heap currently in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Resets the peak usage of all heap memory pools.
+     */
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the (summed) peak usage of all heap memory pools since they were last reset
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+}
@@ -72,9 +72,28 @@ public class XsdDeriverTest {
 	 */
 	@Test
 	public void testDerive() throws Exception {
-		DatatypeFactory dtFactory = DatatypeFactory.newInstance();
+		XsdDeriver deriver = new XsdDeriver();
+		Assert.assertTrue(deriver.isStreaming());
+		doTestDerive(deriver);
+	}
 
+	/**
+	 * Same as {@link #testDerive()} but derives from a DOM rather than streaming the XSD.
+	 */
+	@Test
+	public void testDeriveNotStreaming() throws Exception {
 		XsdDeriver deriver = new XsdDeriver();
+		deriver.setStreaming(false);
+		doTestDerive(deriver);
+	}
+
+	/**
+	 * Derives the sample XSD using the given deriver and verifies the result.
+	 * @param deriver
+	 */
+	private void doTestDerive(XsdDeriver deriver) throws Exception {
+		DatatypeFactory dtFactory = DatatypeFactory.newInstance();
+
 		XsdDocument testSrcArtifact = new XsdDocument();
 		testSrcArtifact.setArtifactType(BaseArtifactEnum.XSD_DOCUMENT);
 		testSrcArtifact.setUuid(UUID.randomUUID().toString());
@@ -131,6 +150,7 @@ public class XsdDeriverTest {
 			Assert.assertEquals(83, numElements + numAttributes + numSimpleTypes + numComplexTypes);
 
 			// Verify the names
+			Assert.assertEquals("http://docs.oasis-open.org/ns/bpel4people/ws-humantask/200803", testSrcArtifact.getTargetNamespace()); //$NON-NLS-1$
 			Assert.assertEquals(EXPECTED_ELEMENT_NAMES, elementNames);
 			Assert.assertEquals(EXPECTED_ATTRIBUTE_NAMES, attributeNames);
 			Assert.assertEquals(EXPECTED_SIMPLE_TYPE_NAMES, simpleTypeNames);
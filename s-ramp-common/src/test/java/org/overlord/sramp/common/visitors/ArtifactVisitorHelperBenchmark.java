@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common.visitors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.overlord.sramp.common.ArtifactTypeEnum;
+
+/**
+ * Compares visiting artifacts (of every type) through the dispatch table with visiting them
+ * through the old reflective lookup.  This is not run as part of the normal build (the class
+ * name does not match the surefire includes) - run it explicitly, e.g.:
+ * <pre>
+ *   mvn test -Dtest=ArtifactVisitorHelperBenchmark -Dsramp.benchmark.iterations=200000
+ * </pre>
+ */
+public class ArtifactVisitorHelperBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("sramp.benchmark.iterations", 100000); //$NON-NLS-1$
+
+    @Test
+    public void benchmarkVisitArtifact() throws Exception {
+        ArtifactTypeEnum[] types = ArtifactTypeEnum.values();
+        BaseArtifactType[] artifacts = new BaseArtifactType[types.length];
+        for (int i = 0; i < types.length; i++) {
+            artifacts[i] = types[i].getTypeClass().newInstance();
+        }
+        CountingVisitor visitor = new CountingVisitor();
+
+        // Warm up both paths
+        run(visitor, artifacts, ITERATIONS / 10, false);
+        run(visitor, artifacts, ITERATIONS / 10, true);
+
+        visitor.count = 0;
+        long reflective = run(visitor, artifacts, ITERATIONS, true);
+        long dispatched = run(visitor, artifacts, ITERATIONS, false);
+        Assert.assertEquals(2L * ITERATIONS * artifacts.length, visitor.count);
+
+        report("reflective", artifacts.length, reflective); //$NON-NLS-1$
+        report("dispatched", artifacts.length, dispatched); //$NON-NLS-1$
+    }
+
+    /**
+     * Visits all of the artifacts the given number of times.
+     * @param visitor
+     * @param artifacts
+     * @param iterations
+     * @param reflective
+     * @return the elapsed time (nanos)
+     */
+    private long run(ArtifactVisitor visitor, BaseArtifactType[] artifacts, int iterations, boolean reflective) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (BaseArtifactType artifact : artifacts) {
+                if (reflective) {
+                    ArtifactVisitorHelper.visitArtifactReflectively(visitor, artifact);
+                } else {
+                    ArtifactVisitorHelper.visitArtifact(visitor, artifact);
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Prints the cost per visit.
+     * @param label
+     * @param typeCount
+     * @param elapsedNanos
+     */
+    private void report(String label, int typeCount, long elapsedNanos) {
+        long visits = (long) ITERATIONS * typeCount;
+        System.out.println(String.format("Visit artifact (%1$s): %2$d visits over %3$d types in %4$.2fs = %5$.1f ns/visit", //$NON-NLS-1$
+                label, visits, typeCount, elapsedNanos / 1000000000d, (double) elapsedNanos / visits));
+    }
+
+    /**
+     * Counts the artifacts it visits (so that the visits can't be optimized away).
+     */
+    public static class CountingVisitor extends ArtifactVisitorAdapter {
+
+        private long count;
+
+        /**
+         * @see org.overlord.sramp.common.visitors.ArtifactVisitorAdapter#visitBase(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType)
+         */
+        @Override
+        protected void visitBase(BaseArtifactType artifact) {
+            count++;
+        }
+
+    }
+
+}
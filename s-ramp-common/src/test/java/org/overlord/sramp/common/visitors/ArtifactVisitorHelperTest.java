@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.common.visitors;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.overlord.sramp.common.ArtifactTypeEnum;
+
+/**
+ * JUnit test for the {@link ArtifactVisitorHelper} class.
+ */
+public class ArtifactVisitorHelperTest {
+
+    /**
+     * Every type of artifact must be dispatched to the visit method for exactly that type.
+     */
+    @Test
+    public void testVisitAllArtifactTypes() throws Exception {
+        final Class<?>[] visited = new Class<?>[1];
+        ArtifactVisitor visitor = (ArtifactVisitor) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ArtifactVisitor.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        visited[0] = method.getParameterTypes()[0];
+                        return null;
+                    }
+                });
+        for (ArtifactTypeEnum type : ArtifactTypeEnum.values()) {
+            BaseArtifactType artifact = type.getTypeClass().newInstance();
+            visited[0] = null;
+            ArtifactVisitorHelper.visitArtifact(visitor, artifact);
+            Assert.assertEquals(type.name(), type.getTypeClass(), visited[0]);
+        }
+    }
+
+    /**
+     * Exceptions thrown by the visitor are passed on as-is.
+     */
+    @Test
+    public void testVisitorException() throws Exception {
+        final IllegalStateException error = new IllegalStateException();
+        ArtifactVisitor visitor = new ArtifactVisitorAdapter() {
+            @Override
+            protected void visitBase(BaseArtifactType artifact) {
+                throw error;
+            }
+        };
+        try {
+            ArtifactVisitorHelper.visitArtifact(visitor, ArtifactTypeEnum.Document.getTypeClass().newInstance());
+            Assert.fail("Expected the visitor's exception."); //$NON-NLS-1$
+        } catch (IllegalStateException e) {
+            Assert.assertSame(error, e);
+        }
+    }
+
+}
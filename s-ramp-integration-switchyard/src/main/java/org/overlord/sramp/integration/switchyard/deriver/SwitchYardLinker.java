@@ -16,8 +16,11 @@
 package org.overlord.sramp.integration.switchyard.deriver;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -28,6 +31,7 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Target;
 import org.overlord.sramp.common.ArtifactTypeEnum;
 import org.overlord.sramp.common.SrampModelUtils;
 import org.overlord.sramp.common.derived.LinkerContext;
+import org.overlord.sramp.common.derived.LinkerReference;
 import org.overlord.sramp.integration.java.model.JavaModel;
 import org.overlord.sramp.integration.switchyard.i18n.Messages;
 import org.overlord.sramp.integration.switchyard.model.SwitchYardArtifactVisitor;
@@ -37,7 +41,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Used to link unresolved references found during the derive phase.
+ * Used to link unresolved references found during the derive phase.  The first pass over
+ * the derived artifacts only collects the references, which are then resolved all at once
+ * by the {@link LinkerContext}.  The second pass applies the results.
  *
  * @author eric.wittmann@redhat.com
  */
@@ -45,7 +51,7 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
 
     private static Logger log = LoggerFactory.getLogger(SwitchYardLinker.class);
 
-    private static ThreadLocal<LinkerContext> linkerContext = new ThreadLocal<LinkerContext>();
+    private static ThreadLocal<LinkState> linkState = new ThreadLocal<LinkState>();
 
     /**
      * Constructor.
@@ -61,21 +67,21 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "implements" relationships
         Relationship relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_IMPLEMENTS);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("java:")) { //$NON-NLS-1$
                 String refInterfaceName = ref.substring(5);
-                BaseArtifactType artifactRef = findJavaInterfaceArtifact(refInterfaceName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaInterfaceArtifact(refInterfaceName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("wsdl:")) { //$NON-NLS-1$
                 String refWsdl = ref.substring(5);
-                BaseArtifactType artifactRef = findWsdlArtifact(refWsdl);
-                if (artifactRef != null) {
+                String artifactUuid = findWsdlArtifact(refWsdl);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -90,13 +96,13 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "implementedBy" relationships
         Relationship relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_IMPLEMENTED_BY);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("class:")) { //$NON-NLS-1$
                 String refClassName = ref.substring(6);
-                BaseArtifactType artifactRef = findJavaClassArtifact(refClassName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaClassArtifact(refClassName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -105,21 +111,21 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "references" relationships
         relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_REFERENCES);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("java:")) { //$NON-NLS-1$
                 String refInterfaceName = ref.substring(5);
-                BaseArtifactType artifactRef = findJavaInterfaceArtifact(refInterfaceName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaInterfaceArtifact(refInterfaceName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("wsdl:")) { //$NON-NLS-1$
                 String refWsdl = ref.substring(5);
-                BaseArtifactType artifactRef = findWsdlArtifact(refWsdl);
-                if (artifactRef != null) {
+                String artifactUuid = findWsdlArtifact(refWsdl);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -134,21 +140,21 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "implements" relationships
         Relationship relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_IMPLEMENTS);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("java:")) { //$NON-NLS-1$
                 String refInterfaceName = ref.substring(5);
-                BaseArtifactType artifactRef = findJavaInterfaceArtifact(refInterfaceName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaInterfaceArtifact(refInterfaceName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("wsdl:")) { //$NON-NLS-1$
                 String refWsdl = ref.substring(5);
-                BaseArtifactType artifactRef = findWsdlArtifact(refWsdl);
-                if (artifactRef != null) {
+                String artifactUuid = findWsdlArtifact(refWsdl);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -163,45 +169,45 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "implementedBy" relationships
         Relationship relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_IMPLEMENTED_BY);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("class:")) { //$NON-NLS-1$
                 String refClassName = ref.substring(6);
-                BaseArtifactType artifactRef = findJavaClassArtifact(refClassName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaClassArtifact(refClassName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("bean:")) { //$NON-NLS-1$
                 String refBeanName = ref.substring(5);
-                BaseArtifactType artifactRef = findCDIBeanArtifact(refBeanName);
-                if (artifactRef != null) {
+                String artifactUuid = findCDIBeanArtifact(refBeanName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("xslt:")) { //$NON-NLS-1$
                 String refXsltFile = ref.substring(5);
-                BaseArtifactType artifactRef = findXsltArtifact(refXsltFile);
-                if (artifactRef != null) {
+                String artifactUuid = findXsltArtifact(refXsltFile);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("smooks:")) { //$NON-NLS-1$
                 String smooksConfig = ref.substring(7);
-                BaseArtifactType artifactRef = findSmooksArtifact(smooksConfig);
-                if (artifactRef != null) {
+                String artifactUuid = findSmooksArtifact(smooksConfig);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("camel:")) { //$NON-NLS-1$
                 String camelPath = ref.substring(6);
-                BaseArtifactType artifactRef = findCamelArtifact(camelPath);
-                if (artifactRef != null) {
+                String artifactUuid = findCamelArtifact(camelPath);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -209,21 +215,21 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "transformsFrom" relationships
         relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_TRANSFORMS_FROM);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("java:")) { // java class //$NON-NLS-1$
                 String refClassName = ref.substring(5);
-                BaseArtifactType artifactRef = findJavaClassArtifact(refClassName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaClassArtifact(refClassName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("{")) { // xml type (qname) //$NON-NLS-1$
                 QName refQName = QName.valueOf(ref);
-                BaseArtifactType artifactRef = findElementDeclarationArtifact(refQName);
-                if (artifactRef != null) {
+                String artifactUuid = findElementDeclarationArtifact(refQName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -231,21 +237,21 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "transformsTo" relationships
         relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_TRANSFORMS_TO);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("java:")) { // java class //$NON-NLS-1$
                 String refClassName = ref.substring(5);
-                BaseArtifactType artifactRef = findJavaClassArtifact(refClassName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaClassArtifact(refClassName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("{")) { // xml type (qname) //$NON-NLS-1$
                 QName refQName = QName.valueOf(ref);
-                BaseArtifactType artifactRef = findElementDeclarationArtifact(refQName);
-                if (artifactRef != null) {
+                String artifactUuid = findElementDeclarationArtifact(refQName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -260,21 +266,21 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "implementedBy" relationships
         Relationship relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_IMPLEMENTED_BY);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("class:")) { //$NON-NLS-1$
                 String refClassName = ref.substring(6);
-                BaseArtifactType artifactRef = findJavaClassArtifact(refClassName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaClassArtifact(refClassName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("bean:")) { //$NON-NLS-1$
                 String refBeanName = ref.substring(5);
-                BaseArtifactType artifactRef = findCDIBeanArtifact(refBeanName);
-                if (artifactRef != null) {
+                String artifactUuid = findCDIBeanArtifact(refBeanName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -282,21 +288,21 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
         // Handle unresolved "validates" relationships
         relationship = SrampModelUtils.getGenericRelationship(artifact, SwitchYardModel.REL_VALIDATES);
         if (relationship != null && relationship.getOtherAttributes().containsKey(SwitchYardXmlDeriver.UNRESOLVED_REF)) {
-            String ref = relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+            String ref = takeUnresolvedRef(relationship);
             if (ref.startsWith("java:")) { // java class //$NON-NLS-1$
                 String refClassName = ref.substring(5);
-                BaseArtifactType artifactRef = findJavaClassArtifact(refClassName);
-                if (artifactRef != null) {
+                String artifactUuid = findJavaClassArtifact(refClassName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             } else if (ref.startsWith("{")) { // xml type (qname) //$NON-NLS-1$
                 QName refQName = QName.valueOf(ref);
-                BaseArtifactType artifactRef = findElementDeclarationArtifact(refQName);
-                if (artifactRef != null) {
+                String artifactUuid = findElementDeclarationArtifact(refQName);
+                if (artifactUuid != null) {
                     Target target = new Target();
-                    target.setValue(artifactRef.getUuid());
+                    target.setValue(artifactUuid);
                     relationship.getRelationshipTarget().add(target);
                 }
             }
@@ -307,70 +313,61 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
      * Finds an artifact by java classname.
      * @param refClassName
      */
-    private BaseArtifactType findJavaClassArtifact(String className) {
+    private String findJavaClassArtifact(String className) {
         int idx = className.lastIndexOf('.');
         String packageName = className.substring(0, idx);
         String shortName = className.substring(idx+1);
-        LinkerContext context = linkerContext.get();
-        Map<String, String> criteria = new HashMap<String, String>();;
+        Map<String, String> criteria = new HashMap<String, String>();
         criteria.put(JavaModel.PROP_PACKAGE_NAME, packageName);
         criteria.put(JavaModel.PROP_CLASS_NAME, shortName);
-        Collection<BaseArtifactType> artifacts = context.findArtifacts("ext", JavaModel.TYPE_JAVA_CLASS, criteria); //$NON-NLS-1$
-        if (artifacts != null && !artifacts.isEmpty()) {
-            return artifacts.iterator().next();
-        } else {
+        String uuid = resolve(new LinkerReference("ext", JavaModel.TYPE_JAVA_CLASS, criteria)); //$NON-NLS-1$
+        if (uuid == null && !isCollecting()) {
             log.debug(Messages.i18n.format("NO_JAVA_CLASS", className)); //$NON-NLS-1$
-            return null;
         }
+        return uuid;
     }
 
     /**
      * Finds an artifact by java interface name.
      * @param refInterfaceName
      */
-    private BaseArtifactType findJavaInterfaceArtifact(String interfaceName) {
+    private String findJavaInterfaceArtifact(String interfaceName) {
         int idx = interfaceName.lastIndexOf('.');
         String packageName = interfaceName.substring(0, idx);
         String shortName = interfaceName.substring(idx+1);
-        LinkerContext context = linkerContext.get();
-        Map<String, String> criteria = new HashMap<String, String>();;
+        Map<String, String> criteria = new HashMap<String, String>();
         criteria.put(JavaModel.PROP_PACKAGE_NAME, packageName);
         criteria.put(JavaModel.PROP_CLASS_NAME, shortName);
-        Collection<BaseArtifactType> artifacts = context.findArtifacts("ext", JavaModel.TYPE_JAVA_INTERFACE, criteria); //$NON-NLS-1$
-        if (artifacts != null && !artifacts.isEmpty()) {
-            return artifacts.iterator().next();
-        } else {
+        String uuid = resolve(new LinkerReference("ext", JavaModel.TYPE_JAVA_INTERFACE, criteria)); //$NON-NLS-1$
+        if (uuid == null && !isCollecting()) {
             log.debug(Messages.i18n.format("NO_JAVA_INTERFACE", interfaceName)); //$NON-NLS-1$
-            return null;
         }
+        return uuid;
     }
 
     /**
      * Finds an element declaration artifact by its QName.
      * @param refQName
      */
-    private BaseArtifactType findElementDeclarationArtifact(QName refQName) {
-        LinkerContext context = linkerContext.get();
-        Map<String, String> criteria = new HashMap<String, String>();;
+    private String findElementDeclarationArtifact(QName refQName) {
+        Map<String, String> criteria = new HashMap<String, String>();
         criteria.put("namespace", refQName.getNamespaceURI()); //$NON-NLS-1$
         criteria.put("ncName", refQName.getLocalPart()); //$NON-NLS-1$
-        Collection<BaseArtifactType> artifacts = context.findArtifacts(
+        String uuid = resolve(new LinkerReference(
                 ArtifactTypeEnum.ElementDeclaration.getModel(),
                 ArtifactTypeEnum.ElementDeclaration.getType(),
-                criteria);
-        if (artifacts != null && !artifacts.isEmpty()) {
-            return artifacts.iterator().next();
-        } else {
+                criteria));
+        if (uuid == null && !isCollecting()) {
             log.debug(Messages.i18n.format("NO_ELEMENT_DECL", refQName)); //$NON-NLS-1$
-            return null;
         }
+        return uuid;
     }
 
     /**
      * Finds a smooks config artifact.
      * @param smooksConfig
      */
-    private BaseArtifactType findSmooksArtifact(String smooksConfig) {
+    private String findSmooksArtifact(String smooksConfig) {
         // TODO Implement finding a smooks config artifact in the repository
         return null;
     }
@@ -379,7 +376,7 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
      * Finds a camel route.xml artifact by path.
      * @param camelXmlPath
      */
-    private BaseArtifactType findCamelArtifact(String camelXmlPath) {
+    private String findCamelArtifact(String camelXmlPath) {
         // TODO Implement finding a smooks config artifact in the repository
         return null;
     }
@@ -388,7 +385,7 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
      * Finds an xslt artifact.
      * @param xsltFile
      */
-    private BaseArtifactType findXsltArtifact(String xsltFile) {
+    private String findXsltArtifact(String xsltFile) {
         // TODO Implement finding an xslt artifact in the repository
         return null;
     }
@@ -397,7 +394,7 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
      * Finds a java class artifact given its CDI bean name.
      * @param beanName
      */
-    private BaseArtifactType findCDIBeanArtifact(String beanName) {
+    private String findCDIBeanArtifact(String beanName) {
         // TODO Implement finding a java class artifact by its cdi bean name
         return null;
     }
@@ -406,19 +403,84 @@ public class SwitchYardLinker implements SwitchYardArtifactVisitor {
      * Finds an artifact by WSDL information in the switchyard.xml.
      * @param refWsdl
      */
-    private BaseArtifactType findWsdlArtifact(String refWsdl) {
+    private String findWsdlArtifact(String refWsdl) {
         // TODO Implement finding an artifact in the s-ramp repo given the wsdl information in switchyard.xml (why couldn't a QName be used in there???)
         return null;
     }
 
+    /**
+     * Gets the unresolved reference stored on the given relationship.  It is only removed
+     * from the relationship in the second pass, when it is actually resolved.
+     * @param relationship
+     */
+    private String takeUnresolvedRef(Relationship relationship) {
+        if (isCollecting()) {
+            return relationship.getOtherAttributes().get(SwitchYardXmlDeriver.UNRESOLVED_REF);
+        } else {
+            return relationship.getOtherAttributes().remove(SwitchYardXmlDeriver.UNRESOLVED_REF);
+        }
+    }
+
+    /**
+     * Resolves the given reference to the UUID of the artifact it refers to.  During the
+     * first (collecting) pass the reference is only recorded, and null is returned.
+     * @param reference
+     */
+    private String resolve(LinkerReference reference) {
+        LinkState state = linkState.get();
+        if (state.resolved == null) {
+            state.references.add(reference);
+            return null;
+        }
+        return state.resolved.get(reference);
+    }
+
+    /**
+     * @return true during the first pass, in which references are only collected
+     */
+    private boolean isCollecting() {
+        return linkState.get().resolved == null;
+    }
+
     /**
      * Visits the artifact to do the linking.
      * @param context
      * @param derivedArtifact
      */
     public void link(LinkerContext context, ExtendedArtifactType derivedArtifact) {
-        linkerContext.set(context);
-        SwitchYardArtifactVisitorHelper.visitArtifact(derivedArtifact, this);
+        link(context, Collections.<BaseArtifactType>singletonList(derivedArtifact));
+    }
+
+    /**
+     * Visits the artifacts to do the linking.  All of their references are resolved
+     * together.
+     * @param context
+     * @param derivedArtifacts
+     */
+    public void link(LinkerContext context, Collection<BaseArtifactType> derivedArtifacts) {
+        LinkState state = new LinkState();
+        linkState.set(state);
+        try {
+            for (BaseArtifactType derivedArtifact : derivedArtifacts) {
+                SwitchYardArtifactVisitorHelper.visitArtifact((ExtendedArtifactType) derivedArtifact, this);
+            }
+            state.resolved = state.references.isEmpty()
+                    ? Collections.<LinkerReference, String>emptyMap()
+                    : context.resolveReferences(state.references);
+            for (BaseArtifactType derivedArtifact : derivedArtifacts) {
+                SwitchYardArtifactVisitorHelper.visitArtifact((ExtendedArtifactType) derivedArtifact, this);
+            }
+        } finally {
+            linkState.remove();
+        }
+    }
+
+    /**
+     * The state of a single (two pass) link operation.
+     */
+    private static class LinkState {
+        private final Set<LinkerReference> references = new LinkedHashSet<LinkerReference>();
+        private Map<LinkerReference, String> resolved;
     }
 
 }
@@ -358,9 +358,7 @@ public class SwitchYardXmlDeriver extends AbstractXmlDeriver {
      */
     @Override
     public void link(LinkerContext context, BaseArtifactType sourceArtifact, Collection<BaseArtifactType> derivedArtifacts) {
-        for (BaseArtifactType derivedArtifact : derivedArtifacts) {
-            linker.link(context, (ExtendedArtifactType) derivedArtifact);
-        }
+        linker.link(context, derivedArtifacts);
     }
 
     /**
@@ -31,6 +31,7 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedDocument;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Relationship;
 import org.overlord.sramp.common.ArtifactType;
 import org.overlord.sramp.common.SrampModelUtils;
+import org.overlord.sramp.common.derived.AbstractLinkerContext;
 import org.overlord.sramp.common.derived.LinkerContext;
 import org.overlord.sramp.integration.switchyard.model.SwitchYardModel;
 
@@ -167,7 +168,7 @@ public class SwitchYardXmlDeriverTest {
 
 
         // Now pretend to do the linking (ensure we always find a match for every unresolved reference).
-        LinkerContext context = new LinkerContext() {
+        LinkerContext context = new AbstractLinkerContext() {
             @Override
             public Collection<BaseArtifactType> findArtifacts(String model, String type, Map<String, String> criteria) {
                 BaseArtifactType doc = new Document();
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.modeshape;
+
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.WsdlDocument;
+import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.repository.jcr.JCRArtifactNodeIndex;
+import org.overlord.sramp.repository.query.ArtifactSet;
+import org.overlord.sramp.repository.query.SrampQuery;
+
+/**
+ * Tests the {@link JCRArtifactNodeIndex} used to look up (derived) artifacts by uuid.
+ */
+public class JCRArtifactNodeIndexTest extends AbstractNoAuditingJCRPersistenceTest {
+
+    @Test
+    public void testDerivedArtifactLookup() throws Exception {
+        InputStream content = getClass().getResourceAsStream("/sample-files/wsdl/jcr-sample.wsdl"); //$NON-NLS-1$
+        WsdlDocument document = new WsdlDocument();
+        document.setName("jcr-sample.wsdl"); //$NON-NLS-1$
+        document.setArtifactType(BaseArtifactEnum.WSDL_DOCUMENT);
+        BaseArtifactType wsdl = persistenceManager.persistArtifact(document, content);
+        Assert.assertNotNull(wsdl);
+
+        SrampQuery query = queryManager.createQuery("/s-ramp/wsdl/Message"); //$NON-NLS-1$
+        ArtifactSet artifactSet = query.executeQuery();
+        BaseArtifactType message = null;
+        try {
+            Assert.assertTrue(artifactSet.size() > 0);
+            message = artifactSet.iterator().next();
+        } finally {
+            artifactSet.close();
+        }
+
+        // The derived artifacts were indexed when they were persisted
+        JCRArtifactNodeIndex index = JCRArtifactNodeIndex.getInstance();
+        long hits = index.getHitCount();
+        BaseArtifactType found = persistenceManager.getArtifact(message.getUuid(), ArtifactType.valueOf(message));
+        Assert.assertNotNull(found);
+        Assert.assertEquals(message.getUuid(), found.getUuid());
+        Assert.assertEquals(hits + 1, index.getHitCount());
+
+        // Deleting the source document moves the derived artifacts to the trash - the
+        // (now stale) index entry must not find them.
+        persistenceManager.deleteArtifact(wsdl.getUuid(), ArtifactType.valueOf(wsdl));
+        Assert.assertNull(persistenceManager.getArtifact(message.getUuid(), ArtifactType.valueOf(message)));
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.modeshape;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.jcr.NodeIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+
+import org.jboss.downloads.overlord.sramp._2013.auditing.AuditEntry;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
+import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.common.SrampConstants;
+import org.overlord.sramp.common.audit.AuditEntryTypes;
+import org.overlord.sramp.common.audit.AuditItemTypes;
+import org.overlord.sramp.repository.audit.AuditEntrySet;
+import org.overlord.sramp.repository.jcr.JCRAuditWriter;
+import org.overlord.sramp.repository.jcr.JCRConstants;
+import org.overlord.sramp.repository.jcr.JCRRepositoryFactory;
+import org.overlord.sramp.repository.jcr.audit.PendingAuditEntry;
+
+/**
+ * Tests the asynchronous (batched) writing of audit entries.
+ */
+public class JCRAsyncAuditTest extends AbstractAuditingJCRPersistenceTest {
+
+    private static File spoolFile;
+
+    @BeforeClass
+    public static void enableAsyncAuditing() throws Exception {
+        spoolFile = File.createTempFile("sramp-audit-spool", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.setProperty(SrampConstants.SRAMP_CONFIG_AUDITING, "true"); //$NON-NLS-1$
+        System.setProperty(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_ENABLED, "true"); //$NON-NLS-1$
+        System.setProperty(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_BATCH_SIZE, "10"); //$NON-NLS-1$
+        System.setProperty(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_SPOOL_FILE, spoolFile.getAbsolutePath());
+    }
+
+    @AfterClass
+    public static void disableAsyncAuditing() {
+        System.clearProperty(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_ENABLED);
+        System.clearProperty(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_BATCH_SIZE);
+        System.clearProperty(SrampConstants.SRAMP_CONFIG_AUDIT_ASYNC_SPOOL_FILE);
+        spoolFile.delete();
+    }
+
+    @Test
+    public void testAsyncAuditEntries() throws Exception {
+        BaseArtifactType[] artifacts = new BaseArtifactType[25];
+        for (int i = 0; i < artifacts.length; i++) {
+            artifacts[i] = createArtifact("async-" + i + ".pdf"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        artifacts[0].setDescription("Updated description."); //$NON-NLS-1$
+        persistenceManager.updateArtifact(artifacts[0], ArtifactType.Document());
+
+        JCRAuditWriter writer = JCRAuditWriter.getInstance();
+        Assert.assertTrue(writer.flush(30000));
+        Assert.assertEquals(0, writer.getPendingCount());
+        Assert.assertEquals(0, spoolFile.length());
+
+        for (int i = 0; i < artifacts.length; i++) {
+            AuditEntrySet entries = auditManager.getArtifactAuditEntries(artifacts[i].getUuid());
+            Assert.assertEquals(i == 0 ? 2 : 1, entries.size());
+            for (AuditEntry entry : entries) {
+                Assert.assertEquals("junituser", entry.getWho()); //$NON-NLS-1$
+                Assert.assertNotNull(entry.getWhen());
+            }
+        }
+
+        AuditEntrySet entries = auditManager.getUserAuditEntries("junituser"); //$NON-NLS-1$
+        Assert.assertEquals(26, entries.size());
+    }
+
+    @Test
+    public void testSpoolReplay() throws Exception {
+        BaseArtifactType artifact = createArtifact("replay.pdf"); //$NON-NLS-1$
+        JCRAuditWriter.getInstance().flush(30000);
+
+        String nodeId = findArtifactNodeId(artifact.getUuid());
+        PendingAuditEntry entry = new PendingAuditEntry(AuditEntryTypes.ARTIFACT_UPDATE, "replayuser", //$NON-NLS-1$
+                System.currentTimeMillis(), nodeId);
+        entry.addItem(AuditItemTypes.PROPERTY_CHANGED).put("name", "replay.pdf"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // The same entry spooled twice (it must only be written once), then a torn entry
+        File replaySpool = File.createTempFile("sramp-audit-replay", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+        writeSpool(replaySpool, entry, 2, true);
+
+        JCRAuditWriter writer = new JCRAuditWriter(JCRRepositoryFactory.getInstance().getRepo(), null, 10, 10, replaySpool);
+        try {
+            writer.start();
+            Assert.assertTrue(writer.flush(30000));
+            Assert.assertEquals(1, writer.getWrittenCount());
+            Assert.assertEquals(1, writer.getSkippedCount());
+            Assert.assertEquals(0, writer.getFailedCount());
+        } finally {
+            writer.shutdown();
+        }
+        Assert.assertEquals(0, replaySpool.length());
+        replaySpool.delete();
+
+        AuditEntrySet entries = auditManager.getArtifactAuditEntries(artifact.getUuid());
+        Assert.assertEquals(2, entries.size());
+        entries = auditManager.getUserAuditEntries("replayuser"); //$NON-NLS-1$
+        Assert.assertEquals(1, entries.size());
+    }
+
+    @Test
+    public void testFailedEntries() throws Exception {
+        BaseArtifactType artifact = createArtifact("failed.pdf"); //$NON-NLS-1$
+        JCRAuditWriter.getInstance().flush(30000);
+
+        String nodeId = findArtifactNodeId(artifact.getUuid());
+        PendingAuditEntry entry = new PendingAuditEntry(AuditEntryTypes.ARTIFACT_UPDATE, "faileduser", //$NON-NLS-1$
+                System.currentTimeMillis(), nodeId);
+        entry.addItem(AuditItemTypes.PROPERTY_CHANGED).put("name", "failed.pdf"); //$NON-NLS-1$ //$NON-NLS-2$
+        File failedSpool = File.createTempFile("sramp-audit-failed", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+        File deadLetterFile = new File(failedSpool.getPath() + ".failed"); //$NON-NLS-1$
+        writeSpool(failedSpool, entry, 1, false);
+
+        // A repository that can't be logged into - the entry is moved to the dead letter file,
+        // so that it no longer holds up the spool file
+        Repository unavailable = (Repository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Repository.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        throw new RepositoryException("Unavailable"); //$NON-NLS-1$
+                    }
+                });
+        JCRAuditWriter writer = new JCRAuditWriter(unavailable, null, 10, 10, failedSpool);
+        try {
+            writer.start();
+            Assert.assertTrue(writer.flush(30000));
+            Assert.assertEquals(0, writer.getPendingCount());
+            Assert.assertEquals(1, writer.getFailedCount());
+        } finally {
+            writer.shutdown();
+        }
+        Assert.assertEquals(0, failedSpool.length());
+        Assert.assertTrue(deadLetterFile.length() > 0);
+        failedSpool.delete();
+
+        // The dead letter file can be replayed as a spool file
+        writer = new JCRAuditWriter(JCRRepositoryFactory.getInstance().getRepo(), null, 10, 10, deadLetterFile);
+        try {
+            writer.start();
+            Assert.assertTrue(writer.flush(30000));
+            Assert.assertEquals(1, writer.getWrittenCount());
+        } finally {
+            writer.shutdown();
+        }
+        deadLetterFile.delete();
+        Assert.assertEquals(1, auditManager.getUserAuditEntries("faileduser").size()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testUnexpectedFailure() throws Exception {
+        PendingAuditEntry entry = new PendingAuditEntry(AuditEntryTypes.ARTIFACT_UPDATE, "unexpecteduser", //$NON-NLS-1$
+                System.currentTimeMillis(), "no-such-node"); //$NON-NLS-1$
+        File failedSpool = File.createTempFile("sramp-audit-unexpected", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+        File deadLetterFile = new File(failedSpool.getPath() + ".failed"); //$NON-NLS-1$
+        writeSpool(failedSpool, entry, 2, false);
+
+        // A repository that fails with a runtime exception - each (single entry) batch of the
+        // spooled entries is still moved to the dead letter file, and the writer keeps going
+        Repository broken = (Repository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Repository.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        throw new IllegalStateException("Broken"); //$NON-NLS-1$
+                    }
+                });
+        JCRAuditWriter writer = new JCRAuditWriter(broken, null, 10, 1, failedSpool);
+        try {
+            writer.start();
+            Assert.assertTrue(writer.flush(30000));
+            Assert.assertEquals(0, writer.getPendingCount());
+            Assert.assertEquals(2, writer.getFailedCount());
+            Assert.assertEquals(2, writer.getBatchCount());
+        } finally {
+            writer.shutdown();
+        }
+        Assert.assertEquals(0, failedSpool.length());
+        Assert.assertTrue(deadLetterFile.length() > 0);
+        failedSpool.delete();
+        deadLetterFile.delete();
+    }
+
+    /**
+     * Writes a spool file containing the given entry (the given number of times), optionally
+     * followed by a torn copy of it.
+     * @param spool
+     * @param entry
+     * @param copies
+     * @param torn
+     * @throws Exception
+     */
+    private void writeSpool(File spool, PendingAuditEntry entry, int copies, boolean torn) throws Exception {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(spool));
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            entry.writeTo(new DataOutputStream(bytes));
+            for (int i = 0; i < copies; i++) {
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            }
+            if (torn) {
+                out.writeInt(bytes.size());
+                out.write(bytes.toByteArray(), 0, bytes.size() / 2);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Finds the identifier of the JCR node of the given artifact.
+     * @param artifactUuid
+     * @throws Exception
+     */
+    private String findArtifactNodeId(String artifactUuid) throws Exception {
+        Session session = JCRRepositoryFactory.getSession();
+        try {
+            String sql2 = "SELECT * FROM [sramp:baseArtifactType] WHERE [sramp:uuid] = '" + artifactUuid + "'"; //$NON-NLS-1$ //$NON-NLS-2$
+            Query query = session.getWorkspace().getQueryManager().createQuery(sql2, JCRConstants.JCR_SQL2);
+            NodeIterator nodes = query.execute().getNodes();
+            Assert.assertTrue(nodes.hasNext());
+            return nodes.nextNode().getIdentifier();
+        } finally {
+            JCRRepositoryFactory.logoutQuietly(session);
+        }
+    }
+
+    /**
+     * @param name
+     * @return a new (document) artifact
+     * @throws Exception
+     */
+    private BaseArtifactType createArtifact(String name) throws Exception {
+        InputStream pdf = this.getClass().getResourceAsStream("/sample-files/core/s-ramp-press-release.pdf"); //$NON-NLS-1$
+        Document document = new Document();
+        document.setName(name);
+        document.setArtifactType(BaseArtifactEnum.DOCUMENT);
+        BaseArtifactType artifact = persistenceManager.persistArtifact(document, pdf);
+        Assert.assertNotNull(artifact);
+        return artifact;
+    }
+
+}
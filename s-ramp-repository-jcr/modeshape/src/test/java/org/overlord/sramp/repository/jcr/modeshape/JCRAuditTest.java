@@ -16,9 +16,12 @@
 package org.overlord.sramp.repository.jcr.modeshape;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -322,6 +325,65 @@ public class JCRAuditTest extends AbstractAuditingJCRPersistenceTest {
         Assert.assertEquals(2, re.getAuditItem().iterator().next().getProperty().size());
     }
 
+    @Test
+    public void testAuditTrailPaging() throws Exception {
+        BaseArtifactType artifact = createArtifact(null);
+        Thread.sleep(5);
+        Date afterCreate = new Date();
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(5);
+            artifact.setDescription("Description #" + i); //$NON-NLS-1$
+            persistenceManager.updateArtifact(artifact, ArtifactType.Document());
+        }
+        Thread.sleep(5);
+        Date afterUpdates = new Date();
+
+        // All 6 entries, newest first
+        AuditEntrySet entries = auditManager.getUserAuditEntries("junituser"); //$NON-NLS-1$
+        Assert.assertEquals(6, entries.size());
+        List<String> allUuids = new ArrayList<String>();
+        long lastWhen = Long.MAX_VALUE;
+        for (AuditEntry entry : entries) {
+            allUuids.add(entry.getUuid());
+            long when = entry.getWhen().toGregorianCalendar().getTimeInMillis();
+            Assert.assertTrue(when <= lastWhen);
+            lastWhen = when;
+        }
+        entries.close();
+        Assert.assertEquals(AuditEntryTypes.ARTIFACT_ADD, auditManager.getArtifactAuditEntry(artifact.getUuid(),
+                allUuids.get(5)).getType());
+
+        // Pages
+        entries = auditManager.getUserAuditEntries("junituser", null, null, 2, 3); //$NON-NLS-1$
+        Assert.assertEquals(3, entries.size());
+        Iterator<AuditEntry> iterator = entries.iterator();
+        for (int i = 2; i < 5; i++) {
+            Assert.assertEquals(allUuids.get(i), iterator.next().getUuid());
+        }
+        entries.close();
+        entries = auditManager.getArtifactAuditEntries(artifact.getUuid(), null, null, 4, 10);
+        Assert.assertEquals(2, entries.size());
+        entries.close();
+
+        // Time ranges
+        entries = auditManager.getUserAuditEntries("junituser", afterCreate, null, 0, -1); //$NON-NLS-1$
+        Assert.assertEquals(5, entries.size());
+        entries.close();
+        entries = auditManager.getUserAuditEntries("junituser", null, afterCreate, 0, -1); //$NON-NLS-1$
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals(allUuids.get(5), entries.iterator().next().getUuid());
+        entries.close();
+        entries = auditManager.getArtifactAuditEntries(artifact.getUuid(), afterCreate, afterUpdates, 1, 2);
+        Assert.assertEquals(2, entries.size());
+        iterator = entries.iterator();
+        Assert.assertEquals(allUuids.get(1), iterator.next().getUuid());
+        Assert.assertEquals(allUuids.get(2), iterator.next().getUuid());
+        entries.close();
+        entries = auditManager.getUserAuditEntries("junituser", afterUpdates, null, 0, -1); //$NON-NLS-1$
+        Assert.assertEquals(0, entries.size());
+        entries.close();
+    }
+
     /**
      * @return a new artifact
      * @throws SrampException
@@ -16,6 +16,11 @@
 package org.overlord.sramp.repository.jcr.modeshape;
 
 import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 
 import org.junit.Assert;
 
@@ -25,7 +30,10 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
 import org.overlord.sramp.common.ArtifactType;
 import org.overlord.sramp.common.SrampException;
+import org.overlord.sramp.common.ontology.InvalidClassifiedByException;
 import org.overlord.sramp.common.ontology.SrampOntology;
+import org.overlord.sramp.repository.jcr.ClassificationHelper;
+import org.overlord.sramp.repository.jcr.JCROntologyCache;
 
 
 /**
@@ -59,6 +67,60 @@ public class JCRClassificationPersistenceTest extends AbstractNoAuditingJCRPersi
         Assert.assertEquals("urn:example.org/test2#China", artifact.getClassifiedBy().get(0)); //$NON-NLS-1$
     }
 
+    @Test
+    public void testCachedOntologies() throws Exception {
+        SrampOntology ontology = createOntology();
+        ClassificationHelper helper = (ClassificationHelper) persistenceManager;
+        JCROntologyCache cache = JCROntologyCache.getInstance();
+
+        URI china = helper.resolve("China"); //$NON-NLS-1$
+        Assert.assertEquals(new URI("urn:example.org/test2#China"), china); //$NON-NLS-1$
+        long loadCount = cache.getLoadCount();
+        Assert.assertEquals(china, helper.resolve("urn:example.org/test2#China")); //$NON-NLS-1$
+        Collection<URI> normalized = helper.normalize(china);
+        Assert.assertEquals(3, normalized.size());
+        Assert.assertTrue(normalized.contains(new URI("urn:example.org/test2#World"))); //$NON-NLS-1$
+        // Served from the cache
+        Assert.assertEquals(loadCount, cache.getLoadCount());
+
+        // Updating the ontology invalidates the cache
+        SrampOntology.Class asia = ontology.findClass("Asia"); //$NON-NLS-1$
+        asia.getChildren().add(createClass(ontology, asia, "Korea", "Korea", null)); //$NON-NLS-1$ //$NON-NLS-2$
+        persistenceManager.updateOntology(ontology);
+        Assert.assertEquals(new URI("urn:example.org/test2#Korea"), helper.resolve("Korea")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // And so does deleting it
+        persistenceManager.deleteOntology(ontology.getUuid());
+        try {
+            helper.resolve("China"); //$NON-NLS-1$
+            Assert.fail("Expected an InvalidClassifiedByException"); //$NON-NLS-1$
+        } catch (InvalidClassifiedByException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReduceClassifications() throws Exception {
+        createOntology();
+        ClassificationHelper helper = (ClassificationHelper) persistenceManager;
+        URI world = helper.resolve("World"); //$NON-NLS-1$
+        URI asia = helper.resolve("Asia"); //$NON-NLS-1$
+        URI japan = helper.resolve("Japan"); //$NON-NLS-1$
+        URI china = helper.resolve("China"); //$NON-NLS-1$
+        URI germany = helper.resolve("Germany"); //$NON-NLS-1$
+        URI unknown = new URI("urn:example.org/other#Unknown"); //$NON-NLS-1$
+
+        Collection<URI> reduced = helper.reduceToMostGeneral(Arrays.asList(japan, asia, china, germany, unknown));
+        Assert.assertEquals(new HashSet<URI>(Arrays.asList(asia, germany, unknown)), new HashSet<URI>(reduced));
+        reduced = helper.reduceToMostGeneral(Arrays.asList(japan, world, germany));
+        Assert.assertEquals(Collections.singletonList(world), reduced);
+
+        reduced = helper.reduceToMostSpecific(Arrays.asList(world, japan, asia, china, germany, unknown));
+        Assert.assertEquals(new HashSet<URI>(Arrays.asList(japan, china, germany, unknown)), new HashSet<URI>(reduced));
+        reduced = helper.reduceToMostSpecific(Arrays.asList(asia, world));
+        Assert.assertEquals(Collections.singletonList(asia), reduced);
+    }
+
 	/**
 	 * @throws SrampException
 	 */
@@ -100,6 +100,18 @@ public class JCRClassificationQueryTest extends AbstractNoAuditingJCRPersistence
 		Assert.assertNotNull(artifactSet);
 		Assert.assertEquals(2, artifactSet.size());
 
+		// Should get three artifacts - Japan is implied by Asia
+		query = queryManager.createQuery("/s-ramp/core/Document[s-ramp:classifiedByAnyOf(., 'Japan', 'Asia', 'Germany')]"); //$NON-NLS-1$
+		artifactSet = query.executeQuery();
+		Assert.assertNotNull(artifactSet);
+		Assert.assertEquals(3, artifactSet.size());
+
+		// Should get just the one classified by Japan - World and Asia are implied by it
+		query = queryManager.createQuery("/s-ramp/core/Document[s-ramp:classifiedByAllOf(., 'World', 'Japan', 'Asia')]"); //$NON-NLS-1$
+		artifactSet = query.executeQuery();
+		Assert.assertNotNull(artifactSet);
+		Assert.assertEquals(1, artifactSet.size());
+
 	}
 
 	/**
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.modeshape;
+
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.DocumentArtifactType;
+import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.repository.query.ArtifactSet;
+import org.overlord.sramp.repository.query.SrampQuery;
+
+/**
+ * Tests finding artifacts with duplicate content (the s-ramp:duplicateContent() function).
+ */
+public class JCRDuplicateContentTest extends AbstractNoAuditingJCRPersistenceTest {
+
+    @Test
+    public void testDuplicateContent() throws Exception {
+        DocumentArtifactType doc1 = (DocumentArtifactType) persistenceManager.persistArtifact(
+                createDocument("s-ramp-press-release.pdf"), getContent("s-ramp-press-release.pdf")); //$NON-NLS-1$ //$NON-NLS-2$
+        DocumentArtifactType doc2 = (DocumentArtifactType) persistenceManager.persistArtifact(
+                createDocument("s-ramp-press-release.pdf"), getContent("s-ramp-press-release.pdf")); //$NON-NLS-1$ //$NON-NLS-2$
+        DocumentArtifactType doc3 = (DocumentArtifactType) persistenceManager.persistArtifact(
+                createDocument("s-ramp-press-release.pdf"), getContent("s-ramp-press-release.pdf")); //$NON-NLS-1$ //$NON-NLS-2$
+        persistenceManager.persistArtifact(createDocument("PO.xml"), getContent("PO.xml")); //$NON-NLS-1$ //$NON-NLS-2$
+        Assert.assertNotNull(doc1.getContentHash());
+        Assert.assertEquals(doc1.getContentHash(), doc2.getContentHash());
+
+        // Each copy is found once, the unique document not at all
+        Set<String> duplicates = findDuplicates();
+        Assert.assertEquals(3, duplicates.size());
+        Assert.assertTrue(duplicates.contains(doc1.getUuid()));
+        Assert.assertTrue(duplicates.contains(doc2.getUuid()));
+        Assert.assertTrue(duplicates.contains(doc3.getUuid()));
+
+        // Deleted artifacts are not duplicates (nor do they count as copies)
+        persistenceManager.deleteArtifact(doc1.getUuid(), ArtifactType.Document());
+        persistenceManager.deleteArtifact(doc2.getUuid(), ArtifactType.Document());
+        Assert.assertTrue(findDuplicates().isEmpty());
+    }
+
+    @Test
+    public void testUpdatedContent() throws Exception {
+        DocumentArtifactType doc1 = (DocumentArtifactType) persistenceManager.persistArtifact(
+                createDocument("PO.xml"), getContent("PO.xml")); //$NON-NLS-1$ //$NON-NLS-2$
+        DocumentArtifactType doc2 = (DocumentArtifactType) persistenceManager.persistArtifact(
+                createDocument("s-ramp-press-release.pdf"), getContent("s-ramp-press-release.pdf")); //$NON-NLS-1$ //$NON-NLS-2$
+        Assert.assertTrue(findDuplicates().isEmpty());
+
+        persistenceManager.updateArtifactContent(doc2.getUuid(), ArtifactType.Document(), getContent("PO.xml")); //$NON-NLS-1$
+        Set<String> duplicates = findDuplicates();
+        Assert.assertEquals(2, duplicates.size());
+        Assert.assertTrue(duplicates.contains(doc1.getUuid()));
+        Assert.assertTrue(duplicates.contains(doc2.getUuid()));
+    }
+
+    /**
+     * Returns the UUIDs of the documents with duplicate content.
+     * @throws Exception
+     */
+    private Set<String> findDuplicates() throws Exception {
+        SrampQuery query = queryManager.createQuery("/s-ramp/core/Document[s-ramp:duplicateContent()]"); //$NON-NLS-1$
+        ArtifactSet artifactSet = query.executeQuery();
+        try {
+            Set<String> uuids = new HashSet<String>();
+            for (BaseArtifactType artifact : artifactSet) {
+                Assert.assertTrue(uuids.add(artifact.getUuid()));
+            }
+            return uuids;
+        } finally {
+            artifactSet.close();
+        }
+    }
+
+    /**
+     * Creates a simple document artifact.
+     * @param name
+     */
+    private Document createDocument(String name) {
+        Document document = new Document();
+        document.setName(name);
+        document.setArtifactType(BaseArtifactEnum.DOCUMENT);
+        return document;
+    }
+
+    /**
+     * Gets the content of the given sample document.
+     * @param name
+     */
+    private InputStream getContent(String name) {
+        return this.getClass().getResourceAsStream("/sample-files/core/" + name); //$NON-NLS-1$
+    }
+
+}
@@ -20,6 +20,10 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.jcr.Node;
+import javax.jcr.Session;
+import javax.jcr.Value;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
@@ -34,7 +38,11 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdDocument;
 import org.overlord.sramp.common.ArtifactAlreadyExistsException;
 import org.overlord.sramp.common.ArtifactNotFoundException;
 import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.common.SrampConstants;
 import org.overlord.sramp.common.SrampModelUtils;
+import org.overlord.sramp.repository.jcr.JCRConstants;
+import org.overlord.sramp.repository.jcr.JCRRepositoryFactory;
+import org.overlord.sramp.repository.jcr.MapToJCRPath;
 import org.overlord.sramp.repository.query.ArtifactSet;
 import org.overlord.sramp.repository.query.SrampQuery;
 
@@ -515,6 +523,74 @@ public class JCRPersistenceTest extends AbstractNoAuditingJCRPersistenceTest {
 		}
     }
 
+    /**
+     * Tests that the target UUIDs of a relationship are stored alongside the references, and
+     * that relationships are still read correctly when they aren't.
+     * @throws Exception
+     */
+    @Test
+    public void testRelationshipTargetUuids() throws Exception {
+        ArtifactType type = ArtifactType.ExtendedArtifactType("FooArtifactType", false); //$NON-NLS-1$
+        BaseArtifactType target = persistenceManager.persistArtifact(createExtendedArtifact("Target"), null); //$NON-NLS-1$
+        BaseArtifactType source = persistenceManager.persistArtifact(createExtendedArtifact("Source"), null); //$NON-NLS-1$
+        SrampModelUtils.addGenericRelationship(source, "TargetedRelationship", target.getUuid()); //$NON-NLS-1$
+        persistenceManager.updateArtifact(source, type);
+        Assert.assertArrayEquals(new String[] { target.getUuid() }, getRelationshipTargetUuids(source.getUuid(), "TargetedRelationship")); //$NON-NLS-1$
+
+        System.setProperty(SrampConstants.SRAMP_CONFIG_JCR_RELATIONSHIP_TARGET_UUIDS, "false"); //$NON-NLS-1$
+        try {
+            source = persistenceManager.getArtifact(source.getUuid(), type);
+            persistenceManager.updateArtifact(source, type);
+            Assert.assertNull(getRelationshipTargetUuids(source.getUuid(), "TargetedRelationship")); //$NON-NLS-1$
+        } finally {
+            System.clearProperty(SrampConstants.SRAMP_CONFIG_JCR_RELATIONSHIP_TARGET_UUIDS);
+        }
+
+        source = persistenceManager.getArtifact(source.getUuid(), type);
+        Relationship relationship = SrampModelUtils.getGenericRelationship(source, "TargetedRelationship"); //$NON-NLS-1$
+        Assert.assertNotNull(relationship);
+        Assert.assertEquals(1, relationship.getRelationshipTarget().size());
+        Assert.assertEquals(target.getUuid(), relationship.getRelationshipTarget().get(0).getValue());
+    }
+
+    /**
+     * Gets the target UUIDs stored on the given (generic) relationship of an artifact.
+     * @param uuid
+     * @param relationshipType
+     * @return the target UUIDs, or null if none are stored
+     * @throws Exception
+     */
+    private String[] getRelationshipTargetUuids(String uuid, String relationshipType) throws Exception {
+        Session session = JCRRepositoryFactory.getSession();
+        try {
+            Node relationshipNode = session.getNode(MapToJCRPath.getArtifactPath(uuid)).getNode(
+                    "sramp-relationships:" + relationshipType); //$NON-NLS-1$
+            if (!relationshipNode.hasProperty(JCRConstants.SRAMP_RELATIONSHIP_TARGET_UUID)) {
+                return null;
+            }
+            Value[] values = relationshipNode.getProperty(JCRConstants.SRAMP_RELATIONSHIP_TARGET_UUID).getValues();
+            String[] uuids = new String[values.length];
+            for (int idx = 0; idx < values.length; idx++) {
+                uuids[idx] = values[idx].getString();
+            }
+            return uuids;
+        } finally {
+            JCRRepositoryFactory.logoutQuietly(session);
+        }
+    }
+
+    /**
+     * Creates a simple extended artifact.
+     * @param name
+     */
+    private ExtendedArtifactType createExtendedArtifact(String name) {
+        ExtendedArtifactType extendedArtifact = new ExtendedArtifactType();
+        extendedArtifact.setArtifactType(BaseArtifactEnum.EXTENDED_ARTIFACT_TYPE);
+        extendedArtifact.setExtendedType("FooArtifactType"); //$NON-NLS-1$
+        extendedArtifact.setName(name);
+        return extendedArtifact;
+    }
+
     @Test
     public void testDeleteArtifact() throws Exception {
         String artifactFileName = "s-ramp-press-release.pdf"; //$NON-NLS-1$
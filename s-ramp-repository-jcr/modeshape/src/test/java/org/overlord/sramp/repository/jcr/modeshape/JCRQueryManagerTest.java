@@ -16,6 +16,7 @@
 package org.overlord.sramp.repository.jcr.modeshape;
 
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Date;
 import java.util.UUID;
 
@@ -28,7 +29,10 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
 import org.overlord.sramp.common.ArtifactType;
 import org.overlord.sramp.common.SrampException;
 import org.overlord.sramp.common.SrampModelUtils;
+import org.overlord.sramp.repository.jcr.query.JCRCompiledQuery;
+import org.overlord.sramp.repository.jcr.query.JCRSrampQuery;
 import org.overlord.sramp.repository.query.ArtifactSet;
+import org.overlord.sramp.repository.query.QueryCache;
 import org.overlord.sramp.repository.query.SrampQuery;
 
 
@@ -175,6 +179,82 @@ public class JCRQueryManagerTest extends AbstractNoAuditingJCRPersistenceTest {
 
     }
 
+    /**
+     * Tests querying for artifact summaries.
+     * @throws Exception
+     */
+    @Test
+    public void testSummaryProjection() throws Exception {
+        BaseArtifactType artifact1 = createDocument(1);
+        BaseArtifactType artifact2 = createDocument(2);
+        SrampModelUtils.setCustomProperty(artifact1, "prop1", "value1"); //$NON-NLS-1$ //$NON-NLS-2$
+        SrampModelUtils.setCustomProperty(artifact1, "prop2", "value2"); //$NON-NLS-1$ //$NON-NLS-2$
+        SrampModelUtils.addGenericRelationship(artifact1, "similarTo", artifact2.getUuid()); //$NON-NLS-1$
+        persistenceManager.updateArtifact(artifact1, ArtifactType.Document());
+
+        SrampQuery query = queryManager.createQuery("/s-ramp/core/Document[@uuid = ?]"); //$NON-NLS-1$
+        query.setString(artifact1.getUuid());
+        query.setSummaryProjection(Collections.singleton("prop1")); //$NON-NLS-1$
+        ArtifactSet artifactSet = query.executeQuery();
+        try {
+            Document found = (Document) artifactSet.iterator().next();
+            Assert.assertEquals(artifact1.getUuid(), found.getUuid());
+            Assert.assertEquals(artifact1.getName(), found.getName());
+            Assert.assertEquals(artifact1.getVersion(), found.getVersion());
+            Assert.assertEquals(BaseArtifactEnum.DOCUMENT, found.getArtifactType());
+            Assert.assertNotNull(found.getCreatedTimestamp());
+            Assert.assertNotNull(found.getLastModifiedTimestamp());
+            Assert.assertEquals(((Document) artifact1).getContentType(), found.getContentType());
+            // Only the requested custom property, and no relationships
+            Assert.assertEquals(1, found.getProperty().size());
+            Assert.assertEquals("value1", SrampModelUtils.getCustomProperty(found, "prop1")); //$NON-NLS-1$ //$NON-NLS-2$
+            Assert.assertTrue(found.getRelationship().isEmpty());
+        } finally {
+            artifactSet.close();
+        }
+    }
+
+    /**
+     * Tests that query templates are compiled once, and executed with bound params.
+     * @throws Exception
+     */
+    @Test
+    public void testCompiledQueries() throws Exception {
+        BaseArtifactType artifact1 = createDocument(1);
+        BaseArtifactType artifact2 = createDocument(2);
+        SrampModelUtils.setCustomProperty(artifact1, "prop1", "it's a value"); //$NON-NLS-1$ //$NON-NLS-2$
+        persistenceManager.updateArtifact(artifact1, ArtifactType.Document());
+
+        QueryCache<JCRCompiledQuery> cache = JCRSrampQuery.getCompiledQueryCache();
+        String template = "/s-ramp/core/Document[@uuid = ? or fn:matches(@prop1, ?)]"; //$NON-NLS-1$
+        long hits = cache.getHitCount();
+        for (BaseArtifactType artifact : new BaseArtifactType[] { artifact1, artifact2 }) {
+            SrampQuery query = queryManager.createQuery(template);
+            query.setString(artifact.getUuid());
+            query.setString("nomatches.*"); //$NON-NLS-1$
+            ArtifactSet artifactSet = query.executeQuery();
+            try {
+                Assert.assertEquals(1, artifactSet.size());
+                Assert.assertEquals(artifact.getUuid(), artifactSet.iterator().next().getUuid());
+            } finally {
+                artifactSet.close();
+            }
+        }
+        Assert.assertTrue(cache.getHitCount() > hits);
+
+        // Quotes in the params are not a problem
+        SrampQuery query = queryManager.createQuery(template);
+        query.setString("nomatches"); //$NON-NLS-1$
+        query.setString("it's.*"); //$NON-NLS-1$
+        ArtifactSet artifactSet = query.executeQuery();
+        try {
+            Assert.assertEquals(1, artifactSet.size());
+            Assert.assertEquals(artifact1.getUuid(), artifactSet.iterator().next().getUuid());
+        } finally {
+            artifactSet.close();
+        }
+    }
+
 	/**
 	 * @throws SrampException
 	 */
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.modeshape;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
+import org.overlord.sramp.repository.query.ArtifactSet;
+import org.overlord.sramp.repository.query.InvalidQueryException;
+import org.overlord.sramp.repository.query.SrampQuery;
+
+/**
+ * Tests paging through query results with limits, offsets and continuation tokens.
+ */
+public class JCRQueryPagingTest extends AbstractNoAuditingJCRPersistenceTest {
+
+    private static final String QUERY = "/s-ramp/core/Document"; //$NON-NLS-1$
+
+    @Test
+    public void testOffsetAndLimit() throws Exception {
+        createDocuments("doc-3", "doc-1", "doc-4", "doc-0", "doc-2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+        SrampQuery query = queryManager.createQuery(QUERY, "name", true); //$NON-NLS-1$
+        query.setOffset(1);
+        query.setLimit(3);
+        List<String> names = new ArrayList<String>();
+        ArtifactSet artifactSet = query.executeQuery();
+        try {
+            for (BaseArtifactType artifact : artifactSet) {
+                names.add(artifact.getName());
+            }
+        } finally {
+            artifactSet.close();
+        }
+        Assert.assertEquals("[doc-1, doc-2, doc-3]", names.toString()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testContinuation() throws Exception {
+        // Includes duplicate names, to make sure the uuid breaks the ties
+        createDocuments("doc-3", "doc-1", "doc-4", "doc-1", "doc-0", "doc-2", "doc-1"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+
+        Assert.assertEquals("[doc-0, doc-1, doc-1, doc-1, doc-2, doc-3, doc-4]", //$NON-NLS-1$
+                pageThrough("name", true).toString()); //$NON-NLS-1$
+        Assert.assertEquals("[doc-4, doc-3, doc-2, doc-1, doc-1, doc-1, doc-0]", //$NON-NLS-1$
+                pageThrough("name", false).toString()); //$NON-NLS-1$
+        Assert.assertEquals(7, pageThrough("createdTimestamp", true).size()); //$NON-NLS-1$
+        // Falls back to offsets when the order-by property is not set
+        Assert.assertEquals(7, pageThrough("version", true).size()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        createDocuments("doc-3", "doc-1", "doc-4", "doc-0", "doc-2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+        SrampQuery query = queryManager.createQuery(QUERY, "name", true); //$NON-NLS-1$
+        ArtifactSet artifactSet = query.executeQuery();
+        String token = null;
+        try {
+            Assert.assertEquals(3, artifactSet.skip(3));
+            Assert.assertEquals("doc-3", artifactSet.iterator().next().getName()); //$NON-NLS-1$
+            token = artifactSet.getContinuationToken();
+            Assert.assertEquals(1, artifactSet.skip(10));
+        } finally {
+            artifactSet.close();
+        }
+
+        query = queryManager.createQuery(QUERY, "name", true); //$NON-NLS-1$
+        query.setContinuationToken(token);
+        artifactSet = query.executeQuery();
+        try {
+            Assert.assertEquals("doc-4", artifactSet.iterator().next().getName()); //$NON-NLS-1$
+        } finally {
+            artifactSet.close();
+        }
+
+        // The token can't be used with a different ordering
+        query = queryManager.createQuery(QUERY, "name", false); //$NON-NLS-1$
+        query.setContinuationToken(token);
+        try {
+            query.executeQuery().close();
+            Assert.fail("Expected an InvalidQueryException"); //$NON-NLS-1$
+        } catch (InvalidQueryException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Pages through all documents, two at a time, following the continuation tokens.
+     * @param orderBy
+     * @param ascending
+     * @return the names of the documents, in order
+     * @throws Exception
+     */
+    private List<String> pageThrough(String orderBy, boolean ascending) throws Exception {
+        List<String> names = new ArrayList<String>();
+        String token = null;
+        do {
+            SrampQuery query = queryManager.createQuery(QUERY, orderBy, ascending);
+            query.setContinuationToken(token);
+            query.setLimit(2);
+            ArtifactSet artifactSet = query.executeQuery();
+            try {
+                for (BaseArtifactType artifact : artifactSet) {
+                    names.add(artifact.getName());
+                }
+                token = artifactSet.getContinuationToken();
+            } finally {
+                artifactSet.close();
+            }
+            Assert.assertTrue(names.size() <= 7);
+        } while (token != null);
+        return names;
+    }
+
+    /**
+     * Creates documents with the given names.
+     * @param names
+     * @throws Exception
+     */
+    private void createDocuments(String ... names) throws Exception {
+        for (String name : names) {
+            Document document = new Document();
+            document.setName(name);
+            document.setArtifactType(BaseArtifactEnum.DOCUMENT);
+            InputStream content = this.getClass().getResourceAsStream("/sample-files/core/s-ramp-press-release.pdf"); //$NON-NLS-1$
+            persistenceManager.persistArtifact(document, content);
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.modeshape;
+
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
+import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.repository.UnitOfWork;
+import org.overlord.sramp.repository.query.ArtifactSet;
+import org.overlord.sramp.repository.query.SrampQuery;
+
+/**
+ * Tests running persistence operations within a {@link UnitOfWork}.
+ */
+public class JCRUnitOfWorkTest extends AbstractNoAuditingJCRPersistenceTest {
+
+    @Test
+    public void testCommit() throws Exception {
+        String uuid = null;
+        UnitOfWork uow = UnitOfWork.begin();
+        try {
+            BaseArtifactType artifact = persistenceManager.persistArtifact(createDocument(), getContent());
+            uuid = artifact.getUuid();
+            artifact.setDescription("Updated within the unit of work."); //$NON-NLS-1$
+            persistenceManager.updateArtifact(artifact, ArtifactType.Document());
+
+            // Reads within the unit of work see the changes
+            artifact = persistenceManager.getArtifact(uuid, ArtifactType.Document());
+            Assert.assertNotNull(artifact);
+            Assert.assertEquals("Updated within the unit of work.", artifact.getDescription()); //$NON-NLS-1$
+
+            // Queries within the unit of work see the changes too
+            SrampQuery query = queryManager.createQuery("/s-ramp[@uuid = ?]"); //$NON-NLS-1$
+            query.setString(uuid);
+            ArtifactSet artifactSet = query.executeQuery();
+            try {
+                Assert.assertEquals(1, artifactSet.size());
+            } finally {
+                artifactSet.close();
+            }
+
+            uow.commit();
+        } finally {
+            uow.end();
+        }
+
+        BaseArtifactType artifact = persistenceManager.getArtifact(uuid, ArtifactType.Document());
+        Assert.assertNotNull(artifact);
+        Assert.assertEquals("Updated within the unit of work.", artifact.getDescription()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testEndWithoutCommit() throws Exception {
+        String uuid = null;
+        UnitOfWork uow = UnitOfWork.begin();
+        try {
+            BaseArtifactType artifact = persistenceManager.persistArtifact(createDocument(), getContent());
+            uuid = artifact.getUuid();
+            Assert.assertNotNull(persistenceManager.getArtifact(uuid, ArtifactType.Document()));
+        } finally {
+            uow.end();
+        }
+
+        Assert.assertNull(persistenceManager.getArtifact(uuid, ArtifactType.Document()));
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        String uuid = null;
+        String discardedUuid = null;
+        UnitOfWork uow = UnitOfWork.begin();
+        try {
+            BaseArtifactType artifact = persistenceManager.persistArtifact(createDocument(), getContent());
+            uuid = artifact.getUuid();
+            uow.commit();
+
+            // A failed operation is rolled back, and the request carries on
+            artifact.setDescription("Rolled back."); //$NON-NLS-1$
+            persistenceManager.updateArtifact(artifact, ArtifactType.Document());
+            discardedUuid = persistenceManager.persistArtifact(createDocument(), getContent()).getUuid();
+            uow.rollback();
+
+            Assert.assertNull(persistenceManager.getArtifact(uuid, ArtifactType.Document()).getDescription());
+            Assert.assertNull(persistenceManager.getArtifact(discardedUuid, ArtifactType.Document()));
+            uow.commit();
+        } finally {
+            uow.end();
+        }
+
+        Assert.assertNull(persistenceManager.getArtifact(uuid, ArtifactType.Document()).getDescription());
+        Assert.assertNull(persistenceManager.getArtifact(discardedUuid, ArtifactType.Document()));
+    }
+
+    /**
+     * Creates a simple document artifact.
+     */
+    private Document createDocument() {
+        Document document = new Document();
+        document.setName("s-ramp-press-release.pdf"); //$NON-NLS-1$
+        document.setArtifactType(BaseArtifactEnum.DOCUMENT);
+        return document;
+    }
+
+    /**
+     * Gets the content of the document.
+     */
+    private InputStream getContent() {
+        return this.getClass().getResourceAsStream("/sample-files/core/s-ramp-press-release.pdf"); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.modeshape;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.WsdlDocument;
+import org.overlord.sramp.repository.PersistenceManager.BatchItem;
+
+/**
+ * Measures WSDL ingest throughput (single artifacts and batches).  This is not run as
+ * part of the normal build (the class name does not match the surefire includes) - run
+ * it explicitly, e.g.:
+ * <pre>
+ *   mvn test -Dtest=JCRWsdlIngestBenchmark -Dsramp.benchmark.iterations=200
+ * </pre>
+ * Run it against the old and new code to compare.
+ */
+public class JCRWsdlIngestBenchmark extends AbstractNoAuditingJCRPersistenceTest {
+
+    private static final String WSDL_RESOURCE = "/sample-files/wsdl/jcr-sample.wsdl"; //$NON-NLS-1$
+    private static final int ITERATIONS = Integer.getInteger("sramp.benchmark.iterations", 50); //$NON-NLS-1$
+    private static final int BATCH_SIZE = 10;
+
+    @Test
+    public void benchmarkSingleIngest() throws Exception {
+        // Warm up
+        persistenceManager.persistArtifact(createWsdlDocument(), getContent());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            BaseArtifactType artifact = persistenceManager.persistArtifact(createWsdlDocument(), getContent());
+            Assert.assertNotNull(artifact);
+        }
+        report("single", ITERATIONS, System.nanoTime() - start); //$NON-NLS-1$
+    }
+
+    @Test
+    public void benchmarkBatchIngest() throws Exception {
+        int batches = Math.max(1, ITERATIONS / BATCH_SIZE);
+        long start = System.nanoTime();
+        for (int b = 0; b < batches; b++) {
+            List<BatchItem> items = new ArrayList<BatchItem>();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                items.add(new BatchItem("item-" + i, createWsdlDocument(), getContent())); //$NON-NLS-1$
+            }
+            List<Object> results = persistenceManager.persistBatch(items);
+            for (Object result : results) {
+                Assert.assertTrue(String.valueOf(result), result instanceof BaseArtifactType);
+            }
+        }
+        report("batch", batches * BATCH_SIZE, System.nanoTime() - start); //$NON-NLS-1$
+    }
+
+    /**
+     * Logs the throughput.
+     * @param label
+     * @param count
+     * @param elapsedNanos
+     */
+    private void report(String label, int count, long elapsedNanos) {
+        double seconds = elapsedNanos / 1000000000d;
+        log.info(String.format("WSDL ingest (%1$s): %2$d artifacts in %3$.2fs = %4$.1f artifacts/s", //$NON-NLS-1$
+                label, count, seconds, count / seconds));
+    }
+
+    /**
+     * Creates the meta-data for a new WSDL document.
+     */
+    private WsdlDocument createWsdlDocument() {
+        WsdlDocument document = new WsdlDocument();
+        document.setName("jcr-sample.wsdl"); //$NON-NLS-1$
+        document.setArtifactType(BaseArtifactEnum.WSDL_DOCUMENT);
+        return document;
+    }
+
+    /**
+     * Gets the WSDL content.
+     */
+    private InputStream getContent() {
+        return getClass().getResourceAsStream(WSDL_RESOURCE);
+    }
+
+}
@@ -61,12 +61,45 @@ public class AbstractJCRManager {
     /**
      * Utility method to find an s-ramp artifact node by its UUID.  Returns null if
      * not found.  Throws an exception if too many JCR nodes are found with the given
-     * UUID.
+     * UUID.  The {@link JCRArtifactNodeIndex} is consulted first - the (much more
+     * expensive) query is only run when the index misses.
      * @param session
      * @param artifactUuid
      * @throws Exception
      */
     protected static Node findArtifactNodeByUuid(Session session, String artifactUuid) throws Exception {
+        Node node = JCRArtifactNodeIndex.getInstance().find(session, artifactUuid);
+        if (node == null) {
+            JCRRepositoryFactory.flush(session);
+            node = queryArtifactNodeByUuid(session, artifactUuid);
+        }
+        return node;
+    }
+
+    /**
+     * Same as {@link #findArtifactNodeByUuid(Session, String)} except that changes deferred
+     * in a unit of work session are not flushed first - so if the index misses, only artifacts
+     * that have already been saved will be found.
+     * @param session
+     * @param artifactUuid
+     * @throws Exception
+     */
+    protected static Node findSavedArtifactNodeByUuid(Session session, String artifactUuid) throws Exception {
+        Node node = JCRArtifactNodeIndex.getInstance().find(session, artifactUuid);
+        if (node == null) {
+            node = queryArtifactNodeByUuid(session, artifactUuid);
+        }
+        return node;
+    }
+
+    /**
+     * Queries for the s-ramp artifact node with the given UUID, adding it to the
+     * {@link JCRArtifactNodeIndex} when found.
+     * @param session
+     * @param artifactUuid
+     * @throws Exception
+     */
+    private static Node queryArtifactNodeByUuid(Session session, String artifactUuid) throws Exception {
         javax.jcr.query.QueryManager jcrQueryManager = session.getWorkspace().getQueryManager();
         String jcrSql2Query = String.format("SELECT * FROM [sramp:baseArtifactType] WHERE [sramp:uuid] = '%1$s'", artifactUuid); //$NON-NLS-1$
         jcrSql2Query += JCRConstants.NOT_DELETED_FILTER;
@@ -80,6 +113,7 @@ public class AbstractJCRManager {
             throw new Exception(Messages.i18n.format("TOO_MANY_ARTIFACTS", artifactUuid)); //$NON-NLS-1$
         }
         Node node = jcrNodes.nextNode();
+        JCRArtifactNodeIndex.getInstance().put(artifactUuid, node);
         return node;
     }
 
@@ -69,4 +69,24 @@ public interface ClassificationHelper {
 	 */
 	public Collection<URI> normalizeAll(Collection<URI> classifications) throws SrampException;
 
+	/**
+	 * Reduces the classification URIs to the most general ones: any classification that
+	 * is a descendant of another one in the collection is dropped.  An artifact classified
+	 * by (a descendant of) any of the given classifications is also classified by (a
+	 * descendant of) any of the reduced ones, and vice versa.
+	 * @param classifications
+	 * @throws SrampException
+	 */
+	public Collection<URI> reduceToMostGeneral(Collection<URI> classifications) throws SrampException;
+
+	/**
+	 * Reduces the classification URIs to the most specific ones: any classification that
+	 * is an ancestor of another one in the collection is dropped.  An artifact classified
+	 * by (descendants of) all of the given classifications is also classified by
+	 * (descendants of) all of the reduced ones, and vice versa.
+	 * @param classifications
+	 * @throws SrampException
+	 */
+	public Collection<URI> reduceToMostSpecific(Collection<URI> classifications) throws SrampException;
+
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.overlord.sramp.common.Sramp;
+
+/**
+ * An in-memory index that maps S-RAMP artifact uuids to JCR node identifiers, so that
+ * artifact nodes (in particular derived artifacts, which do not live at a path computed
+ * from their uuid) can be found with a single identifier lookup rather than a JCR-SQL2
+ * query.  The index is filled as artifacts are persisted and found, and is bounded (least
+ * recently used entries are dropped first).
+ * <br/><br/>
+ * Entries are only hints: every node found through the index is checked (it must still
+ * exist, have the expected uuid, and not be in the trash) and stale entries are simply
+ * dropped - callers then fall back to querying.
+ */
+public class JCRArtifactNodeIndex {
+
+    private static JCRArtifactNodeIndex instance;
+
+    /**
+     * Gets the shared index, creating it if necessary.
+     */
+    public static synchronized JCRArtifactNodeIndex getInstance() {
+        if (instance == null) {
+            instance = new JCRArtifactNodeIndex(new Sramp().getJcrNodeIndexMaxSize());
+        }
+        return instance;
+    }
+
+    /**
+     * Discards the shared index.
+     */
+    public static synchronized void destroy() {
+        instance = null;
+    }
+
+    private final int maxSize;
+    private final Map<String, String> identifiers;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum number of entries (0 disables the index)
+     */
+    public JCRArtifactNodeIndex(final int maxSize) {
+        this.maxSize = maxSize;
+        this.identifiers = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Finds the artifact node with the given uuid using the index.
+     * @param session
+     * @param uuid
+     * @return the node, or null if the uuid is not indexed (or the entry was stale)
+     * @throws RepositoryException
+     */
+    public Node find(Session session, String uuid) throws RepositoryException {
+        String identifier;
+        synchronized (identifiers) {
+            identifier = identifiers.get(uuid);
+        }
+        if (identifier == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        Node node = null;
+        try {
+            node = session.getNodeByIdentifier(identifier);
+        } catch (ItemNotFoundException e) {
+            node = null;
+        }
+        if (node == null || !isLiveArtifactNode(node, uuid)) {
+            remove(uuid);
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return node;
+    }
+
+    /**
+     * Adds (or replaces) the index entry for the given artifact node.
+     * @param uuid
+     * @param node
+     * @throws RepositoryException
+     */
+    public void put(String uuid, Node node) throws RepositoryException {
+        if (maxSize <= 0) {
+            return;
+        }
+        String identifier = node.getIdentifier();
+        synchronized (identifiers) {
+            identifiers.put(uuid, identifier);
+        }
+    }
+
+    /**
+     * Adds index entries for all of the given (just saved) artifacts.
+     * @param pendingArtifacts
+     * @throws RepositoryException
+     */
+    public void putAll(JCRPendingArtifacts pendingArtifacts) throws RepositoryException {
+        for (Node node : pendingArtifacts.getNodes()) {
+            put(node.getProperty(JCRConstants.SRAMP_UUID).getString(), node);
+        }
+    }
+
+    /**
+     * Removes the index entry for the given artifact.
+     * @param uuid
+     */
+    public void remove(String uuid) {
+        synchronized (identifiers) {
+            identifiers.remove(uuid);
+        }
+    }
+
+    /**
+     * @return the number of entries in the index
+     */
+    public int size() {
+        synchronized (identifiers) {
+            return identifiers.size();
+        }
+    }
+
+    /**
+     * @return the number of lookups answered by the index
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups that had to fall back to a query
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns true if the node is an artifact with the given uuid that has not been
+     * deleted (moved to the trash).  This mirrors the checks done by the uuid query.
+     * @param node
+     * @param uuid
+     * @throws RepositoryException
+     */
+    private static boolean isLiveArtifactNode(Node node, String uuid) throws RepositoryException {
+        if (!node.getPath().startsWith(JCRConstants.ROOT_PATH + "/")) { //$NON-NLS-1$
+            return false;
+        }
+        return node.hasProperty(JCRConstants.SRAMP_UUID)
+                && uuid.equals(node.getProperty(JCRConstants.SRAMP_UUID).getString());
+    }
+
+}
@@ -19,9 +19,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Calendar;
 import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
-import java.util.Map.Entry;
 
 import javax.jcr.Binary;
 import javax.jcr.Node;
@@ -32,7 +33,6 @@ import javax.jcr.lock.LockException;
 import javax.jcr.nodetype.ConstraintViolationException;
 import javax.jcr.version.VersionException;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -51,11 +51,15 @@ import org.overlord.sramp.common.audit.AuditEntryTypes;
 import org.overlord.sramp.common.audit.AuditItemTypes;
 import org.overlord.sramp.common.derived.LinkerContext;
 import org.overlord.sramp.common.visitors.ArtifactVisitorHelper;
+import org.overlord.sramp.repository.DerivedArtifacts;
 import org.overlord.sramp.repository.DerivedArtifactsFactory;
 import org.overlord.sramp.repository.jcr.audit.ArtifactDiff;
 import org.overlord.sramp.repository.jcr.audit.ArtifactJCRNodeDiffer;
+import org.overlord.sramp.repository.jcr.audit.PendingAuditEntry;
 import org.overlord.sramp.repository.jcr.i18n.Messages;
 import org.overlord.sramp.repository.jcr.mapper.ArtifactToJCRNodeVisitor;
+import org.overlord.sramp.repository.jcr.util.DigestingInputStream;
+import org.overlord.sramp.repository.jcr.util.JCRBinaryInputStream;
 import org.overlord.sramp.repository.jcr.util.JCRUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,16 +76,19 @@ public final class JCRArtifactPersister {
 
     /**
      * Phase one of persisting an artifact consists of creating the JCR node for the artifact and
-     * persisting all of its meta-data to it.
+     * persisting all of its meta-data to it.  None of the phases save the session - the caller
+     * saves once, after all phases are complete.  The new artifact node is added to the given
+     * pending artifacts so that the later phases can find it.
      * @param session
      * @param metaData
      * @param content
-     * @param referenceFactory
      * @param classificationHelper
+     * @param pendingArtifacts
      * @throws Exception
      */
     public static Phase1Result persistArtifactPhase1(Session session, BaseArtifactType metaData,
-            InputStream content, ClassificationHelper classificationHelper) throws Exception {
+            InputStream content, ClassificationHelper classificationHelper,
+            JCRPendingArtifacts pendingArtifacts) throws Exception {
         JCRUtils tools = new JCRUtils();
         if (metaData.getUuid() == null) {
             metaData.setUuid(UUID.randomUUID().toString());
@@ -96,55 +103,66 @@ public final class JCRArtifactPersister {
         log.debug(Messages.i18n.format("UPLOADING_TO_JCR", name)); //$NON-NLS-1$
 
         Node artifactNode = null;
+        DigestingInputStream digestingContent = null;
         boolean isDocumentArtifact = SrampModelUtils.isDocumentArtifact(metaData);
         if (content == null && !isDocumentArtifact) {
             artifactNode = tools.findOrCreateNode(session, artifactPath, "nt:folder", JCRConstants.SRAMP_NON_DOCUMENT_TYPE); //$NON-NLS-1$
         } else {
+            // Compute the content hash and size as the content is uploaded
+            if (content != null) {
+                digestingContent = new DigestingInputStream(content, DigestingInputStream.SHA1);
+                content = digestingContent;
+            }
             artifactNode = tools.uploadFile(session, artifactPath, content);
             JCRUtils.setArtifactContentMimeType(artifactNode, artifactType.getMimeType());
         }
 
-        String jcrMixinName = artifactType.getArtifactType().getApiType().value();
-        jcrMixinName = JCRConstants.SRAMP_ + StringUtils.uncapitalize(jcrMixinName);
-        artifactNode.addMixin(jcrMixinName);
-        // BaseArtifactType
-        artifactNode.setProperty(JCRConstants.SRAMP_UUID, uuid);
-        artifactNode.setProperty(JCRConstants.SRAMP_ARTIFACT_MODEL, artifactType.getArtifactType().getModel());
-        artifactNode.setProperty(JCRConstants.SRAMP_ARTIFACT_TYPE, artifactType.getArtifactType().getType());
-        // Extended
-        if (ExtendedArtifactType.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
-            artifactNode.setProperty(JCRConstants.SRAMP_EXTENDED_TYPE, artifactType.getExtendedType());
-        }
-        // Extended Document
-        if (ExtendedDocument.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
-            artifactNode.setProperty(JCRConstants.SRAMP_EXTENDED_TYPE, artifactType.getExtendedType());
-        }
-        // Document
-        if (DocumentArtifactType.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
-            artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_TYPE, artifactType.getMimeType());
-            artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_SIZE, artifactNode.getProperty("jcr:content/jcr:data").getLength()); //$NON-NLS-1$
-            String shaHex = DigestUtils.shaHex(artifactNode.getProperty("jcr:content/jcr:data").getBinary().getStream()); //$NON-NLS-1$
-            artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_HASH, shaHex);
-        }
-        // XMLDocument
-        if (XmlDocument.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
-            // read the encoding from the header
-            artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_ENCODING, "UTF-8"); //$NON-NLS-1$
-        }
+        try {
+            String jcrMixinName = artifactType.getArtifactType().getApiType().value();
+            jcrMixinName = JCRConstants.SRAMP_ + StringUtils.uncapitalize(jcrMixinName);
+            artifactNode.addMixin(jcrMixinName);
+            // BaseArtifactType
+            artifactNode.setProperty(JCRConstants.SRAMP_UUID, uuid);
+            artifactNode.setProperty(JCRConstants.SRAMP_ARTIFACT_MODEL, artifactType.getArtifactType().getModel());
+            artifactNode.setProperty(JCRConstants.SRAMP_ARTIFACT_TYPE, artifactType.getArtifactType().getType());
+            // Extended
+            if (ExtendedArtifactType.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
+                artifactNode.setProperty(JCRConstants.SRAMP_EXTENDED_TYPE, artifactType.getExtendedType());
+            }
+            // Extended Document
+            if (ExtendedDocument.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
+                artifactNode.setProperty(JCRConstants.SRAMP_EXTENDED_TYPE, artifactType.getExtendedType());
+            }
+            // Document
+            if (DocumentArtifactType.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
+                artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_TYPE, artifactType.getMimeType());
+                artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_SIZE, digestingContent.getLength());
+                artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_HASH, digestingContent.getDigestHex(DigestingInputStream.SHA1));
+            }
+            // XMLDocument
+            if (XmlDocument.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
+                // read the encoding from the header
+                artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_ENCODING, "UTF-8"); //$NON-NLS-1$
+            }
 
-        // Update the JCR node with any properties included in the meta-data
-        ArtifactToJCRNodeVisitor visitor = new ArtifactToJCRNodeVisitor(artifactType, artifactNode,
-                new JCRReferenceFactoryImpl(session), classificationHelper);
-        ArtifactVisitorHelper.visitArtifact(visitor, metaData);
-        if (visitor.hasError())
-            throw visitor.getError();
+            // Update the JCR node with any properties included in the meta-data
+            ArtifactToJCRNodeVisitor visitor = new ArtifactToJCRNodeVisitor(artifactType, artifactNode,
+                    new JCRReferenceFactoryImpl(session, pendingArtifacts), classificationHelper);
+            ArtifactVisitorHelper.visitArtifact(visitor, metaData);
+            if (visitor.hasError())
+                throw visitor.getError();
 
-        log.debug(Messages.i18n.format("SAVED_JCR_NODE", name, uuid)); //$NON-NLS-1$
-        if (sramp.isAuditingEnabled()) {
-            auditCreateArtifact(artifactNode);
-            session.save();
+            log.debug(Messages.i18n.format("SAVED_JCR_NODE", name, uuid)); //$NON-NLS-1$
+            if (sramp.isAuditingEnabled()) {
+                auditCreateArtifact(artifactNode);
+            }
+        } catch (Exception e) {
+            // Discard the partially created artifact so that it is not saved along with
+            // whatever else is in the session.
+            artifactNode.remove();
+            throw e;
         }
-        session.save();
+        pendingArtifacts.add(uuid, artifactNode);
 
         Phase1Result result = new Phase1Result();
         result.artifactNode = artifactNode;
@@ -162,51 +180,132 @@ public final class JCRArtifactPersister {
      * @param metaData
      * @param classificationHelper
      * @param phase1
+     * @param pendingArtifacts
      * @throws Exception
      */
     public static Phase2Result persistArtifactPhase2(Session session, BaseArtifactType metaData,
-            ClassificationHelper classificationHelper, Phase1Result phase1) throws Exception {
+            ClassificationHelper classificationHelper, Phase1Result phase1,
+            JCRPendingArtifacts pendingArtifacts) throws Exception {
         // No need to do any of the artifact deriving in phase2 unless it's a derivable (document
         // style) artifact
         if (!phase1.isDocumentArtifact)
             return null;
-        Node artifactNode = phase1.artifactNode;
-        ArtifactType artifactType = phase1.artifactType;
 
         Collection<BaseArtifactType> derivedArtifacts = null;
-        InputStream cis = null;
-        File tempFile = null;
-        try {
-            Node artifactContentNode = artifactNode.getNode("jcr:content"); //$NON-NLS-1$
-            tempFile = saveToTempFile(artifactContentNode);
-            cis = FileUtils.openInputStream(tempFile);
-            derivedArtifacts = DerivedArtifactsFactory.newInstance().deriveArtifacts(metaData, cis);
-        } finally {
-            IOUtils.closeQuietly(cis);
-            FileUtils.deleteQuietly(tempFile);
+        if (sramp.isJcrContentTempFilesEnabled()) {
+            File tempFile = null;
+            try {
+                tempFile = saveContentToTempFile(phase1);
+                derivedArtifacts = deriveArtifacts(DerivedArtifactsFactory.newInstance(), metaData, tempFile);
+            } finally {
+                FileUtils.deleteQuietly(tempFile);
+            }
+        } else {
+            derivedArtifacts = deriveArtifacts(DerivedArtifactsFactory.newInstance(), metaData, getContentBinary(phase1));
         }
+        return persistArtifactPhase2(session, metaData, classificationHelper, phase1, derivedArtifacts, pendingArtifacts);
+    }
+
+    /**
+     * The second half of phase two - creates the JCR nodes for the given (already derived)
+     * artifacts.  This is split out so that the derivation itself, which does not touch the
+     * JCR session, can be done elsewhere (e.g. on another thread).
+     *
+     * @param session
+     * @param metaData
+     * @param classificationHelper
+     * @param phase1
+     * @param derivedArtifacts
+     * @param pendingArtifacts
+     * @throws Exception
+     */
+    public static Phase2Result persistArtifactPhase2(Session session, BaseArtifactType metaData,
+            ClassificationHelper classificationHelper, Phase1Result phase1,
+            Collection<BaseArtifactType> derivedArtifacts, JCRPendingArtifacts pendingArtifacts) throws Exception {
+        Node artifactNode = phase1.artifactNode;
+        ArtifactType artifactType = phase1.artifactType;
 
         // Persist any derived artifacts.
         if (derivedArtifacts != null) {
-            persistDerivedArtifacts(session, artifactNode, derivedArtifacts, classificationHelper);
+            persistDerivedArtifacts(session, artifactNode, derivedArtifacts, classificationHelper, pendingArtifacts);
         }
 
         // Update the JCR node again, this time with any properties/relationships added to the meta-data
         // by the deriver
         ArtifactToJCRNodeVisitor visitor = new ArtifactToJCRNodeVisitor(artifactType, artifactNode,
-                new JCRReferenceFactoryImpl(session), classificationHelper);
+                new JCRReferenceFactoryImpl(session, pendingArtifacts), classificationHelper);
         ArtifactVisitorHelper.visitArtifact(visitor, metaData);
         if (visitor.hasError())
             throw visitor.getError();
 
-        // JCR persist point - phase 2 of artifact create
-        session.save();
-
         Phase2Result result = new Phase2Result();
         result.derivedArtifacts = derivedArtifacts;
         return result;
     }
 
+    /**
+     * Gets the binary content of the artifact created in phase one.  The binary can be read
+     * (once) without access to the JCR session.
+     * @param phase1
+     * @throws Exception
+     */
+    public static Binary getContentBinary(Phase1Result phase1) throws Exception {
+        return phase1.artifactNode.getProperty("jcr:content/jcr:data").getBinary(); //$NON-NLS-1$
+    }
+
+    /**
+     * Copies the content of the artifact created in phase one to a temporary file.  This is
+     * only used when content streaming is disabled (see {@link Sramp#isJcrContentTempFilesEnabled()}).
+     * @param phase1
+     * @throws Exception
+     */
+    public static File saveContentToTempFile(Phase1Result phase1) throws Exception {
+        return saveToTempFile(phase1.artifactNode.getNode("jcr:content")); //$NON-NLS-1$
+    }
+
+    /**
+     * Derives artifacts by reading the given binary artifact content.  This does not use
+     * the JCR session, and so is safe to call from any thread.  The binary is disposed of
+     * once it has been read.
+     * @param derivedArtifactsService
+     * @param metaData
+     * @param content
+     * @throws Exception
+     */
+    public static Collection<BaseArtifactType> deriveArtifacts(DerivedArtifacts derivedArtifactsService,
+            BaseArtifactType metaData, Binary content) throws Exception {
+        InputStream cis = null;
+        try {
+            cis = new JCRBinaryInputStream(content, null);
+            return derivedArtifactsService.deriveArtifacts(metaData, cis);
+        } finally {
+            if (cis != null)
+                IOUtils.closeQuietly(cis);
+            else
+                content.dispose();
+        }
+    }
+
+    /**
+     * Derives artifacts from the given artifact content.  This does not use the JCR
+     * session, and so is safe to call from any thread.  Note that the deriver may
+     * modify the given meta-data.
+     * @param derivedArtifactsService
+     * @param metaData
+     * @param content
+     * @throws Exception
+     */
+    public static Collection<BaseArtifactType> deriveArtifacts(DerivedArtifacts derivedArtifactsService,
+            BaseArtifactType metaData, File content) throws Exception {
+        InputStream cis = null;
+        try {
+            cis = FileUtils.openInputStream(content);
+            return derivedArtifactsService.deriveArtifacts(metaData, cis);
+        } finally {
+            IOUtils.closeQuietly(cis);
+        }
+    }
+
     /**
      * Phase 3 of artifact persistence consists of linking all derived artifacts.  The linkage phase
      * gives derivers the opportunity to create relationships between the derived artifacts and other
@@ -216,10 +315,12 @@ public final class JCRArtifactPersister {
      * @param classificationHelper
      * @param phase1
      * @param phase2
+     * @param pendingArtifacts
      * @throws Exception
      */
     public static void persistArtifactPhase3(Session session, BaseArtifactType metaData,
-            ClassificationHelper classificationHelper, Phase1Result phase1, Phase2Result phase2) throws Exception {
+            ClassificationHelper classificationHelper, Phase1Result phase1, Phase2Result phase2,
+            JCRPendingArtifacts pendingArtifacts) throws Exception {
         // No need to do any of the artifact deriving in phase2 unless it's a derivable (document
         // style) artifact
         if (!phase1.isDocumentArtifact)
@@ -231,14 +332,23 @@ public final class JCRArtifactPersister {
         // Now execute the derived artifact linker phase, creating relationships between the various
         // artifacts derived above.
         if (derivedArtifacts != null && !derivedArtifacts.isEmpty()) {
-            LinkerContext context = new JCRLinkerContext(session);
+            LinkerContext context = new JCRLinkerContext(session, pendingArtifacts);
             DerivedArtifactsFactory.newInstance().linkArtifacts(context, metaData, derivedArtifacts);
-            persistDerivedArtifactsRelationships(session, artifactNode, derivedArtifacts, classificationHelper);
+            persistDerivedArtifactsRelationships(session, artifactNode, derivedArtifacts, classificationHelper,
+                    pendingArtifacts);
         }
+    }
 
-        // JCR persist point - phase 3 of artifact create (only for document style artifacts
-        // with derived content)
-        session.save();
+    /**
+     * Discards an artifact that failed to persist (in any phase), removing its node (and
+     * therefore all of its derived artifact nodes) from the session and the pending artifacts.
+     * @param phase1
+     * @param pendingArtifacts
+     * @throws RepositoryException
+     */
+    public static void discardArtifact(Phase1Result phase1, JCRPendingArtifacts pendingArtifacts) throws RepositoryException {
+        pendingArtifacts.remove(phase1.artifactNode);
+        phase1.artifactNode.remove();
     }
 
     /**
@@ -247,11 +357,12 @@ public final class JCRArtifactPersister {
      * @param sourceArtifactNode
      * @param derivedArtifacts
      * @param classificationHelper
+     * @param pendingArtifacts
      * @throws SrampException
      */
     private static void persistDerivedArtifacts(Session session, Node sourceArtifactNode,
-            Collection<BaseArtifactType> derivedArtifacts, ClassificationHelper classificationHelper)
-            throws SrampException {
+            Collection<BaseArtifactType> derivedArtifacts, ClassificationHelper classificationHelper,
+            JCRPendingArtifacts pendingArtifacts) throws SrampException {
         try {
             // Persist each of the derived nodes
             for (BaseArtifactType derivedArtifact : derivedArtifacts) {
@@ -295,13 +406,10 @@ public final class JCRArtifactPersister {
                     auditCreateArtifact(derivedArtifactNode);
                 }
 
+                pendingArtifacts.add(derivedArtifact.getUuid(), derivedArtifactNode);
                 log.debug(Messages.i18n.format("SAVED_DERIVED_ARTY_TO_JCR", derivedArtifact.getName(), derivedArtifact.getUuid())); //$NON-NLS-1$
             }
 
-            // Save current changes so that references to nodes can be found.  Note that if
-            // transactions are enabled, this will not actually persist to final storage.
-            session.save();
-
             log.debug(Messages.i18n.format("SAVED_ARTIFACTS", derivedArtifacts.size())); //$NON-NLS-1$
         } catch (SrampException e) {
             throw e;
@@ -316,13 +424,15 @@ public final class JCRArtifactPersister {
      * @param sourceArtifactNode
      * @param derivedArtifacts
      * @param classificationHelper
+     * @param pendingArtifacts
      * @throws SrampException
      */
     private static void persistDerivedArtifactsRelationships(Session session, Node sourceArtifactNode,
-            Collection<BaseArtifactType> derivedArtifacts, ClassificationHelper classificationHelper) throws SrampException {
+            Collection<BaseArtifactType> derivedArtifacts, ClassificationHelper classificationHelper,
+            JCRPendingArtifacts pendingArtifacts) throws SrampException {
         try {
             // Persist each of the derived nodes
-            JCRReferenceFactoryImpl referenceFactory = new JCRReferenceFactoryImpl(session);
+            JCRReferenceFactoryImpl referenceFactory = new JCRReferenceFactoryImpl(session, pendingArtifacts);
             for (BaseArtifactType derivedArtifact : derivedArtifacts) {
                 ArtifactType derivedArtifactType = ArtifactType.valueOf(derivedArtifact);
                 if (derivedArtifactType.isExtendedType()) {
@@ -341,9 +451,6 @@ public final class JCRArtifactPersister {
                 log.debug(Messages.i18n.format("SAVED_RELATIONSHIPS", derivedArtifact.getName())); //$NON-NLS-1$
             }
 
-            // Persist phase 2 (the relationships)
-            session.save();
-
             log.debug(Messages.i18n.format("SAVED_ARTIFACTS_2", derivedArtifacts.size())); //$NON-NLS-1$
         } catch (SrampException e) {
             throw e;
@@ -394,70 +501,76 @@ public final class JCRArtifactPersister {
     /**
      * Audits an artifact create event.  This will add an audit entry as a child of the
      * new artifact JCR node of type "artifact:add".  In addition, the initial state of
-     * all properties, classifiers, and relationships will be recorded.
+     * all properties, classifiers, and relationships will be recorded.  The entry is either
+     * written right away or handed to the {@link JCRAuditWriter}.
      * @param artifactNode
      * @throws RepositoryException
      */
     public static void auditCreateArtifact(Node artifactNode) throws RepositoryException {
         ArtifactJCRNodeDiffer differ = new ArtifactJCRNodeDiffer(artifactNode);
-        Node auditEntryNode = createAuditEntryNode(artifactNode, AuditEntryTypes.ARTIFACT_ADD);
-        Node propAddedNode = createAuditItemNode(auditEntryNode, AuditItemTypes.PROPERTY_ADDED);
-        for (Entry<String, String> entry : differ.getProperties().entrySet()) {
-            propAddedNode.setProperty(entry.getKey(), entry.getValue());
-        }
+        PendingAuditEntry auditEntry = createAuditEntry(artifactNode, AuditEntryTypes.ARTIFACT_ADD);
+        auditEntry.addItem(AuditItemTypes.PROPERTY_ADDED).putAll(differ.getProperties());
         if (!differ.getClassifiers().isEmpty()) {
-            Node classifierAddedNode = createAuditItemNode(auditEntryNode, AuditItemTypes.CLASSIFIERS_ADDED);
+            Map<String, String> classifiersAdded = auditEntry.addItem(AuditItemTypes.CLASSIFIERS_ADDED);
             int idx = 0;
             for (String classifier : differ.getClassifiers()) {
-                classifierAddedNode.setProperty("classifier-" + idx++, classifier); //$NON-NLS-1$
+                classifiersAdded.put("classifier-" + idx++, classifier); //$NON-NLS-1$
             }
         }
+        JCRAuditWriter.audit(artifactNode, auditEntry);
     }
 
     /**
      * Audits an artifact update event.  This will add an audit entry as a child of the
      * new artifact JCR node of type "artifact:update".  In addition, any changes to
      * properties, classifiers, or relationships will be added as audit items to the
-     * audit entry.
+     * audit entry.  The entry is either written right away or handed to the {@link JCRAuditWriter}.
      * @param artifactNode
      * @throws RepositoryException
      */
     public static void auditUpdateArtifact(ArtifactJCRNodeDiffer differ, Node artifactNode) throws RepositoryException {
-        Node auditEntryNode = createAuditEntryNode(artifactNode, AuditEntryTypes.ARTIFACT_UPDATE);
+        PendingAuditEntry auditEntry = createAuditEntry(artifactNode, AuditEntryTypes.ARTIFACT_UPDATE);
 
         ArtifactDiff diff = differ.diff(artifactNode);
         if (!diff.getAddedProperties().isEmpty()) {
-            Node propAddedNode = createAuditItemNode(auditEntryNode, AuditItemTypes.PROPERTY_ADDED);
-            for (Entry<String, String> entry : diff.getAddedProperties().entrySet()) {
-                propAddedNode.setProperty(entry.getKey(), entry.getValue());
-            }
+            auditEntry.addItem(AuditItemTypes.PROPERTY_ADDED).putAll(diff.getAddedProperties());
         }
         if (!diff.getUpdatedProperties().isEmpty()) {
-            Node propChangedNode = createAuditItemNode(auditEntryNode, AuditItemTypes.PROPERTY_CHANGED);
-            for (Entry<String, String> entry : diff.getUpdatedProperties().entrySet()) {
-                propChangedNode.setProperty(entry.getKey(), entry.getValue());
-            }
+            auditEntry.addItem(AuditItemTypes.PROPERTY_CHANGED).putAll(diff.getUpdatedProperties());
         }
         if (!diff.getDeletedProperties().isEmpty()) {
-            Node propRemovedNode = createAuditItemNode(auditEntryNode, AuditItemTypes.PROPERTY_REMOVED);
+            Map<String, String> propRemoved = auditEntry.addItem(AuditItemTypes.PROPERTY_REMOVED);
             for (String propName : diff.getDeletedProperties()) {
-                propRemovedNode.setProperty(propName, ""); //$NON-NLS-1$
+                propRemoved.put(propName, ""); //$NON-NLS-1$
             }
         }
         if (!diff.getAddedClassifiers().isEmpty()) {
-            Node classifiersAddedNode = createAuditItemNode(auditEntryNode, AuditItemTypes.CLASSIFIERS_ADDED);
+            Map<String, String> classifiersAdded = auditEntry.addItem(AuditItemTypes.CLASSIFIERS_ADDED);
             int idx = 0;
             for (String classifier : diff.getAddedClassifiers()) {
-                classifiersAddedNode.setProperty("classifier-" + idx++, classifier); //$NON-NLS-1$
+                classifiersAdded.put("classifier-" + idx++, classifier); //$NON-NLS-1$
             }
         }
         if (!diff.getDeletedClassifiers().isEmpty()) {
-            Node classifiersRemovedNode = createAuditItemNode(auditEntryNode, AuditItemTypes.CLASSIFIERS_REMOVED);
+            Map<String, String> classifiersRemoved = auditEntry.addItem(AuditItemTypes.CLASSIFIERS_REMOVED);
             int idx = 0;
             for (String classifier : diff.getDeletedClassifiers()) {
-                classifiersRemovedNode.setProperty("classifier-" + idx++, classifier); //$NON-NLS-1$
+                classifiersRemoved.put("classifier-" + idx++, classifier); //$NON-NLS-1$
             }
         }
+        JCRAuditWriter.audit(artifactNode, auditEntry);
+    }
+
+    /**
+     * Captures (in memory) a new audit entry for a change made to the given artifact node,
+     * now, by the session's user.
+     * @param artifactNode
+     * @param type
+     * @throws RepositoryException
+     */
+    private static PendingAuditEntry createAuditEntry(Node artifactNode, String type) throws RepositoryException {
+        return new PendingAuditEntry(type, artifactNode.getSession().getUserID(), System.currentTimeMillis(),
+                artifactNode.getIdentifier());
     }
 
     /**
@@ -473,12 +586,31 @@ public final class JCRArtifactPersister {
      */
     public static Node createAuditEntryNode(Node artifactNode, String type) throws ValueFormatException,
             VersionException, LockException, ConstraintViolationException, RepositoryException {
-        String auditUuid = UUID.randomUUID().toString();
+        return createAuditEntryNode(artifactNode, UUID.randomUUID().toString(), type,
+                artifactNode.getSession().getUserID(), System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a JCR node for a single audit entry for a single artifact, recording who made
+     * the audited change and when.
+     * @param artifactNode
+     * @param auditUuid
+     * @param type
+     * @param who
+     * @param when
+     * @throws RepositoryException
+     */
+    public static Node createAuditEntryNode(Node artifactNode, String auditUuid, String type, String who,
+            long when) throws RepositoryException {
         Node auditEntryNode = artifactNode.addNode("audit:" + auditUuid, JCRConstants.SRAMP_AUDIT_ENTRY); //$NON-NLS-1$
 
         auditEntryNode.setProperty("audit:uuid", auditUuid); //$NON-NLS-1$
-        auditEntryNode.setProperty("audit:sortId", System.currentTimeMillis()); //$NON-NLS-1$
+        auditEntryNode.setProperty("audit:sortId", when); //$NON-NLS-1$
         auditEntryNode.setProperty("audit:type", type); //$NON-NLS-1$
+        auditEntryNode.setProperty(JCRConstants.AUDIT_WHO, who);
+        Calendar whenCal = Calendar.getInstance();
+        whenCal.setTimeInMillis(when);
+        auditEntryNode.setProperty(JCRConstants.AUDIT_WHEN, whenCal);
 
         return auditEntryNode;
     }
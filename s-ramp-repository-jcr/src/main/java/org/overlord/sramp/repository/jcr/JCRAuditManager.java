@@ -15,12 +15,16 @@
  */
 package org.overlord.sramp.repository.jcr;
 
+import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.ValueFactory;
 import javax.jcr.query.QueryResult;
 
 import org.jboss.downloads.overlord.sramp._2013.auditing.AuditEntry;
@@ -55,10 +59,26 @@ public class JCRAuditManager extends AbstractJCRManager implements AuditManager
     private static final String ARTIFACT_AUDIT_TRAIL_QUERY = "SELECT auditEntry.*" //$NON-NLS-1$
             + " FROM [sramp:baseArtifactType] AS artifact" //$NON-NLS-1$
             + " JOIN [audit:auditEntry] AS auditEntry ON ISCHILDNODE(auditEntry, artifact) " //$NON-NLS-1$
-            + "WHERE artifact.[sramp:uuid] = '%1$s' ORDER BY auditEntry.[audit:sortId] DESC"; //$NON-NLS-1$
+            + "WHERE artifact.[sramp:uuid] = '%1$s'%2$s" //$NON-NLS-1$
+            + " ORDER BY auditEntry.[audit:sortId] DESC, auditEntry.[audit:uuid] DESC"; //$NON-NLS-1$
     private static final String USER_AUDIT_TRAIL_QUERY = "SELECT auditEntry.*" //$NON-NLS-1$
             + " FROM [audit:auditEntry] AS auditEntry " //$NON-NLS-1$
-            + "WHERE auditEntry.[jcr:createdBy] = '%1$s' ORDER BY auditEntry.[audit:sortId] DESC"; //$NON-NLS-1$
+            + "WHERE auditEntry.[audit:who] = '%1$s'%2$s" //$NON-NLS-1$
+            + " ORDER BY auditEntry.[audit:sortId] DESC, auditEntry.[audit:uuid] DESC"; //$NON-NLS-1$
+    // Also matches the audit entries of older versions, until they have been upgraded
+    private static final String LEGACY_USER_AUDIT_TRAIL_QUERY = "SELECT auditEntry.*" //$NON-NLS-1$
+            + " FROM [audit:auditEntry] AS auditEntry " //$NON-NLS-1$
+            + "WHERE (auditEntry.[audit:who] = '%1$s' OR (auditEntry.[jcr:createdBy] = '%1$s'" //$NON-NLS-1$
+            + " AND NOT (auditEntry.[audit:who] IS NOT NULL)))%2$s" //$NON-NLS-1$
+            + " ORDER BY auditEntry.[audit:sortId] DESC, auditEntry.[audit:uuid] DESC"; //$NON-NLS-1$
+    private static final String SINCE_CONSTRAINT = " AND auditEntry.[audit:sortId] >= $since"; //$NON-NLS-1$
+    private static final String UNTIL_CONSTRAINT = " AND auditEntry.[audit:sortId] < $until"; //$NON-NLS-1$
+    private static final String LEGACY_AUDIT_ENTRIES_QUERY = "SELECT auditEntry.*" //$NON-NLS-1$
+            + " FROM [audit:auditEntry] AS auditEntry " //$NON-NLS-1$
+            + "WHERE auditEntry.[jcr:createdBy] IS NOT NULL AND NOT (auditEntry.[audit:who] IS NOT NULL)"; //$NON-NLS-1$
+    private static final int UPGRADE_BATCH_SIZE = 500;
+
+    private static volatile boolean auditEntriesUpgraded = false;
 
 	/**
 	 * Default constructor.
@@ -77,13 +97,10 @@ public class JCRAuditManager extends AbstractJCRManager implements AuditManager
             Node artifactNode = findArtifactNodeByUuid(session, artifactUuid);
             if (artifactNode != null) {
                 String auditEntryUuid = UUID.randomUUID().toString();
-                Node auditEntryNode = artifactNode.addNode("audit:" + auditEntryUuid, JCRConstants.SRAMP_AUDIT_ENTRY); //$NON-NLS-1$
+                Node auditEntryNode = JCRArtifactPersister.createAuditEntryNode(artifactNode, auditEntryUuid,
+                        entry.getType(), session.getUserID(), System.currentTimeMillis());
                 entry.setUuid(auditEntryUuid);
 
-                auditEntryNode.setProperty("audit:uuid", entry.getUuid()); //$NON-NLS-1$
-                auditEntryNode.setProperty("audit:sortId", System.currentTimeMillis()); //$NON-NLS-1$
-                auditEntryNode.setProperty("audit:type", entry.getType()); //$NON-NLS-1$
-
                 List<AuditItemType> auditItems = entry.getAuditItem();
                 for (AuditItemType auditItem : auditItems) {
                     String type = auditItem.getType();
@@ -98,7 +115,7 @@ public class JCRAuditManager extends AbstractJCRManager implements AuditManager
                     }
                 }
 
-                session.save();
+                JCRRepositoryFactory.save(session);
                 return entry;
             } else {
                 throw new ArtifactNotFoundException(artifactUuid);
@@ -124,6 +141,7 @@ public class JCRAuditManager extends AbstractJCRManager implements AuditManager
         Session session = null;
         try {
             session = JCRRepositoryFactory.getSession();
+            JCRRepositoryFactory.flush(session);
             javax.jcr.query.QueryManager jcrQueryManager = session.getWorkspace().getQueryManager();
             javax.jcr.query.Query jcrQuery = jcrQueryManager.createQuery(jcrSql2Query, JCRConstants.JCR_SQL2);
             long startTime = System.currentTimeMillis();
@@ -139,8 +157,9 @@ public class JCRAuditManager extends AbstractJCRManager implements AuditManager
                 throw new AuditEntryNotFoundException(artifactUuid, auditEntryUuid);
             }
         } catch (Throwable t) {
-            JCRRepositoryFactory.logoutQuietly(session);
             throw new SrampServerException(t);
+        } finally {
+            JCRRepositoryFactory.logoutQuietly(session);
         }
     }
 
@@ -149,11 +168,20 @@ public class JCRAuditManager extends AbstractJCRManager implements AuditManager
      */
     @Override
     public AuditEntrySet getArtifactAuditEntries(String artifactUuid) throws SrampException {
+        return getArtifactAuditEntries(artifactUuid, null, null, 0, -1);
+    }
+
+    /**
+     * @see org.overlord.sramp.repository.AuditManager#getArtifactAuditEntries(java.lang.String, java.util.Date, java.util.Date, long, long)
+     */
+    @Override
+    public AuditEntrySet getArtifactAuditEntries(String artifactUuid, Date since, Date until, long offset, long limit)
+            throws SrampException {
         // Prevent injection.
         if (artifactUuid.indexOf('\'') >= 0)
             throw new InvalidQueryException();
-        String jcrSql2Query = String.format(ARTIFACT_AUDIT_TRAIL_QUERY, artifactUuid);
-        return doAuditQuery(jcrSql2Query);
+        String jcrSql2Query = String.format(ARTIFACT_AUDIT_TRAIL_QUERY, artifactUuid, timeRangeConstraint(since, until));
+        return doAuditQuery(jcrSql2Query, since, until, offset, limit);
     }
 
     /**
@@ -161,24 +189,64 @@ public class JCRAuditManager extends AbstractJCRManager implements AuditManager
      */
     @Override
     public AuditEntrySet getUserAuditEntries(String username) throws SrampException {
+        return getUserAuditEntries(username, null, null, 0, -1);
+    }
+
+    /**
+     * @see org.overlord.sramp.repository.AuditManager#getUserAuditEntries(java.lang.String, java.util.Date, java.util.Date, long, long)
+     */
+    @Override
+    public AuditEntrySet getUserAuditEntries(String username, Date since, Date until, long offset, long limit)
+            throws SrampException {
         // Prevent injection.
         if (username.indexOf('\'') >= 0)
             throw new InvalidQueryException();
-        String jcrSql2Query = String.format(USER_AUDIT_TRAIL_QUERY, username);
-        return doAuditQuery(jcrSql2Query);
+        String queryTemplate = auditEntriesUpgraded ? USER_AUDIT_TRAIL_QUERY : LEGACY_USER_AUDIT_TRAIL_QUERY;
+        String jcrSql2Query = String.format(queryTemplate, username, timeRangeConstraint(since, until));
+        return doAuditQuery(jcrSql2Query, since, until, offset, limit);
+    }
+
+    /**
+     * Returns the constraints on the audit entry's time (sortId) for the given time range.
+     * @param since
+     * @param until
+     */
+    private static String timeRangeConstraint(Date since, Date until) {
+        StringBuilder constraint = new StringBuilder();
+        if (since != null)
+            constraint.append(SINCE_CONSTRAINT);
+        if (until != null)
+            constraint.append(UNTIL_CONSTRAINT);
+        return constraint.toString();
     }
 
     /**
-     * Performs the audit query and returns the result as an audit entry set.
+     * Performs the audit query and returns the result as an audit entry set.  The time range
+     * and paging are applied by the JCR query.
      * @param query
+     * @param since
+     * @param until
+     * @param offset
+     * @param limit
      * @throws SrampServerException
      */
-    private AuditEntrySet doAuditQuery(String query) throws SrampServerException {
+    private AuditEntrySet doAuditQuery(String query, Date since, Date until, long offset, long limit)
+            throws SrampServerException {
         Session session = null;
         try {
             session = JCRRepositoryFactory.getSession();
+            JCRRepositoryFactory.flush(session);
             javax.jcr.query.QueryManager jcrQueryManager = session.getWorkspace().getQueryManager();
             javax.jcr.query.Query jcrQuery = jcrQueryManager.createQuery(query, JCRConstants.JCR_SQL2);
+            ValueFactory valueFactory = session.getValueFactory();
+            if (since != null)
+                jcrQuery.bindValue("since", valueFactory.createValue(since.getTime())); //$NON-NLS-1$
+            if (until != null)
+                jcrQuery.bindValue("until", valueFactory.createValue(until.getTime())); //$NON-NLS-1$
+            if (offset > 0)
+                jcrQuery.setOffset(offset);
+            if (limit >= 0)
+                jcrQuery.setLimit(limit);
             long startTime = System.currentTimeMillis();
             QueryResult jcrQueryResult = jcrQuery.execute();
             NodeIterator jcrNodes = jcrQueryResult.getNodes();
@@ -192,4 +260,49 @@ public class JCRAuditManager extends AbstractJCRManager implements AuditManager
         }
     }
 
+    /**
+     * Audit entries written before the audit:who and audit:when properties were introduced
+     * only record who made the change (and when) in jcr:createdBy and jcr:created.  This
+     * copies those values to audit:who and audit:when, so that the user audit trail query is
+     * a simple match on indexed audit properties.  Until that is done, the user audit trail
+     * query also matches on jcr:createdBy.
+     * <br/><br/>
+     * The entries are upgraded in batches.  Once they have all been upgraded, that is recorded
+     * on the repository's root node, so the upgrade only ever runs once.
+     * @param session
+     * @throws RepositoryException
+     */
+    static void upgradeAuditEntries(Session session) throws RepositoryException {
+        Node rootNode = session.getRootNode();
+        if (rootNode.hasProperty(JCRConstants.SRAMP_AUDIT_ENTRIES_UPGRADED)) {
+            auditEntriesUpgraded = true;
+            return;
+        }
+        javax.jcr.query.QueryManager jcrQueryManager = session.getWorkspace().getQueryManager();
+        long upgraded = 0;
+        while (true) {
+            javax.jcr.query.Query jcrQuery = jcrQueryManager.createQuery(LEGACY_AUDIT_ENTRIES_QUERY, JCRConstants.JCR_SQL2);
+            jcrQuery.setLimit(UPGRADE_BATCH_SIZE);
+            NodeIterator jcrNodes = jcrQuery.execute().getNodes();
+            if (!jcrNodes.hasNext())
+                break;
+            while (jcrNodes.hasNext()) {
+                Node auditEntryNode = jcrNodes.nextNode();
+                auditEntryNode.setProperty(JCRConstants.AUDIT_WHO, auditEntryNode.getProperty("jcr:createdBy").getString()); //$NON-NLS-1$
+                if (auditEntryNode.hasProperty("jcr:created")) { //$NON-NLS-1$
+                    Calendar created = auditEntryNode.getProperty("jcr:created").getDate(); //$NON-NLS-1$
+                    auditEntryNode.setProperty(JCRConstants.AUDIT_WHEN, created);
+                }
+                upgraded++;
+            }
+            session.save();
+        }
+        rootNode.setProperty(JCRConstants.SRAMP_AUDIT_ENTRIES_UPGRADED, true);
+        session.save();
+        auditEntriesUpgraded = true;
+        if (upgraded > 0) {
+            log.info(Messages.i18n.format("AUDIT_ENTRIES_UPGRADED", upgraded)); //$NON-NLS-1$
+        }
+    }
+
 }
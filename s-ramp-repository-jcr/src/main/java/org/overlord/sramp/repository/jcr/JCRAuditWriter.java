@@ -0,0 +1,667 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.Credentials;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.io.IOUtils;
+import org.overlord.sramp.common.Sramp;
+import org.overlord.sramp.repository.jcr.audit.PendingAuditEntry;
+import org.overlord.sramp.repository.jcr.i18n.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes audit entries asynchronously, when enabled (see {@link Sramp#isAuditingAsyncEnabled()}).
+ * Rather than creating the audit entry nodes as part of the audited change, the entries are
+ * captured in memory and - once the change has been saved - queued for a background thread
+ * that writes them in batches (one JCR save per batch).
+ * <br/><br/>
+ * The queue is bounded: when the writer falls behind, auditing blocks until it catches up.
+ * Queued entries are also appended to a spool file, which is emptied whenever every queued
+ * entry has been written - entries still in the spool file at startup (after a crash) are
+ * written first.  Writing an entry is idempotent, so entries are never written twice.
+ * Entries that cannot be written are moved to a dead letter file next to the spool file
+ * ("audit-spool.dat.failed"), in the same format - to replay them, append that file to the
+ * spool file while the server is stopped.
+ * <br/><br/>
+ * Audit entries therefore become visible a little after the change they audit; the writer
+ * keeps track of how far behind it is (see {@link #getLastLagMillis()} and friends).
+ */
+public class JCRAuditWriter {
+
+    private static Logger log = LoggerFactory.getLogger(JCRAuditWriter.class);
+    private static Sramp sramp = new Sramp();
+
+    private static final String SPOOL_FILE_NAME = "audit-spool.dat"; //$NON-NLS-1$
+    private static final String DEAD_LETTER_SUFFIX = ".failed"; //$NON-NLS-1$
+    private static final long POLL_INTERVAL = 500;
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+    private static final int WRITTEN = 0;
+    private static final int ALREADY_WRITTEN = 1;
+    private static final int ARTIFACT_GONE = 2;
+
+    // Entries captured in sessions that have not been saved yet
+    private static final Map<Session, List<PendingAuditEntry>> unsavedEntries = new IdentityHashMap<Session, List<PendingAuditEntry>>();
+    private static volatile JCRAuditWriter instance;
+
+    /**
+     * Audits a change made to the given artifact node: the captured audit entry is either
+     * written to the node right away or, when asynchronous auditing is enabled, queued once
+     * the node's session is saved.
+     * @param artifactNode
+     * @param entry
+     * @throws RepositoryException
+     */
+    public static void audit(Node artifactNode, PendingAuditEntry entry) throws RepositoryException {
+        if (!sramp.isAuditingAsyncEnabled()) {
+            entry.write(artifactNode);
+            return;
+        }
+        Session session = artifactNode.getSession();
+        synchronized (unsavedEntries) {
+            List<PendingAuditEntry> entries = unsavedEntries.get(session);
+            if (entries == null) {
+                entries = new ArrayList<PendingAuditEntry>();
+                unsavedEntries.put(session, entries);
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Called once the given session has been saved - queues the audit entries captured in it.
+     * @param session
+     * @throws RepositoryException
+     */
+    static void sessionSaved(Session session) throws RepositoryException {
+        List<PendingAuditEntry> entries;
+        synchronized (unsavedEntries) {
+            if (unsavedEntries.isEmpty()) {
+                return;
+            }
+            entries = unsavedEntries.remove(session);
+        }
+        if (entries != null) {
+            getInstance().enqueue(entries);
+        }
+    }
+
+    /**
+     * Called when the given session is released - discards the audit entries captured in it
+     * but never saved.
+     * @param session
+     */
+    static void sessionReleased(Session session) {
+        synchronized (unsavedEntries) {
+            if (!unsavedEntries.isEmpty()) {
+                unsavedEntries.remove(session);
+            }
+        }
+    }
+
+    /**
+     * Called when the unsaved changes of the given session are discarded - discards the
+     * audit entries captured for them.
+     * @param session
+     */
+    static void sessionRolledBack(Session session) {
+        sessionReleased(session);
+    }
+
+    /**
+     * Gets the shared writer, starting it if necessary.
+     * @throws RepositoryException
+     */
+    public static JCRAuditWriter getInstance() throws RepositoryException {
+        JCRAuditWriter writer = instance;
+        if (writer == null) {
+            writer = start(JCRRepositoryFactory.getInstance());
+        }
+        return writer;
+    }
+
+    /**
+     * Starts the shared writer (if it is not already started) - writing any entries left in
+     * the spool file.
+     * @param repository
+     */
+    static synchronized JCRAuditWriter start(JCRRepository repository) {
+        if (instance == null) {
+            String spoolFileName = sramp.getAuditingAsyncSpoolFile();
+            File spoolFile = spoolFileName == null ? new File(repository.determineRuntimeDataDir(), SPOOL_FILE_NAME)
+                    : new File(spoolFileName);
+            JCRAuditWriter writer = new JCRAuditWriter(repository.getRepo(), JCRRepositoryFactory.getAuditCredentials(),
+                    sramp.getAuditingAsyncQueueSize(), sramp.getAuditingAsyncBatchSize(), spoolFile);
+            writer.start();
+            instance = writer;
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the shared writer, after it has written the entries already queued.
+     */
+    public static synchronized void destroy() {
+        if (instance != null) {
+            instance.shutdown();
+        }
+        instance = null;
+    }
+
+    private final Repository repository;
+    private final Credentials credentials;
+    private final int batchSize;
+    private final BlockingQueue<PendingAuditEntry> queue;
+    private final File spoolFile;
+    private final File deadLetterFile;
+    private final Object spoolLock = new Object();
+    private FileOutputStream spoolFileOut;
+    private DataOutputStream spoolOut;
+    private List<PendingAuditEntry> spooledEntries;
+    private Thread thread;
+    private volatile boolean stopping;
+
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private volatile long lastLag;
+    private volatile long maxLag;
+
+    /**
+     * Constructor.
+     * @param repository the repository to write the entries to
+     * @param credentials the credentials the writer logs in with (may be null)
+     * @param queueSize the maximum number of queued entries
+     * @param batchSize the maximum number of entries written per save
+     * @param spoolFile the spool file (null disables spooling, and the dead letter file)
+     */
+    public JCRAuditWriter(Repository repository, Credentials credentials, int queueSize, int batchSize, File spoolFile) {
+        this.repository = repository;
+        this.credentials = credentials;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<PendingAuditEntry>(Math.max(1, queueSize));
+        this.spoolFile = spoolFile;
+        this.deadLetterFile = spoolFile == null ? null : new File(spoolFile.getPath() + DEAD_LETTER_SUFFIX);
+    }
+
+    /**
+     * Opens the spool file (reading the entries left in it) and starts the writer thread.
+     */
+    public void start() {
+        spooledEntries = Collections.emptyList();
+        if (spoolFile != null) {
+            try {
+                spooledEntries = readSpool(spoolFile);
+                if (!spooledEntries.isEmpty()) {
+                    log.info(Messages.i18n.format("AUDIT_SPOOL_REPLAY", spooledEntries.size(), spoolFile)); //$NON-NLS-1$
+                }
+                pendingCount.addAndGet(spooledEntries.size());
+                spoolFileOut = new FileOutputStream(spoolFile, true);
+                spoolOut = new DataOutputStream(new BufferedOutputStream(spoolFileOut));
+            } catch (IOException e) {
+                log.error(Messages.i18n.format("AUDIT_SPOOL_ERROR", spoolFile), e); //$NON-NLS-1$
+                closeSpool();
+            }
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeEntries();
+            }
+        }, "sramp-audit-writer"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread once it has written the queued entries (waiting for it at
+     * most a little while), and closes the spool file.
+     */
+    public void shutdown() {
+        stopping = true;
+        if (thread != null) {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread.interrupt();
+        }
+        synchronized (spoolLock) {
+            closeSpool();
+        }
+    }
+
+    /**
+     * Queues the given (saved) audit entries.  Blocks while the queue is full.
+     * @param entries
+     */
+    public void enqueue(List<PendingAuditEntry> entries) {
+        spool(entries);
+        int queued = 0;
+        try {
+            for (PendingAuditEntry entry : entries) {
+                queue.put(entry);
+                queued++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn(Messages.i18n.format("AUDIT_ENQUEUE_INTERRUPTED", entries.size() - queued, deadLetterFile)); //$NON-NLS-1$
+            deadLetter(entries.subList(queued, entries.size()));
+            entriesWritten(entries.size() - queued);
+        }
+    }
+
+    /**
+     * Waits until all queued entries have been written.
+     * @param timeoutMillis
+     * @return false if the entries were not all written in time
+     * @throws InterruptedException
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (spoolLock) {
+            while (pendingCount.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                spoolLock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The writer thread's loop: writes the spooled entries first, then the queued ones.
+     */
+    private void writeEntries() {
+        for (int idx = 0; idx < spooledEntries.size(); idx += batchSize) {
+            List<PendingAuditEntry> batch = spooledEntries.subList(idx, Math.min(idx + batchSize, spooledEntries.size()));
+            try {
+                writeBatch(new ArrayList<PendingAuditEntry>(batch));
+            } catch (Throwable t) {
+                log.error(t.getMessage(), t);
+            }
+        }
+        spooledEntries = null;
+
+        List<PendingAuditEntry> batch = new ArrayList<PendingAuditEntry>(batchSize);
+        while (true) {
+            try {
+                PendingAuditEntry entry = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    if (stopping) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(entry);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable t) {
+                log.error(t.getMessage(), t);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of entries and saves them together.  If that fails, the entries are
+     * written (and saved) one at a time, so that one bad entry doesn't lose the others.  The
+     * entries that still fail are moved to the dead letter file.  Whatever happens, the whole
+     * batch is accounted for, so that it no longer holds up the spool file.
+     * @param batch
+     */
+    private void writeBatch(List<PendingAuditEntry> batch) {
+        Session session = null;
+        List<PendingAuditEntry> failed = new ArrayList<PendingAuditEntry>();
+        int next = 0; // the first entry neither written nor failed
+        try {
+            session = repository.login(credentials, JCRRepositoryFactory.WORKSPACE_NAME);
+            try {
+                int[] results = new int[batch.size()];
+                for (int idx = 0; idx < batch.size(); idx++) {
+                    results[idx] = write(session, batch.get(idx));
+                }
+                session.save();
+                for (int idx = 0; idx < batch.size(); idx++) {
+                    recordResult(batch.get(idx), results[idx]);
+                }
+                next = batch.size();
+            } catch (Exception e) {
+                session.refresh(false);
+                while (next < batch.size()) {
+                    PendingAuditEntry entry = batch.get(next++);
+                    try {
+                        int result = write(session, entry);
+                        session.save();
+                        recordResult(entry, result);
+                    } catch (Exception re) {
+                        failed.add(entry);
+                        log.error(Messages.i18n.format("AUDIT_WRITE_FAILED", entry.getUuid()), re); //$NON-NLS-1$
+                        session.refresh(false);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            PendingAuditEntry entry = next < batch.size() ? batch.get(next) : failed.get(0);
+            log.error(Messages.i18n.format("AUDIT_WRITE_FAILED", entry.getUuid()), e); //$NON-NLS-1$
+        } finally {
+            if (next < batch.size()) {
+                failed.addAll(batch.subList(next, batch.size()));
+            }
+            try {
+                if (session != null) {
+                    session.logout();
+                }
+            } finally {
+                batchFinished(batch, failed);
+            }
+        }
+    }
+
+    /**
+     * Called once a batch has been written - moves its failed entries to the dead letter file
+     * and counts the whole batch as no longer pending.
+     * @param batch
+     * @param failed
+     */
+    private void batchFinished(List<PendingAuditEntry> batch, List<PendingAuditEntry> failed) {
+        try {
+            if (!failed.isEmpty()) {
+                failedCount.addAndGet(failed.size());
+                deadLetter(failed);
+            }
+            batchCount.incrementAndGet();
+            recordLag(batch.get(batch.size() - 1));
+        } finally {
+            entriesWritten(batch.size());
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(Messages.i18n.format("AUDIT_BATCH_WRITTEN", batch.size() - failed.size(), getQueueSize(), //$NON-NLS-1$
+                    getPendingCount(), getLastLagMillis(), getMaxLagMillis()));
+        }
+    }
+
+    /**
+     * Writes a single entry, unless its artifact no longer exists or it was already written.
+     * @param session
+     * @param entry
+     * @return {@link #WRITTEN}, {@link #ALREADY_WRITTEN} or {@link #ARTIFACT_GONE}
+     * @throws RepositoryException
+     */
+    private int write(Session session, PendingAuditEntry entry) throws RepositoryException {
+        Node artifactNode;
+        try {
+            artifactNode = session.getNodeByIdentifier(entry.getArtifactNodeId());
+        } catch (ItemNotFoundException e) {
+            return ARTIFACT_GONE;
+        }
+        if (entry.isWritten(artifactNode)) {
+            return ALREADY_WRITTEN;
+        }
+        entry.write(artifactNode);
+        return WRITTEN;
+    }
+
+    /**
+     * Counts the (saved) result of writing an entry.
+     * @param entry
+     * @param result
+     */
+    private void recordResult(PendingAuditEntry entry, int result) {
+        if (result == WRITTEN) {
+            writtenCount.incrementAndGet();
+        } else if (result == ARTIFACT_GONE) {
+            skippedCount.incrementAndGet();
+            log.debug(Messages.i18n.format("AUDIT_ARTIFACT_GONE", entry.getUuid())); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Records how long after the audited change the given (written) entry was written.
+     * @param entry
+     */
+    private void recordLag(PendingAuditEntry entry) {
+        long lag = System.currentTimeMillis() - entry.getWhen();
+        lastLag = lag;
+        if (lag > maxLag) {
+            maxLag = lag;
+        }
+    }
+
+    /**
+     * Appends the entries to the spool file.
+     * @param entries
+     */
+    private void spool(List<PendingAuditEntry> entries) {
+        synchronized (spoolLock) {
+            pendingCount.addAndGet(entries.size());
+            if (spoolOut == null) {
+                return;
+            }
+            try {
+                writeRecords(spoolOut, entries);
+                spoolOut.flush();
+            } catch (IOException e) {
+                log.error(Messages.i18n.format("AUDIT_SPOOL_ERROR", spoolFile), e); //$NON-NLS-1$
+                closeSpool();
+            }
+        }
+    }
+
+    /**
+     * Appends the entries that could not be written to the dead letter file (if there is
+     * one), so that they no longer hold up the emptying of the spool file.
+     * @param entries
+     */
+    private void deadLetter(List<PendingAuditEntry> entries) {
+        if (deadLetterFile == null) {
+            return;
+        }
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(deadLetterFile, true)));
+            writeRecords(out, entries);
+            out.flush();
+            log.warn(Messages.i18n.format("AUDIT_DEAD_LETTER", entries.size(), deadLetterFile)); //$NON-NLS-1$
+        } catch (IOException e) {
+            log.error(Messages.i18n.format("AUDIT_DEAD_LETTER_ERROR", entries.size(), deadLetterFile), e); //$NON-NLS-1$
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Writes the entries as spool file records (each one prefixed with its length).
+     * @param out
+     * @param entries
+     * @throws IOException
+     */
+    private static void writeRecords(DataOutputStream out, List<PendingAuditEntry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (PendingAuditEntry entry : entries) {
+            bytes.reset();
+            entry.writeTo(new DataOutputStream(bytes));
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Called once entries have been written, skipped or moved to the dead letter file -
+     * empties the spool file when no more entries are pending.
+     * @param count
+     */
+    private void entriesWritten(int count) {
+        synchronized (spoolLock) {
+            if (pendingCount.addAndGet(-count) == 0 && spoolOut != null) {
+                try {
+                    spoolOut.flush();
+                    spoolFileOut.getChannel().truncate(0);
+                } catch (IOException e) {
+                    log.error(Messages.i18n.format("AUDIT_SPOOL_ERROR", spoolFile), e); //$NON-NLS-1$
+                    closeSpool();
+                }
+            }
+            spoolLock.notifyAll();
+        }
+    }
+
+    /**
+     * Closes (and stops using) the spool file.
+     */
+    private void closeSpool() {
+        IOUtils.closeQuietly(spoolOut);
+        IOUtils.closeQuietly(spoolFileOut);
+        spoolOut = null;
+        spoolFileOut = null;
+    }
+
+    /**
+     * Reads the entries left in the spool file.  A torn (partially written) last entry is
+     * ignored.
+     * @param spoolFile
+     * @throws IOException
+     */
+    private static List<PendingAuditEntry> readSpool(File spoolFile) throws IOException {
+        List<PendingAuditEntry> entries = new ArrayList<PendingAuditEntry>();
+        if (!spoolFile.isFile()) {
+            File parent = spoolFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            return entries;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spoolFile)));
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length < 0 || length > spoolFile.length()) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                entries.add(PendingAuditEntry.readFrom(new DataInputStream(new ByteArrayInputStream(bytes))));
+            }
+        } catch (EOFException e) {
+            // the end of the spool (or a torn entry)
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return entries;
+    }
+
+    /**
+     * @return the number of entries waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of entries queued (or spooled) but not written yet
+     */
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * @return the number of entries written
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return the number of entries skipped because their artifact no longer exists
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * @return the number of entries that could not be written (and were moved to the dead
+     *         letter file)
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return the number of batches written
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return how long (in millis) after its change the last batch was written
+     */
+    public long getLastLagMillis() {
+        return lastLag;
+    }
+
+    /**
+     * @return the longest time (in millis) a batch was written after its change
+     */
+    public long getMaxLagMillis() {
+        return maxLag;
+    }
+
+    /**
+     * @return how long (in millis) ago the change audited by the oldest queued entry was made
+     *         (0 if the queue is empty)
+     */
+    public long getCurrentLagMillis() {
+        PendingAuditEntry oldest = queue.peek();
+        return oldest == null ? 0 : System.currentTimeMillis() - oldest.getWhen();
+    }
+
+}
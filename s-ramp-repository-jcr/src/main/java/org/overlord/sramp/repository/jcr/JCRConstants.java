@@ -36,6 +36,8 @@ public class JCRConstants {
     public static final String SRAMP_                    = SRAMP + ":"; //$NON-NLS-1$
     public static final String SRAMP_AUDIT_ENTRY         = SRAMP_AUDIT + ":auditEntry"; //$NON-NLS-1$
     public static final String SRAMP_AUDIT_ITEM          = SRAMP_AUDIT + ":auditItem"; //$NON-NLS-1$
+    public static final String AUDIT_WHO                 = SRAMP_AUDIT + ":who"; //$NON-NLS-1$
+    public static final String AUDIT_WHEN                = SRAMP_AUDIT + ":when"; //$NON-NLS-1$
     public static final String SRAMP_BASE_ARTIFACT_TYPE  = SRAMP_ + "baseArtifactType"; //$NON-NLS-1$
     public static final String SRAMP_CONTENT_TYPE        = SRAMP_ + "contentType"; //$NON-NLS-1$
     public static final String SRAMP_CONTENT_SIZE        = SRAMP_ + "contentSize"; //$NON-NLS-1$
@@ -49,6 +51,10 @@ public class JCRConstants {
     public static final String SRAMP_EXTENDED_TYPE       = SRAMP_ + "extendedType"; //$NON-NLS-1$
     public static final String SRAMP_NON_DOCUMENT_TYPE   = SRAMP_ + "nonDocumentArtifactType"; //$NON-NLS-1$
     public static final String SRAMP_DERIVED_PRIMARY_TYPE     = SRAMP_ + "derivedArtifactPrimaryType"; //$NON-NLS-1$
+    public static final String SRAMP_CHANGE_TRACKING     = SRAMP_ + "changeTracking"; //$NON-NLS-1$
+    public static final String SRAMP_CHANGE_TOKEN        = SRAMP_ + "changeToken"; //$NON-NLS-1$
+    public static final String SRAMP_RELATIONSHIP_TARGET_UUID = SRAMP_ + "relationshipTargetUuid"; //$NON-NLS-1$
+    public static final String SRAMP_AUDIT_ENTRIES_UPGRADED = SRAMP_ + "auditEntriesUpgraded"; //$NON-NLS-1$
 
     public static final String ROOT_PATH          = "/s-ramp"; //$NON-NLS-1$
     public static final String NOT_DELETED_FILTER = " AND (ISDESCENDANTNODE([sramp:baseArtifactType],'" + ROOT_PATH + "'))"; //$NON-NLS-1$ //$NON-NLS-2$
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.Binary;
+
+import org.apache.commons.io.FileUtils;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.overlord.sramp.common.Sramp;
+import org.overlord.sramp.repository.DerivedArtifacts;
+
+/**
+ * A bounded pool of worker threads used to derive artifacts while a batch is being
+ * persisted.  Deriving (parsing the artifact content) does not need the JCR session, so
+ * it can be done for all items of a batch at the same time - the resulting JCR writes are
+ * still done by the caller, on the session's thread.
+ */
+public class JCRDerivationExecutor {
+
+    private static JCRDerivationExecutor instance;
+
+    /**
+     * Gets the shared executor, creating it if necessary.
+     */
+    public static synchronized JCRDerivationExecutor getInstance() {
+        if (instance == null) {
+            instance = new JCRDerivationExecutor(new Sramp().getDeriverParallelism());
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts down the shared executor.
+     */
+    public static synchronized void destroy() {
+        if (instance != null) {
+            instance.shutdown();
+        }
+        instance = null;
+    }
+
+    private final int parallelism;
+    private ExecutorService executor;
+
+    /**
+     * Constructor.
+     * @param parallelism the number of worker threads (1 or less derives on the calling thread)
+     */
+    public JCRDerivationExecutor(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        if (this.parallelism > 1) {
+            this.executor = Executors.newFixedThreadPool(this.parallelism, new DeriverThreadFactory());
+        }
+    }
+
+    /**
+     * @return true if derivation is done on worker threads
+     */
+    public boolean isParallel() {
+        return executor != null;
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Derives artifacts from the given binary content (see
+     * {@link JCRArtifactPersister#deriveArtifacts(DerivedArtifacts, BaseArtifactType, Binary)})
+     * on one of the worker threads.  Note that the deriver may modify the given meta-data,
+     * so the caller must not use it until the returned future is done.
+     * @param derivedArtifactsService
+     * @param metaData
+     * @param content
+     */
+    public Future<Collection<BaseArtifactType>> submit(final DerivedArtifacts derivedArtifactsService,
+            final BaseArtifactType metaData, final Binary content) {
+        return submit(new Callable<Collection<BaseArtifactType>>() {
+            @Override
+            public Collection<BaseArtifactType> call() throws Exception {
+                return JCRArtifactPersister.deriveArtifacts(derivedArtifactsService, metaData, content);
+            }
+        });
+    }
+
+    /**
+     * Derives artifacts from the given content file (see
+     * {@link JCRArtifactPersister#deriveArtifacts(DerivedArtifacts, BaseArtifactType, File)})
+     * on one of the worker threads.  The content file is deleted once the derivation is done.
+     * Note that the deriver may modify the given meta-data, so the caller must not use it
+     * until the returned future is done.
+     * @param derivedArtifactsService
+     * @param metaData
+     * @param content
+     */
+    public Future<Collection<BaseArtifactType>> submit(final DerivedArtifacts derivedArtifactsService,
+            final BaseArtifactType metaData, final File content) {
+        return submit(new Callable<Collection<BaseArtifactType>>() {
+            @Override
+            public Collection<BaseArtifactType> call() throws Exception {
+                try {
+                    return JCRArtifactPersister.deriveArtifacts(derivedArtifactsService, metaData, content);
+                } finally {
+                    FileUtils.deleteQuietly(content);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the given derivation on one of the worker threads, with the caller's context
+     * classloader (derivers are loaded, and may load resources, via the context classloader).
+     * @param derivation
+     */
+    private Future<Collection<BaseArtifactType>> submit(final Callable<Collection<BaseArtifactType>> derivation) {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        return executor.submit(new Callable<Collection<BaseArtifactType>>() {
+            @Override
+            public Collection<BaseArtifactType> call() throws Exception {
+                Thread thread = Thread.currentThread();
+                ClassLoader oldCL = thread.getContextClassLoader();
+                thread.setContextClassLoader(contextClassLoader);
+                try {
+                    return derivation.call();
+                } finally {
+                    thread.setContextClassLoader(oldCL);
+                }
+            }
+        });
+    }
+
+    /**
+     * Shuts down the worker threads.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates the (daemon) worker threads.
+     */
+    private static class DeriverThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "sramp-deriver-" + count.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -17,31 +17,63 @@ package org.overlord.sramp.repository.jcr;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.query.QueryManager;
 
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.overlord.sramp.common.ArtifactTypeEnum;
 import org.overlord.sramp.common.SrampException;
 import org.overlord.sramp.common.derived.LinkerContext;
+import org.overlord.sramp.common.derived.LinkerReference;
 import org.overlord.sramp.repository.jcr.query.JCRSrampQuery;
+import org.overlord.sramp.repository.jcr.query.SrampToJcrSql2QueryVisitor;
 import org.overlord.sramp.repository.query.ArtifactSet;
 
 /**
- * Linker context provided by the JCR implementation.
+ * Linker context provided by the JCR implementation.  Artifacts created by the current
+ * persist operation (which have not been saved yet, and so are invisible to JCR queries)
+ * are searched first - if any of them match, they are returned without querying the
+ * repository.
+ *
+ * A batch of references is resolved using a single JCR-SQL2 query (per chunk of
+ * references) that matches any of them.  The UUIDs are read straight off the resulting
+ * nodes - no artifacts are created just to find out their UUIDs.
  * @author eric.wittmann@redhat.com
  */
 public class JCRLinkerContext implements LinkerContext {
 
+    private static final int RESOLVE_QUERY_CHUNK_SIZE = 100;
+
     private final Session session;
+    private final JCRPendingArtifacts pendingArtifacts;
 
     /**
      * Constructor.
      * @param session
      */
     public JCRLinkerContext(Session session) {
+        this(session, null);
+    }
+
+    /**
+     * Constructor.
+     * @param session
+     * @param pendingArtifacts
+     */
+    public JCRLinkerContext(Session session, JCRPendingArtifacts pendingArtifacts) {
         this.session = session;
+        this.pendingArtifacts = pendingArtifacts;
     }
 
     /**
@@ -50,6 +82,17 @@ public class JCRLinkerContext implements LinkerContext {
     @Override
     public Collection<BaseArtifactType> findArtifacts(String model, String type,
             Map<String, String> criteria) {
+        if (pendingArtifacts != null) {
+            try {
+                List<BaseArtifactType> artifacts = findPendingArtifacts(model, type, criteria);
+                if (!artifacts.isEmpty()) {
+                    return artifacts;
+                }
+            } catch (RepositoryException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         StringBuilder builder = new StringBuilder();
         builder.append("/s-ramp/").append(model).append("/").append(type); //$NON-NLS-1$ //$NON-NLS-2$
         if (!criteria.isEmpty()) {
@@ -69,6 +112,8 @@ public class JCRLinkerContext implements LinkerContext {
         String xpath = builder.toString();
         JCRSrampQuery query = new JCRSrampQuery(xpath, "createdTimestamp", false); //$NON-NLS-1$
         query.setSession(session);
+        // The pending artifacts were searched above - no need to save them just to query.
+        query.setFlushSession(pendingArtifacts == null);
         try {
             ArtifactSet artifactSet = query.executeQuery();
             List<BaseArtifactType> artifacts = new ArrayList<BaseArtifactType>();
@@ -81,4 +126,213 @@ public class JCRLinkerContext implements LinkerContext {
         }
     }
 
+    /**
+     * @see org.overlord.sramp.common.derived.LinkerContext#resolveReferences(java.util.Collection)
+     */
+    @Override
+    public Map<LinkerReference, String> resolveReferences(Collection<LinkerReference> references) {
+        Map<LinkerReference, String> resolved = new HashMap<LinkerReference, String>();
+        try {
+            List<LinkerReference> unresolved = new ArrayList<LinkerReference>(new LinkedHashSet<LinkerReference>(references));
+            if (pendingArtifacts != null && !unresolved.isEmpty()) {
+                // The pending nodes are in the order they were created, so the most recently
+                // created match ends up winning (as it does in findArtifacts).
+                for (Node node : pendingArtifacts.getNodes()) {
+                    for (LinkerReference reference : unresolved) {
+                        if (matches(node, reference.getModel(), reference.getType(), reference.getCriteria())) {
+                            resolved.put(reference, node.getProperty(JCRConstants.SRAMP_UUID).getString());
+                        }
+                    }
+                }
+                List<LinkerReference> remaining = new ArrayList<LinkerReference>();
+                for (LinkerReference reference : unresolved) {
+                    if (!resolved.containsKey(reference)) {
+                        remaining.add(reference);
+                    }
+                }
+                unresolved = remaining;
+            }
+            if (unresolved.isEmpty()) {
+                return resolved;
+            }
+
+            // The pending artifacts were searched above - no need to save them just to query.
+            if (pendingArtifacts == null) {
+                JCRRepositoryFactory.flush(session);
+            }
+            QueryManager jcrQueryManager = session.getWorkspace().getQueryManager();
+            for (int from = 0; from < unresolved.size(); from += RESOLVE_QUERY_CHUNK_SIZE) {
+                List<LinkerReference> chunk = unresolved.subList(from, Math.min(unresolved.size(), from + RESOLVE_QUERY_CHUNK_SIZE));
+                StringBuilder jcrSql2Query = new StringBuilder("SELECT * FROM [sramp:baseArtifactType] WHERE ("); //$NON-NLS-1$
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (i > 0) {
+                        jcrSql2Query.append(" OR "); //$NON-NLS-1$
+                    }
+                    appendConstraint(jcrSql2Query, chunk.get(i));
+                }
+                jcrSql2Query.append(')').append(JCRConstants.NOT_DELETED_FILTER);
+                jcrSql2Query.append(" ORDER BY [jcr:created] DESC"); //$NON-NLS-1$
+                NodeIterator jcrNodes = jcrQueryManager.createQuery(jcrSql2Query.toString(), JCRConstants.JCR_SQL2).execute().getNodes();
+                // Newest first, so the first node that matches a reference is the one it resolves to.
+                while (jcrNodes.hasNext()) {
+                    Node node = jcrNodes.nextNode();
+                    String uuid = null;
+                    for (LinkerReference reference : chunk) {
+                        if (!resolved.containsKey(reference)
+                                && matches(node, reference.getModel(), reference.getType(), reference.getCriteria())) {
+                            if (uuid == null) {
+                                uuid = node.getProperty(JCRConstants.SRAMP_UUID).getString();
+                                JCRArtifactNodeIndex.getInstance().put(uuid, node);
+                            }
+                            resolved.put(reference, uuid);
+                        }
+                    }
+                }
+            }
+            return resolved;
+        } catch (RepositoryException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends the JCR-SQL2 constraint that matches the artifacts the given reference
+     * refers to.  This mirrors what the equivalent S-RAMP query is translated to.
+     * @param builder
+     * @param reference
+     */
+    private static void appendConstraint(StringBuilder builder, LinkerReference reference) {
+        builder.append("(["); //$NON-NLS-1$
+        builder.append(JCRConstants.SRAMP_ARTIFACT_TYPE);
+        if (isExtended(reference.getModel(), reference.getType())) {
+            builder.append("] IN ("); //$NON-NLS-1$
+            appendLiteral(builder, ArtifactTypeEnum.ExtendedArtifactType.toString());
+            builder.append(", "); //$NON-NLS-1$
+            appendLiteral(builder, ArtifactTypeEnum.ExtendedDocument.toString());
+            builder.append(") AND ["); //$NON-NLS-1$
+            builder.append(JCRConstants.SRAMP_EXTENDED_TYPE);
+        }
+        builder.append("] = "); //$NON-NLS-1$
+        appendLiteral(builder, reference.getType());
+        for (Entry<String, String> criterion : reference.getCriteria().entrySet()) {
+            builder.append(" AND ["); //$NON-NLS-1$
+            builder.append(SrampToJcrSql2QueryVisitor.getJcrPropertyName(criterion.getKey()));
+            builder.append("] = "); //$NON-NLS-1$
+            appendLiteral(builder, criterion.getValue());
+        }
+        builder.append(')');
+    }
+
+    /**
+     * Appends a (quoted and escaped) JCR-SQL2 string literal.
+     * @param builder
+     * @param value
+     */
+    private static void appendLiteral(StringBuilder builder, String value) {
+        builder.append('\'').append(value.replace("'", "''")).append('\''); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Finds the pending artifacts that match the given type and criteria.  This mirrors
+     * the matching done by the equivalent S-RAMP query.  Most recently created artifacts
+     * are returned first (like the query, which orders by creation time, descending).
+     * @param model
+     * @param type
+     * @param criteria
+     * @throws RepositoryException
+     */
+    private List<BaseArtifactType> findPendingArtifacts(String model, String type,
+            Map<String, String> criteria) throws RepositoryException {
+        List<BaseArtifactType> artifacts = new ArrayList<BaseArtifactType>();
+        for (Node node : pendingArtifacts.getNodes()) {
+            if (matches(node, model, type, criteria)) {
+                artifacts.add(0, JCRNodeToArtifactFactory.createArtifact(session, node));
+            }
+        }
+        return artifacts;
+    }
+
+    /**
+     * Returns true if the given artifact node is of the given type and matches all of the
+     * given criteria.
+     * @param node
+     * @param model
+     * @param type
+     * @param criteria
+     * @throws RepositoryException
+     */
+    private static boolean matches(Node node, String model, String type, Map<String, String> criteria)
+            throws RepositoryException {
+        String nodeType = getStringProperty(node, JCRConstants.SRAMP_ARTIFACT_TYPE);
+        if (isExtended(model, type)) {
+            if (!ArtifactTypeEnum.ExtendedArtifactType.toString().equals(nodeType)
+                    && !ArtifactTypeEnum.ExtendedDocument.toString().equals(nodeType)) {
+                return false;
+            }
+            if (!type.equals(getStringProperty(node, JCRConstants.SRAMP_EXTENDED_TYPE))) {
+                return false;
+            }
+        } else if (!type.equals(nodeType)) {
+            return false;
+        }
+        for (Entry<String, String> criterion : criteria.entrySet()) {
+            String jcrPropertyName = SrampToJcrSql2QueryVisitor.getJcrPropertyName(criterion.getKey());
+            if (!hasValue(node, jcrPropertyName, criterion.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the given model/type refers to an extended artifact type.
+     * @param model
+     * @param type
+     */
+    private static boolean isExtended(String model, String type) {
+        return "ext".equals(model) || !ArtifactTypeEnum.hasEnum(type); //$NON-NLS-1$
+    }
+
+    /**
+     * Returns true if the node has the given property with the given value (or, for a
+     * multi-valued property, with the given value among its values).
+     * @param node
+     * @param propertyName
+     * @param value
+     * @throws RepositoryException
+     */
+    private static boolean hasValue(Node node, String propertyName, String value) throws RepositoryException {
+        if (!node.hasProperty(propertyName)) {
+            return false;
+        }
+        Property property = node.getProperty(propertyName);
+        if (!property.isMultiple()) {
+            return value.equals(property.getString());
+        }
+        for (Value v : property.getValues()) {
+            if (value.equals(v.getString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the value of a single-valued property of the node, or null if the node
+     * does not have it.
+     * @param node
+     * @param propertyName
+     * @throws RepositoryException
+     */
+    private static String getStringProperty(Node node, String propertyName) throws RepositoryException {
+        if (!node.hasProperty(propertyName)) {
+            return null;
+        }
+        Property property = node.getProperty(propertyName);
+        if (property.isMultiple()) {
+            return null;
+        }
+        return property.getString();
+    }
+
 }
@@ -15,10 +15,11 @@
  */
 package org.overlord.sramp.repository.jcr;
 
+import java.util.Set;
+
 import javax.jcr.Node;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.Session;
-import javax.jcr.Value;
 
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.overlord.sramp.common.ArtifactType;
@@ -27,10 +28,9 @@ import org.overlord.sramp.common.SrampServerException;
 import org.overlord.sramp.common.visitors.ArtifactVisitor;
 import org.overlord.sramp.common.visitors.ArtifactVisitorHelper;
 import org.overlord.sramp.repository.jcr.i18n.Messages;
+import org.overlord.sramp.repository.jcr.mapper.JCRNodeToArtifactSummaryVisitor;
 import org.overlord.sramp.repository.jcr.mapper.JCRNodeToArtifactVisitor;
 import org.overlord.sramp.repository.jcr.mapper.JCRNodeToArtifactVisitor.JCRReferenceResolver;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * A simple visitor that will create an S-RAMP artifact from a
@@ -39,8 +39,6 @@ import org.slf4j.LoggerFactory;
  */
 public final class JCRNodeToArtifactFactory {
 
-    private static Logger log = LoggerFactory.getLogger(JCRRepositoryFactory.class);
-
 	/**
 	 * Private constructor.
 	 */
@@ -52,9 +50,19 @@ public final class JCRNodeToArtifactFactory {
 	 * @param jcrNode a JCR node
 	 */
 	public static BaseArtifactType createArtifact(final Session session, Node jcrNode) {
+	    return createArtifact(jcrNode, new JCRReferenceResolverImpl(session));
+	}
+
+    /**
+     * Creates a S-RAMP artifact from the given JCR node, resolving its relationships with
+     * the given resolver (which can be shared by all of the artifacts created in a session).
+     * @param jcrNode a JCR node
+     * @param referenceResolver
+     */
+    public static BaseArtifactType createArtifact(Node jcrNode, JCRReferenceResolver referenceResolver) {
         try {
 			String artifactType = jcrNode.getProperty(JCRConstants.SRAMP_ARTIFACT_TYPE).getValue().getString();
-			return createArtifact(session, jcrNode, ArtifactType.valueOf(artifactType));
+			return createArtifact(jcrNode, ArtifactType.valueOf(artifactType), referenceResolver);
 		} catch (PathNotFoundException e) {
 			throw new RuntimeException(Messages.i18n.format("INVALID_JCR_NODE"), e); //$NON-NLS-1$
 		} catch (Exception e) {
@@ -71,21 +79,23 @@ public final class JCRNodeToArtifactFactory {
 	 */
     public static BaseArtifactType createArtifact(final Session session, Node jcrNode,
             ArtifactType artifactType) throws SrampException {
+        return createArtifact(jcrNode, artifactType, new JCRReferenceResolverImpl(session));
+    }
+
+    /**
+     * Creates a S-RAMP artifact from the given JCR node, resolving its relationships with
+     * the given resolver (which can be shared by all of the artifacts created in a session).
+     * @param jcrNode a node in the JCR repo
+     * @param artifactType the type of artifact represented by the {@link Node}
+     * @param referenceResolver
+     * @return S-RAMP artifact
+     * @throws SrampException
+     */
+    public static BaseArtifactType createArtifact(Node jcrNode, ArtifactType artifactType,
+            JCRReferenceResolver referenceResolver) throws SrampException {
 		try {
 			BaseArtifactType artifact = artifactType.newArtifactInstance();
-			ArtifactVisitor visitor = new JCRNodeToArtifactVisitor(jcrNode, new JCRReferenceResolver() {
-				@Override
-				public String resolveReference(Value reference) {
-					try {
-						String ident = reference.getString();
-						Node node = session.getNodeByIdentifier(ident);
-						return node.getProperty("sramp:uuid").getString(); //$NON-NLS-1$
-					} catch (Exception e) {
-						log.debug(Messages.i18n.format("ERROR_RESOLVING_JCR_REF"), e); //$NON-NLS-1$
-					}
-					return null;
-				}
-			});
+			ArtifactVisitor visitor = new JCRNodeToArtifactVisitor(jcrNode, referenceResolver);
 			ArtifactVisitorHelper.visitArtifact(visitor, artifact);
 			return artifact;
 		} catch (RuntimeException e) {
@@ -97,4 +107,28 @@ public final class JCRNodeToArtifactFactory {
 		}
 	}
 
+    /**
+     * Creates a summary of the S-RAMP artifact in the given JCR node - the core meta-data plus
+     * the given custom properties (see {@link JCRNodeToArtifactSummaryVisitor}).  This is
+     * much cheaper than creating the full artifact, as the artifact's relationships are not
+     * loaded.
+     * @param jcrNode a node in the JCR repo
+     * @param propertyNames the custom properties to include (may be null)
+     * @return S-RAMP artifact (summary)
+     */
+    public static BaseArtifactType createArtifactSummary(Node jcrNode, Set<String> propertyNames) {
+        try {
+            String artifactType = jcrNode.getProperty(JCRConstants.SRAMP_ARTIFACT_TYPE).getValue().getString();
+            BaseArtifactType artifact = ArtifactType.valueOf(artifactType).newArtifactInstance();
+            ArtifactVisitorHelper.visitArtifact(new JCRNodeToArtifactSummaryVisitor(jcrNode, propertyNames), artifact);
+            return artifact;
+        } catch (PathNotFoundException e) {
+            throw new RuntimeException(Messages.i18n.format("INVALID_JCR_NODE"), e); //$NON-NLS-1$
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 }
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.overlord.sramp.common.Sramp;
+import org.overlord.sramp.common.SrampException;
+import org.overlord.sramp.common.SrampServerException;
+import org.overlord.sramp.common.ontology.SrampOntology;
+import org.overlord.sramp.repository.UnitOfWork;
+import org.overlord.sramp.repository.UnitOfWorkResource;
+import org.overlord.sramp.repository.jcr.mapper.JCRNodeToOntology;
+
+/**
+ * A shared, in-memory cache of the ontologies, used to resolve and normalize classifications
+ * without reading (and re-building) every ontology from the repository each time.  The
+ * cache holds an immutable snapshot of the ontologies plus an index of their classes (by
+ * id and by URI) to the class's ancestor closure - i.e. its normalized classifications.
+ * <br/><br/>
+ * The classes are also numbered in pre-order, each class recording the number of its last
+ * descendant.  So whether one class is an ancestor of another is a simple range test, which
+ * is used to reduce the classifications of a query to the fewest needed.
+ * <br/><br/>
+ * The snapshot is dropped whenever an ontology is added, updated or deleted through this
+ * repository.  To pick up changes made by other (clustered) repository instances, every
+ * change also stores a new change token on the ontologies folder; the cached token is
+ * checked against it at most once every {@link Sramp#getOntologyCacheCheckInterval()} millis.
+ */
+public class JCROntologyCache {
+
+    private static final JCRNodeToOntology jcr2o = new JCRNodeToOntology();
+    private static JCROntologyCache instance;
+
+    /**
+     * Gets the shared cache, creating it if necessary.
+     */
+    public static synchronized JCROntologyCache getInstance() {
+        if (instance == null) {
+            instance = new JCROntologyCache(new Sramp().getOntologyCacheCheckInterval());
+        }
+        return instance;
+    }
+
+    /**
+     * Discards the shared cache.
+     */
+    public static synchronized void destroy() {
+        instance = null;
+    }
+
+    /**
+     * Marks the ontologies as changed: a new change token is stored on the ontologies
+     * folder (so that other repository instances notice the change) and the cache is
+     * invalidated once the given session is saved - immediately, unless the session belongs
+     * to the active {@link UnitOfWork}, in which case it happens when the unit of work commits.
+     * Must be called before the session is saved.
+     * @param session
+     * @param ontologiesNode
+     * @throws RepositoryException
+     */
+    public static void ontologiesChanged(Session session, Node ontologiesNode) throws RepositoryException {
+        if (!ontologiesNode.isNodeType(JCRConstants.SRAMP_CHANGE_TRACKING)) {
+            ontologiesNode.addMixin(JCRConstants.SRAMP_CHANGE_TRACKING);
+        }
+        ontologiesNode.setProperty(JCRConstants.SRAMP_CHANGE_TOKEN, UUID.randomUUID().toString());
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null && JCRRepositoryFactory.isUnitOfWorkSession(session)) {
+            // Bound after the session, so committed after it too
+            if (uow.getResource(JCROntologyCache.class) == null) {
+                uow.bindResource(JCROntologyCache.class, new UnitOfWorkResource() {
+                    @Override
+                    public void commit() throws SrampException {
+                        getInstance().invalidate();
+                    }
+                    @Override
+                    public void rollback() throws SrampException {
+                        // Invalidating at the next commit anyway is harmless
+                    }
+                    @Override
+                    public void release() {
+                    }
+                });
+            }
+        } else {
+            getInstance().invalidate();
+        }
+    }
+
+    private final long checkInterval;
+    private volatile Snapshot snapshot;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param checkInterval how often (in millis) the change token is checked
+     */
+    public JCROntologyCache(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Resolves the given classification (either the id or the URI of an ontology class) to
+     * the URI of the class.
+     * @param classifiedBy
+     * @param classifiedUri the classification as a URI
+     * @return the URI of the class, or null if no ontology contains it
+     * @throws SrampException
+     */
+    public URI resolve(String classifiedBy, URI classifiedUri) throws SrampException {
+        IndexedClass indexed = getSnapshot().find(classifiedBy, classifiedUri);
+        return indexed == null ? null : indexed.uri;
+    }
+
+    /**
+     * Normalizes the given classification - i.e. gets the URIs of the class and of all of
+     * its ancestors.
+     * @param classification the URI of an ontology class
+     * @return the normalized classifications, or null if no ontology contains the class
+     * @throws SrampException
+     */
+    public Set<URI> normalize(URI classification) throws SrampException {
+        IndexedClass indexed = getSnapshot().classesByUri.get(classification);
+        return indexed == null ? null : indexed.closure;
+    }
+
+    /**
+     * Reduces the classifications to the most general ones - i.e. drops those that are
+     * descendants of another one of them.  Unknown classifications are kept.
+     * @param classifications the URIs of ontology classes
+     * @throws SrampException
+     */
+    public Collection<URI> reduceToMostGeneral(Collection<URI> classifications) throws SrampException {
+        return getSnapshot().reduce(classifications, true);
+    }
+
+    /**
+     * Reduces the classifications to the most specific ones - i.e. drops those that are
+     * ancestors of another one of them.  Unknown classifications are kept.
+     * @param classifications the URIs of ontology classes
+     * @throws SrampException
+     */
+    public Collection<URI> reduceToMostSpecific(Collection<URI> classifications) throws SrampException {
+        return getSnapshot().reduce(classifications, false);
+    }
+
+    /**
+     * Drops the cached ontologies - they will be read again when next needed.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * @return the number of times the ontologies have been read from the repository
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Gets the current snapshot of the ontologies, reading them if they are not cached (or
+     * if they were changed by another repository instance).
+     * @throws SrampException
+     */
+    private Snapshot getSnapshot() throws SrampException {
+        Snapshot current = this.snapshot;
+        if (current != null && !current.isCheckDue(checkInterval)) {
+            return current;
+        }
+        synchronized (this) {
+            current = this.snapshot;
+            if (current != null && !current.isCheckDue(checkInterval)) {
+                return current;
+            }
+            long gen = generation.get();
+            Session session = null;
+            try {
+                // Not the unit of work session - the cache must only see saved ontologies
+                session = JCRRepositoryFactory.getSessionPool().borrowSession();
+                String changeToken = readChangeToken(session);
+                if (current != null && equal(current.changeToken, changeToken)) {
+                    current.checkedOn = System.currentTimeMillis();
+                    return current;
+                }
+                current = new Snapshot(changeToken, readOntologies(session));
+                loadCount.incrementAndGet();
+            } catch (Throwable t) {
+                throw new SrampServerException(t);
+            } finally {
+                if (session != null) {
+                    JCRRepositoryFactory.releaseSession(session);
+                }
+            }
+            // Only cache the snapshot if the ontologies weren't changed while reading them
+            if (gen == generation.get()) {
+                this.snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Reads the change token of the ontologies.
+     * @param session
+     * @throws RepositoryException
+     */
+    private static String readChangeToken(Session session) throws RepositoryException {
+        String ontologiesPath = MapToJCRPath.getOntologiesPath();
+        if (session.nodeExists(ontologiesPath)) {
+            Node ontologiesNode = session.getNode(ontologiesPath);
+            if (ontologiesNode.hasProperty(JCRConstants.SRAMP_CHANGE_TOKEN)) {
+                return ontologiesNode.getProperty(JCRConstants.SRAMP_CHANGE_TOKEN).getString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads all of the ontologies.
+     * @param session
+     * @throws RepositoryException
+     */
+    private static List<SrampOntology> readOntologies(Session session) throws RepositoryException {
+        List<SrampOntology> ontologies = new ArrayList<SrampOntology>();
+        String ontologiesPath = MapToJCRPath.getOntologiesPath();
+        if (session.nodeExists(ontologiesPath)) {
+            NodeIterator nodes = session.getNode(ontologiesPath).getNodes();
+            while (nodes.hasNext()) {
+                SrampOntology ontology = new SrampOntology();
+                jcr2o.read(ontology, nodes.nextNode());
+                ontologies.add(ontology);
+            }
+        }
+        return ontologies;
+    }
+
+    /**
+     * Null safe equals.
+     * @param one
+     * @param other
+     */
+    private static boolean equal(String one, String other) {
+        return one == null ? other == null : one.equals(other);
+    }
+
+    /**
+     * An (immutable, once built) snapshot of the ontologies and the index of their classes.
+     */
+    private static class Snapshot {
+
+        private final String changeToken;
+        private final Map<String, IndexedClass> classesById = new HashMap<String, IndexedClass>();
+        private final Map<URI, IndexedClass> classesByUri = new HashMap<URI, IndexedClass>();
+        private volatile long checkedOn = System.currentTimeMillis();
+
+        /**
+         * Constructor.
+         * @param changeToken
+         * @param ontologies
+         */
+        public Snapshot(String changeToken, List<SrampOntology> ontologies) {
+            this.changeToken = changeToken;
+            int preOrder = 0;
+            for (int idx = 0; idx < ontologies.size(); idx++) {
+                for (SrampOntology.Class root : ontologies.get(idx).getRootClasses()) {
+                    preOrder = index(idx, root, Collections.<URI>emptySet(), preOrder) + 1;
+                }
+            }
+        }
+
+        /**
+         * Indexes the class and (recursively) its descendants, numbering them in pre-order.
+         * The closure of each class is built from its parent's, rather than by walking up
+         * the ontology from every class.
+         * @param ontologyIndex
+         * @param sclass
+         * @param parentClosure
+         * @param preOrder the number of the class
+         * @return the number of the class's last descendant (or of the class itself)
+         */
+        private int index(int ontologyIndex, SrampOntology.Class sclass, Set<URI> parentClosure, int preOrder) {
+            Set<URI> closure = new HashSet<URI>(parentClosure);
+            closure.add(sclass.getUri());
+            closure = Collections.unmodifiableSet(closure);
+            int lastDescendant = preOrder;
+            for (SrampOntology.Class child : sclass.getChildren()) {
+                lastDescendant = index(ontologyIndex, child, closure, lastDescendant + 1);
+            }
+            IndexedClass indexed = new IndexedClass(ontologyIndex, sclass.getUri(), closure, preOrder, lastDescendant);
+            // When several ontologies contain a class, the first one wins
+            if (!classesById.containsKey(sclass.getId())) {
+                classesById.put(sclass.getId(), indexed);
+            }
+            if (!classesByUri.containsKey(sclass.getUri())) {
+                classesByUri.put(sclass.getUri(), indexed);
+            }
+            return lastDescendant;
+        }
+
+        /**
+         * Finds the class with the given id or URI.  Just like searching each ontology in
+         * turn, first by id and then by URI.
+         * @param id
+         * @param uri
+         */
+        public IndexedClass find(String id, URI uri) {
+            IndexedClass byId = classesById.get(id);
+            IndexedClass byUri = classesByUri.get(uri);
+            if (byId == null) {
+                return byUri;
+            } else if (byUri == null || byId.ontologyIndex <= byUri.ontologyIndex) {
+                return byId;
+            }
+            return byUri;
+        }
+
+        /**
+         * Reduces the classifications to either the most general or the most specific ones.
+         * Sorted by pre-order number, a class's descendants (if any) directly follow it - so
+         * each class need only be compared to its neighbour.
+         * @param classifications
+         * @param mostGeneral
+         */
+        public Collection<URI> reduce(Collection<URI> classifications, boolean mostGeneral) {
+            List<URI> reduced = new ArrayList<URI>(classifications.size());
+            TreeMap<Integer, IndexedClass> sorted = new TreeMap<Integer, IndexedClass>();
+            for (URI classification : classifications) {
+                IndexedClass indexed = classesByUri.get(classification);
+                if (indexed == null) {
+                    reduced.add(classification);
+                } else {
+                    sorted.put(indexed.preOrder, indexed);
+                }
+            }
+            IndexedClass previous = null;
+            for (IndexedClass indexed : sorted.values()) {
+                if (mostGeneral) {
+                    // The previous class kept is the only one that may be an ancestor
+                    if (previous == null || !previous.isAncestorOf(indexed)) {
+                        reduced.add(indexed.uri);
+                        previous = indexed;
+                    }
+                } else {
+                    if (previous != null && !previous.isAncestorOf(indexed)) {
+                        reduced.add(previous.uri);
+                    }
+                    previous = indexed;
+                }
+            }
+            if (!mostGeneral && previous != null) {
+                reduced.add(previous.uri);
+            }
+            return reduced;
+        }
+
+        /**
+         * Returns true if the change token should be checked again.
+         * @param checkInterval
+         */
+        public boolean isCheckDue(long checkInterval) {
+            return System.currentTimeMillis() - checkedOn >= checkInterval;
+        }
+
+    }
+
+    /**
+     * An indexed ontology class.  Its descendants are exactly the classes numbered from
+     * (excluding) its pre-order number up to (including) the number of its last descendant.
+     */
+    private static class IndexedClass {
+
+        private final int ontologyIndex;
+        private final URI uri;
+        private final Set<URI> closure;
+        private final int preOrder;
+        private final int lastDescendant;
+
+        /**
+         * Constructor.
+         * @param ontologyIndex
+         * @param uri
+         * @param closure
+         * @param preOrder
+         * @param lastDescendant
+         */
+        public IndexedClass(int ontologyIndex, URI uri, Set<URI> closure, int preOrder, int lastDescendant) {
+            this.ontologyIndex = ontologyIndex;
+            this.uri = uri;
+            this.closure = closure;
+            this.preOrder = preOrder;
+            this.lastDescendant = lastDescendant;
+        }
+
+        /**
+         * Returns true if this class is a (strict) ancestor of the other class.
+         * @param other
+         */
+        public boolean isAncestorOf(IndexedClass other) {
+            return other.preOrder > preOrder && other.preOrder <= lastDescendant;
+        }
+
+    }
+
+}
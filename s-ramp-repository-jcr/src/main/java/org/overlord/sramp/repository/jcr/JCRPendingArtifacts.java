@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+/**
+ * An in-memory index (by S-RAMP uuid) of the artifact nodes created by a single persist
+ * operation (one artifact or one batch) that have not been saved yet.  JCR queries only
+ * see saved content, so the persist pipeline uses this index to resolve references to
+ * (and link against) the artifacts it is creating, which lets it save only once at the
+ * very end.
+ */
+public class JCRPendingArtifacts {
+
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+
+    /**
+     * Constructor.
+     */
+    public JCRPendingArtifacts() {
+    }
+
+    /**
+     * Adds a newly created artifact node.
+     * @param uuid
+     * @param node
+     */
+    public void add(String uuid, Node node) {
+        nodes.put(uuid, node);
+    }
+
+    /**
+     * Adds all of the artifact nodes pending in the given index.
+     * @param pendingArtifacts
+     */
+    public void addAll(JCRPendingArtifacts pendingArtifacts) {
+        nodes.putAll(pendingArtifacts.nodes);
+    }
+
+    /**
+     * Removes all of the pending artifact nodes (e.g. once they have been saved).
+     */
+    public void clear() {
+        nodes.clear();
+    }
+
+    /**
+     * Gets the pending artifact node with the given uuid.
+     * @param uuid
+     * @return the node or null if no such artifact is pending
+     */
+    public Node get(String uuid) {
+        return nodes.get(uuid);
+    }
+
+    /**
+     * @return all of the pending artifact nodes, in creation order
+     */
+    public Collection<Node> getNodes() {
+        return new ArrayList<Node>(nodes.values());
+    }
+
+    /**
+     * Removes the given artifact node, and any pending nodes beneath it, from the index.
+     * This is used when an artifact fails to persist and its nodes are discarded.
+     * @param node
+     * @throws RepositoryException
+     */
+    public void remove(Node node) throws RepositoryException {
+        String path = node.getPath();
+        String childPathPrefix = path + "/"; //$NON-NLS-1$
+        Iterator<Entry<String, Node>> iterator = nodes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Node pendingNode = iterator.next().getValue();
+            String pendingPath = pendingNode.getPath();
+            if (pendingPath.equals(path) || pendingPath.startsWith(childPathPrefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+}
@@ -22,15 +22,22 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
 import javax.jcr.Session;
+import javax.jcr.query.Query;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactEnum;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
@@ -48,18 +55,21 @@ import org.overlord.sramp.common.ontology.InvalidClassifiedByException;
 import org.overlord.sramp.common.ontology.OntologyAlreadyExistsException;
 import org.overlord.sramp.common.ontology.OntologyNotFoundException;
 import org.overlord.sramp.common.ontology.SrampOntology;
-import org.overlord.sramp.common.ontology.SrampOntology.Class;
 import org.overlord.sramp.common.visitors.ArtifactVisitorHelper;
 import org.overlord.sramp.repository.DerivedArtifacts;
+import org.overlord.sramp.repository.DerivedArtifactsFactory;
 import org.overlord.sramp.repository.PersistenceManager;
 import org.overlord.sramp.repository.jcr.JCRArtifactPersister.Phase1Result;
 import org.overlord.sramp.repository.jcr.JCRArtifactPersister.Phase2Result;
 import org.overlord.sramp.repository.jcr.audit.ArtifactJCRNodeDiffer;
 import org.overlord.sramp.repository.jcr.i18n.Messages;
 import org.overlord.sramp.repository.jcr.mapper.ArtifactToJCRNodeVisitor;
+import org.overlord.sramp.repository.jcr.mapper.JCRNodeToArtifactVisitor.JCRReferenceResolver;
 import org.overlord.sramp.repository.jcr.mapper.JCRNodeToOntology;
 import org.overlord.sramp.repository.jcr.mapper.OntologyToJCRNode;
 import org.overlord.sramp.repository.jcr.util.DeleteOnCloseFileInputStream;
+import org.overlord.sramp.repository.jcr.util.DigestingInputStream;
+import org.overlord.sramp.repository.jcr.util.JCRBinaryInputStream;
 import org.overlord.sramp.repository.jcr.util.JCRUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,13 +85,12 @@ import org.slf4j.LoggerFactory;
 public class JCRPersistence extends AbstractJCRManager implements PersistenceManager, DerivedArtifacts, ClassificationHelper {
 
 	private static Logger log = LoggerFactory.getLogger(JCRPersistence.class);
+	private static final int ARTIFACT_TYPES_QUERY_CHUNK_SIZE = 100;
 	private static Sramp sramp = new Sramp();
 
 	private static OntologyToJCRNode o2jcr = new OntologyToJCRNode();
 	private static JCRNodeToOntology jcr2o = new JCRNodeToOntology();
 
-	//	private Map<String, SrampOntology> ontologyCache = new HashMap<String, SrampOntology>();
-
 	/**
 	 * Default constructor.
 	 */
@@ -93,72 +102,164 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 	 */
 	@Override
 	public List<Object> persistBatch(List<BatchItem> items) throws SrampException {
-	    List<Object> rval = new ArrayList<Object>(items.size());
+	    final List<Object> rval = new ArrayList<Object>(items.size());
+	    persistBatch(items, new BatchResultHandler() {
+	        @Override
+	        public void handle(BatchItem item, Object result) {
+	            rval.add(result);
+	        }
+	    });
+	    return rval;
+	}
+
+	/**
+	 * @see org.overlord.sramp.repository.PersistenceManager#persistBatch(java.util.List, org.overlord.sramp.repository.PersistenceManager.BatchResultHandler)
+	 */
+	@Override
+	public void persistBatch(List<BatchItem> items, BatchResultHandler handler) throws SrampException {
         Session session = null;
         try {
             session = JCRRepositoryFactory.getSession();
+            JCRPendingArtifacts pendingArtifacts = new JCRPendingArtifacts();
 
             // For each item in the batch, do phase 1 of the persist.
             for (BatchItem item : items) {
                 try {
-                    Phase1Result phase1 = JCRArtifactPersister.persistArtifactPhase1(session, item.baseArtifactType, item.content, this);
-                    // If this is a document artifact then we need to execute phases 2 and 3.  If it's not
-                    // then we're done and we should simply store the artifact as the result.
-                    if (phase1.isDocumentArtifact) {
-                        item.attributes.put("phase1", phase1); //$NON-NLS-1$
-                    } else {
-                        BaseArtifactType artifact = JCRNodeToArtifactFactory.createArtifact(session, phase1.artifactNode, phase1.artifactType);
-                        item.attributes.put("result", artifact); //$NON-NLS-1$
-                    }
+                    Phase1Result phase1 = JCRArtifactPersister.persistArtifactPhase1(session, item.baseArtifactType,
+                            item.content, this, pendingArtifacts);
+                    item.attributes.put("phase1", phase1); //$NON-NLS-1$
                 } catch (Exception e) {
                     item.attributes.put("result", e); //$NON-NLS-1$
                 }
             }
 
-            // Next, do phase 2 for each item in the batch.
+            // Next, do phase 2 for each item in the batch.  If this is a document artifact then we
+            // need to execute phases 2 and 3.  If it's not then phase 1 was all we needed.
+            JCRDerivationExecutor derivationExecutor = JCRDerivationExecutor.getInstance();
+            if (derivationExecutor.isParallel()) {
+                deriveBatch(derivationExecutor, items);
+            }
             for (BatchItem item : items) {
-                try {
-                    if (item.attributes.containsKey("phase1")) { //$NON-NLS-1$
-                        Phase1Result phase1 = (Phase1Result) item.attributes.get("phase1"); //$NON-NLS-1$
-                        if (phase1.isDocumentArtifact) {
-                            Phase2Result phase2 = JCRArtifactPersister.persistArtifactPhase2(session, item.baseArtifactType, this, phase1);
-                            item.attributes.put("phase2", phase2); //$NON-NLS-1$
+                Phase1Result phase1 = (Phase1Result) item.attributes.get("phase1"); //$NON-NLS-1$
+                if (phase1 != null && phase1.isDocumentArtifact) {
+                    try {
+                        Phase2Result phase2 = null;
+                        Future<?> derivation = (Future<?>) item.attributes.remove("derivation"); //$NON-NLS-1$
+                        if (derivation != null) {
+                            @SuppressWarnings("unchecked")
+                            Collection<BaseArtifactType> derivedArtifacts = (Collection<BaseArtifactType>) getDerivationResult(derivation);
+                            phase2 = JCRArtifactPersister.persistArtifactPhase2(session, item.baseArtifactType,
+                                    this, phase1, derivedArtifacts, pendingArtifacts);
+                        } else {
+                            phase2 = JCRArtifactPersister.persistArtifactPhase2(session, item.baseArtifactType,
+                                    this, phase1, pendingArtifacts);
                         }
+                        item.attributes.put("phase2", phase2); //$NON-NLS-1$
+                    } catch (Exception e) {
+                        JCRArtifactPersister.discardArtifact(phase1, pendingArtifacts);
+                        item.attributes.remove("phase1"); //$NON-NLS-1$
+                        item.attributes.put("result", e); //$NON-NLS-1$
                     }
-                } catch (Exception e) {
-                    item.attributes.put("result", e); //$NON-NLS-1$
                 }
             }
 
-            // Lastly, do phase 3 for each item in the batch.
+            // Then do phase 3 for each item in the batch.
             for (BatchItem item : items) {
-                try {
-                    if (item.attributes.containsKey("phase2")) { //$NON-NLS-1$
-                        Phase1Result phase1 = (Phase1Result) item.attributes.get("phase1"); //$NON-NLS-1$
-                        if (phase1.isDocumentArtifact) {
-                            Phase2Result phase2 = (Phase2Result) item.attributes.get("phase2"); //$NON-NLS-1$
-                            JCRArtifactPersister.persistArtifactPhase3(session, item.baseArtifactType, this, phase1, phase2);
-                            BaseArtifactType artifact = JCRNodeToArtifactFactory.createArtifact(session, phase1.artifactNode, phase1.artifactType);
-                            item.attributes.put("result", artifact); //$NON-NLS-1$
-                        }
+                if (item.attributes.containsKey("phase2")) { //$NON-NLS-1$
+                    Phase1Result phase1 = (Phase1Result) item.attributes.get("phase1"); //$NON-NLS-1$
+                    Phase2Result phase2 = (Phase2Result) item.attributes.get("phase2"); //$NON-NLS-1$
+                    try {
+                        JCRArtifactPersister.persistArtifactPhase3(session, item.baseArtifactType, this, phase1,
+                                phase2, pendingArtifacts);
+                    } catch (Exception e) {
+                        JCRArtifactPersister.discardArtifact(phase1, pendingArtifacts);
+                        item.attributes.remove("phase1"); //$NON-NLS-1$
+                        item.attributes.put("result", e); //$NON-NLS-1$
                     }
-                } catch (Exception e) {
-                    item.attributes.put("result", e); //$NON-NLS-1$
                 }
             }
 
-            // And return the appropriate value for each item
+            // JCR persist point - a single save for the entire batch
+            JCRRepositoryFactory.save(session, pendingArtifacts);
+            JCRArtifactNodeIndex.getInstance().putAll(pendingArtifacts);
+
+            // Lastly, create the S-RAMP artifact for each item that was successfully persisted,
+            // and hand the appropriate value for each item to the handler.  The artifacts are
+            // created one at a time, so the handler can let go of each before the next (but
+            // they share a reference resolver, as they tend to point at the same artifacts).
+            JCRReferenceResolver referenceResolver = new JCRReferenceResolverImpl(session);
             for (BatchItem item : items) {
-                rval.add(item.attributes.get("result")); //$NON-NLS-1$
+                Phase1Result phase1 = (Phase1Result) item.attributes.remove("phase1"); //$NON-NLS-1$
+                item.attributes.remove("phase2"); //$NON-NLS-1$
+                Object result = item.attributes.remove("result"); //$NON-NLS-1$
+                if (phase1 != null) {
+                    result = JCRNodeToArtifactFactory.createArtifact(phase1.artifactNode, phase1.artifactType,
+                            referenceResolver);
+                }
+                handler.handle(item, result);
             }
+        } catch (SrampException e) {
+            throw e;
         } catch (Throwable t) {
             throw new SrampServerException(t);
         } finally {
             JCRRepositoryFactory.logoutQuietly(session);
         }
-        return rval;
 	}
 
+    /**
+     * Starts deriving the (document) artifacts of the given batch on the derivation worker
+     * threads.  The content binary of each artifact is first fetched from JCR (on this thread,
+     * since the session must not be shared) and the pending derivation is stored in the
+     * item's "derivation" attribute.  Items that fail here are derived on this thread later.
+     * @param derivationExecutor
+     * @param items
+     */
+    private void deriveBatch(JCRDerivationExecutor derivationExecutor, List<BatchItem> items) {
+        DerivedArtifacts derivedArtifactsService = DerivedArtifactsFactory.newInstance();
+        boolean useTempFiles = sramp.isJcrContentTempFilesEnabled();
+        for (BatchItem item : items) {
+            Phase1Result phase1 = (Phase1Result) item.attributes.get("phase1"); //$NON-NLS-1$
+            if (phase1 != null && phase1.isDocumentArtifact) {
+                File content = null;
+                try {
+                    Future<?> derivation = null;
+                    if (useTempFiles) {
+                        content = JCRArtifactPersister.saveContentToTempFile(phase1);
+                        derivation = derivationExecutor.submit(derivedArtifactsService, item.baseArtifactType, content);
+                    } else {
+                        Binary binary = JCRArtifactPersister.getContentBinary(phase1);
+                        derivation = derivationExecutor.submit(derivedArtifactsService, item.baseArtifactType, binary);
+                    }
+                    item.attributes.put("derivation", derivation); //$NON-NLS-1$
+                } catch (Exception e) {
+                    FileUtils.deleteQuietly(content);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the given derivation to complete and returns its result, unwrapping any
+     * failure thrown by the deriver.
+     * @param derivation
+     * @throws Exception
+     */
+    private static Object getDerivationResult(Future<?> derivation) throws Exception {
+        try {
+            return derivation.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
 	/**
 	 * @see org.overlord.sramp.common.repository.PersistenceManager#persistArtifact(java.lang.String, org.overlord.sramp.common.ArtifactType, java.io.InputStream)
 	 */
@@ -167,7 +268,8 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 		Session session = null;
 		try {
 			session = JCRRepositoryFactory.getSession();
-            Phase1Result phase1 = JCRArtifactPersister.persistArtifactPhase1(session, metaData, content, this);
+			JCRPendingArtifacts pendingArtifacts = new JCRPendingArtifacts();
+            Phase1Result phase1 = JCRArtifactPersister.persistArtifactPhase1(session, metaData, content, this, pendingArtifacts);
 			ArtifactType artifactType = phase1.artifactType;
 			Node artifactNode = phase1.artifactNode;
 
@@ -176,10 +278,19 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 			// changes to the original artifact as well as persist any derived artifacts.  Only
 			// do this for document style artifacts.
 			if (phase1.isDocumentArtifact) {
-			    Phase2Result phase2 = JCRArtifactPersister.persistArtifactPhase2(session, metaData, this, phase1);
-			    JCRArtifactPersister.persistArtifactPhase3(session, metaData, this, phase1, phase2);
+			    try {
+			        Phase2Result phase2 = JCRArtifactPersister.persistArtifactPhase2(session, metaData, this, phase1, pendingArtifacts);
+			        JCRArtifactPersister.persistArtifactPhase3(session, metaData, this, phase1, phase2, pendingArtifacts);
+			    } catch (Exception e) {
+			        JCRArtifactPersister.discardArtifact(phase1, pendingArtifacts);
+			        throw e;
+			    }
 			}
 
+			// JCR persist point - a single save for the artifact and all of its derived artifacts
+			JCRRepositoryFactory.save(session, pendingArtifacts);
+			JCRArtifactNodeIndex.getInstance().putAll(pendingArtifacts);
+
 			// If debug is enabled, print the artifact graph
 			if (log.isDebugEnabled()) {
 				printArtifactGraph(metaData.getUuid(), artifactType);
@@ -261,6 +372,77 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 		}
 	}
 
+    /**
+     * @see org.overlord.sramp.repository.PersistenceManager#getArtifactTypes(java.util.Collection)
+     */
+    @Override
+    public Map<String, ArtifactType> getArtifactTypes(Collection<String> uuids) throws SrampException {
+        Map<String, ArtifactType> rval = new HashMap<String, ArtifactType>();
+        if (uuids.isEmpty()) {
+            return rval;
+        }
+        Session session = null;
+        try {
+            session = JCRRepositoryFactory.getSession();
+
+            // Most recently touched artifacts will be in the node index already
+            List<String> misses = new ArrayList<String>();
+            for (String uuid : new HashSet<String>(uuids)) {
+                Node node = JCRArtifactNodeIndex.getInstance().find(session, uuid);
+                if (node != null) {
+                    rval.put(uuid, getArtifactType(node));
+                } else {
+                    misses.add(uuid);
+                }
+            }
+
+            // Find the rest with a single query (per chunk of UUIDs, to keep the query sane)
+            if (!misses.isEmpty()) {
+                JCRRepositoryFactory.flush(session);
+                javax.jcr.query.QueryManager jcrQueryManager = session.getWorkspace().getQueryManager();
+                for (int from = 0; from < misses.size(); from += ARTIFACT_TYPES_QUERY_CHUNK_SIZE) {
+                    List<String> chunk = misses.subList(from, Math.min(misses.size(), from + ARTIFACT_TYPES_QUERY_CHUNK_SIZE));
+                    StringBuilder jcrSql2Query = new StringBuilder("SELECT * FROM [sramp:baseArtifactType] WHERE [sramp:uuid] IN ("); //$NON-NLS-1$
+                    for (int i = 0; i < chunk.size(); i++) {
+                        if (i > 0) {
+                            jcrSql2Query.append(", "); //$NON-NLS-1$
+                        }
+                        jcrSql2Query.append('\'').append(chunk.get(i).replace("'", "''")).append('\''); //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                    jcrSql2Query.append(')').append(JCRConstants.NOT_DELETED_FILTER);
+                    Query jcrQuery = jcrQueryManager.createQuery(jcrSql2Query.toString(), JCRConstants.JCR_SQL2);
+                    NodeIterator jcrNodes = jcrQuery.execute().getNodes();
+                    while (jcrNodes.hasNext()) {
+                        Node node = jcrNodes.nextNode();
+                        String uuid = node.getProperty(JCRConstants.SRAMP_UUID).getString();
+                        rval.put(uuid, getArtifactType(node));
+                        JCRArtifactNodeIndex.getInstance().put(uuid, node);
+                    }
+                }
+            }
+            return rval;
+        } catch (SrampException se) {
+            throw se;
+        } catch (Throwable t) {
+            throw new SrampServerException(t);
+        } finally {
+            JCRRepositoryFactory.logoutQuietly(session);
+        }
+    }
+
+    /**
+     * Gets the type of the artifact in the given node.
+     * @param artifactNode
+     * @throws Exception
+     */
+    private static ArtifactType getArtifactType(Node artifactNode) throws Exception {
+        ArtifactType type = ArtifactType.valueOf(artifactNode.getProperty(JCRConstants.SRAMP_ARTIFACT_TYPE).getString());
+        if (artifactNode.hasProperty(JCRConstants.SRAMP_EXTENDED_TYPE)) {
+            type.setExtendedType(artifactNode.getProperty(JCRConstants.SRAMP_EXTENDED_TYPE).getString());
+        }
+        return type;
+    }
+
 	/**
 	 * @see org.overlord.sramp.common.repository.PersistenceManager#getArtifactContent(java.lang.String, org.overlord.sramp.common.ArtifactType)
 	 */
@@ -285,8 +467,17 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 		        }
 		    }
 			Node artifactContentNode = artifactNode.getNode("jcr:content"); //$NON-NLS-1$
-			File tempFile = JCRArtifactPersister.saveToTempFile(artifactContentNode);
-			return new DeleteOnCloseFileInputStream(tempFile);
+			if (sramp.isJcrContentTempFilesEnabled()) {
+			    File tempFile = JCRArtifactPersister.saveToTempFile(artifactContentNode);
+			    return new DeleteOnCloseFileInputStream(tempFile);
+			}
+			// Stream the content straight out of the repository - the session is released
+			// when the stream is closed (unless it belongs to the unit of work).
+			Binary binary = artifactContentNode.getProperty("jcr:data").getBinary(); //$NON-NLS-1$
+			Session contentSession = JCRRepositoryFactory.isUnitOfWorkSession(session) ? null : session;
+			InputStream content = new JCRBinaryInputStream(binary, contentSession);
+			session = null;
+			return content;
         } catch (SrampException se) {
             throw se;
         } catch (Throwable t) {
@@ -317,18 +508,17 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 			ArtifactVisitorHelper.visitArtifact(visitor, artifact);
 			if (visitor.hasError())
 				throw visitor.getError();
-			session.save();
+
+			if (sramp.isAuditingEnabled()) {
+			    JCRArtifactPersister.auditUpdateArtifact(differ, artifactNode);
+			}
+			JCRRepositoryFactory.save(session);
 
 			log.debug(Messages.i18n.format("UPDATED_ARTY_META_DATA", artifact.getUuid())); //$NON-NLS-1$
 
 			if (log.isDebugEnabled()) {
 				printArtifactGraph(artifact.getUuid(), type);
 			}
-
-			if (sramp.isAuditingEnabled()) {
-			    JCRArtifactPersister.auditUpdateArtifact(differ, artifactNode);
-			    session.save();
-			}
         } catch (SrampException se) {
             throw se;
         } catch (Throwable t) {
@@ -351,20 +541,21 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
                 throw new ArtifactNotFoundException(uuid);
             }
 			JCRUtils tools = new JCRUtils();
-			tools.uploadFile(session, artifactNode.getPath(), content);
+			DigestingInputStream digestingContent = new DigestingInputStream(content, DigestingInputStream.SHA1);
+			tools.uploadFile(session, artifactNode.getPath(), digestingContent);
 			JCRUtils.setArtifactContentMimeType(artifactNode, artifactType.getMimeType());
 
 			// Document
 			if (DocumentArtifactType.class.isAssignableFrom(artifactType.getArtifactType().getTypeClass())) {
 				artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_TYPE, artifactType.getMimeType());
-				artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_SIZE, artifactNode.getProperty("jcr:content/jcr:data").getLength()); //$NON-NLS-1$
-				// TODO also handle the hash here
+				artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_SIZE, digestingContent.getLength());
+				artifactNode.setProperty(JCRConstants.SRAMP_CONTENT_HASH, digestingContent.getDigestHex(DigestingInputStream.SHA1));
 			}
 
 			// TODO delete and re-create the derived artifacts?  what if some of them have properties or classifications?
 			// TODO is "update content" even allowed in s-ramp??
 
-			session.save();
+			JCRRepositoryFactory.save(session);
 			log.debug(Messages.i18n.format("UPDATED_ARTY_CONTENT", uuid)); //$NON-NLS-1$
         } catch (SrampException se) {
             throw se;
@@ -400,7 +591,8 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
             jcrUtils.findOrCreateNode(session, parentTrashPath, "nt:folder"); //$NON-NLS-1$
             // Move the jcr node
             session.move(srcPath, trashPath);
-			session.save();
+			JCRRepositoryFactory.save(session);
+			JCRArtifactNodeIndex.getInstance().remove(uuid);
 			log.debug(Messages.i18n.format("DELETED_ARTY", uuid)); //$NON-NLS-1$
         } catch (SrampException se) {
             throw se;
@@ -428,10 +620,11 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 			    throw new OntologyAlreadyExistsException(ontology.getUuid());
 			} else {
 			    JCRUtils tools = new JCRUtils();
-				Node ontologiesNode = tools.findOrCreateNode(session, "/s-ramp/ontologies", "nt:folder"); //$NON-NLS-1$ //$NON-NLS-2$
+				Node ontologiesNode = tools.findOrCreateNode(session, MapToJCRPath.getOntologiesPath(), "nt:folder"); //$NON-NLS-1$
 				Node ontologyNode = ontologiesNode.addNode(ontology.getUuid(), "sramp:ontology"); //$NON-NLS-1$
 				o2jcr.write(ontology, ontologyNode);
-				session.save();
+				JCROntologyCache.ontologiesChanged(session, ontologiesNode);
+				JCRRepositoryFactory.save(session);
 				log.debug(Messages.i18n.format("SAVED_ONTOLOGY", ontology.getUuid())); //$NON-NLS-1$
 				return ontology;
 			}
@@ -478,13 +671,12 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 	 */
 	@Override
 	public List<SrampOntology> getOntologies() throws SrampException {
-		// TODO add caching based on the last modified date of the ontology node
 		Session session = null;
 
 		try {
 			session = JCRRepositoryFactory.getSession();
 			JCRUtils tools = new JCRUtils();
-			Node ontologiesNode = tools.findOrCreateNode(session, "/s-ramp/ontologies", "nt:folder"); //$NON-NLS-1$ //$NON-NLS-2$
+			Node ontologiesNode = tools.findOrCreateNode(session, MapToJCRPath.getOntologiesPath(), "nt:folder"); //$NON-NLS-1$
 			NodeIterator nodes = ontologiesNode.getNodes();
 			List<SrampOntology> ontologies = new ArrayList<SrampOntology>();
 			while (nodes.hasNext()) {
@@ -514,11 +706,12 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 			if (session.nodeExists(ontologyPath)) {
 				Node ontologyNode = session.getNode(ontologyPath);
 				o2jcr.update(ontology, ontologyNode);
+				JCROntologyCache.ontologiesChanged(session, ontologyNode.getParent());
 			} else {
                 throw new OntologyNotFoundException(ontology.getUuid());
 			}
 			log.debug(Messages.i18n.format("UPDATED_ONTOLOGY", ontology.getUuid())); //$NON-NLS-1$
-			session.save();
+			JCRRepositoryFactory.save(session);
         } catch (SrampException se) {
             throw se;
         } catch (Throwable t) {
@@ -540,11 +733,12 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 			session = JCRRepositoryFactory.getSession();
 			if (session.nodeExists(ontologyPath)) {
 				Node ontologyNode = session.getNode(ontologyPath);
+				JCROntologyCache.ontologiesChanged(session, ontologyNode.getParent());
 				ontologyNode.remove();
 			} else {
                 throw new OntologyNotFoundException(uuid);
 			}
-			session.save();
+			JCRRepositoryFactory.save(session);
 			log.debug(Messages.i18n.format("DELETED_ONTOLOGY", uuid)); //$NON-NLS-1$
         } catch (SrampException se) {
             throw se;
@@ -566,15 +760,9 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 		} catch (URISyntaxException e) {
 			throw new InvalidClassifiedByException(classifiedBy);
 		}
-		Collection<SrampOntology> ontologies = getOntologies();
-		for (SrampOntology ontology : ontologies) {
-			Class sclass = ontology.findClass(classifiedBy);
-			if (sclass == null) {
-				sclass = ontology.findClass(classifiedUri);
-			}
-			if (sclass != null) {
-				return sclass.getUri();
-			}
+		URI resolved = JCROntologyCache.getInstance().resolve(classifiedBy, classifiedUri);
+		if (resolved != null) {
+			return resolved;
 		}
         throw new InvalidClassifiedByException(classifiedBy);
 	}
@@ -584,12 +772,9 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 	 */
 	@Override
 	public Collection<URI> normalize(URI classification) throws SrampException {
-		List<SrampOntology> ontologies = getOntologies();
-		for (SrampOntology ontology : ontologies) {
-			Class sclass = ontology.findClass(classification);
-			if (sclass != null) {
-	            return sclass.normalize();
-			}
+		Set<URI> normalized = JCROntologyCache.getInstance().normalize(classification);
+		if (normalized != null) {
+			return new HashSet<URI>(normalized);
 		}
         throw new InvalidClassifiedByException(classification.toString());
 	}
@@ -618,6 +803,22 @@ public class JCRPersistence extends AbstractJCRManager implements PersistenceMan
 		return resolved;
 	}
 
+	/**
+	 * @see org.overlord.sramp.repository.jcr.ClassificationHelper#reduceToMostGeneral(java.util.Collection)
+	 */
+	@Override
+	public Collection<URI> reduceToMostGeneral(Collection<URI> classifications) throws SrampException {
+		return JCROntologyCache.getInstance().reduceToMostGeneral(classifications);
+	}
+
+	/**
+	 * @see org.overlord.sramp.repository.jcr.ClassificationHelper#reduceToMostSpecific(java.util.Collection)
+	 */
+	@Override
+	public Collection<URI> reduceToMostSpecific(Collection<URI> classifications) throws SrampException {
+		return JCROntologyCache.getInstance().reduceToMostSpecific(classifications);
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.repository.PersistenceManager#printArtifactGraph(java.lang.String, org.overlord.sramp.common.ArtifactType)
 	 */
@@ -32,13 +32,25 @@ import org.overlord.sramp.repository.jcr.mapper.ArtifactToJCRNodeVisitor.JCRRefe
 public class JCRReferenceFactoryImpl extends AbstractJCRManager implements JCRReferenceFactory {
 
     private Session session;
+    private JCRPendingArtifacts pendingArtifacts;
 
     /**
      * Constructor.
      * @param session
      */
     public JCRReferenceFactoryImpl(Session session) {
+        this(session, null);
+    }
+
+    /**
+     * Constructor.  References to any of the given pending (not yet saved) artifacts are
+     * resolved directly, without querying the repository.
+     * @param session
+     * @param pendingArtifacts
+     */
+    public JCRReferenceFactoryImpl(Session session, JCRPendingArtifacts pendingArtifacts) {
         this.session = session;
+        this.pendingArtifacts = pendingArtifacts;
     }
 
     /**
@@ -47,7 +59,18 @@ public class JCRReferenceFactoryImpl extends AbstractJCRManager implements JCRRe
     @Override
     public Value createReference(String uuid) throws SrampException {
         try {
-            Node node = findArtifactNodeByUuid(session, uuid);
+            Node node = null;
+            if (pendingArtifacts != null) {
+                node = pendingArtifacts.get(uuid);
+            }
+            if (node == null) {
+                node = findSavedArtifactNodeByUuid(session, uuid);
+            }
+            if (node == null) {
+                // The target may have been created earlier in the unit of work (and not saved
+                // yet).  Not flushing to find it keeps a half-applied change out of the store.
+                node = JCRRepositoryFactory.findUnsavedArtifactNode(session, uuid);
+            }
             if (node == null) {
                 throw new ArtifactNotFoundException(uuid);
             }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+import javax.jcr.Value;
+
+import org.overlord.sramp.repository.jcr.i18n.Messages;
+import org.overlord.sramp.repository.jcr.mapper.JCRNodeToArtifactVisitor.JCRReferenceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An impl of a JCR reference resolver.  Resolved references are cached (the s-ramp UUID of
+ * an artifact node never changes), so a resolver shared by all of the artifacts created in
+ * a session - e.g. all of the artifacts in a feed or a batch - loads each referenced node
+ * only once, no matter how many relationships point at it.
+ */
+public class JCRReferenceResolverImpl implements JCRReferenceResolver {
+
+    private static Logger log = LoggerFactory.getLogger(JCRReferenceResolverImpl.class);
+
+    private final Session session;
+    private final Map<String, String> resolved = new HashMap<String, String>();
+
+    /**
+     * Constructor.
+     * @param session
+     */
+    public JCRReferenceResolverImpl(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * @see org.overlord.sramp.repository.jcr.mapper.JCRNodeToArtifactVisitor.JCRReferenceResolver#resolveReference(javax.jcr.Value)
+     */
+    @Override
+    public String resolveReference(Value reference) {
+        try {
+            String ident = reference.getString();
+            String uuid = resolved.get(ident);
+            if (uuid == null) {
+                Node node = session.getNodeByIdentifier(ident);
+                uuid = node.getProperty(JCRConstants.SRAMP_UUID).getString();
+                resolved.put(ident, uuid);
+            }
+            return uuid;
+        } catch (Exception e) {
+            log.debug(Messages.i18n.format("ERROR_RESOLVING_JCR_REF"), e); //$NON-NLS-1$
+        }
+        return null;
+    }
+
+}
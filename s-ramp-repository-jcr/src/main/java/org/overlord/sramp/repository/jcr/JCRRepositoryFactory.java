@@ -17,11 +17,16 @@ package org.overlord.sramp.repository.jcr;
 
 import java.util.ServiceLoader;
 
+import javax.jcr.Credentials;
 import javax.jcr.LoginException;
+import javax.jcr.Node;
 import javax.jcr.NoSuchWorkspaceException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
 
+import org.overlord.sramp.common.Sramp;
+import org.overlord.sramp.repository.UnitOfWork;
 import org.overlord.sramp.repository.jcr.i18n.Messages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +37,7 @@ public class JCRRepositoryFactory {
 	private static Logger log = LoggerFactory.getLogger(JCRRepositoryFactory.class);
 
 	private static JCRRepository instance;
+	private static volatile JCRSessionPool sessionPool;
 
     public synchronized static JCRRepository getInstance() throws RepositoryException {
         if (instance == null) {
@@ -50,6 +56,15 @@ public class JCRRepositoryFactory {
      * Destroys the factory.  This causes the instance to be shut down.
      */
     public static synchronized void destroy() {
+        // Let the audit writer finish first - it needs the repository
+        JCRAuditWriter.destroy();
+        if (sessionPool != null) {
+            sessionPool.close();
+        }
+        sessionPool = null;
+        JCRArtifactNodeIndex.destroy();
+        JCROntologyCache.destroy();
+        JCRDerivationExecutor.destroy();
         if (instance != null) {
             instance.shutdown();
         }
@@ -57,28 +72,218 @@ public class JCRRepositoryFactory {
     }
 
     /**
-     * Convenience method for getting a JCR session from the repo singleton.
+     * Gets the JCR session pool, creating it if necessary.  This is called for every
+     * session, so once the pool exists it is read without locking.
+     * @throws RepositoryException
+     */
+    public static JCRSessionPool getSessionPool() throws RepositoryException {
+        JCRSessionPool pool = sessionPool;
+        if (pool == null) {
+            pool = createSessionPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Creates the JCR session pool (unless another thread got there first).
+     * @throws RepositoryException
+     */
+    private synchronized static JCRSessionPool createSessionPool() throws RepositoryException {
+        JCRRepository repository = getInstance();
+        if (sessionPool == null) {
+            Sramp sramp = new Sramp();
+            JCRSessionPool pool = new JCRSessionPool(repository, WORKSPACE_NAME, sramp.isJcrSessionPoolEnabled(),
+                    sramp.getJcrSessionPoolMaxActive(), sramp.getJcrSessionPoolMaxIdlePerSubject(),
+                    sramp.getJcrSessionPoolMaxWait(), sramp.getJcrSessionPoolIdleTimeout());
+            startAuditEntriesUpgrade(repository);
+            if (sramp.isAuditingAsyncEnabled()) {
+                // Started right away, to write any audit entries left over from the last run
+                JCRAuditWriter.start(repository);
+            }
+            sessionPool = pool;
+        }
+        return sessionPool;
+    }
+
+    /**
+     * Upgrades any audit entries written by older versions (see
+     * {@link JCRAuditManager#upgradeAuditEntries(Session)}) in the background, logged in as
+     * the audit user - the repository can be used in the meantime.  A failure is logged, and
+     * the upgrade is tried again at the next startup.
+     * @param repository
+     */
+    private static void startAuditEntriesUpgrade(final JCRRepository repository) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                upgradeAuditEntries(repository);
+            }
+        }, "sramp-audit-upgrade"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Upgrades any audit entries written by older versions.
+     * @param repository
+     */
+    private static void upgradeAuditEntries(JCRRepository repository) {
+        Session session = null;
+        try {
+            session = repository.getRepo().login(getAuditCredentials(), WORKSPACE_NAME);
+            JCRAuditManager.upgradeAuditEntries(session);
+        } catch (RepositoryException e) {
+            log.error(Messages.i18n.format("AUDIT_ENTRIES_UPGRADE_FAILED"), e); //$NON-NLS-1$
+        } finally {
+            if (session != null) {
+                session.logout();
+            }
+        }
+    }
+
+    /**
+     * Gets the credentials of the (configured) audit user - the user that background audit
+     * work logs in as.
+     * @return the credentials, or null if no audit user is configured
+     */
+    static Credentials getAuditCredentials() {
+        Sramp sramp = new Sramp();
+        if (sramp.getAuditUser() == null) {
+            return null;
+        }
+        String password = sramp.getAuditPassword();
+        return new SimpleCredentials(sramp.getAuditUser(), password == null ? new char[0] : password.toCharArray());
+    }
+
+    /**
+     * Convenience method for getting a JCR session from the repo singleton.  The session
+     * comes from the {@link JCRSessionPool} and must be handed back by calling
+     * {@link #logoutQuietly(Session)}.  When a {@link UnitOfWork} is active on the current
+     * thread, the session bound to it is returned instead (binding a new one first if
+     * necessary), so that all of the operations in the unit of work share one session.
      * @throws LoginException
      * @throws NoSuchWorkspaceException
      * @throws RepositoryException
      */
     public static Session getSession() throws RepositoryException {
-        // Login with null credentials.  This forces ModeShape to authenticate with either
-        // the anonymous auth provider (if configured) or any other auth provider that might
-        // be configured *and* can accept null creds.  Typically this means the JAAS provider,
-        // which should use the current JAAS subject in the absence of credentials.
-        return getInstance().getRepo().login(null, WORKSPACE_NAME);
+        // Note: get the pool first - it may start up the repository, which needs a session itself.
+        JCRSessionPool pool = getSessionPool();
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) {
+            JCRUnitOfWorkSession uowSession = (JCRUnitOfWorkSession) uow.getResource(JCRUnitOfWorkSession.class);
+            if (uowSession == null) {
+                uowSession = new JCRUnitOfWorkSession(pool.borrowSession());
+                uow.bindResource(JCRUnitOfWorkSession.class, uowSession);
+            }
+            return uowSession.getSession();
+        }
+        return pool.borrowSession();
+    }
+
+    /**
+     * Saves the given session.  If the session is the one bound to the active
+     * {@link UnitOfWork} then the save is deferred until the unit of work commits.
+     * @param session
+     * @throws RepositoryException
+     */
+    public static void save(Session session) throws RepositoryException {
+        if (!isUnitOfWorkSession(session)) {
+            session.save();
+            JCRAuditWriter.sessionSaved(session);
+        }
+    }
+
+    /**
+     * Saves the given session, which contains the given newly created artifacts.  If the
+     * save is deferred (see {@link #save(Session)}) the unit of work remembers the artifacts,
+     * so that later operations in it can find them without having to flush the session.
+     * @param session
+     * @param createdArtifacts
+     * @throws RepositoryException
+     */
+    public static void save(Session session, JCRPendingArtifacts createdArtifacts) throws RepositoryException {
+        JCRUnitOfWorkSession uowSession = getUnitOfWorkSession(session);
+        if (uowSession != null) {
+            uowSession.getUnsavedArtifacts().addAll(createdArtifacts);
+        }
+        save(session);
+    }
+
+    /**
+     * Finds an artifact node that was created earlier in the unit of work the given session
+     * is bound to, but has not been saved yet.
+     * @param session
+     * @param uuid
+     * @return the node, or null if there is no such (unsaved) artifact
+     */
+    public static Node findUnsavedArtifactNode(Session session, String uuid) {
+        JCRUnitOfWorkSession uowSession = getUnitOfWorkSession(session);
+        return uowSession == null ? null : uowSession.getUnsavedArtifacts().get(uuid);
+    }
+
+    /**
+     * Saves any changes that have been deferred in the given unit of work session.  This
+     * must be called before running a query, because JCR queries only see saved content.
+     * Sessions that are not bound to a {@link UnitOfWork} are left untouched.
+     * @param session
+     * @throws RepositoryException
+     */
+    public static void flush(Session session) throws RepositoryException {
+        JCRUnitOfWorkSession uowSession = getUnitOfWorkSession(session);
+        if (uowSession != null && session.hasPendingChanges()) {
+            session.save();
+            JCRAuditWriter.sessionSaved(session);
+            uowSession.getUnsavedArtifacts().clear();
+        }
+    }
+
+    /**
+     * Returns true if the given session is the one bound to the active {@link UnitOfWork}.
+     * @param session
+     */
+    public static boolean isUnitOfWorkSession(Session session) {
+        return getUnitOfWorkSession(session) != null;
     }
 
     /**
-     * Quietly logs out of the JCR session.
+     * Gets the active {@link UnitOfWork}'s session wrapper, if the given session is the one
+     * bound to it.
+     * @param session
+     * @return the unit of work session, or null
+     */
+    private static JCRUnitOfWorkSession getUnitOfWorkSession(Session session) {
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow == null || session == null) {
+            return null;
+        }
+        JCRUnitOfWorkSession uowSession = (JCRUnitOfWorkSession) uow.getResource(JCRUnitOfWorkSession.class);
+        return uowSession != null && uowSession.getSession() == session ? uowSession : null;
+    }
+
+    /**
+     * Quietly logs out of the JCR session (or returns it to the session pool).  This
+     * does nothing for the session bound to the active {@link UnitOfWork} - that session
+     * is released when the unit of work ends.
      * @param session
      */
     public static void logoutQuietly(Session session) {
-        if (session != null) {
-            try { session.logout(); } catch (Throwable t) { }
+        if (session != null && !isUnitOfWorkSession(session)) {
+            releaseSession(session);
         }
     }
 
+    /**
+     * Returns the session to the session pool (or logs out of it).
+     * @param session
+     */
+    static void releaseSession(Session session) {
+        JCRAuditWriter.sessionReleased(session);
+        JCRSessionPool pool = sessionPool;
+        if (pool != null) {
+            pool.returnSession(session);
+        } else {
+            try { session.logout(); } catch (Throwable t) { }
+        }
+    }
 
 }
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.security.AccessController;
+import java.security.Principal;
+import java.security.acl.Group;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.security.auth.Subject;
+
+import org.overlord.sramp.repository.UnitOfWork;
+import org.overlord.sramp.repository.jcr.i18n.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of JCR sessions.  Sessions are pooled per caller - the user the current
+ * {@link UnitOfWork} is performed for (see {@link UnitOfWork#getCallerName()}) or else the
+ * user of the current JAAS subject.  We always login with null credentials, leaving it to
+ * ModeShape to authenticate the session (from the same security context), so a new
+ * session is only pooled if ModeShape authenticated it as that same user (its
+ * {@link Session#getUserID()}) - a session created for one caller is never handed to
+ * another.  When the caller is not known (or ModeShape disagrees) the session is not
+ * pooled at all:  it is created on borrow and logged out on return, which is exactly the
+ * behavior prior to pooling.
+ * <br/><br/>
+ * Returned sessions are refreshed (discarding any unsaved changes) before being made
+ * available again.  Idle sessions are logged out once they exceed the idle timeout.
+ */
+public class JCRSessionPool {
+
+    private static Logger log = LoggerFactory.getLogger(JCRSessionPool.class);
+
+    private final JCRRepository repository;
+    private final String workspaceName;
+    private final boolean poolingEnabled;
+    private final int maxIdlePerSubject;
+    private final long maxWait;
+    private final long idleTimeout;
+
+    private final Semaphore activePermits;
+    private final Map<String, LinkedList<IdleSession>> idleSessions = new HashMap<String, LinkedList<IdleSession>>();
+    private final Map<Session, String> activeSessions = Collections.synchronizedMap(new IdentityHashMap<Session, String>());
+    private final Timer evictionTimer;
+    private boolean closed = false;
+
+    // Pool metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong loginCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param repository the repository to login to
+     * @param workspaceName the JCR workspace all sessions are created for
+     * @param poolingEnabled when false sessions are never re-used (but are still bounded)
+     * @param maxActive the max number of sessions that may be borrowed at the same time
+     * @param maxIdlePerSubject the max number of idle sessions kept for a single caller
+     * @param maxWait how long (millis) to wait for a session when maxActive has been reached
+     * @param idleTimeout how long (millis) an idle session is kept before it is logged out
+     */
+    public JCRSessionPool(JCRRepository repository, String workspaceName, boolean poolingEnabled,
+            int maxActive, int maxIdlePerSubject, long maxWait, long idleTimeout) {
+        this.repository = repository;
+        this.workspaceName = workspaceName;
+        this.poolingEnabled = poolingEnabled;
+        this.maxIdlePerSubject = maxIdlePerSubject;
+        this.maxWait = maxWait;
+        this.idleTimeout = idleTimeout;
+        this.activePermits = new Semaphore(maxActive, true);
+
+        if (poolingEnabled && idleTimeout > 0) {
+            long period = Math.max(1000l, idleTimeout / 2);
+            this.evictionTimer = new Timer("S-RAMP JCR Session Pool Evictor", true); //$NON-NLS-1$
+            this.evictionTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    evictIdleSessions();
+                }
+            }, period, period);
+        } else {
+            this.evictionTimer = null;
+        }
+    }
+
+    /**
+     * Borrows a session from the pool.  An idle session belonging to the current caller
+     * is re-used if one is available, otherwise a new session is created.  The caller
+     * must hand the session back via {@link #returnSession(Session)}.
+     * @throws RepositoryException
+     */
+    public Session borrowSession() throws RepositoryException {
+        long startWait = System.nanoTime();
+        try {
+            if (!activePermits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                throw new RepositoryException(Messages.i18n.format("SESSION_POOL_EXHAUSTED", maxWait)); //$NON-NLS-1$
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException(e);
+        }
+        recordWait(System.nanoTime() - startWait);
+        borrowCount.incrementAndGet();
+
+        try {
+            String callerName = poolingEnabled ? getCallerName() : null;
+            Session session = null;
+            if (callerName != null) {
+                session = pollIdleSession(callerName);
+            }
+            if (session == null) {
+                // Login with null credentials.  This forces ModeShape to authenticate with either
+                // the anonymous auth provider (if configured) or any other auth provider that might
+                // be configured *and* can accept null creds.  Typically this means the JAAS provider,
+                // which should use the current JAAS subject in the absence of credentials.
+                session = repository.getRepo().login(null, workspaceName);
+                loginCount.incrementAndGet();
+                if (callerName != null && !callerName.equals(session.getUserID())) {
+                    log.debug(Messages.i18n.format("SESSION_POOL_USER_MISMATCH", session.getUserID(), callerName)); //$NON-NLS-1$
+                    callerName = null;
+                }
+            } else {
+                hitCount.incrementAndGet();
+            }
+            activeSessions.put(session, callerName == null ? "" : callerName); //$NON-NLS-1$
+            return session;
+        } catch (RepositoryException e) {
+            activePermits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            activePermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a session to the pool.  Any unsaved changes in the session are discarded.  If
+     * the session cannot be pooled (unknown caller, too many idle sessions for the caller, etc)
+     * then it is simply logged out.
+     * @param session
+     */
+    public void returnSession(Session session) {
+        if (session == null)
+            return;
+        String callerName = activeSessions.remove(session);
+        if (callerName == null) {
+            // Not one of ours - nothing to release.
+            logoutQuietly(session);
+            return;
+        }
+        try {
+            if (callerName.length() == 0 || !session.isLive()) {
+                logoutQuietly(session);
+                return;
+            }
+            try {
+                session.refresh(false);
+            } catch (Throwable t) {
+                logoutQuietly(session);
+                return;
+            }
+            boolean pooled = false;
+            synchronized (idleSessions) {
+                if (!closed) {
+                    LinkedList<IdleSession> sessions = idleSessions.get(callerName);
+                    if (sessions == null) {
+                        sessions = new LinkedList<IdleSession>();
+                        idleSessions.put(callerName, sessions);
+                    }
+                    if (sessions.size() < maxIdlePerSubject) {
+                        sessions.addFirst(new IdleSession(session));
+                        pooled = true;
+                    }
+                }
+            }
+            if (!pooled) {
+                logoutQuietly(session);
+            }
+        } finally {
+            activePermits.release();
+        }
+    }
+
+    /**
+     * Gets the most recently returned idle session for the given caller, or null
+     * if there isn't one.
+     * @param callerName
+     */
+    private Session pollIdleSession(String callerName) {
+        while (true) {
+            IdleSession idle = null;
+            synchronized (idleSessions) {
+                LinkedList<IdleSession> sessions = idleSessions.get(callerName);
+                if (sessions == null || sessions.isEmpty())
+                    return null;
+                idle = sessions.removeFirst();
+            }
+            if (idle.session.isLive()) {
+                return idle.session;
+            }
+            logoutQuietly(idle.session);
+        }
+    }
+
+    /**
+     * Logs out of any session that has been idle for longer than the idle timeout.
+     */
+    protected void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - idleTimeout;
+        List<Session> evicted = new ArrayList<Session>();
+        synchronized (idleSessions) {
+            Iterator<LinkedList<IdleSession>> callers = idleSessions.values().iterator();
+            while (callers.hasNext()) {
+                LinkedList<IdleSession> sessions = callers.next();
+                // Most recently returned sessions are at the front of the list.
+                while (!sessions.isEmpty() && sessions.getLast().idleSince < cutoff) {
+                    evicted.add(sessions.removeLast().session);
+                }
+                if (sessions.isEmpty()) {
+                    callers.remove();
+                }
+            }
+        }
+        for (Session session : evicted) {
+            logoutQuietly(session);
+        }
+        evictionCount.addAndGet(evicted.size());
+        if (log.isDebugEnabled()) {
+            log.debug(Messages.i18n.format("SESSION_POOL_STATS", getActiveCount(), getIdleCount(), //$NON-NLS-1$
+                    getBorrowCount(), getHitCount(), getAverageWaitMillis(), getMaxWaitMillis()));
+        }
+    }
+
+    /**
+     * Closes the pool, logging out of all idle sessions.  Sessions that are currently
+     * borrowed are logged out when they are returned.
+     */
+    public void close() {
+        if (evictionTimer != null) {
+            evictionTimer.cancel();
+        }
+        List<Session> sessions = new ArrayList<Session>();
+        synchronized (idleSessions) {
+            closed = true;
+            for (LinkedList<IdleSession> idle : idleSessions.values()) {
+                for (IdleSession idleSession : idle) {
+                    sessions.add(idleSession.session);
+                }
+            }
+            idleSessions.clear();
+        }
+        for (Session session : sessions) {
+            logoutQuietly(session);
+        }
+    }
+
+    /**
+     * Figures out the name of the current caller (the key sessions are pooled by): the
+     * caller of the current unit of work, or else the (one) user principal of the current
+     * JAAS subject.  Returns null when the caller is not known, in which case the session
+     * will not be pooled.
+     */
+    protected String getCallerName() {
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null && uow.getCallerName() != null) {
+            return uow.getCallerName();
+        }
+        Subject subject = Subject.getSubject(AccessController.getContext());
+        if (subject == null) {
+            return null;
+        }
+        String name = null;
+        for (Principal principal : subject.getPrincipals()) {
+            // Skip the role groups
+            if (principal instanceof Group) {
+                continue;
+            }
+            if (name != null && !name.equals(principal.getName())) {
+                return null;
+            }
+            name = principal.getName();
+        }
+        return name;
+    }
+
+    /**
+     * Records the time spent waiting for a session.
+     * @param waitNanos
+     */
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        long currentMax = maxWaitNanos.get();
+        while (waitNanos > currentMax && !maxWaitNanos.compareAndSet(currentMax, waitNanos)) {
+            currentMax = maxWaitNanos.get();
+        }
+    }
+
+    /**
+     * Quietly logs out of the JCR session.
+     * @param session
+     */
+    private static void logoutQuietly(Session session) {
+        try { session.logout(); } catch (Throwable t) { }
+    }
+
+    /**
+     * @return the number of sessions currently borrowed from the pool
+     */
+    public int getActiveCount() {
+        return activeSessions.size();
+    }
+
+    /**
+     * @return the number of idle sessions currently held by the pool
+     */
+    public int getIdleCount() {
+        int count = 0;
+        synchronized (idleSessions) {
+            for (LinkedList<IdleSession> sessions : idleSessions.values()) {
+                count += sessions.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the total number of sessions borrowed from the pool
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * @return the number of borrows that were satisfied by an idle session
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of times the pool had to login to the repository
+     */
+    public long getLoginCount() {
+        return loginCount.get();
+    }
+
+    /**
+     * @return the number of idle sessions logged out due to the idle timeout
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the average time (millis) spent waiting for a session
+     */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        if (borrows == 0)
+            return 0;
+        return (totalWaitNanos.get() / (double) borrows) / 1000000d;
+    }
+
+    /**
+     * @return the longest time (millis) spent waiting for a session
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000d;
+    }
+
+    /**
+     * An idle session along with the time it was returned to the pool.
+     */
+    private static class IdleSession {
+        private final Session session;
+        private final long idleSince;
+
+        /**
+         * Constructor.
+         * @param session
+         */
+        public IdleSession(Session session) {
+            this.session = session;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+
+}
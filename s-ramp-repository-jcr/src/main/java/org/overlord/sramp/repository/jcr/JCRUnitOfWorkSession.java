@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.overlord.sramp.common.SrampException;
+import org.overlord.sramp.common.SrampServerException;
+import org.overlord.sramp.repository.UnitOfWork;
+import org.overlord.sramp.repository.UnitOfWorkResource;
+
+/**
+ * The JCR session shared by all of the JCR operations performed within a single
+ * {@link UnitOfWork}.  Saves made through {@link JCRRepositoryFactory#save(Session)}
+ * are deferred until the unit of work is committed.
+ */
+public class JCRUnitOfWorkSession implements UnitOfWorkResource {
+
+    private final Session session;
+    private final JCRPendingArtifacts unsavedArtifacts = new JCRPendingArtifacts();
+
+    /**
+     * Constructor.
+     * @param session
+     */
+    public JCRUnitOfWorkSession(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * @return the session
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * @return the artifacts created in the unit of work that have not been saved yet
+     */
+    public JCRPendingArtifacts getUnsavedArtifacts() {
+        return unsavedArtifacts;
+    }
+
+    /**
+     * @see org.overlord.sramp.repository.UnitOfWorkResource#commit()
+     */
+    @Override
+    public void commit() throws SrampException {
+        try {
+            if (session.hasPendingChanges()) {
+                session.save();
+                JCRAuditWriter.sessionSaved(session);
+            }
+            unsavedArtifacts.clear();
+        } catch (RepositoryException e) {
+            throw new SrampServerException(e);
+        }
+    }
+
+    /**
+     * @see org.overlord.sramp.repository.UnitOfWorkResource#rollback()
+     */
+    @Override
+    public void rollback() throws SrampException {
+        // Forget the audit entries captured for the discarded changes, then the changes.
+        JCRAuditWriter.sessionRolledBack(session);
+        unsavedArtifacts.clear();
+        try {
+            session.refresh(false);
+        } catch (RepositoryException e) {
+            throw new SrampServerException(e);
+        }
+    }
+
+    /**
+     * @see org.overlord.sramp.repository.UnitOfWorkResource#release()
+     */
+    @Override
+    public void release() {
+        JCRRepositoryFactory.releaseSession(session);
+    }
+
+}
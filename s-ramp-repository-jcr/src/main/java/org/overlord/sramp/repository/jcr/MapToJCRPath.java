@@ -52,6 +52,15 @@ public class MapToJCRPath {
         return ROOT_PATH + "/ontologies/" + uuid; //$NON-NLS-1$
     }
 
+    /**
+     * "/s-ramp/ontologies"
+     *
+     * @return path: "/s-ramp/ontologies"
+     */
+    public static String getOntologiesPath() {
+        return ROOT_PATH + "/ontologies"; //$NON-NLS-1$
+    }
+
     /**
      * "/s-ramp/queries/[UUID]"
      *
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.audit;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.overlord.sramp.repository.jcr.JCRArtifactPersister;
+
+/**
+ * An audit entry (and its audit items) captured in memory, before it is written to the
+ * artifact's JCR node.  Captured entries can be written right away, or queued and written
+ * later (in batches) by the {@link org.overlord.sramp.repository.jcr.JCRAuditWriter} - which
+ * is why the entry records who made the change and when, rather than relying on the JCR
+ * created/createdBy properties of the audit entry node.
+ */
+public class PendingAuditEntry {
+
+    private final String uuid;
+    private final String type;
+    private final String who;
+    private final long when;
+    private final String artifactNodeId;
+    private final List<Item> items = new ArrayList<Item>();
+
+    /**
+     * Constructor.
+     * @param type the audit entry type
+     * @param who the user who made the change
+     * @param when when the change was made
+     * @param artifactNodeId the identifier of the artifact's JCR node
+     */
+    public PendingAuditEntry(String type, String who, long when, String artifactNodeId) {
+        this(UUID.randomUUID().toString(), type, who, when, artifactNodeId);
+    }
+
+    /**
+     * Constructor.
+     * @param uuid
+     * @param type
+     * @param who
+     * @param when
+     * @param artifactNodeId
+     */
+    private PendingAuditEntry(String uuid, String type, String who, long when, String artifactNodeId) {
+        this.uuid = uuid;
+        this.type = type;
+        this.who = who;
+        this.when = when;
+        this.artifactNodeId = artifactNodeId;
+    }
+
+    /**
+     * Adds an audit item to the entry.
+     * @param itemType
+     * @return the (modifiable) properties of the new audit item
+     */
+    public Map<String, String> addItem(String itemType) {
+        Item item = new Item(itemType);
+        items.add(item);
+        return item.properties;
+    }
+
+    /**
+     * @return the uuid
+     */
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * @return the type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the user who made the change
+     */
+    public String getWho() {
+        return who;
+    }
+
+    /**
+     * @return when the change was made (millis)
+     */
+    public long getWhen() {
+        return when;
+    }
+
+    /**
+     * @return the identifier of the artifact's JCR node
+     */
+    public String getArtifactNodeId() {
+        return artifactNodeId;
+    }
+
+    /**
+     * Returns true if the entry was already written to the given artifact node.
+     * @param artifactNode
+     * @throws RepositoryException
+     */
+    public boolean isWritten(Node artifactNode) throws RepositoryException {
+        return artifactNode.hasNode("audit:" + uuid); //$NON-NLS-1$
+    }
+
+    /**
+     * Writes the entry (creates the audit entry and item nodes) as a child of the given
+     * artifact node.
+     * @param artifactNode
+     * @throws RepositoryException
+     */
+    public Node write(Node artifactNode) throws RepositoryException {
+        Node auditEntryNode = JCRArtifactPersister.createAuditEntryNode(artifactNode, uuid, type, who, when);
+        for (Item item : items) {
+            Node auditItemNode = JCRArtifactPersister.createAuditItemNode(auditEntryNode, item.type);
+            for (Entry<String, String> entry : item.properties.entrySet()) {
+                auditItemNode.setProperty(entry.getKey(), entry.getValue());
+            }
+        }
+        return auditEntryNode;
+    }
+
+    /**
+     * Serializes the entry (to the audit spool file).
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        writeString(out, uuid);
+        writeString(out, type);
+        writeString(out, who);
+        out.writeLong(when);
+        writeString(out, artifactNodeId);
+        out.writeInt(items.size());
+        for (Item item : items) {
+            writeString(out, item.type);
+            out.writeInt(item.properties.size());
+            for (Entry<String, String> entry : item.properties.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Deserializes an entry written by {@link #writeTo(DataOutputStream)}.
+     * @param in
+     * @throws IOException
+     */
+    public static PendingAuditEntry readFrom(DataInputStream in) throws IOException {
+        String uuid = readString(in);
+        String type = readString(in);
+        String who = readString(in);
+        long when = in.readLong();
+        String artifactNodeId = readString(in);
+        PendingAuditEntry entry = new PendingAuditEntry(uuid, type, who, when, artifactNodeId);
+        int numItems = in.readInt();
+        for (int i = 0; i < numItems; i++) {
+            Map<String, String> properties = entry.addItem(readString(in));
+            int numProperties = in.readInt();
+            for (int j = 0; j < numProperties; j++) {
+                properties.put(readString(in), readString(in));
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Writes a (possibly null, possibly longer than 64k) string.
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8"); //$NON-NLS-1$
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     * @param in
+     * @throws IOException
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8"); //$NON-NLS-1$
+    }
+
+    /**
+     * A single audit item of the entry.
+     */
+    private static class Item {
+
+        private final String type;
+        private final Map<String, String> properties = new LinkedHashMap<String, String>();
+
+        /**
+         * Constructor.
+         * @param type
+         */
+        public Item(String type) {
+            this.type = type;
+        }
+
+    }
+
+}
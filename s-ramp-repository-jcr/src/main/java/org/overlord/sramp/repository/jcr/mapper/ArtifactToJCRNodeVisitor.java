@@ -80,6 +80,7 @@ import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.WsdlService;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdDocument;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XsdTypeEnum;
 import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.common.Sramp;
 import org.overlord.sramp.common.SrampException;
 import org.overlord.sramp.common.visitors.HierarchicalArtifactVisitorAdapter;
 import org.overlord.sramp.repository.jcr.ClassificationHelper;
@@ -94,6 +95,8 @@ import org.overlord.sramp.repository.jcr.JCRConstants;
  */
 public class ArtifactToJCRNodeVisitor extends HierarchicalArtifactVisitorAdapter {
 
+    private static Sramp sramp = new Sramp();
+
     private ArtifactType artifactType;
 	private Node jcrNode;
 	private Exception error;
@@ -625,6 +628,7 @@ public class ArtifactToJCRNodeVisitor extends HierarchicalArtifactVisitorAdapter
 			Value [] values = new Value[1];
 			values[0] = this.referenceFactory.createReference(target.getValue());
 			relationshipNode.setProperty("sramp:relationshipTarget", values); //$NON-NLS-1$
+			setRelationshipTargetUuids(relationshipNode, new String[] { target.getValue() });
 		} else {
 			// If the minimum cardinality is > 0 but no targets have been provided, then
 			// remove the relationship node.
@@ -650,10 +654,13 @@ public class ArtifactToJCRNodeVisitor extends HierarchicalArtifactVisitorAdapter
 			Node relationshipNode = getOrCreateRelationshipNode(this.jcrNode, relationshipType, maxCardinality,
 					targetType, isGeneric);
 			Value[] values = new Value[targets.size()];
+			String[] uuids = new String[targets.size()];
 			for (int idx = 0; idx < targets.size(); idx++) {
-				values[idx] = this.referenceFactory.createReference(targets.get(idx).getValue());
+				uuids[idx] = targets.get(idx).getValue();
+				values[idx] = this.referenceFactory.createReference(uuids[idx]);
 			}
 			relationshipNode.setProperty("sramp:relationshipTarget", values); //$NON-NLS-1$
+			setRelationshipTargetUuids(relationshipNode, uuids);
 		} else {
 			// If the minimum cardinality is > 0 but no targets have been provided, then
 			// remove the relationship node.
@@ -661,6 +668,22 @@ public class ArtifactToJCRNodeVisitor extends HierarchicalArtifactVisitorAdapter
 		}
 	}
 
+	/**
+	 * Stores the s-ramp UUIDs of the relationship's targets alongside the references (if
+	 * enabled), so that reading the relationship back doesn't need to load the targets.
+	 * Otherwise any UUIDs stored earlier are removed, as they'd no longer be kept in sync.
+	 * @param relationshipNode
+	 * @param uuids
+	 * @throws RepositoryException
+	 */
+	private static void setRelationshipTargetUuids(Node relationshipNode, String[] uuids) throws RepositoryException {
+		if (sramp.isJcrRelationshipTargetUuidsEnabled()) {
+			relationshipNode.setProperty(JCRConstants.SRAMP_RELATIONSHIP_TARGET_UUID, uuids);
+		} else if (relationshipNode.hasProperty(JCRConstants.SRAMP_RELATIONSHIP_TARGET_UUID)) {
+			relationshipNode.getProperty(JCRConstants.SRAMP_RELATIONSHIP_TARGET_UUID).remove();
+		}
+	}
+
 	/**
 	 * Removes the relationship of the given type from the JCR node.
 	 * @param relationshipType
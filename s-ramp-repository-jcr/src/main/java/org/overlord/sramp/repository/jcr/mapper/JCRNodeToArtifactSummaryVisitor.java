@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.mapper;
+
+import java.util.Set;
+
+import javax.jcr.Node;
+
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.DocumentArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedDocument;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XmlDocument;
+import org.overlord.sramp.common.visitors.HierarchicalArtifactVisitorAdapter;
+
+/**
+ * A visitor for going from a JCR node to a summary of an S-RAMP artifact - i.e. only the
+ * meta-data needed to list the artifact (in a feed, for example).  Only properties of the
+ * artifact node itself are read: the relationships (child nodes and the references they
+ * hold), the classifications, and all but the requested custom properties are skipped.
+ */
+public class JCRNodeToArtifactSummaryVisitor extends HierarchicalArtifactVisitorAdapter {
+
+    private Node jcrNode;
+    private Set<String> propertyNames;
+    private JCRNodeToArtifactVisitor fullVisitor;
+
+    /**
+     * Constructor.
+     * @param jcrNode
+     * @param propertyNames the custom properties to include (may be null)
+     */
+    public JCRNodeToArtifactSummaryVisitor(Node jcrNode, Set<String> propertyNames) {
+        this.jcrNode = jcrNode;
+        this.propertyNames = propertyNames;
+        // Used for the (relationship free) type specific meta-data
+        this.fullVisitor = new JCRNodeToArtifactVisitor(jcrNode, null);
+    }
+
+    /**
+     * @see org.overlord.sramp.common.visitors.HierarchicalArtifactVisitorAdapter#visitBase(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType)
+     */
+    @Override
+    protected void visitBase(BaseArtifactType artifact) {
+        try {
+            JCRNodeToArtifactVisitor.mapCoreMetaData(jcrNode, artifact);
+            if (propertyNames != null && !propertyNames.isEmpty()) {
+                JCRNodeToArtifactVisitor.mapCustomProperties(jcrNode, artifact, propertyNames);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @see org.overlord.sramp.common.visitors.HierarchicalArtifactVisitorAdapter#visitDocument(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.DocumentArtifactType)
+     */
+    @Override
+    protected void visitDocument(DocumentArtifactType artifact) {
+        fullVisitor.visitDocument(artifact);
+    }
+
+    /**
+     * @see org.overlord.sramp.common.visitors.HierarchicalArtifactVisitorAdapter#visitXmlDocument(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.XmlDocument)
+     */
+    @Override
+    protected void visitXmlDocument(XmlDocument artifact) {
+        fullVisitor.visitXmlDocument(artifact);
+    }
+
+    /**
+     * @see org.overlord.sramp.common.visitors.HierarchicalArtifactVisitorAdapter#visitExtended(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedArtifactType)
+     */
+    @Override
+    protected void visitExtended(ExtendedArtifactType artifact) {
+        fullVisitor.visitExtended(artifact);
+    }
+
+    /**
+     * @see org.overlord.sramp.common.visitors.HierarchicalArtifactVisitorAdapter#visitExtendedDocument(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.ExtendedDocument)
+     */
+    @Override
+    protected void visitExtendedDocument(ExtendedDocument artifact) {
+        fullVisitor.visitExtendedDocument(artifact);
+    }
+
+}
@@ -18,13 +18,13 @@ package org.overlord.sramp.repository.jcr.mapper;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.Property;
 import javax.jcr.PropertyIterator;
-import javax.jcr.PropertyType;
 import javax.jcr.Value;
 import javax.jcr.ValueFormatException;
 import javax.xml.datatype.DatatypeFactory;
@@ -111,22 +111,8 @@ public class JCRNodeToArtifactVisitor extends HierarchicalArtifactVisitorAdapter
 	@Override
 	protected void visitBase(BaseArtifactType artifact) {
 		try {
-			DatatypeFactory dtFactory = DatatypeFactory.newInstance();
-			ArtifactType artifactType = ArtifactType.valueOf(artifact);
-			BaseArtifactEnum apiType = artifactType.getArtifactType().getApiType();
-			artifact.setArtifactType(apiType);
-
 			// First map in the standard s-ramp meta-data
-			artifact.setCreatedBy(getProperty(jcrNode, "jcr:createdBy")); //$NON-NLS-1$
-			XMLGregorianCalendar createdTS = dtFactory.newXMLGregorianCalendar(getProperty(jcrNode, "jcr:created")); //$NON-NLS-1$
-			artifact.setCreatedTimestamp(createdTS);
-			artifact.setDescription(getProperty(jcrNode, "sramp:description")); //$NON-NLS-1$
-			artifact.setLastModifiedBy(getProperty(jcrNode, "jcr:lastModifiedBy")); //$NON-NLS-1$
-			XMLGregorianCalendar modifiedTS = dtFactory.newXMLGregorianCalendar(getProperty(jcrNode, "jcr:lastModified")); //$NON-NLS-1$
-			artifact.setLastModifiedTimestamp(modifiedTS);
-			artifact.setName(getProperty(jcrNode, "sramp:name")); //$NON-NLS-1$
-			artifact.setUuid(getProperty(jcrNode, "sramp:uuid")); //$NON-NLS-1$
-			artifact.setVersion(getProperty(jcrNode, "version")); //$NON-NLS-1$
+			mapCoreMetaData(jcrNode, artifact);
 
 			// Map in the classifications
 			if (jcrNode.hasProperty("sramp:classifiedBy")) { //$NON-NLS-1$
@@ -139,21 +125,7 @@ public class JCRNodeToArtifactVisitor extends HierarchicalArtifactVisitorAdapter
 			}
 
 			// Map in all the s-ramp extended properties.
-			String srampPropsPrefix = JCRConstants.SRAMP_PROPERTIES + ":"; //$NON-NLS-1$
-			int srampPropsPrefixLen = srampPropsPrefix.length();
-			PropertyIterator properties = jcrNode.getProperties();
-			while (properties.hasNext()) {
-				Property property = properties.nextProperty();
-				String propQName = property.getName();
-				if (propQName.startsWith(srampPropsPrefix)) {
-					String propName = propQName.substring(srampPropsPrefixLen);
-					String propValue = property.getValue().getString();
-					org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Property srampProp = new org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Property();
-					srampProp.setPropertyName(propName);
-					srampProp.setPropertyValue(propValue);
-					artifact.getProperty().add(srampProp);
-				}
-			}
+			mapCustomProperties(jcrNode, artifact, null);
 
 			// Map in the generic relationships
 			NodeIterator rnodes = jcrNode.getNodes();
@@ -170,15 +142,10 @@ public class JCRNodeToArtifactVisitor extends HierarchicalArtifactVisitorAdapter
 					Relationship relationship = new Relationship();
 					relationship.setRelationshipType(rtype);
 					if (rNode.hasProperty("sramp:relationshipTarget")) { //$NON-NLS-1$
-						Property property = rNode.getProperty("sramp:relationshipTarget"); //$NON-NLS-1$
-						Value[] values = property.getValues();
-						for (Value value : values) {
-							if (value.getType() == PropertyType.REFERENCE) {
-								String targetUUID = referenceResolver.resolveReference(value);
-								Target target = new Target();
-								target.setValue(targetUUID);
-								relationship.getRelationshipTarget().add(target);
-							}
+						for (String targetUUID : getRelationshipTargets(rNode)) {
+							Target target = new Target();
+							target.setValue(targetUUID);
+							relationship.getRelationshipTarget().add(target);
 						}
 					}
 
@@ -190,6 +157,75 @@ public class JCRNodeToArtifactVisitor extends HierarchicalArtifactVisitorAdapter
 		}
 	}
 
+	/**
+	 * Maps the standard s-ramp meta-data (type, uuid, name, description, version, and the
+	 * created/modified info) from the given JCR node into the artifact.
+	 * @param jcrNode
+	 * @param artifact
+	 * @throws Exception
+	 */
+	protected static void mapCoreMetaData(Node jcrNode, BaseArtifactType artifact) throws Exception {
+		DatatypeFactory dtFactory = DatatypeFactory.newInstance();
+		ArtifactType artifactType = ArtifactType.valueOf(artifact);
+		BaseArtifactEnum apiType = artifactType.getArtifactType().getApiType();
+		artifact.setArtifactType(apiType);
+
+		artifact.setCreatedBy(getProperty(jcrNode, "jcr:createdBy")); //$NON-NLS-1$
+		XMLGregorianCalendar createdTS = dtFactory.newXMLGregorianCalendar(getProperty(jcrNode, "jcr:created")); //$NON-NLS-1$
+		artifact.setCreatedTimestamp(createdTS);
+		artifact.setDescription(getProperty(jcrNode, "sramp:description")); //$NON-NLS-1$
+		artifact.setLastModifiedBy(getProperty(jcrNode, "jcr:lastModifiedBy")); //$NON-NLS-1$
+		XMLGregorianCalendar modifiedTS = dtFactory.newXMLGregorianCalendar(getProperty(jcrNode, "jcr:lastModified")); //$NON-NLS-1$
+		artifact.setLastModifiedTimestamp(modifiedTS);
+		artifact.setName(getProperty(jcrNode, "sramp:name")); //$NON-NLS-1$
+		artifact.setUuid(getProperty(jcrNode, "sramp:uuid")); //$NON-NLS-1$
+		artifact.setVersion(getProperty(jcrNode, "version")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Maps the s-ramp custom properties from the given JCR node into the artifact.
+	 * @param jcrNode
+	 * @param artifact
+	 * @param propertyNames the names of the properties to map (null for all of them)
+	 * @throws Exception
+	 */
+	protected static void mapCustomProperties(Node jcrNode, BaseArtifactType artifact, Set<String> propertyNames) throws Exception {
+		String srampPropsPrefix = JCRConstants.SRAMP_PROPERTIES + ":"; //$NON-NLS-1$
+		if (propertyNames != null) {
+			for (String propName : propertyNames) {
+				String propValue = getProperty(jcrNode, srampPropsPrefix + propName);
+				if (propValue != null) {
+					addCustomProperty(artifact, propName, propValue);
+				}
+			}
+			return;
+		}
+		int srampPropsPrefixLen = srampPropsPrefix.length();
+		PropertyIterator properties = jcrNode.getProperties();
+		while (properties.hasNext()) {
+			Property property = properties.nextProperty();
+			String propQName = property.getName();
+			if (propQName.startsWith(srampPropsPrefix)) {
+				String propName = propQName.substring(srampPropsPrefixLen);
+				String propValue = property.getValue().getString();
+				addCustomProperty(artifact, propName, propValue);
+			}
+		}
+	}
+
+	/**
+	 * Adds a custom property to the artifact.
+	 * @param artifact
+	 * @param propName
+	 * @param propValue
+	 */
+	private static void addCustomProperty(BaseArtifactType artifact, String propName, String propValue) {
+		org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Property srampProp = new org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Property();
+		srampProp.setPropertyName(propName);
+		srampProp.setPropertyValue(propValue);
+		artifact.getProperty().add(srampProp);
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.visitors.HierarchicalArtifactVisitorAdapter#visitDerived(org.oasis_open.docs.s_ramp.ns.s_ramp_v1.DerivedArtifactType)
 	 */
@@ -200,13 +236,11 @@ public class JCRNodeToArtifactVisitor extends HierarchicalArtifactVisitorAdapter
 			if (this.jcrNode.hasNode("sramp-relationships:relatedDocument")) { //$NON-NLS-1$
 				Node relatedDocNode = this.jcrNode.getNode("sramp-relationships:relatedDocument"); //$NON-NLS-1$
 				String targetType = getProperty(relatedDocNode, "sramp:targetType"); //$NON-NLS-1$
-				Property property = relatedDocNode.getProperty("sramp:relationshipTarget"); //$NON-NLS-1$
-				Value[] values = property.getValues();
-				if (values.length > 1) {
-					throw new Exception(Messages.i18n.format("MAX_CARDINALITY_FAILED", values.length)); //$NON-NLS-1$
+				String[] targetUUIDs = getRelationshipTargets(relatedDocNode);
+				if (targetUUIDs.length > 1) {
+					throw new Exception(Messages.i18n.format("MAX_CARDINALITY_FAILED", targetUUIDs.length)); //$NON-NLS-1$
 				}
-				Value value = values[0];
-				String targetUUID = referenceResolver.resolveReference(value);
+				String targetUUID = targetUUIDs[0];
 
 				DocumentArtifactTarget target = new DocumentArtifactTarget();
 				target.setValue(targetUUID);
@@ -536,12 +570,10 @@ public class JCRNodeToArtifactVisitor extends HierarchicalArtifactVisitorAdapter
 			Node relationshipNode = this.jcrNode.getNode(relNodeName);
 			String targetType = relationshipNode.getProperty("sramp:targetType").getString(); //$NON-NLS-1$
 			if (relationshipNode.hasProperty("sramp:relationshipTarget")) { //$NON-NLS-1$
-				Property targetProperty = relationshipNode.getProperty("sramp:relationshipTarget"); //$NON-NLS-1$
-				Value[] values = targetProperty.getValues();
-				Value value = values[0];
+				String[] targetUUIDs = getRelationshipTargets(relationshipNode);
 				T t = targetClass.newInstance();
 				Target target = (Target) t;
-				target.setValue(referenceResolver.resolveReference(value));
+				target.setValue(targetUUIDs[0]);
 				// Use reflection to set the 'artifact type' attribute found on
 				// most (all?) targets.  Unfortunately, the method and field are
 				// redefined in each subclass of Target.
@@ -574,12 +606,10 @@ public class JCRNodeToArtifactVisitor extends HierarchicalArtifactVisitorAdapter
 			Node relationshipNode = this.jcrNode.getNode(relNodeName);
 			String targetType = relationshipNode.getProperty("sramp:targetType").getString(); //$NON-NLS-1$
 			if (relationshipNode.hasProperty("sramp:relationshipTarget")) { //$NON-NLS-1$
-				Property targetsProperty = relationshipNode.getProperty("sramp:relationshipTarget"); //$NON-NLS-1$
-				Value[] values = targetsProperty.getValues();
-				for (Value value : values) {
+				for (String targetUUID : getRelationshipTargets(relationshipNode)) {
 					T t = targetClass.newInstance();
 					Target target = (Target) t;
-					target.setValue(referenceResolver.resolveReference(value));
+					target.setValue(targetUUID);
 					// Use reflection to set the 'artifact type' attribute found on
 					// most (all?) targets.  Unfortunately, the method and field are
 					// redefined in each subclass of Target.
@@ -687,6 +717,31 @@ public class JCRNodeToArtifactVisitor extends HierarchicalArtifactVisitorAdapter
 		return defaultValue;
 	}
 
+	/**
+	 * Gets the s-ramp UUIDs of the targets of the given relationship node.  When the target
+	 * UUIDs were stored alongside the (JCR) references, they are used as-is; otherwise each
+	 * reference is resolved (which loads the target node).
+	 * @param relationshipNode
+	 * @throws javax.jcr.RepositoryException
+	 */
+	private String[] getRelationshipTargets(Node relationshipNode) throws javax.jcr.RepositoryException {
+		Value[] references = relationshipNode.getProperty("sramp:relationshipTarget").getValues(); //$NON-NLS-1$
+		String[] targetUUIDs = new String[references.length];
+		if (relationshipNode.hasProperty(JCRConstants.SRAMP_RELATIONSHIP_TARGET_UUID)) {
+			Value[] uuids = relationshipNode.getProperty(JCRConstants.SRAMP_RELATIONSHIP_TARGET_UUID).getValues();
+			if (uuids.length == references.length) {
+				for (int idx = 0; idx < uuids.length; idx++) {
+					targetUUIDs[idx] = uuids[idx].getString();
+				}
+				return targetUUIDs;
+			}
+		}
+		for (int idx = 0; idx < references.length; idx++) {
+			targetUUIDs[idx] = referenceResolver.resolveReference(references[idx]);
+		}
+		return targetUUIDs;
+	}
+
 	/**
 	 * A simple interface used by this class to resolve JCR references into s-ramp artifact UUIDs.
 	 *
@@ -27,6 +27,7 @@ import javax.xml.datatype.XMLGregorianCalendar;
 
 import org.jboss.downloads.overlord.sramp._2013.auditing.AuditEntry;
 import org.jboss.downloads.overlord.sramp._2013.auditing.AuditItemType;
+import org.overlord.sramp.repository.jcr.JCRConstants;
 
 /**
  * Maps a JCR auditEntry node to an {@link AuditEntry} bean.
@@ -45,8 +46,11 @@ public class JCRNodeToAuditEntryFactory {
 
             String uuid = jcrNode.getProperty("audit:uuid").getString(); //$NON-NLS-1$
             String type = jcrNode.getProperty("audit:type").getString(); //$NON-NLS-1$
-            String who = jcrNode.getProperty("jcr:createdBy").getString(); //$NON-NLS-1$
-            XMLGregorianCalendar when = dtFactory.newXMLGregorianCalendar((GregorianCalendar)jcrNode.getProperty("jcr:created").getDate()); //$NON-NLS-1$
+            // Entries written by the (asynchronous) audit writer record who made the change and when
+            String whoProperty = jcrNode.hasProperty(JCRConstants.AUDIT_WHO) ? JCRConstants.AUDIT_WHO : "jcr:createdBy"; //$NON-NLS-1$
+            String whenProperty = jcrNode.hasProperty(JCRConstants.AUDIT_WHEN) ? JCRConstants.AUDIT_WHEN : "jcr:created"; //$NON-NLS-1$
+            String who = jcrNode.getProperty(whoProperty).getString();
+            XMLGregorianCalendar when = dtFactory.newXMLGregorianCalendar((GregorianCalendar)jcrNode.getProperty(whenProperty).getDate());
 
             AuditEntry entry = new AuditEntry();
             entry.setUuid(uuid);
@@ -16,14 +16,18 @@
 package org.overlord.sramp.repository.jcr.query;
 
 import java.util.Iterator;
+import java.util.Set;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.overlord.sramp.repository.jcr.JCRNodeToArtifactFactory;
+import org.overlord.sramp.repository.jcr.JCRReferenceResolverImpl;
 import org.overlord.sramp.repository.jcr.JCRRepositoryFactory;
+import org.overlord.sramp.repository.jcr.mapper.JCRNodeToArtifactVisitor.JCRReferenceResolver;
 import org.overlord.sramp.repository.query.ArtifactSet;
 
 /**
@@ -36,6 +40,13 @@ public class JCRArtifactSet implements ArtifactSet, Iterator<BaseArtifactType> {
 	private Session session;
 	private NodeIterator jcrNodes;
 	private boolean logoutOnClose = true;
+	private String orderByProperty;
+	private boolean orderAscending = true;
+	private long offset = 0;
+	private Node lastNode;
+	private boolean summaryProjection;
+	private Set<String> projectedPropertyNames;
+	private JCRReferenceResolver referenceResolver;
 
 	/**
 	 * Constructor.
@@ -45,6 +56,7 @@ public class JCRArtifactSet implements ArtifactSet, Iterator<BaseArtifactType> {
 	public JCRArtifactSet(Session session, NodeIterator jcrNodes) {
 		this.session = session;
 		this.jcrNodes = jcrNodes;
+		this.referenceResolver = new JCRReferenceResolverImpl(session);
 	}
 
     /**
@@ -58,6 +70,29 @@ public class JCRArtifactSet implements ArtifactSet, Iterator<BaseArtifactType> {
         this.logoutOnClose = logoutOnClose;
     }
 
+	/**
+	 * Sets the ordering of the underlying query, and the offset of its first result, which
+	 * are needed to create the continuation token.
+	 * @param orderByProperty the JCR property the results are ordered by (may be null)
+	 * @param orderAscending
+	 * @param offset
+	 */
+	public void setOrdering(String orderByProperty, boolean orderAscending, long offset) {
+	    this.orderByProperty = orderByProperty;
+	    this.orderAscending = orderAscending;
+	    this.offset = offset;
+	}
+
+	/**
+	 * Makes the set return artifact summaries (see {@link JCRNodeToArtifactFactory#createArtifactSummary(Node, Set)})
+	 * rather than full artifacts.
+	 * @param propertyNames the custom properties to include in the summaries
+	 */
+	public void setSummaryProjection(Set<String> propertyNames) {
+	    this.summaryProjection = true;
+	    this.projectedPropertyNames = propertyNames;
+	}
+
 	/**
 	 * @see java.lang.Iterable#iterator()
 	 */
@@ -74,6 +109,44 @@ public class JCRArtifactSet implements ArtifactSet, Iterator<BaseArtifactType> {
 		return this.jcrNodes.getSize();
 	}
 
+	/**
+	 * @see org.overlord.sramp.repository.query.ArtifactSet#skip(long)
+	 */
+	@Override
+	public long skip(long count) {
+	    long skipped = 0;
+	    long size = this.jcrNodes.getSize();
+	    if (size >= 0 && count > 1) {
+	        long toSkip = Math.min(count, size - this.jcrNodes.getPosition()) - 1;
+	        if (toSkip > 0) {
+	            this.jcrNodes.skip(toSkip);
+	            skipped = toSkip;
+	        }
+	    }
+	    // Step over the rest, keeping hold of the last node (for the continuation token)
+	    while (skipped < count && this.jcrNodes.hasNext()) {
+	        this.lastNode = this.jcrNodes.nextNode();
+	        skipped++;
+	    }
+	    return skipped;
+	}
+
+	/**
+	 * @see org.overlord.sramp.repository.query.ArtifactSet#getContinuationToken()
+	 */
+	@Override
+	public String getContinuationToken() {
+	    if (this.lastNode == null) {
+	        return null;
+	    }
+	    try {
+	        long position = this.offset + this.jcrNodes.getPosition();
+	        return JCRContinuationToken.create(this.lastNode, this.orderByProperty, this.orderAscending, position).encode();
+	    } catch (RepositoryException e) {
+	        throw new RuntimeException(e);
+	    }
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.repository.query.ArtifactSet#close()
 	 */
@@ -97,7 +170,11 @@ public class JCRArtifactSet implements ArtifactSet, Iterator<BaseArtifactType> {
 	@Override
 	public BaseArtifactType next() {
 		Node jcrNode = this.jcrNodes.nextNode();
-		return JCRNodeToArtifactFactory.createArtifact(this.session, jcrNode);
+		this.lastNode = jcrNode;
+		if (this.summaryProjection) {
+		    return JCRNodeToArtifactFactory.createArtifactSummary(jcrNode, this.projectedPropertyNames);
+		}
+		return JCRNodeToArtifactFactory.createArtifact(jcrNode, this.referenceResolver);
 	}
 
 	/**
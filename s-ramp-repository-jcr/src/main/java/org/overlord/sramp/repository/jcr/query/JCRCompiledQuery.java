@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.query;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.ValueFactory;
+import javax.jcr.query.Query;
+
+import org.overlord.sramp.repository.jcr.JCRConstants;
+import org.overlord.sramp.repository.query.QueryReplacementParam;
+
+/**
+ * A JCR-SQL2 query compiled from an s-ramp xpath query (template).  The params of the
+ * template are not spliced into the SQL2 - they are referenced as bind variables, and bound
+ * when the query is created.  So the same compiled query can be cached and used for every
+ * execution of the template, whatever the param values.  The keyset (continuation) of a
+ * query is bound the same way.
+ */
+public class JCRCompiledQuery {
+
+    /**
+     * Marks a query template that can't be compiled independently of its param values (or
+     * of the ontologies, when it filters by classification).
+     */
+    public static final JCRCompiledQuery NOT_COMPILED = new JCRCompiledQuery(null, null);
+
+    public static final String KEYSET_VALUE_VARIABLE = "keysetValue"; //$NON-NLS-1$
+    public static final String KEYSET_UUID_VARIABLE = "keysetUuid"; //$NON-NLS-1$
+
+    private static final Pattern datePattern = Pattern.compile("\\d\\d\\d\\d-\\d\\d-\\d\\d"); //$NON-NLS-1$
+
+    private final String sql2;
+    private final List<BindParam> bindParams;
+
+    /**
+     * Constructor.
+     * @param sql2
+     * @param bindParams
+     */
+    public JCRCompiledQuery(String sql2, List<BindParam> bindParams) {
+        this.sql2 = sql2;
+        this.bindParams = bindParams == null ? Collections.<BindParam>emptyList() : bindParams;
+    }
+
+    /**
+     * @return true if the query was compiled
+     */
+    public boolean isCompiled() {
+        return sql2 != null;
+    }
+
+    /**
+     * @return the JCR-SQL2 query
+     */
+    public String getSql2() {
+        return sql2;
+    }
+
+    /**
+     * Creates the JCR query, binding the given param values (and keyset).
+     * @param session
+     * @param replacementParams the values of the template's params
+     * @param token the continuation token (may be null)
+     * @throws RepositoryException
+     */
+    public Query createQuery(Session session, List<QueryReplacementParam<?>> replacementParams,
+            JCRContinuationToken token) throws RepositoryException {
+        Query jcrQuery = session.getWorkspace().getQueryManager().createQuery(sql2, JCRConstants.JCR_SQL2);
+        ValueFactory valueFactory = session.getValueFactory();
+        for (BindParam bindParam : bindParams) {
+            QueryReplacementParam<?> param = replacementParams.get(bindParam.getIndex());
+            jcrQuery.bindValue(bindParam.getName(), bindParam.createValue(valueFactory, param.getValue()));
+        }
+        if (token != null && token.isKeyset()) {
+            List<String> variableNames = Arrays.asList(jcrQuery.getBindVariableNames());
+            if (variableNames.contains(KEYSET_VALUE_VARIABLE)) {
+                int type = token.isDateValue() ? PropertyType.DATE : PropertyType.STRING;
+                jcrQuery.bindValue(KEYSET_VALUE_VARIABLE, valueFactory.createValue(token.getLastValue(), type));
+            }
+            if (variableNames.contains(KEYSET_UUID_VARIABLE)) {
+                jcrQuery.bindValue(KEYSET_UUID_VARIABLE, valueFactory.createValue(token.getLastUuid()));
+            }
+        }
+        return jcrQuery;
+    }
+
+    /**
+     * A param of the query template, referenced in the query by a bind variable.
+     */
+    public static class BindParam {
+
+        private final String name;
+        private final int index;
+        private final boolean date;
+        private final boolean likePattern;
+
+        /**
+         * Constructor.
+         * @param name the name of the bind variable
+         * @param index the index of the template param
+         * @param date true if the param is compared to a date property
+         * @param likePattern true if the param is a matches() pattern
+         */
+        public BindParam(String name, int index, boolean date, boolean likePattern) {
+            this.name = name;
+            this.index = index;
+            this.date = date;
+            this.likePattern = likePattern;
+        }
+
+        /**
+         * @return the name of the bind variable
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the index of the template param
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Creates the value bound to the variable - converted just as the visitor would have
+         * converted the (spliced in) literal.
+         * @param valueFactory
+         * @param paramValue
+         * @throws RepositoryException
+         */
+        protected Value createValue(ValueFactory valueFactory, Object paramValue) throws RepositoryException {
+            if (paramValue instanceof Number && !likePattern) {
+                if (paramValue instanceof Double || paramValue instanceof Float) {
+                    return valueFactory.createValue(((Number) paramValue).doubleValue());
+                } else if (paramValue instanceof BigInteger) {
+                    return valueFactory.createValue(new BigDecimal((BigInteger) paramValue));
+                }
+                return valueFactory.createValue(((Number) paramValue).longValue());
+            }
+            String value = String.valueOf(paramValue);
+            if (likePattern) {
+                value = value.replace(".*", "%"); // the only valid wildcard //$NON-NLS-1$ //$NON-NLS-2$
+            } else if (date && datePattern.matcher(value).find()) {
+                return valueFactory.createValue(value, PropertyType.DATE);
+            }
+            return valueFactory.createValue(value);
+        }
+
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.codec.binary.Base64;
+import org.overlord.sramp.repository.jcr.JCRConstants;
+import org.overlord.sramp.repository.jcr.i18n.Messages;
+import org.overlord.sramp.repository.query.InvalidQueryException;
+
+/**
+ * The (opaque to clients) continuation token of a JCR s-ramp query.  The token identifies
+ * the last artifact returned by the query by its position in the query's sort order (the
+ * value of the order-by property plus the artifact's uuid), which lets the next page be
+ * fetched with a keyset constraint rather than by skipping over all of the earlier results.
+ * When the last artifact has no value for the order-by property, the token falls back to
+ * the artifact's offset in the results.
+ */
+public class JCRContinuationToken {
+
+    private static final byte VERSION = 1;
+
+    /**
+     * Creates the continuation token that follows the given node.
+     * @param node the last node returned by the query
+     * @param orderByProperty the JCR property the query is ordered by (may be null)
+     * @param ascending the sort direction
+     * @param offset the number of results returned up to (and including) the node
+     * @throws RepositoryException
+     */
+    public static JCRContinuationToken create(Node node, String orderByProperty, boolean ascending,
+            long offset) throws RepositoryException {
+        JCRContinuationToken token = new JCRContinuationToken();
+        token.orderByProperty = orderByProperty;
+        token.ascending = ascending;
+        token.offset = offset;
+        if (orderByProperty != null && node.hasProperty(orderByProperty)
+                && node.hasProperty(JCRConstants.SRAMP_UUID)) {
+            Property property = node.getProperty(orderByProperty);
+            if (!property.isMultiple()) {
+                token.lastValue = property.getString();
+                token.dateValue = property.getType() == PropertyType.DATE;
+                token.lastUuid = node.getProperty(JCRConstants.SRAMP_UUID).getString();
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Decodes the given continuation token.
+     * @param encoded
+     * @throws InvalidQueryException if the token is not a valid continuation token
+     */
+    public static JCRContinuationToken decode(String encoded) throws InvalidQueryException {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.decodeBase64(encoded)));
+            if (in.readByte() != VERSION) {
+                throw new InvalidQueryException(Messages.i18n.format("INVALID_CONTINUATION_TOKEN")); //$NON-NLS-1$
+            }
+            JCRContinuationToken token = new JCRContinuationToken();
+            token.offset = in.readLong();
+            token.ascending = in.readBoolean();
+            token.orderByProperty = readString(in);
+            token.dateValue = in.readBoolean();
+            token.lastValue = readString(in);
+            token.lastUuid = readString(in);
+            return token;
+        } catch (IOException e) {
+            throw new InvalidQueryException(Messages.i18n.format("INVALID_CONTINUATION_TOKEN"), e); //$NON-NLS-1$
+        }
+    }
+
+    private long offset;
+    private String orderByProperty;
+    private boolean ascending;
+    private String lastValue;
+    private boolean dateValue;
+    private String lastUuid;
+
+    /**
+     * Constructor.
+     */
+    private JCRContinuationToken() {
+    }
+
+    /**
+     * Encodes the token as an (URL safe) string.
+     */
+    public String encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeLong(offset);
+            out.writeBoolean(ascending);
+            writeString(out, orderByProperty);
+            out.writeBoolean(dateValue);
+            writeString(out, lastValue);
+            writeString(out, lastUuid);
+            out.flush();
+            return Base64.encodeBase64URLSafeString(bytes.toByteArray());
+        } catch (IOException e) {
+            // Can't happen - writing to memory
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns true if the token can be continued from by a query with the given ordering.
+     * @param orderByProperty
+     * @param ascending
+     */
+    public boolean isCompatible(String orderByProperty, boolean ascending) {
+        if (orderByProperty == null) {
+            return this.orderByProperty == null;
+        }
+        return orderByProperty.equals(this.orderByProperty) && ascending == this.ascending;
+    }
+
+    /**
+     * @return true if the token identifies the last artifact by its sort key, false if only
+     *         its offset is known
+     */
+    public boolean isKeyset() {
+        return lastValue != null && lastUuid != null;
+    }
+
+    /**
+     * @return the number of results that precede the continuation
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the value of the order-by property of the last artifact
+     */
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    /**
+     * @return true if the order-by property is a date
+     */
+    public boolean isDateValue() {
+        return dateValue;
+    }
+
+    /**
+     * @return the uuid of the last artifact
+     */
+    public String getLastUuid() {
+        return lastUuid;
+    }
+
+    /**
+     * Writes a (possibly null) string.
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a (possibly null) string.
+     * @param in
+     * @throws IOException
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+}
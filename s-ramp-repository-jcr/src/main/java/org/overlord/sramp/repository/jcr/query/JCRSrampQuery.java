@@ -15,25 +15,30 @@
  */
 package org.overlord.sramp.repository.jcr.query;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.jcr.NodeIterator;
 import javax.jcr.Session;
 import javax.jcr.query.QueryResult;
 
+import org.overlord.sramp.common.Sramp;
 import org.overlord.sramp.common.SrampException;
 import org.overlord.sramp.common.query.xpath.ast.Query;
 import org.overlord.sramp.common.query.xpath.visitors.XPathSerializationVisitor;
 import org.overlord.sramp.repository.PersistenceFactory;
 import org.overlord.sramp.repository.jcr.ClassificationHelper;
-import org.overlord.sramp.repository.jcr.JCRConstants;
 import org.overlord.sramp.repository.jcr.JCRPersistence;
 import org.overlord.sramp.repository.jcr.JCRRepositoryFactory;
 import org.overlord.sramp.repository.jcr.i18n.Messages;
 import org.overlord.sramp.repository.query.AbstractSrampQueryImpl;
 import org.overlord.sramp.repository.query.ArtifactSet;
+import org.overlord.sramp.repository.query.InvalidQueryException;
+import org.overlord.sramp.repository.query.QueryCache;
 import org.overlord.sramp.repository.query.QueryExecutionException;
+import org.overlord.sramp.repository.query.QueryReplacementParam;
 import org.overlord.sramp.repository.query.SrampQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,8 +62,10 @@ public class JCRSrampQuery extends AbstractSrampQueryImpl {
 		sOrderByMappings.put("lastModifiedBy", "jcr:lastModifiedBy"); //$NON-NLS-1$ //$NON-NLS-2$
 		sOrderByMappings.put("name", "sramp:name"); //$NON-NLS-1$ //$NON-NLS-2$
 	}
+	private static QueryCache<JCRCompiledQuery> sCompiledQueries = new QueryCache<JCRCompiledQuery>(new Sramp().getQueryCacheMaxSize());
 
     private Session session;
+    private boolean flushSession = true;
 
 	/**
 	 * Constructor.
@@ -70,11 +77,62 @@ public class JCRSrampQuery extends AbstractSrampQueryImpl {
 		super(xpathTemplate, orderByProperty, orderAscending);
 	}
 
+	/**
+	 * Compiles the xpath template into a JCR-SQL2 query (with the params as bind variables)
+	 * that is cached and re-used for every execution of the template.  Templates that can't
+	 * be compiled independently of their param values (see {@link JCRCompiledQuery#NOT_COMPILED})
+	 * are formatted and executed as usual.
+	 * @see org.overlord.sramp.repository.query.AbstractSrampQueryImpl#executeQuery(java.lang.String, java.util.List)
+	 */
+	@Override
+	protected ArtifactSet executeQuery(String xpathTemplate, List<QueryReplacementParam<?>> replacementParams)
+			throws SrampException {
+		String jcrOrderBy = getJcrOrderBy();
+		JCRContinuationToken token = getJcrContinuationToken(jcrOrderBy);
+		boolean keyset = token != null && token.isKeyset();
+		String cacheKey = replacementParams.size() + "|" + jcrOrderBy + "|" + isOrderAscending() + "|" + keyset //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ "|" + xpathTemplate; //$NON-NLS-1$
+		JCRCompiledQuery compiledQuery = sCompiledQueries.get(cacheKey);
+		if (compiledQuery == null) {
+			Query templateModel = parseXPath(formatBindTemplate(xpathTemplate, replacementParams.size()));
+			validateQuery(templateModel);
+			compiledQuery = compile(templateModel, jcrOrderBy, keyset, true);
+			sCompiledQueries.put(cacheKey, compiledQuery);
+		}
+		if (!compiledQuery.isCompiled()) {
+			return super.executeQuery(xpathTemplate, replacementParams);
+		}
+		return execute(compiledQuery, replacementParams, token, xpathTemplate);
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.repository.query.AbstractSrampQueryImpl#executeQuery(org.overlord.sramp.common.query.xpath.ast.Query)
 	 */
 	@Override
 	protected ArtifactSet executeQuery(Query queryModel) throws SrampException {
+		String jcrOrderBy = getJcrOrderBy();
+		JCRContinuationToken token = getJcrContinuationToken(jcrOrderBy);
+		JCRCompiledQuery compiledQuery = compile(queryModel, jcrOrderBy, token != null && token.isKeyset(), false);
+		String originalQuery = null;
+		if (log.isDebugEnabled()) {
+			XPathSerializationVisitor visitor = new XPathSerializationVisitor();
+			queryModel.accept(visitor);
+			originalQuery = visitor.getXPath();
+		}
+		List<QueryReplacementParam<?>> noParams = Collections.emptyList();
+		return execute(compiledQuery, noParams, token, originalQuery);
+	}
+
+	/**
+	 * Executes the compiled query.
+	 * @param compiledQuery the compiled JCR-SQL2 query
+	 * @param replacementParams the values of the query's bind params
+	 * @param token the continuation token (may be null)
+	 * @param originalQuery the s-ramp query (for logging)
+	 * @throws SrampException
+	 */
+	private ArtifactSet execute(JCRCompiledQuery compiledQuery, List<QueryReplacementParam<?>> replacementParams,
+			JCRContinuationToken token, String originalQuery) throws SrampException {
 		Session session = null;
         boolean logoutOnClose = true;
 		try {
@@ -85,15 +143,25 @@ public class JCRSrampQuery extends AbstractSrampQueryImpl {
 		        session = JCRRepositoryFactory.getSession();
                 logoutOnClose = true;
 		    }
-			javax.jcr.query.QueryManager jcrQueryManager = session.getWorkspace().getQueryManager();
-			String jcrSql2Query = createSql2Query(queryModel);
+		    if (flushSession) {
+		        JCRRepositoryFactory.flush(session);
+		    }
+			String jcrSql2Query = compiledQuery.getSql2();
 			if (log.isDebugEnabled()) {
-				XPathSerializationVisitor visitor = new XPathSerializationVisitor();
-				queryModel.accept(visitor);
-				String originalQuery = visitor.getXPath();
 				System.out.println(Messages.i18n.format("JCR_QUERY_FROM", jcrSql2Query, originalQuery)); //$NON-NLS-1$
 			}
-			javax.jcr.query.Query jcrQuery = jcrQueryManager.createQuery(jcrSql2Query, JCRConstants.JCR_SQL2);
+			javax.jcr.query.Query jcrQuery = compiledQuery.createQuery(session, replacementParams, token);
+			// The ordering is pushed down into the generated query, the paging is set here
+			long offset = getOffset();
+			if (token != null && !token.isKeyset()) {
+				offset += token.getOffset();
+			}
+			if (getLimit() >= 0) {
+				jcrQuery.setLimit(getLimit());
+			}
+			if (offset > 0) {
+				jcrQuery.setOffset(offset);
+			}
 			long startTime = System.currentTimeMillis();
 			QueryResult jcrQueryResult = jcrQuery.execute();
 			NodeIterator jcrNodes = jcrQueryResult.getNodes();
@@ -102,13 +170,16 @@ public class JCRSrampQuery extends AbstractSrampQueryImpl {
 			log.debug(Messages.i18n.format("QUERY_EXECUTED", jcrSql2Query)); //$NON-NLS-1$
 			log.debug(Messages.i18n.format("QUERY_EXECUTED_IN", endTime - startTime)); //$NON-NLS-1$
 
-			return new JCRArtifactSet(session, jcrNodes, logoutOnClose);
-		} catch (SrampException e) {
-            // Only logout of the session on a throw.  Otherwise, the JCRArtifactSet will be
-            // responsible for closing the session.
-		    if (logoutOnClose)
-		        JCRRepositoryFactory.logoutQuietly(session);
-		    throw e;
+			JCRArtifactSet artifactSet = new JCRArtifactSet(session, jcrNodes, logoutOnClose);
+			long resultOffset = getOffset();
+			if (token != null) {
+			    resultOffset += token.getOffset();
+			}
+			artifactSet.setOrdering(getJcrOrderBy(), isOrderAscending(), resultOffset);
+			if (isSummaryProjection()) {
+			    artifactSet.setSummaryProjection(getProjectedPropertyNames());
+			}
+			return artifactSet;
 		} catch (Throwable t) {
 			// Only logout of the session on a throw.  Otherwise, the JCRArtifactSet will be
 			// responsible for closing the session.
@@ -118,27 +189,73 @@ public class JCRSrampQuery extends AbstractSrampQueryImpl {
 		}
 	}
 
+	/**
+	 * Gets the JCR property to order the results by (null if the query's order-by property
+	 * is not supported).
+	 */
+	private String getJcrOrderBy() {
+		if (getOrderByProperty() != null) {
+			return sOrderByMappings.get(getOrderByProperty());
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes the query's continuation token (if any), and checks that it can be continued
+	 * from with the query's ordering.
+	 * @param jcrOrderBy the JCR property to order by (may be null)
+	 * @throws InvalidQueryException
+	 */
+	private JCRContinuationToken getJcrContinuationToken(String jcrOrderBy) throws InvalidQueryException {
+		if (getContinuationToken() == null) {
+			return null;
+		}
+		JCRContinuationToken token = JCRContinuationToken.decode(getContinuationToken());
+		if (!token.isCompatible(jcrOrderBy, isOrderAscending())) {
+			throw new InvalidQueryException(Messages.i18n.format("INVALID_CONTINUATION_TOKEN")); //$NON-NLS-1$
+		}
+		return token;
+	}
+
 	/**
 	 * Visits the S-RAMP query AST/model and produces a functionally equivalent JCR SQL-2 query.
+	 * The ordering and keyset (continuation) are pushed down into the generated query.
 	 * @param queryModel the s-ramp query
+	 * @param jcrOrderBy the JCR property to order by (may be null)
+	 * @param keyset true if the query continues from a keyset continuation token
+	 * @param bindParameters true if the query was parsed from a bind template
+	 * @return the compiled query - or {@link JCRCompiledQuery#NOT_COMPILED} if the query
+	 *         template can't be compiled independently of its param values
 	 * @throws SrampException
 	 */
-	private String createSql2Query(Query queryModel) throws SrampException {
-		String jcrOrderBy = null;
-		if (getOrderByProperty() != null) {
-			String jcrPropName = sOrderByMappings.get(getOrderByProperty());
-			if (jcrPropName != null) {
-				jcrOrderBy = jcrPropName;
+	private JCRCompiledQuery compile(Query queryModel, String jcrOrderBy, boolean keyset, boolean bindParameters)
+			throws SrampException {
+		try {
+			SrampToJcrSql2QueryVisitor visitor = new SrampToJcrSql2QueryVisitor((ClassificationHelper) PersistenceFactory.newInstance());
+			visitor.setBindParameters(bindParameters);
+			queryModel.accept(visitor);
+			if (bindParameters && !visitor.isCompilable()) {
+				return JCRCompiledQuery.NOT_COMPILED;
 			}
+			if (jcrOrderBy != null) {
+				visitor.setOrderBy(jcrOrderBy, isOrderAscending());
+			}
+			if (keyset) {
+				visitor.setKeysetParameters();
+			}
+			return new JCRCompiledQuery(visitor.getSql2Query(), visitor.getBindParams());
+		} catch (SrampException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new QueryExecutionException(t);
 		}
-		SrampToJcrSql2QueryVisitor visitor = new SrampToJcrSql2QueryVisitor((ClassificationHelper) PersistenceFactory.newInstance());
-		queryModel.accept(visitor);
-		String sql2Query = visitor.getSql2Query();
-		String alias = visitor.getSelectAlias();
-		if (jcrOrderBy != null) {
-			sql2Query += " ORDER BY " + alias + ".[" + jcrOrderBy + "] " + (isOrderAscending() ? "ASC" : "DESC"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
-		}
-		return sql2Query;
+	}
+
+	/**
+	 * @return the cache of compiled queries
+	 */
+	public static QueryCache<JCRCompiledQuery> getCompiledQueryCache() {
+		return sCompiledQueries;
 	}
 
     /**
@@ -148,4 +265,13 @@ public class JCRSrampQuery extends AbstractSrampQueryImpl {
         this.session = session;
     }
 
+    /**
+     * Controls whether changes deferred in a unit of work session are saved before the
+     * query runs (the default).  When false, the query only sees saved content.
+     * @param flushSession
+     */
+    public void setFlushSession(boolean flushSession) {
+        this.flushSession = flushSession;
+    }
+
 }
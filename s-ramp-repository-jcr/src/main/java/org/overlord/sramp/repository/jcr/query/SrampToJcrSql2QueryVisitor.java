@@ -16,12 +16,15 @@
 package org.overlord.sramp.repository.jcr.query;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 import javax.xml.namespace.QName;
@@ -47,6 +50,8 @@ import org.overlord.sramp.common.query.xpath.visitors.XPathVisitor;
 import org.overlord.sramp.repository.jcr.ClassificationHelper;
 import org.overlord.sramp.repository.jcr.JCRConstants;
 import org.overlord.sramp.repository.jcr.i18n.Messages;
+import org.overlord.sramp.repository.jcr.query.JCRCompiledQuery.BindParam;
+import org.overlord.sramp.repository.query.AbstractSrampQueryImpl;
 
 /**
  * Visitor used to produce a JCR SQL2 query from an S-RAMP xpath query.
@@ -59,6 +64,7 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 	private static QName CLASSIFIED_BY_ALL_OF = new QName(SrampConstants.SRAMP_NS, "classifiedByAllOf"); //$NON-NLS-1$
 	private static QName EXACTLY_CLASSIFIED_BY_ANY_OF = new QName(SrampConstants.SRAMP_NS, "exactlyClassifiedByAnyOf"); //$NON-NLS-1$
 	private static QName EXACTLY_CLASSIFIED_BY_ALL_OF = new QName(SrampConstants.SRAMP_NS, "exactlyClassifiedByAllOf"); //$NON-NLS-1$
+	private static QName DUPLICATE_CONTENT = new QName(SrampConstants.SRAMP_NS, "duplicateContent"); //$NON-NLS-1$
     private static QName MATCHES = new QName("http://www.w3.org/2005/xpath-functions", "matches"); //$NON-NLS-1$ //$NON-NLS-2$
     private static QName NOT = new QName("http://www.w3.org/2005/xpath-functions", "not"); //$NON-NLS-1$ //$NON-NLS-2$
 	private static Map<QName, String> corePropertyMap = new HashMap<QName, String>();
@@ -87,6 +93,7 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 	}
 	
 	private String selectAlias;
+	private boolean selectDistinct = false;
 	private StringBuilder fromBuilder = new StringBuilder();
 	private String notDeletedFilter = null;
 	private StringBuilder whereBuilder = new StringBuilder();
@@ -98,6 +105,15 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 	private String lastFPS = null;
     private Pattern datePattern = Pattern.compile("\\d\\d\\d\\d-\\d\\d-\\d\\d"); //$NON-NLS-1$
 	private SrampException error;
+	private String orderByProperty = null;
+	private boolean orderAscending = true;
+	private String keysetValue = null;
+	private String keysetUuid = null;
+	private long limit = -1;
+	private long offset = 0;
+	private boolean bindParameters = false;
+	private List<BindParam> bindParams = new ArrayList<BindParam>();
+	private boolean compilable = true;
 
 	/**
 	 * Default constructor.
@@ -114,6 +130,85 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 	    return this.selectAlias;
 	}
 
+	/**
+	 * Orders the results by the given JCR property.  The artifact uuid is used as a
+	 * secondary sort key, so that the order is total (needed for keyset pagination).
+	 * @param jcrPropertyName the JCR property to order by
+	 * @param ascending the sort direction
+	 */
+	public void setOrderBy(String jcrPropertyName, boolean ascending) {
+	    this.orderByProperty = jcrPropertyName;
+	    this.orderAscending = ascending;
+	}
+
+	/**
+	 * Restricts the results to those that follow the given (last seen) artifact in the sort
+	 * order - i.e. keyset pagination.  Requires the order to have been set.
+	 * @param lastValue the value of the order-by property of the last seen artifact
+	 * @param isDate true if the order-by property is a date
+	 * @param lastUuid the uuid of the last seen artifact
+	 */
+	public void setKeyset(String lastValue, boolean isDate, String lastUuid) {
+	    String literal = "'" + escapeStringLiteral(lastValue) + "'"; //$NON-NLS-1$ //$NON-NLS-2$
+	    if (isDate) {
+	        literal = "CAST(" + literal + " AS DATE)"; //$NON-NLS-1$ //$NON-NLS-2$
+	    }
+	    this.keysetValue = literal;
+	    this.keysetUuid = "'" + escapeStringLiteral(lastUuid) + "'"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Like {@link #setKeyset(String, boolean, String)}, but the last seen artifact is
+	 * referenced by bind variables (see {@link JCRCompiledQuery#KEYSET_VALUE_VARIABLE} and
+	 * {@link JCRCompiledQuery#KEYSET_UUID_VARIABLE}) that are bound when the query is created.
+	 */
+	public void setKeysetParameters() {
+	    this.keysetValue = "$" + JCRCompiledQuery.KEYSET_VALUE_VARIABLE; //$NON-NLS-1$
+	    this.keysetUuid = "$" + JCRCompiledQuery.KEYSET_UUID_VARIABLE; //$NON-NLS-1$
+	}
+
+	/**
+	 * When true, the visited query is expected to have been parsed from a bind template (see
+	 * {@link AbstractSrampQueryImpl#getBindParamIndex(String)}) and its params are referenced
+	 * by bind variables in the generated query, rather than spliced into it.
+	 * @param bindParameters
+	 */
+	public void setBindParameters(boolean bindParameters) {
+	    this.bindParameters = bindParameters;
+	}
+
+	/**
+	 * @return the params referenced by bind variables in the generated query
+	 */
+	public List<BindParam> getBindParams() {
+	    return this.bindParams;
+	}
+
+	/**
+	 * Returns false if the generated query depends on more than the visited query template -
+	 * i.e. it filters by classification (which is resolved against the current ontologies
+	 * at this point).  Such queries can't be cached.
+	 */
+	public boolean isCompilable() {
+	    return this.compilable;
+	}
+
+	/**
+	 * Sets the maximum number of rows returned by the query.
+	 * @param limit the limit (less than zero means no limit)
+	 */
+	public void setLimit(long limit) {
+	    this.limit = limit;
+	}
+
+	/**
+	 * Sets the number of rows the query skips.
+	 * @param offset
+	 */
+	public void setOffset(long offset) {
+	    this.offset = offset;
+	}
+
 	/**
 	 * Returns the sql-2 query created by this visitor.
 	 */
@@ -121,8 +216,8 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 	    if (this.error != null) {
 	        throw this.error;
 	    }
-		String query = "SELECT " + selectAlias + ".* FROM " + fromBuilder.toString(); //$NON-NLS-1$ //$NON-NLS-2$
-		String where = whereBuilder.toString() + notDeletedFilter;
+		String query = "SELECT " + (selectDistinct ? "DISTINCT " : "") + selectAlias + ".* FROM " + fromBuilder.toString(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		String where = whereBuilder.toString() + notDeletedFilter + getKeysetConstraint();
 		if (where.length() > 0) {
 		    if (where.startsWith("AND")) { //$NON-NLS-1$
 		        where = where.substring(4);
@@ -135,9 +230,48 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 		    }
 		    query = query  + " WHERE " + where; //$NON-NLS-1$
 		}
+		if (orderByProperty != null) {
+		    String direction = orderAscending ? "ASC" : "DESC"; //$NON-NLS-1$ //$NON-NLS-2$
+		    query += " ORDER BY " + selectAlias + ".[" + orderByProperty + "] " + direction; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		    if (!JCRConstants.SRAMP_UUID.equals(orderByProperty)) {
+		        query += ", " + selectAlias + ".[" + JCRConstants.SRAMP_UUID + "] " + direction; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		    }
+		}
+		if (limit >= 0) {
+		    query += " LIMIT " + limit; //$NON-NLS-1$
+		}
+		if (offset > 0) {
+		    query += " OFFSET " + offset; //$NON-NLS-1$
+		}
 		return query;
 	}
 
+	/**
+	 * Creates the keyset constraint - the results must sort after the last seen artifact.
+	 * In descending order, artifacts without a value for the order-by property sort last,
+	 * so they are included as well.
+	 */
+	private String getKeysetConstraint() {
+	    if (keysetValue == null || orderByProperty == null) {
+	        return ""; //$NON-NLS-1$
+	    }
+	    String op = orderAscending ? " > " : " < "; //$NON-NLS-1$ //$NON-NLS-2$
+	    String orderBy = selectAlias + ".[" + orderByProperty + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	    String uuid = selectAlias + ".[" + JCRConstants.SRAMP_UUID + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	    if (JCRConstants.SRAMP_UUID.equals(orderByProperty)) {
+	        return " AND (" + uuid + op + keysetUuid + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+	    }
+	    StringBuilder builder = new StringBuilder();
+	    builder.append(" AND (").append(orderBy).append(op).append(keysetValue); //$NON-NLS-1$
+	    builder.append(" OR (").append(orderBy).append(" = ").append(keysetValue); //$NON-NLS-1$ //$NON-NLS-2$
+	    builder.append(" AND ").append(uuid).append(op).append(keysetUuid).append(")"); //$NON-NLS-1$ //$NON-NLS-2$
+	    if (!orderAscending) {
+	        builder.append(" OR NOT (").append(orderBy).append(" IS NOT NULL)"); //$NON-NLS-1$ //$NON-NLS-2$
+	    }
+	    builder.append(")"); //$NON-NLS-1$
+	    return builder.toString();
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.query.xpath.visitors.XPathVisitor#visit(org.overlord.sramp.common.query.xpath.ast.Query)
 	 */
@@ -297,12 +431,7 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 				property = new QName(SrampConstants.SRAMP_NS, property.getLocalPart());
 
 			if (property.getNamespaceURI().equals(SrampConstants.SRAMP_NS)) {
-				String jcrPropName = null;
-				if (corePropertyMap.containsKey(property)) {
-					jcrPropName = corePropertyMap.get(property);
-				} else {
-					jcrPropName = JCRConstants.SRAMP_PROPERTIES + ":" + property.getLocalPart(); //$NON-NLS-1$
-				}
+				String jcrPropName = getJcrPropertyName(property.getLocalPart());
 				this.whereBuilder.append(this.artifactPredicateContext);
 				this.whereBuilder.append(".["); //$NON-NLS-1$
 				this.whereBuilder.append(jcrPropName);
@@ -314,20 +443,56 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 		}
 	}
 
+	/**
+	 * Maps the name of an s-ramp property (either a core property such as "ncName" or a
+	 * custom property) to the name of the JCR property it is stored in.
+	 * @param propertyName
+	 */
+	public static String getJcrPropertyName(String propertyName) {
+		QName property = new QName(SrampConstants.SRAMP_NS, propertyName);
+		if (corePropertyMap.containsKey(property)) {
+			return corePropertyMap.get(property);
+		} else {
+			return JCRConstants.SRAMP_PROPERTIES + ":" + propertyName; //$NON-NLS-1$
+		}
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.query.xpath.visitors.XPathVisitor#visit(org.overlord.sramp.common.query.xpath.ast.FunctionCall)
 	 */
 	@Override
 	public void visit(FunctionCall node) {
-		if (SrampConstants.SRAMP_NS.equals(node.getFunctionName().getNamespaceURI())) {
+		if (DUPLICATE_CONTENT.equals(node.getFunctionName())) {
+		    // Join with the other (not deleted) artifacts that have the same content hash.  An
+		    // artifact with several copies joins once per copy, hence the DISTINCT.
+		    String duplicateAlias = newArtifactAlias();
+		    this.fromBuilder.append(" JOIN [sramp:baseArtifactType] AS "); //$NON-NLS-1$
+		    this.fromBuilder.append(duplicateAlias);
+		    this.fromBuilder.append(" ON "); //$NON-NLS-1$
+		    this.fromBuilder.append(artifactPredicateContext);
+		    this.fromBuilder.append(".[sramp:contentHash] = "); //$NON-NLS-1$
+		    this.fromBuilder.append(duplicateAlias);
+		    this.fromBuilder.append(".[sramp:contentHash]"); //$NON-NLS-1$
+		    this.whereBuilder.append(artifactPredicateContext);
+		    this.whereBuilder.append(".[sramp:uuid] <> "); //$NON-NLS-1$
+		    this.whereBuilder.append(duplicateAlias);
+		    this.whereBuilder.append(".[sramp:uuid] AND ISDESCENDANTNODE("); //$NON-NLS-1$
+		    this.whereBuilder.append(duplicateAlias);
+		    this.whereBuilder.append(",'"); //$NON-NLS-1$
+		    this.whereBuilder.append(JCRConstants.ROOT_PATH);
+		    this.whereBuilder.append("')"); //$NON-NLS-1$
+		    this.selectDistinct = true;
+		} else if (SrampConstants.SRAMP_NS.equals(node.getFunctionName().getNamespaceURI())) {
 			String propertyName = null, operator = null;
 			Collection<URI> classifications = resolveArgumentsToClassifications(node.getArguments());
 			if (node.getFunctionName().equals(CLASSIFIED_BY_ALL_OF)) {
 				propertyName = "sramp:normalizedClassifiedBy"; //$NON-NLS-1$
 				operator = "AND"; //$NON-NLS-1$
+				classifications = reduceClassifications(classifications, false);
 			} else if (node.getFunctionName().equals(CLASSIFIED_BY_ANY_OF)) {
 				propertyName = "sramp:normalizedClassifiedBy"; //$NON-NLS-1$
 				operator = "OR"; //$NON-NLS-1$
+				classifications = reduceClassifications(classifications, true);
 			} else if (node.getFunctionName().equals(EXACTLY_CLASSIFIED_BY_ALL_OF)) {
 				propertyName = "sramp:classifiedBy"; //$NON-NLS-1$
 				operator = "AND"; //$NON-NLS-1$
@@ -341,26 +506,49 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 				throw new RuntimeException(Messages.i18n.format("XP_FUNC_NOT_SUPPORTED", node.getFunctionName().toString())); //$NON-NLS-1$
 			}
 
-			if (classifications.size() > 1) {
-				this.whereBuilder.append("("); //$NON-NLS-1$
-			}
-			boolean first = true;
+			// Sorted, so that the same classifications always produce the same query
+			Set<String> sortedClassifications = new TreeSet<String>();
 			for (URI classification : classifications) {
-				if (!first) {
-					this.whereBuilder.append(" "); //$NON-NLS-1$
-					this.whereBuilder.append(operator);
-					this.whereBuilder.append(" "); //$NON-NLS-1$
-				}
-                this.whereBuilder.append(artifactPredicateContext);
+				sortedClassifications.add(classification.toString());
+			}
+			if (sortedClassifications.size() > 1 && "OR".equals(operator)) { //$NON-NLS-1$
+				this.whereBuilder.append(artifactPredicateContext);
 				this.whereBuilder.append(".["); //$NON-NLS-1$
 				this.whereBuilder.append(propertyName);
-				this.whereBuilder.append("] = '"); //$NON-NLS-1$
-				this.whereBuilder.append(escapeStringLiteral(classification.toString()));
-				this.whereBuilder.append("'"); //$NON-NLS-1$
-				first = false;
-			}
-			if (classifications.size() > 1) {
+				this.whereBuilder.append("] IN ("); //$NON-NLS-1$
+				boolean first = true;
+				for (String classification : sortedClassifications) {
+					if (!first) {
+						this.whereBuilder.append(", "); //$NON-NLS-1$
+					}
+					this.whereBuilder.append("'"); //$NON-NLS-1$
+					this.whereBuilder.append(escapeStringLiteral(classification));
+					this.whereBuilder.append("'"); //$NON-NLS-1$
+					first = false;
+				}
 				this.whereBuilder.append(")"); //$NON-NLS-1$
+			} else {
+				if (sortedClassifications.size() > 1) {
+					this.whereBuilder.append("("); //$NON-NLS-1$
+				}
+				boolean first = true;
+				for (String classification : sortedClassifications) {
+					if (!first) {
+						this.whereBuilder.append(" "); //$NON-NLS-1$
+						this.whereBuilder.append(operator);
+						this.whereBuilder.append(" "); //$NON-NLS-1$
+					}
+					this.whereBuilder.append(artifactPredicateContext);
+					this.whereBuilder.append(".["); //$NON-NLS-1$
+					this.whereBuilder.append(propertyName);
+					this.whereBuilder.append("] = '"); //$NON-NLS-1$
+					this.whereBuilder.append(escapeStringLiteral(classification));
+					this.whereBuilder.append("'"); //$NON-NLS-1$
+					first = false;
+				}
+				if (sortedClassifications.size() > 1) {
+					this.whereBuilder.append(")"); //$NON-NLS-1$
+				}
 			}
 		} else if (MATCHES.equals(node.getFunctionName())) {
 			if (node.getArguments().size() != 2) {
@@ -371,12 +559,17 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 
 			ForwardPropertyStep attribute = reducePropertyArgument(attributeArg);
 			String pattern = reduceStringLiteralArgument(patternArg);
-			pattern = pattern.replace(".*", "%"); // the only valid wildcard //$NON-NLS-1$ //$NON-NLS-2$
 
 			attribute.accept(this);
-			this.whereBuilder.append(" LIKE '"); //$NON-NLS-1$
-			this.whereBuilder.append(escapeStringLiteral(pattern));
-			this.whereBuilder.append("'"); //$NON-NLS-1$
+			if (isBindParam(pattern)) {
+			    this.whereBuilder.append(" LIKE "); //$NON-NLS-1$
+			    this.whereBuilder.append(newBindVariable(pattern, false, true));
+			} else {
+			    pattern = pattern.replace(".*", "%"); // the only valid wildcard //$NON-NLS-1$ //$NON-NLS-2$
+			    this.whereBuilder.append(" LIKE '"); //$NON-NLS-1$
+			    this.whereBuilder.append(escapeStringLiteral(pattern));
+			    this.whereBuilder.append("'"); //$NON-NLS-1$
+			}
 		} else if (NOT.equals(node.getFunctionName())) {
 		    if (node.getArguments().size() != 1) {
 		        throw new RuntimeException(Messages.i18n.format("XP_NOT_FUNC_NUM_ARGS_ERROR", node.getArguments().size()));  //$NON-NLS-1$
@@ -399,6 +592,11 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 	 * @param arguments
 	 */
 	private Collection<URI> resolveArgumentsToClassifications(List<Argument> arguments) {
+		this.compilable = false;
+		if (this.bindParameters) {
+			// The classifications (or the ontologies) may differ from one execution to the next
+			return Collections.emptySet();
+		}
 		Collection<String> classifiedBy = new HashSet<String>();
 		for (int idx = 1; idx < arguments.size(); idx++) {
 			Argument arg = arguments.get(idx);
@@ -415,6 +613,29 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 		}
 	}
 
+	/**
+	 * Reduces the classifications of a classifiedByAnyOf (to the most general ones) or of a
+	 * classifiedByAllOf (to the most specific ones) - the others are implied by the
+	 * normalized classifications of the artifacts, so needn't be part of the query.
+	 * @param classifications
+	 * @param anyOf
+	 */
+	private Collection<URI> reduceClassifications(Collection<URI> classifications, boolean anyOf) {
+		if (classifications.size() < 2) {
+			return classifications;
+		}
+		try {
+			if (anyOf) {
+				return this.classificationHelper.reduceToMostGeneral(classifications);
+			} else {
+				return this.classificationHelper.reduceToMostSpecific(classifications);
+			}
+		} catch (SrampException e) {
+			this.error = e;
+			return Collections.emptySet();
+		}
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.query.xpath.visitors.XPathVisitor#visit(org.overlord.sramp.common.query.xpath.ast.OrExpr)
 	 */
@@ -442,15 +663,15 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 	 */
 	@Override
 	public void visit(PrimaryExpr node) {
-		if (node.getLiteral() != null) {
-		    boolean isDate = ("jcr:lastModified".equals(this.lastFPS) || "jcr:created".equals(this.lastFPS)) //$NON-NLS-1$ //$NON-NLS-2$
-		            && this.datePattern.matcher(node.getLiteral()).find();
+		if (node.getLiteral() != null && isBindParam(node.getLiteral())) {
+		    this.whereBuilder.append(newBindVariable(node.getLiteral(), isDateProperty(this.lastFPS), false));
+		} else if (node.getLiteral() != null) {
+		    boolean isDate = isDateProperty(this.lastFPS) && this.datePattern.matcher(node.getLiteral()).find();
 		    if (isDate) {
 		        this.whereBuilder.append("CAST("); //$NON-NLS-1$
 		    }
 			this.whereBuilder.append("'"); //$NON-NLS-1$
-			// TODO prevent injection here
-			this.whereBuilder.append(node.getLiteral());
+			this.whereBuilder.append(escapeStringLiteral(node.getLiteral()));
 			this.whereBuilder.append("'"); //$NON-NLS-1$
             if (isDate) {
                 this.whereBuilder.append(" AS DATE)"); //$NON-NLS-1$
@@ -573,6 +794,37 @@ public class SrampToJcrSql2QueryVisitor implements XPathVisitor {
 		}
 	}
 
+	/**
+	 * Returns true if the given literal stands in for a param of the query template (only
+	 * when binding parameters).
+	 * @param literal
+	 */
+	private boolean isBindParam(String literal) {
+	    return this.bindParameters && AbstractSrampQueryImpl.getBindParamIndex(literal) >= 0;
+	}
+
+	/**
+	 * Registers a bind variable for the template param the given literal stands in for.
+	 * @param literal
+	 * @param date true if the param is compared to a date property
+	 * @param likePattern true if the param is a matches() pattern
+	 * @return the bind variable, as referenced in the query
+	 */
+	private String newBindVariable(String literal, boolean date, boolean likePattern) {
+	    String name = "param" + (this.bindParams.size() + 1); //$NON-NLS-1$
+	    int index = AbstractSrampQueryImpl.getBindParamIndex(literal);
+	    this.bindParams.add(new BindParam(name, index, date, likePattern));
+	    return "$" + name; //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns true if the given JCR property is a date.
+	 * @param jcrPropertyName
+	 */
+	private static boolean isDateProperty(String jcrPropertyName) {
+	    return "jcr:lastModified".equals(jcrPropertyName) || "jcr:created".equals(jcrPropertyName); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
 	/**
 	 * Escape string literals to prevent injection.
 	 * @param literal
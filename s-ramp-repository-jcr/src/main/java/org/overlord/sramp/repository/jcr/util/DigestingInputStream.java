@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * An input stream that computes one or more message digests (e.g. SHA-1), and counts the
+ * bytes, as the content is read.  This lets the content hash and size of an artifact be
+ * computed while it is being uploaded, rather than by reading the stored content again.
+ * The digests and length are only complete once the stream has been read to the end.
+ */
+public class DigestingInputStream extends FilterInputStream {
+
+    public static final String SHA1 = "SHA-1"; //$NON-NLS-1$
+    public static final String SHA256 = "SHA-256"; //$NON-NLS-1$
+    public static final String MD5 = "MD5"; //$NON-NLS-1$
+
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<String, MessageDigest>();
+    private final Map<String, String> digestValues = new LinkedHashMap<String, String>();
+    private long length = 0;
+
+    /**
+     * Constructor.
+     * @param in
+     * @param algorithms the digest algorithms to compute (defaults to SHA-1)
+     * @throws NoSuchAlgorithmException
+     */
+    public DigestingInputStream(InputStream in, String ... algorithms) throws NoSuchAlgorithmException {
+        super(in);
+        if (algorithms.length == 0) {
+            algorithms = new String[] { SHA1 };
+        }
+        for (String algorithm : algorithms) {
+            digests.put(algorithm, MessageDigest.getInstance(algorithm));
+        }
+    }
+
+    /**
+     * @see java.io.FilterInputStream#read()
+     */
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            for (MessageDigest digest : digests.values()) {
+                digest.update((byte) b);
+            }
+            length++;
+        }
+        return b;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = super.read(b, off, len);
+        if (count > 0) {
+            for (MessageDigest digest : digests.values()) {
+                digest.update(b, off, count);
+            }
+            length += count;
+        }
+        return count;
+    }
+
+    /**
+     * Skipped bytes must still be digested, so they are read rather than skipped.
+     * @see java.io.FilterInputStream#skip(long)
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (count == -1) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#markSupported()
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#mark(int)
+     */
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    /**
+     * @see java.io.FilterInputStream#reset()
+     */
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported"); //$NON-NLS-1$
+    }
+
+    /**
+     * @return the number of bytes read so far
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the (hex encoded) digest of the content read so far.  Reading any more content
+     * after calling this is not supported.
+     * @param algorithm one of the algorithms given to the constructor
+     */
+    public String getDigestHex(String algorithm) {
+        String value = digestValues.get(algorithm);
+        if (value == null) {
+            MessageDigest digest = digests.get(algorithm);
+            if (digest == null) {
+                throw new IllegalArgumentException(algorithm);
+            }
+            value = Hex.encodeHexString(digest.digest());
+            digestValues.put(algorithm, value);
+        }
+        return value;
+    }
+
+}
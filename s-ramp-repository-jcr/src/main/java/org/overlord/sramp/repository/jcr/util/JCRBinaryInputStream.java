@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.overlord.sramp.repository.jcr.JCRRepositoryFactory;
+
+/**
+ * An input stream that reads directly from a JCR {@link Binary}.  Closing the stream
+ * disposes of the binary and (optionally) hands the JCR session it was read from back
+ * via {@link JCRRepositoryFactory#logoutQuietly(Session)}, so that the session stays
+ * open for exactly as long as the content is being read.
+ */
+public class JCRBinaryInputStream extends FilterInputStream {
+
+    private final Binary binary;
+    private Session session;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     * @param binary
+     * @param session the session to release on close (may be null)
+     * @throws RepositoryException
+     */
+    public JCRBinaryInputStream(Binary binary, Session session) throws RepositoryException {
+        super(binary.getStream());
+        this.binary = binary;
+        this.session = session;
+    }
+
+    /**
+     * @see java.io.FilterInputStream#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            super.close();
+        } finally {
+            binary.dispose();
+            if (session != null) {
+                JCRRepositoryFactory.logoutQuietly(session);
+                session = null;
+            }
+        }
+    }
+
+}
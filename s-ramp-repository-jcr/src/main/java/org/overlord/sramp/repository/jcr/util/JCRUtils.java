@@ -170,7 +170,8 @@ public class JCRUtils {
      * defined by the JCR specification, the binary content (and other properties) will be placed on a child of the 'nt:file' node
      * named 'jcr:content' with a node type of 'nt:resource'.
      * <p>
-     * This method always closes the supplied stream.
+     * This method always closes the supplied stream.  To compute the content hash and size while
+     * the content is uploaded, pass a {@link DigestingInputStream}.
      * </p>
      *
      * @param session the JCR session
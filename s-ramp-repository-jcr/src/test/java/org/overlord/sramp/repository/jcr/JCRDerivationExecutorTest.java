@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Document;
+import org.overlord.sramp.common.SrampException;
+import org.overlord.sramp.common.SrampServerException;
+import org.overlord.sramp.common.derived.LinkerContext;
+import org.overlord.sramp.repository.DerivedArtifacts;
+
+/**
+ * Unit test for the {@link JCRDerivationExecutor}.
+ */
+public class JCRDerivationExecutorTest {
+
+    @Test
+    public void testSequential() throws Exception {
+        JCRDerivationExecutor executor = new JCRDerivationExecutor(1);
+        Assert.assertFalse(executor.isParallel());
+        Assert.assertEquals(1, executor.getParallelism());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testParallelDerivation() throws Exception {
+        JCRDerivationExecutor executor = new JCRDerivationExecutor(4);
+        try {
+            Assert.assertTrue(executor.isParallel());
+            List<Document> documents = new ArrayList<Document>();
+            List<File> files = new ArrayList<File>();
+            List<Future<Collection<BaseArtifactType>>> futures = new ArrayList<Future<Collection<BaseArtifactType>>>();
+            for (int i = 0; i < 20; i++) {
+                Document document = new Document();
+                File file = File.createTempFile("s-ramp-derivation", ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+                FileUtils.writeStringToFile(file, "content-" + i); //$NON-NLS-1$
+                documents.add(document);
+                files.add(file);
+                futures.add(executor.submit(new MockDerivedArtifacts(), document, file));
+            }
+            for (int i = 0; i < 20; i++) {
+                Collection<BaseArtifactType> derived = futures.get(i).get();
+                Assert.assertEquals(1, derived.size());
+                Assert.assertEquals("content-" + i, derived.iterator().next().getName()); //$NON-NLS-1$
+                // The deriver is allowed to modify the source artifact
+                Assert.assertEquals("content-" + i, documents.get(i).getDescription()); //$NON-NLS-1$
+                // And the content is cleaned up
+                Assert.assertFalse(files.get(i).exists());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDerivationFailure() throws Exception {
+        JCRDerivationExecutor executor = new JCRDerivationExecutor(2);
+        try {
+            File file = File.createTempFile("s-ramp-derivation", ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+            FileUtils.writeStringToFile(file, "fail"); //$NON-NLS-1$
+            Future<Collection<BaseArtifactType>> future = executor.submit(new MockDerivedArtifacts(), new Document(), file);
+            try {
+                future.get();
+                Assert.fail("Expected the derivation to fail."); //$NON-NLS-1$
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof SrampServerException);
+            }
+            Assert.assertFalse(file.exists());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Derives a single document named after the content (and fails if the content is "fail").
+     */
+    private static class MockDerivedArtifacts implements DerivedArtifacts {
+        @Override
+        public Collection<BaseArtifactType> deriveArtifacts(BaseArtifactType sourceArtifact,
+                InputStream sourceArtifactContent) throws SrampException {
+            String content;
+            try {
+                content = IOUtils.toString(sourceArtifactContent);
+            } catch (IOException e) {
+                throw new SrampServerException(e);
+            }
+            if ("fail".equals(content)) { //$NON-NLS-1$
+                throw new SrampServerException(content);
+            }
+            sourceArtifact.setDescription(content);
+            Document derived = new Document();
+            derived.setName(content);
+            List<BaseArtifactType> rval = new ArrayList<BaseArtifactType>();
+            rval.add(derived);
+            return rval;
+        }
+
+        @Override
+        public void linkArtifacts(LinkerContext context, BaseArtifactType sourceArtifact,
+                Collection<BaseArtifactType> derivedArtifacts) throws SrampException {
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.AccessController;
+import java.security.Principal;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.security.auth.Subject;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.overlord.sramp.repository.UnitOfWork;
+
+/**
+ * Unit test for the {@link JCRSessionPool}.
+ */
+public class JCRSessionPoolTest {
+
+    @Test
+    public void testNoSubjectIsNotPooled() throws Exception {
+        MockRepository repo = new MockRepository();
+        JCRSessionPool pool = new JCRSessionPool(repo, "default", true, 10, 5, 1000, 0); //$NON-NLS-1$
+        Session s1 = pool.borrowSession();
+        pool.returnSession(s1);
+        Session s2 = pool.borrowSession();
+        pool.returnSession(s2);
+
+        Assert.assertNotSame(s1, s2);
+        Assert.assertEquals(2, repo.sessions.size());
+        Assert.assertFalse(repo.sessions.get(0).live);
+        Assert.assertFalse(repo.sessions.get(1).live);
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(0, pool.getActiveCount());
+        pool.close();
+    }
+
+    @Test
+    public void testSessionReusedForSameSubject() throws Exception {
+        MockRepository repo = new MockRepository();
+        final JCRSessionPool pool = new JCRSessionPool(repo, "default", true, 10, 5, 1000, 0); //$NON-NLS-1$
+        PrivilegedExceptionAction<Session> borrowAndReturn = new PrivilegedExceptionAction<Session>() {
+            @Override
+            public Session run() throws Exception {
+                Session session = pool.borrowSession();
+                pool.returnSession(session);
+                return session;
+            }
+        };
+
+        Session s1 = Subject.doAs(createSubject("junituser"), borrowAndReturn); //$NON-NLS-1$
+        Session s2 = Subject.doAs(createSubject("junituser"), borrowAndReturn); //$NON-NLS-1$
+        Session s3 = Subject.doAs(createSubject("junituser2"), borrowAndReturn); //$NON-NLS-1$
+
+        Assert.assertSame(s1, s2);
+        Assert.assertNotSame(s1, s3);
+        Assert.assertEquals(2, repo.sessions.size());
+        Assert.assertEquals(2, repo.sessions.get(0).refreshCount);
+        Assert.assertEquals(1, pool.getHitCount());
+        Assert.assertEquals(2, pool.getLoginCount());
+        Assert.assertEquals(2, pool.getIdleCount());
+
+        pool.close();
+        Assert.assertFalse(repo.sessions.get(0).live);
+        Assert.assertFalse(repo.sessions.get(1).live);
+        Assert.assertEquals(0, pool.getIdleCount());
+    }
+
+    /**
+     * The caller of a unit of work (the user its request was authenticated as) is used when
+     * there is no JAAS subject - which is the case under the container's web security.
+     */
+    @Test
+    public void testSessionReusedForUnitOfWorkCaller() throws Exception {
+        MockRepository repo = new MockRepository();
+        JCRSessionPool pool = new JCRSessionPool(repo, "default", true, 10, 5, 1000, 0); //$NON-NLS-1$
+        repo.userId = "junituser"; //$NON-NLS-1$
+        Session s1 = borrowAndReturn(pool, "junituser"); //$NON-NLS-1$
+        Session s2 = borrowAndReturn(pool, "junituser"); //$NON-NLS-1$
+        repo.userId = "junituser2"; //$NON-NLS-1$
+        Session s3 = borrowAndReturn(pool, "junituser2"); //$NON-NLS-1$
+
+        Assert.assertSame(s1, s2);
+        Assert.assertNotSame(s1, s3);
+        Assert.assertEquals(2, repo.sessions.size());
+        Assert.assertEquals(1, pool.getHitCount());
+        Assert.assertEquals(2, pool.getIdleCount());
+        pool.close();
+    }
+
+    /**
+     * A session that ModeShape authenticated as someone other than the caller is never
+     * pooled.
+     */
+    @Test
+    public void testSessionOfAnotherUserIsNotPooled() throws Exception {
+        MockRepository repo = new MockRepository();
+        JCRSessionPool pool = new JCRSessionPool(repo, "default", true, 10, 5, 1000, 0); //$NON-NLS-1$
+        repo.userId = "anonymous"; //$NON-NLS-1$
+        Session s1 = borrowAndReturn(pool, "junituser"); //$NON-NLS-1$
+        Session s2 = borrowAndReturn(pool, "junituser"); //$NON-NLS-1$
+
+        Assert.assertNotSame(s1, s2);
+        Assert.assertFalse(repo.sessions.get(0).live);
+        Assert.assertEquals(0, pool.getHitCount());
+        Assert.assertEquals(0, pool.getIdleCount());
+        pool.close();
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        MockRepository repo = new MockRepository();
+        final JCRSessionPool pool = new JCRSessionPool(repo, "default", true, 10, 5, 1000, 0); //$NON-NLS-1$
+        Subject.doAs(createSubject("junituser"), new PrivilegedExceptionAction<Session>() { //$NON-NLS-1$
+            @Override
+            public Session run() throws Exception {
+                Session session = pool.borrowSession();
+                pool.returnSession(session);
+                return session;
+            }
+        });
+        Assert.assertEquals(1, pool.getIdleCount());
+        Thread.sleep(5);
+        pool.evictIdleSessions();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(1, pool.getEvictionCount());
+        Assert.assertFalse(repo.sessions.get(0).live);
+        pool.close();
+    }
+
+    @Test
+    public void testPoolExhausted() throws Exception {
+        MockRepository repo = new MockRepository();
+        JCRSessionPool pool = new JCRSessionPool(repo, "default", true, 1, 5, 50, 0); //$NON-NLS-1$
+        Session s1 = pool.borrowSession();
+        try {
+            pool.borrowSession();
+            Assert.fail("Expected the pool to be exhausted."); //$NON-NLS-1$
+        } catch (RepositoryException e) {
+            // expected
+        }
+        pool.returnSession(s1);
+        Session s2 = pool.borrowSession();
+        Assert.assertNotNull(s2);
+        pool.returnSession(s2);
+        Assert.assertTrue(pool.getMaxWaitMillis() >= 0);
+        pool.close();
+    }
+
+    /**
+     * Borrows a session (and returns it) within a unit of work for the given caller.
+     * @param pool
+     * @param callerName
+     * @throws Exception
+     */
+    private static Session borrowAndReturn(JCRSessionPool pool, String callerName) throws Exception {
+        UnitOfWork uow = UnitOfWork.begin();
+        try {
+            uow.setCallerName(callerName);
+            Session session = pool.borrowSession();
+            pool.returnSession(session);
+            return session;
+        } finally {
+            uow.end();
+        }
+    }
+
+    /**
+     * Creates a JAAS subject with a single principal.
+     * @param username
+     */
+    private static Subject createSubject(final String username) {
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new Principal() {
+            @Override
+            public String getName() {
+                return username;
+            }
+        });
+        return subject;
+    }
+
+    /**
+     * A JCR repository that hands out mock sessions.  Like ModeShape, it authenticates the
+     * sessions as the user of the current JAAS subject, if there is one - otherwise as
+     * whoever the container says the user is (the userId).
+     */
+    private static class MockRepository extends JCRRepository {
+        private final List<MockSession> sessions = new ArrayList<MockSession>();
+        private String userId;
+
+        @Override
+        protected void doStartup() throws RepositoryException {
+        }
+
+        @Override
+        protected void doShutdown() {
+        }
+
+        @Override
+        public Repository getRepo() {
+            return (Repository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { Repository.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("login")) { //$NON-NLS-1$
+                                Subject subject = Subject.getSubject(AccessController.getContext());
+                                MockSession session = new MockSession(subject == null ? userId
+                                        : subject.getPrincipals().iterator().next().getName());
+                                sessions.add(session);
+                                return session.proxy;
+                            }
+                            return null;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Tracks the state of a single mock session.
+     */
+    private static class MockSession implements InvocationHandler {
+        private final String userId;
+        private boolean live = true;
+        private int refreshCount = 0;
+        private final Session proxy = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Session.class }, this);
+
+        /**
+         * Constructor.
+         * @param userId
+         */
+        public MockSession(String userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("isLive")) { //$NON-NLS-1$
+                return live;
+            } else if (name.equals("getUserID")) { //$NON-NLS-1$
+                return userId;
+            } else if (name.equals("logout")) { //$NON-NLS-1$
+                live = false;
+            } else if (name.equals("refresh")) { //$NON-NLS-1$
+                refreshCount++;
+            } else if (name.equals("hashCode")) { //$NON-NLS-1$
+                return System.identityHashCode(proxy);
+            } else if (name.equals("equals")) { //$NON-NLS-1$
+                return proxy == args[0];
+            }
+            return null;
+        }
+    }
+
+}
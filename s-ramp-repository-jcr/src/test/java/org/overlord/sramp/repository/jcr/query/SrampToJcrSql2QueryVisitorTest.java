@@ -179,14 +179,22 @@ public class SrampToJcrSql2QueryVisitorTest {
 			"/s-ramp/xsd/XsdDocument[s-ramp:exactlyClassifiedByAnyOf(., '#Spicy', '#Sweet')]", //$NON-NLS-1$
 			"SELECT artifact1.* FROM [sramp:baseArtifactType] AS artifact1 " + //$NON-NLS-1$
 			"WHERE artifact1.[sramp:artifactType] = 'XsdDocument'" + //$NON-NLS-1$
-			" AND ((artifact1.[sramp:classifiedBy] = '#Spicy' OR artifact1.[sramp:classifiedBy] = '#Sweet'))" //$NON-NLS-1$
+			" AND (artifact1.[sramp:classifiedBy] IN ('#Spicy', '#Sweet'))" //$NON-NLS-1$
 			+ " AND (ISDESCENDANTNODE([sramp:baseArtifactType],'/s-ramp'))" //$NON-NLS-1$
 		},
 		{
 			"/s-ramp/xsd/XsdDocument[s-ramp:classifiedByAnyOf(., '#Spicy', '#Sweet')]", //$NON-NLS-1$
 			"SELECT artifact1.* FROM [sramp:baseArtifactType] AS artifact1 " + //$NON-NLS-1$
 			"WHERE artifact1.[sramp:artifactType] = 'XsdDocument'" + //$NON-NLS-1$
-			" AND ((artifact1.[sramp:normalizedClassifiedBy] = '#Spicy' OR artifact1.[sramp:normalizedClassifiedBy] = '#Sweet'))" //$NON-NLS-1$
+			" AND (artifact1.[sramp:normalizedClassifiedBy] IN ('#Spicy', '#Sweet'))" //$NON-NLS-1$
+			+ " AND (ISDESCENDANTNODE([sramp:baseArtifactType],'/s-ramp'))" //$NON-NLS-1$
+		},
+		{
+			"/s-ramp/xsd/XsdDocument[s-ramp:duplicateContent()]", //$NON-NLS-1$
+			"SELECT DISTINCT artifact1.* FROM [sramp:baseArtifactType] AS artifact1" + //$NON-NLS-1$
+			" JOIN [sramp:baseArtifactType] AS artifact2 ON artifact1.[sramp:contentHash] = artifact2.[sramp:contentHash]" + //$NON-NLS-1$
+			" WHERE artifact1.[sramp:artifactType] = 'XsdDocument'" + //$NON-NLS-1$
+			" AND (artifact1.[sramp:uuid] <> artifact2.[sramp:uuid] AND ISDESCENDANTNODE(artifact2,'/s-ramp'))" //$NON-NLS-1$
 			+ " AND (ISDESCENDANTNODE([sramp:baseArtifactType],'/s-ramp'))" //$NON-NLS-1$
 		},
 		{
@@ -340,6 +348,16 @@ public class SrampToJcrSql2QueryVisitorTest {
 						throw new SrampServerException(e);
 					}
 				}
+
+				@Override
+				public Collection<URI> reduceToMostGeneral(Collection<URI> classifications) throws SrampException {
+					return classifications;
+				}
+
+				@Override
+				public Collection<URI> reduceToMostSpecific(Collection<URI> classifications) throws SrampException {
+					return classifications;
+				}
 			});
 			XPathParser parser = new XPathParser();
 			Query srampQuery = parser.parseXPath(srampXpath);
@@ -349,4 +367,80 @@ public class SrampToJcrSql2QueryVisitorTest {
 		}
 	}
 
+	/**
+	 * Tests the ordering and (keyset) paging added to the generated query.
+	 * @throws SrampException
+	 */
+	@Test
+	public void testPaging() throws SrampException {
+		XPathParser parser = new XPathParser();
+		SrampToJcrSql2QueryVisitor visitor = new SrampToJcrSql2QueryVisitor(null);
+		parser.parseXPath("/s-ramp/xsd/XsdDocument").accept(visitor); //$NON-NLS-1$
+		visitor.setOrderBy("sramp:name", true); //$NON-NLS-1$
+		visitor.setKeyset("foo's", false, "uuid-1"); //$NON-NLS-1$ //$NON-NLS-2$
+		visitor.setLimit(11);
+		Assert.assertEquals(
+			"SELECT artifact1.* FROM [sramp:baseArtifactType] AS artifact1 WHERE artifact1.[sramp:artifactType] = 'XsdDocument'" + //$NON-NLS-1$
+			" AND (ISDESCENDANTNODE([sramp:baseArtifactType],'/s-ramp'))" + //$NON-NLS-1$
+			" AND (artifact1.[sramp:name] > 'foo''s' OR (artifact1.[sramp:name] = 'foo''s' AND artifact1.[sramp:uuid] > 'uuid-1'))" + //$NON-NLS-1$
+			" ORDER BY artifact1.[sramp:name] ASC, artifact1.[sramp:uuid] ASC LIMIT 11", //$NON-NLS-1$
+			visitor.getSql2Query());
+
+		visitor = new SrampToJcrSql2QueryVisitor(null);
+		parser.parseXPath("/s-ramp").accept(visitor); //$NON-NLS-1$
+		visitor.setOrderBy("jcr:created", false); //$NON-NLS-1$
+		visitor.setKeyset("2013-01-01T00:00:00.000Z", true, "uuid-1"); //$NON-NLS-1$ //$NON-NLS-2$
+		visitor.setLimit(10);
+		visitor.setOffset(5);
+		Assert.assertEquals(
+			"SELECT artifact1.* FROM [sramp:baseArtifactType] AS artifact1" + //$NON-NLS-1$
+			" WHERE (ISDESCENDANTNODE([sramp:baseArtifactType],'/s-ramp'))" + //$NON-NLS-1$
+			" AND (artifact1.[jcr:created] < CAST('2013-01-01T00:00:00.000Z' AS DATE)" + //$NON-NLS-1$
+			" OR (artifact1.[jcr:created] = CAST('2013-01-01T00:00:00.000Z' AS DATE) AND artifact1.[sramp:uuid] < 'uuid-1')" + //$NON-NLS-1$
+			" OR NOT (artifact1.[jcr:created] IS NOT NULL))" + //$NON-NLS-1$
+			" ORDER BY artifact1.[jcr:created] DESC, artifact1.[sramp:uuid] DESC LIMIT 10 OFFSET 5", //$NON-NLS-1$
+			visitor.getSql2Query());
+
+		visitor = new SrampToJcrSql2QueryVisitor(null);
+		parser.parseXPath("/s-ramp").accept(visitor); //$NON-NLS-1$
+		visitor.setOrderBy("sramp:uuid", true); //$NON-NLS-1$
+		visitor.setKeyset("uuid-1", false, "uuid-1"); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(
+			"SELECT artifact1.* FROM [sramp:baseArtifactType] AS artifact1" + //$NON-NLS-1$
+			" WHERE (ISDESCENDANTNODE([sramp:baseArtifactType],'/s-ramp'))" + //$NON-NLS-1$
+			" AND (artifact1.[sramp:uuid] > 'uuid-1')" + //$NON-NLS-1$
+			" ORDER BY artifact1.[sramp:uuid] ASC", //$NON-NLS-1$
+			visitor.getSql2Query());
+	}
+
+	/**
+	 * Tests the bind variables generated for the params of a query template.
+	 * @throws SrampException
+	 */
+	@Test
+	public void testBindParameters() throws SrampException {
+		XPathParser parser = new XPathParser();
+		SrampToJcrSql2QueryVisitor visitor = new SrampToJcrSql2QueryVisitor(null);
+		visitor.setBindParameters(true);
+		parser.parseXPath("/s-ramp/core/Document[@name = '?0' and fn:matches(@prop, '?1') and @createdTimestamp > '?2']").accept(visitor); //$NON-NLS-1$
+		visitor.setOrderBy("sramp:name", true); //$NON-NLS-1$
+		visitor.setKeysetParameters();
+		Assert.assertTrue(visitor.isCompilable());
+		Assert.assertEquals(
+			"SELECT artifact1.* FROM [sramp:baseArtifactType] AS artifact1 WHERE artifact1.[sramp:artifactType] = 'Document'" + //$NON-NLS-1$
+			" AND (artifact1.[sramp:name] = $param1 AND artifact1.[sramp-properties:prop] LIKE $param2 AND artifact1.[jcr:created] > $param3)" + //$NON-NLS-1$
+			" AND (ISDESCENDANTNODE([sramp:baseArtifactType],'/s-ramp'))" + //$NON-NLS-1$
+			" AND (artifact1.[sramp:name] > $keysetValue OR (artifact1.[sramp:name] = $keysetValue AND artifact1.[sramp:uuid] > $keysetUuid))" + //$NON-NLS-1$
+			" ORDER BY artifact1.[sramp:name] ASC, artifact1.[sramp:uuid] ASC", //$NON-NLS-1$
+			visitor.getSql2Query());
+		Assert.assertEquals(3, visitor.getBindParams().size());
+		Assert.assertEquals(2, visitor.getBindParams().get(2).getIndex());
+
+		// Classifications are resolved against the ontologies, so can't be compiled
+		visitor = new SrampToJcrSql2QueryVisitor(null);
+		visitor.setBindParameters(true);
+		parser.parseXPath("/s-ramp[s-ramp:classifiedByAnyOf(., '?0')]").accept(visitor); //$NON-NLS-1$
+		Assert.assertFalse(visitor.isCompilable());
+	}
+
 }
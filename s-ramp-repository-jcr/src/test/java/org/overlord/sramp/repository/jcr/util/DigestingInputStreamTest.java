@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.jcr.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link DigestingInputStream}.
+ */
+public class DigestingInputStreamTest {
+
+    @Test
+    public void testDigests() throws Exception {
+        byte[] content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        DigestingInputStream in = new DigestingInputStream(new ByteArrayInputStream(content),
+                DigestingInputStream.SHA1, DigestingInputStream.SHA256, DigestingInputStream.MD5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Mix single byte reads, skips and bulk reads
+        out.write(in.read());
+        in.skip(10);
+        IOUtils.copy(in, out);
+        in.close();
+
+        Assert.assertEquals(content.length - 10, out.size());
+        Assert.assertEquals(content.length, in.getLength());
+        Assert.assertEquals(DigestUtils.shaHex(content), in.getDigestHex(DigestingInputStream.SHA1));
+        Assert.assertEquals(DigestUtils.sha256Hex(content), in.getDigestHex(DigestingInputStream.SHA256));
+        Assert.assertEquals(DigestUtils.md5Hex(content), in.getDigestHex(DigestingInputStream.MD5));
+        // The digest can be asked for more than once
+        Assert.assertEquals(DigestUtils.shaHex(content), in.getDigestHex(DigestingInputStream.SHA1));
+    }
+
+    @Test
+    public void testEmptyContent() throws Exception {
+        DigestingInputStream in = new DigestingInputStream(new ByteArrayInputStream(new byte[0]));
+        Assert.assertEquals(-1, in.read());
+        Assert.assertEquals(0, in.getLength());
+        Assert.assertEquals(DigestUtils.shaHex(new byte[0]), in.getDigestHex(DigestingInputStream.SHA1));
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package org.overlord.sramp.repository;
 
+import java.util.Date;
+
 import org.jboss.downloads.overlord.sramp._2013.auditing.AuditEntry;
 import org.overlord.sramp.common.SrampException;
 import org.overlord.sramp.repository.audit.AuditEntrySet;
@@ -55,10 +57,40 @@ public interface AuditManager {
     public AuditEntrySet getArtifactAuditEntries(String artifactUuid) throws SrampException;
 
     /**
-     * Gets
+     * Gets a page of the audit entries for a particular artifact, optionally limited to the
+     * entries made in a given time range.  The entries are ordered newest first.  The time
+     * range and paging are applied by the underlying store, so entries outside the page are
+     * never visited.
+     *
+     * @param artifactUuid
+     * @param since only entries made at or after this time (may be null)
+     * @param until only entries made before this time (may be null)
+     * @param offset the number of (newest) entries to skip
+     * @param limit the maximum number of entries (less than zero means no limit)
+     * @throws SrampException
+     */
+    public AuditEntrySet getArtifactAuditEntries(String artifactUuid, Date since, Date until, long offset, long limit)
+            throws SrampException;
+
+    /**
+     * Gets all of the audit entries made by a particular user.
      * @param username
-     * @return
      * @throws SrampException
      */
     public AuditEntrySet getUserAuditEntries(String username) throws SrampException;
+
+    /**
+     * Gets a page of the audit entries made by a particular user, optionally limited to the
+     * entries made in a given time range.  The entries are ordered newest first.  The time
+     * range and paging are applied by the underlying store.
+     *
+     * @param username
+     * @param since only entries made at or after this time (may be null)
+     * @param until only entries made before this time (may be null)
+     * @param offset the number of (newest) entries to skip
+     * @param limit the maximum number of entries (less than zero means no limit)
+     * @throws SrampException
+     */
+    public AuditEntrySet getUserAuditEntries(String username, Date since, Date until, long offset, long limit)
+            throws SrampException;
 }
@@ -16,6 +16,7 @@
 package org.overlord.sramp.repository;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +40,18 @@ public interface PersistenceManager {
      */
     public List<Object> persistBatch(List<BatchItem> items) throws SrampException;
 
+    /**
+     * Persists a batch of artifacts, just like {@link #persistBatch(List)}, except that the
+     * result of each item (either a {@link BaseArtifactType} or an {@link Exception}) is handed
+     * to the given handler as soon as it is available, rather than collected into a list.  The
+     * items are handled in order.  If the handler fails, the remaining items are not handled
+     * (the batch has been persisted by then).
+     * @param items
+     * @param handler
+     * @throws SrampException
+     */
+    public void persistBatch(List<BatchItem> items, BatchResultHandler handler) throws SrampException;
+
     /**
      * Persists a single artifact.
      * @param baseArtifactType, the s-ramp artifact
@@ -56,6 +69,16 @@ public interface PersistenceManager {
 	 */
 	public BaseArtifactType getArtifact(String uuid, ArtifactType type) throws SrampException;
 
+	/**
+	 * Checks which of the given UUIDs belong to existing artifacts, regardless of their type.
+	 * This is much cheaper than calling {@link #getArtifact(String, ArtifactType)} for each
+	 * UUID, since the artifacts themselves are not loaded.
+	 * @param uuids the S-RAMP uuids to check
+	 * @return the type of each existing artifact, keyed by UUID (UUIDs that do not exist are omitted)
+	 * @throws SrampException
+	 */
+	public Map<String, ArtifactType> getArtifactTypes(Collection<String> uuids) throws SrampException;
+
 	/**
 	 * Gets the content (media) for a previously persisted artifact by its UUID.
 	 * <br/><br/>
@@ -144,6 +167,21 @@ public interface PersistenceManager {
      */
     public void shutdown();
 
+    /**
+     * Handles the result of an item in a batch processed by persistBatch().
+     */
+    public static interface BatchResultHandler {
+
+        /**
+         * Called with the result of persisting a batch item.
+         * @param item the batch item
+         * @param result the persisted artifact, or the exception that prevented it from being persisted
+         * @throws Exception
+         */
+        public void handle(BatchItem item, Object result) throws Exception;
+
+    }
+
     /**
      * An item in a batch of items to be processed by persistBatch().
      */
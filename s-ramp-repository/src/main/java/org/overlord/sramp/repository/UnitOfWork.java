@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.overlord.sramp.common.SrampException;
+import org.overlord.sramp.common.SrampServerException;
+import org.overlord.sramp.repository.i18n.Messages;
+
+/**
+ * A unit of work groups all of the repository operations performed by a single
+ * request (typically one REST call) on the current thread.  Repository implementations
+ * (e.g. the {@link PersistenceManager}) join the active unit of work by binding a
+ * {@link UnitOfWorkResource} to it - for example a storage session that is then shared
+ * by every operation in the request and whose changes are only saved once, when
+ * the unit of work is committed.
+ * <br/><br/>
+ * Usage:
+ * <pre>
+ * UnitOfWork uow = UnitOfWork.begin();
+ * try {
+ *     // ... repository operations ...
+ *     uow.commit();
+ * } finally {
+ *     uow.end();
+ * }
+ * </pre>
+ * Ending a unit of work that has not been committed discards any changes that were
+ * deferred until the commit.  The changes made since the last commit can also be
+ * discarded explicitly by rolling back - for example when one operation of a request
+ * fails and the request carries on with the next one.
+ */
+public final class UnitOfWork {
+
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<UnitOfWork>();
+
+    /**
+     * Begins a new unit of work and binds it to the current thread.
+     * @throws IllegalStateException if a unit of work is already active on this thread
+     */
+    public static UnitOfWork begin() {
+        if (current.get() != null) {
+            throw new IllegalStateException(Messages.i18n.format("UOW_ALREADY_ACTIVE")); //$NON-NLS-1$
+        }
+        UnitOfWork uow = new UnitOfWork();
+        current.set(uow);
+        return uow;
+    }
+
+    /**
+     * Returns the unit of work bound to the current thread, or null if there is none.
+     */
+    public static UnitOfWork current() {
+        return current.get();
+    }
+
+    private final Map<Object, UnitOfWorkResource> resources = new LinkedHashMap<Object, UnitOfWorkResource>();
+    private boolean ended = false;
+    private boolean rollbackOnly = false;
+    private String callerName;
+
+    /**
+     * Constructor.
+     */
+    private UnitOfWork() {
+    }
+
+    /**
+     * @return the name of the (authenticated) caller the unit of work is performed for, or
+     *         null if it is not known
+     */
+    public String getCallerName() {
+        return callerName;
+    }
+
+    /**
+     * Sets the name of the (authenticated) caller the unit of work is performed for - for
+     * example the user a request was authenticated as.
+     * @param callerName
+     */
+    public void setCallerName(String callerName) {
+        this.callerName = callerName;
+    }
+
+    /**
+     * Gets the resource bound to this unit of work with the given key.
+     * @param key
+     * @return the resource or null if none has been bound yet
+     */
+    public UnitOfWorkResource getResource(Object key) {
+        return resources.get(key);
+    }
+
+    /**
+     * Binds a resource to this unit of work.  The resource will be committed when the
+     * unit of work is committed and released when it ends.
+     * @param key
+     * @param resource
+     */
+    public void bindResource(Object key, UnitOfWorkResource resource) {
+        if (ended) {
+            throw new IllegalStateException(Messages.i18n.format("UOW_ALREADY_ENDED")); //$NON-NLS-1$
+        }
+        resources.put(key, resource);
+    }
+
+    /**
+     * Commits all of the resources bound to this unit of work.
+     * @throws SrampException
+     */
+    public void commit() throws SrampException {
+        if (ended) {
+            throw new IllegalStateException(Messages.i18n.format("UOW_ALREADY_ENDED")); //$NON-NLS-1$
+        }
+        if (rollbackOnly) {
+            throw new SrampServerException(Messages.i18n.format("UOW_ROLLBACK_ONLY")); //$NON-NLS-1$
+        }
+        for (UnitOfWorkResource resource : new ArrayList<UnitOfWorkResource>(resources.values())) {
+            resource.commit();
+        }
+    }
+
+    /**
+     * Rolls back all of the resources bound to this unit of work, discarding the changes
+     * made since the last commit.  The unit of work stays active, so further operations
+     * (and commits) can follow.  If any of the resources fails to roll back, the unit of
+     * work can no longer be committed - all it is good for is ending it.
+     * @throws SrampException
+     */
+    public void rollback() throws SrampException {
+        if (ended) {
+            throw new IllegalStateException(Messages.i18n.format("UOW_ALREADY_ENDED")); //$NON-NLS-1$
+        }
+        SrampException error = null;
+        for (UnitOfWorkResource resource : new ArrayList<UnitOfWorkResource>(resources.values())) {
+            try {
+                resource.rollback();
+            } catch (SrampException e) {
+                rollbackOnly = true;
+                if (error == null) {
+                    error = e;
+                }
+            } catch (RuntimeException e) {
+                rollbackOnly = true;
+                if (error == null) {
+                    error = new SrampServerException(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Ends the unit of work, releasing all of its resources and unbinding it from the
+     * current thread.  Any uncommitted changes are discarded.
+     */
+    public void end() {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        try {
+            List<UnitOfWorkResource> toRelease = new ArrayList<UnitOfWorkResource>(resources.values());
+            resources.clear();
+            for (UnitOfWorkResource resource : toRelease) {
+                try {
+                    resource.release();
+                } catch (Throwable t) {
+                    // Releasing is best effort - make sure the remaining resources are released too.
+                }
+            }
+        } finally {
+            if (current.get() == this) {
+                current.remove();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository;
+
+import org.overlord.sramp.common.SrampException;
+
+/**
+ * A resource (e.g. a storage session) that a repository implementation binds to
+ * the active {@link UnitOfWork}.
+ */
+public interface UnitOfWorkResource {
+
+    /**
+     * Makes any changes deferred by this resource permanent.
+     * @throws SrampException
+     */
+    public void commit() throws SrampException;
+
+    /**
+     * Discards the changes made since the last commit.  The resource stays usable.
+     * @throws SrampException
+     */
+    public void rollback() throws SrampException;
+
+    /**
+     * Releases the resource.  Any changes that have not been committed are discarded.
+     */
+    public void release();
+
+}
@@ -20,9 +20,11 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
+import org.overlord.sramp.common.Sramp;
 import org.overlord.sramp.common.SrampException;
 import org.overlord.sramp.common.query.xpath.XPathParser;
 import org.overlord.sramp.common.query.xpath.ast.Query;
@@ -38,11 +40,19 @@ import org.overlord.sramp.repository.i18n.Messages;
 public abstract class AbstractSrampQueryImpl implements SrampQuery {
 
 	private static final XPathParser sParser = new XPathParser();
+	private static final QueryCache<Query> sParsedQueries = new QueryCache<Query>(new Sramp().getQueryCacheMaxSize());
+	// Stands in for the template's ?'s - a template can never contain such a literal itself
+	private static final String BIND_PARAM_PREFIX = "?"; //$NON-NLS-1$
 
 	private String xpathTemplate;
 	private List<QueryReplacementParam<?>> replacementParams = new ArrayList<QueryReplacementParam<?>>();
 	private String orderByProperty;
 	private boolean orderAscending;
+	private long limit = -1;
+	private long offset = 0;
+	private String continuationToken;
+	private boolean summaryProjection;
+	private Set<String> projectedPropertyNames;
 
 	/**
 	 * Constructor.
@@ -98,6 +108,74 @@ public abstract class AbstractSrampQueryImpl implements SrampQuery {
 		this.orderAscending = orderAscending;
 	}
 
+	/**
+	 * @return the limit (less than zero if there is no limit)
+	 */
+	protected long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @see org.overlord.sramp.repository.query.SrampQuery#setLimit(long)
+	 */
+	@Override
+	public void setLimit(long limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the offset
+	 */
+	protected long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @see org.overlord.sramp.repository.query.SrampQuery#setOffset(long)
+	 */
+	@Override
+	public void setOffset(long offset) {
+		this.offset = offset;
+	}
+
+	/**
+	 * @return the continuationToken
+	 */
+	protected String getContinuationToken() {
+		return continuationToken;
+	}
+
+	/**
+	 * @see org.overlord.sramp.repository.query.SrampQuery#setContinuationToken(java.lang.String)
+	 */
+	@Override
+	public void setContinuationToken(String continuationToken) {
+		this.continuationToken = continuationToken;
+	}
+
+	/**
+	 * @return true if the query should return artifact summaries
+	 */
+	protected boolean isSummaryProjection() {
+		return summaryProjection;
+	}
+
+	/**
+	 * @return the custom properties to include in the artifact summaries
+	 */
+	protected Set<String> getProjectedPropertyNames() {
+		return projectedPropertyNames;
+	}
+
+	/**
+	 * @see org.overlord.sramp.repository.query.SrampQuery#setSummaryProjection(java.util.Set)
+	 */
+	@Override
+	public void setSummaryProjection(Set<String> propertyNames) {
+		this.summaryProjection = true;
+		this.projectedPropertyNames = propertyNames;
+	}
+
 	/**
 	 * @see org.overlord.sramp.common.repository.query.SrampQuery#setString(java.lang.String)
 	 */
@@ -169,8 +247,21 @@ public abstract class AbstractSrampQueryImpl implements SrampQuery {
 	 */
 	@Override
 	public final ArtifactSet executeQuery() throws SrampException {
-		String xpathTemplate = getXpathTemplate();
-		String xpath = formatQuery(xpathTemplate, this.replacementParams);
+		return executeQuery(getXpathTemplate(), this.replacementParams);
+	}
+
+	/**
+	 * Executes the given xpath template.  By default the replacement params are formatted into
+	 * the template, and the resulting xpath is parsed and executed.  Providers that are able to
+	 * bind the params to the query (rather than splicing them into it) can override this.
+	 * @param xpathTemplate the xpath template (with ?'s)
+	 * @param replacementParams replacements for the template's ?'s
+	 * @return a set of s-ramp artifacts
+	 * @throws SrampException
+	 */
+	protected ArtifactSet executeQuery(String xpathTemplate, List<QueryReplacementParam<?>> replacementParams)
+			throws SrampException {
+		String xpath = formatQuery(xpathTemplate, replacementParams);
 		Query queryModel = parseXPath(xpath);
 		validateQuery(queryModel);
 		return executeQuery(queryModel);
@@ -205,17 +296,65 @@ public abstract class AbstractSrampQueryImpl implements SrampQuery {
 	}
 
 	/**
-	 * Parse the given xpath into an AST.
+	 * Formats an xpath template into an xpath that can be parsed once and then executed with
+	 * any param values: each of the template's ?'s is replaced by a (bind param) literal that
+	 * holds the index of the param.  See {@link #getBindParamIndex(String)}.
+	 * @param xpathTemplate the xpath template (with ?'s)
+	 * @param numParams the number of replacement params
+	 * @throws InvalidQueryException
+	 */
+	protected static final String formatBindTemplate(String xpathTemplate, int numParams)
+			throws InvalidQueryException {
+		List<QueryReplacementParam<?>> bindParams = new ArrayList<QueryReplacementParam<?>>(numParams);
+		for (int idx = 0; idx < numParams; idx++) {
+			bindParams.add(new StringReplacementParam(BIND_PARAM_PREFIX + idx));
+		}
+		return formatQuery(xpathTemplate, bindParams);
+	}
+
+	/**
+	 * Gets the index of the replacement param that the given literal (of a query parsed from
+	 * a bind template) stands in for.
+	 * @param literal a string literal from the query
+	 * @return the index of the param, or -1 if the literal is not a bind param
+	 */
+	public static int getBindParamIndex(String literal) {
+		if (literal == null || !literal.startsWith(BIND_PARAM_PREFIX)) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(literal.substring(BIND_PARAM_PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Parse the given xpath into an AST.  The parsed queries are cached - the AST is never
+	 * modified once parsed, so it can be shared.
 	 * @param xpath an s-ramp xpath query
 	 * @return a {@link Query}
 	 * @throws InvalidQueryException
 	 */
 	protected static final Query parseXPath(String xpath) throws InvalidQueryException {
+		Query query = sParsedQueries.get(xpath);
+		if (query != null) {
+			return query;
+		}
 		try {
-			return sParser.parseXPath(xpath);
+			query = sParser.parseXPath(xpath);
 		} catch (Throwable e) {
 			throw new InvalidQueryException(Messages.i18n.format("QUERY_PARSE_FAILED"), e); //$NON-NLS-1$
 		}
+		sParsedQueries.put(xpath, query);
+		return query;
+	}
+
+	/**
+	 * @return the cache of parsed queries
+	 */
+	public static QueryCache<Query> getParsedQueryCache() {
+		return sParsedQueries;
 	}
 
 	/**
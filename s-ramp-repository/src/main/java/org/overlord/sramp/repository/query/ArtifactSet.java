@@ -29,6 +29,20 @@ public interface ArtifactSet extends Iterable<BaseArtifactType> {
 	 */
 	public long size();
 
+	/**
+	 * Skips over the given number of artifacts, without loading them.
+	 * @param count the number of artifacts to skip
+	 * @return the number of artifacts actually skipped
+	 */
+	public long skip(long count);
+
+	/**
+	 * Returns an opaque token that can be used to continue the query after the last
+	 * artifact returned by this set's iterator (see {@link SrampQuery#setContinuationToken(String)}).
+	 * @return the continuation token, or null if no artifacts have been returned
+	 */
+	public String getContinuationToken();
+
 	/**
 	 * Called to close the artifact set when the caller is done with it.
 	 */
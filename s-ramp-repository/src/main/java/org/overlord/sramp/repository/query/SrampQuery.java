@@ -18,6 +18,7 @@ package org.overlord.sramp.repository.query;
 import java.math.BigInteger;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Set;
 
 import org.overlord.sramp.common.SrampException;
 import org.overlord.sramp.repository.QueryManager;
@@ -95,6 +96,38 @@ public interface SrampQuery {
 	 */
 	public void setNumber(BigInteger paramValue);
 
+	/**
+	 * Sets the maximum number of artifacts the query should return.  The limit is applied
+	 * by the underlying repository query, so artifacts beyond it are never visited.
+	 * @param limit the maximum number of artifacts (less than zero means no limit)
+	 */
+	public void setLimit(long limit);
+
+	/**
+	 * Sets the number of (ordered) artifacts the query should skip.  The offset is applied
+	 * by the underlying repository query.
+	 * @param offset the number of artifacts to skip
+	 */
+	public void setOffset(long offset);
+
+	/**
+	 * Continues a previously executed query, returning only the artifacts that follow the
+	 * last artifact returned by it.  The token must have been obtained from the
+	 * {@link ArtifactSet#getContinuationToken()} of the same query (with the same ordering).
+	 * @param continuationToken an opaque continuation token
+	 */
+	public void setContinuationToken(String continuationToken);
+
+	/**
+	 * Asks the query to return artifact summaries rather than full artifacts: only the core
+	 * meta-data (uuid, type, name, description, version, created and modified info, and any
+	 * content/extended type info) plus the given custom properties.  The artifacts'
+	 * relationships, classifications and other custom properties are never loaded, which
+	 * makes listing large result sets (e.g. in a feed) much cheaper.
+	 * @param propertyNames the custom properties to include (may be null)
+	 */
+	public void setSummaryProjection(Set<String> propertyNames);
+
 	/**
 	 * Once all of the replacements are set, this will execute the query
 	 * and return a set of s-ramp artifacts.
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.overlord.sramp.common.SrampException;
+import org.overlord.sramp.common.SrampServerException;
+
+/**
+ * Unit test for the {@link UnitOfWork}.
+ */
+public class UnitOfWorkTest {
+
+    @Test
+    public void testCommitAndEnd() throws Exception {
+        Assert.assertNull(UnitOfWork.current());
+        UnitOfWork uow = UnitOfWork.begin();
+        TestResource resource = new TestResource();
+        try {
+            Assert.assertSame(uow, UnitOfWork.current());
+            uow.bindResource(TestResource.class, resource);
+            Assert.assertSame(resource, uow.getResource(TestResource.class));
+            uow.commit();
+        } finally {
+            uow.end();
+        }
+        Assert.assertNull(UnitOfWork.current());
+        Assert.assertEquals(1, resource.commitCount);
+        Assert.assertEquals(1, resource.releaseCount);
+    }
+
+    @Test
+    public void testEndWithoutCommit() throws Exception {
+        UnitOfWork uow = UnitOfWork.begin();
+        TestResource resource = new TestResource();
+        uow.bindResource(TestResource.class, resource);
+        uow.end();
+        uow.end();
+        Assert.assertNull(UnitOfWork.current());
+        Assert.assertEquals(0, resource.commitCount);
+        Assert.assertEquals(1, resource.releaseCount);
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        UnitOfWork uow = UnitOfWork.begin();
+        TestResource resource = new TestResource();
+        try {
+            uow.bindResource(TestResource.class, resource);
+            uow.rollback();
+            // Still usable after a rollback
+            uow.commit();
+        } finally {
+            uow.end();
+        }
+        Assert.assertEquals(1, resource.rollbackCount);
+        Assert.assertEquals(1, resource.commitCount);
+        Assert.assertEquals(1, resource.releaseCount);
+    }
+
+    @Test
+    public void testFailedRollbackPreventsCommit() throws Exception {
+        UnitOfWork uow = UnitOfWork.begin();
+        TestResource resource = new TestResource();
+        resource.failRollback = true;
+        try {
+            uow.bindResource(TestResource.class, resource);
+            try {
+                uow.rollback();
+                Assert.fail("Expected a SrampException."); //$NON-NLS-1$
+            } catch (SrampException e) {
+                // expected
+            }
+            try {
+                uow.commit();
+                Assert.fail("Expected a SrampException."); //$NON-NLS-1$
+            } catch (SrampException e) {
+                // expected
+            }
+        } finally {
+            uow.end();
+        }
+        Assert.assertEquals(0, resource.commitCount);
+        Assert.assertEquals(1, resource.releaseCount);
+    }
+
+    @Test
+    public void testNestedBeginFails() throws Exception {
+        UnitOfWork uow = UnitOfWork.begin();
+        try {
+            UnitOfWork.begin();
+            Assert.fail("Expected an IllegalStateException."); //$NON-NLS-1$
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            uow.end();
+        }
+        Assert.assertNull(UnitOfWork.current());
+    }
+
+    /**
+     * Resource that counts commits, rollbacks and releases.
+     */
+    private static class TestResource implements UnitOfWorkResource {
+        private int commitCount = 0;
+        private int rollbackCount = 0;
+        private int releaseCount = 0;
+        private boolean failRollback = false;
+
+        @Override
+        public void commit() throws SrampException {
+            commitCount++;
+        }
+
+        @Override
+        public void rollback() throws SrampException {
+            if (failRollback) {
+                throw new SrampServerException("Rollback failed."); //$NON-NLS-1$
+            }
+            rollbackCount++;
+        }
+
+        @Override
+        public void release() {
+            releaseCount++;
+        }
+    }
+
+}
@@ -76,6 +76,20 @@ public class AbstractSrampQueryImplTest {
 		doFormatQueryTest("/s-ramp/xsd/XsdDocument[@prop1 = ? or @prop2 = ?]", null, new StringReplacementParam("val1")); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 	
+	/**
+	 * Test method for {@link org.overlord.sramp.repository.query.AbstractSrampQueryImpl#formatBindTemplate(java.lang.String, int)}.
+	 * @throws InvalidQueryException
+	 */
+	@Test
+	public void testFormatBindTemplate() throws InvalidQueryException {
+		String xpath = AbstractSrampQueryImpl.formatBindTemplate("/s-ramp/xsd/XsdDocument[@prop1 = ? and @prop2 = ?]", 2); //$NON-NLS-1$
+		Assert.assertEquals("/s-ramp/xsd/XsdDocument[@prop1 = '?0' and @prop2 = '?1']", xpath); //$NON-NLS-1$
+		Assert.assertEquals(0, AbstractSrampQueryImpl.getBindParamIndex("?0")); //$NON-NLS-1$
+		Assert.assertEquals(1, AbstractSrampQueryImpl.getBindParamIndex("?1")); //$NON-NLS-1$
+		Assert.assertEquals(-1, AbstractSrampQueryImpl.getBindParamIndex("hello?")); //$NON-NLS-1$
+		Assert.assertEquals(-1, AbstractSrampQueryImpl.getBindParamIndex("?x")); //$NON-NLS-1$
+	}
+
 	/**
 	 * Does a single formatQuery test case.
 	 * @param xpathTemplate
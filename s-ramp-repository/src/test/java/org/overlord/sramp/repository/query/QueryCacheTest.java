@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.repository.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link QueryCache} class.
+ */
+public class QueryCacheTest {
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		QueryCache<String> cache = new QueryCache<String>(2);
+		cache.put("a", "A"); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.put("b", "B"); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("A", cache.get("a")); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.put("c", "C"); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNull(cache.get("b")); //$NON-NLS-1$
+		Assert.assertEquals("A", cache.get("a")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("C", cache.get("c")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(3, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testDisabled() {
+		QueryCache<String> cache = new QueryCache<String>(0);
+		cache.put("a", "A"); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertNull(cache.get("a")); //$NON-NLS-1$
+		Assert.assertEquals(0, cache.size());
+	}
+
+}
@@ -68,7 +68,32 @@ public abstract class AbstractFeedResource extends AbstractResource {
 	 */
 	protected Feed createArtifactFeed(String query, Integer startIndex, Integer count, String orderBy,
 			Boolean ascending, Set<String> propNames, String baseUrl) throws SrampAtomException {
-		if (startIndex == null)
+		return createArtifactFeed(query, startIndex, count, orderBy, ascending, propNames, null, baseUrl);
+	}
+
+	/**
+	 * Common method that performs a query for artifacts and returns them in an Atom {@link Feed}.
+	 * Only the requested page is fetched (plus one artifact, to find out whether there is a
+	 * next page):  the start index is applied as an offset by the repository query.  So the
+	 * total number of results is only known (and reported) on the last page.
+	 * <br/><br/>
+	 * When a continuation token (returned in the feed of a previous page) is given, the next
+	 * page is fetched with a keyset query rather than by skipping over the earlier results,
+	 * and the start index is ignored.  In that case the feed includes neither the start index
+	 * nor the total number of results.
+	 * @param query the x-path formatted s-ramp query
+	 * @param startIndex which index within the result set to start with (0 indexed)
+	 * @param count the number of items desired
+	 * @param orderBy the property to sort the results by
+	 * @param ascending the sort direction
+	 * @param propNames the set of s-ramp property names - the extra properties that the query should return as part of the {@link Feed}
+	 * @param continuationToken the token to continue a previous query from (may be null)
+	 * @return an Atom {@link Feed}
+	 * @throws SrampAtomException
+	 */
+	protected Feed createArtifactFeed(String query, Integer startIndex, Integer count, String orderBy,
+			Boolean ascending, Set<String> propNames, String continuationToken, String baseUrl) throws SrampAtomException {
+		if (startIndex == null || continuationToken != null)
 			startIndex = 0;
 		if (count == null)
 			count = 100;
@@ -81,11 +106,27 @@ public abstract class AbstractFeedResource extends AbstractResource {
 		try {
 			QueryManager queryManager = QueryManagerFactory.newInstance();
 			SrampQuery srampQuery = queryManager.createQuery(query, orderBy, ascending);
+			// The feed only includes summary entries
+			srampQuery.setSummaryProjection(propNames);
+			boolean continuation = continuationToken != null;
+			if (continuation) {
+				srampQuery.setContinuationToken(continuationToken);
+			} else {
+				srampQuery.setOffset(startIndex);
+			}
+			// One extra, to find out whether there is a next page
+			srampQuery.setLimit(count + 1L);
 			artifactSet = srampQuery.executeQuery();
 			int startIdx = startIndex;
 			int endIdx = startIdx + count - 1;
-			Feed feed = createFeed(artifactSet, startIdx, endIdx, propNames, baseUrl);
-			addPaginationLinks(feed, artifactSet, query, startIndex, count, orderBy, ascending, baseUrl);
+			Feed feed = createFeed(artifactSet, startIdx, endIdx, !continuation, propNames, baseUrl);
+			String nextToken = null;
+			if (artifactSet.iterator().hasNext()) {
+				nextToken = artifactSet.getContinuationToken();
+				if (nextToken != null)
+					feed.getExtensionAttributes().put(SrampConstants.SRAMP_CONTINUATION_TOKEN_QNAME, nextToken);
+			}
+			addPaginationLinks(feed, artifactSet, query, startIndex, count, orderBy, ascending, continuation, nextToken, baseUrl);
 			return feed;
 		} catch (Throwable e) {
 			logError(logger, Messages.i18n.format("Error trying to create an Artifact Feed."), e); //$NON-NLS-1$
@@ -97,7 +138,9 @@ public abstract class AbstractFeedResource extends AbstractResource {
 	}
 
 	/**
-	 * Creates the Atom {@link Feed} from the given artifact set (query result set).
+	 * Creates the Atom {@link Feed} from the given artifact set (query result set).  The
+	 * artifact set holds the requested page of artifacts only (starting at fromRow), plus the
+	 * first artifact of the next page, if there is one.
 	 *
 	 * Note: the Atom feed format allows pagination via the following links:
 	 *
@@ -111,17 +154,20 @@ public abstract class AbstractFeedResource extends AbstractResource {
 	 * @param artifactSet the set of artifacts that matched the query
 	 * @param fromRow return rows starting at this index (inclusive)
 	 * @param toRow return rows ending at this index (inclusive)
+	 * @param includeTotal whether to report the start index and (on the last page) the total number of results
 	 * @param propNames the additional s-ramp properties to return in the {@link Feed}
 	 * @return an Atom {@link Feed}
 	 * @throws Exception
 	 */
 	@SuppressWarnings("unchecked")
-    private Feed createFeed(ArtifactSet artifactSet, int fromRow, int toRow, Set<String> propNames, String baseUrl) throws Exception {
+    private Feed createFeed(ArtifactSet artifactSet, int fromRow, int toRow, boolean includeTotal, Set<String> propNames,
+            String baseUrl) throws Exception {
 		Feed feed = new Feed();
 		feed.getExtensionAttributes().put(SrampConstants.SRAMP_PROVIDER_QNAME, "JBoss Overlord"); //$NON-NLS-1$
         feed.getExtensionAttributes().put(SrampConstants.SRAMP_ITEMS_PER_PAGE_QNAME, String.valueOf((toRow - fromRow) + 1));
-        feed.getExtensionAttributes().put(SrampConstants.SRAMP_START_INDEX_QNAME, String.valueOf(fromRow));
-        feed.getExtensionAttributes().put(SrampConstants.SRAMP_TOTAL_RESULTS_QNAME, String.valueOf(artifactSet.size()));
+        if (includeTotal) {
+            feed.getExtensionAttributes().put(SrampConstants.SRAMP_START_INDEX_QNAME, String.valueOf(fromRow));
+        }
 		feed.setId(new URI(UUID.randomUUID().toString()));
 		feed.setTitle("S-RAMP Feed"); //$NON-NLS-1$
 		feed.setSubtitle("Ad Hoc query feed"); //$NON-NLS-1$
@@ -130,14 +176,7 @@ public abstract class AbstractFeedResource extends AbstractResource {
 
 		Iterator<BaseArtifactType> iterator = artifactSet.iterator();
 
-		// Skip any initial rows
-		for (int i = 0; i < fromRow; i++) {
-			if (!iterator.hasNext())
-				break;
-			iterator.next();
-		}
-
-		// Now get only the rows we're interested in.
+		// The set starts at fromRow - get only the rows we're interested in.
 		ArtifactToSummaryAtomEntryVisitor visitor = new ArtifactToSummaryAtomEntryVisitor(baseUrl, propNames);
 		for (int i = fromRow; i <= toRow; i++) {
 			if (!iterator.hasNext())
@@ -149,11 +188,20 @@ public abstract class AbstractFeedResource extends AbstractResource {
 			visitor.reset();
 		}
 
+		// (an empty page past the end says nothing about the total)
+		if (includeTotal && !iterator.hasNext() && (fromRow == 0 || !feed.getEntries().isEmpty())) {
+			long totalResults = fromRow + feed.getEntries().size();
+			feed.getExtensionAttributes().put(SrampConstants.SRAMP_TOTAL_RESULTS_QNAME, String.valueOf(totalResults));
+		}
+
 		return feed;
 	}
 
 	/**
-	 * Add pagination links to the feed.
+	 * Add pagination links to the feed.  A feed fetched with a continuation token gets keyset
+	 * links:  the "next" link continues from the token of this page, and the "first" link is
+	 * the query without a token.  There is no "prev" link, since a keyset query can only go
+	 * forwards.
 	 *
 	 * TODO use real URLs rather than hard-coded localhost:8080 values
 	 *
@@ -164,14 +212,28 @@ public abstract class AbstractFeedResource extends AbstractResource {
 	 * @param count
 	 * @param orderBy
 	 * @param ascending
+	 * @param continuation whether the feed was fetched with a continuation token
+	 * @param continuationToken the token of the next page (may be null)
 	 * @param baseUrl
 	 * @throws UnsupportedEncodingException
 	 */
 	private void addPaginationLinks(Feed feed, ArtifactSet artifactSet, String query, int startIndex, int count,
-			String orderBy, boolean ascending, String baseUrl) throws UnsupportedEncodingException {
+			String orderBy, boolean ascending, boolean continuation, String continuationToken, String baseUrl)
+			throws UnsupportedEncodingException {
+		String encodedQuery = URLEncoder.encode(query, "UTF-8"); //$NON-NLS-1$
+		if (continuation) {
+			String hrefPattern = "%1$s?query=%2$s&count=%3$s&orderBy=%4$s&ascending=%5$s"; //$NON-NLS-1$
+			String firstHref = String.format(hrefPattern, baseUrl, encodedQuery, String.valueOf(count),
+					String.valueOf(orderBy), String.valueOf(ascending));
+			feed.getLinks().add(new Link("first", firstHref, MediaType.APPLICATION_ATOM_XML_FEED_TYPE)); //$NON-NLS-1$
+			if (continuationToken != null) {
+				String nextHref = firstHref + "&continuationToken=" + URLEncoder.encode(continuationToken, "UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+				feed.getLinks().add(new Link("next", nextHref, MediaType.APPLICATION_ATOM_XML_FEED_TYPE)); //$NON-NLS-1$
+			}
+			return;
+		}
 
 		String hrefPattern = "%1$s?query=%2$s&page=%3$s&pageSize=%4$s&orderBy=%5$s&ascending=%6$s"; //$NON-NLS-1$
-		String encodedQuery = URLEncoder.encode(query, "UTF-8"); //$NON-NLS-1$
 		String firstHref = String.format(hrefPattern, baseUrl, encodedQuery, 0, String.valueOf(count),
 				String.valueOf(orderBy), String.valueOf(ascending));
 		int prevIndex = Math.max(0,  startIndex - count);
@@ -1,49 +1,86 @@
-/*
- * Copyright 2012 JBoss Inc
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package org.overlord.sramp.server.atom.services;
-
-import java.io.BufferedInputStream;
-import java.io.InputStream;
-
-import org.overlord.sramp.common.SrampUserException;
-import org.slf4j.Logger;
-
-/**
- * Base class for all Atom API binding resources.
- * @author eric.wittmann@redhat.com
- */
-public abstract class AbstractResource {
-
-    /**
-     * Use the given logger to log the error.
-     * @param logger
-     * @param message
-     * @param error
-     */
-    protected static final void logError(Logger logger, String message, Throwable error) {
-        if (!(error instanceof SrampUserException)) {
-            logger.error(message, error);
-        }
-    }
-
-    protected static InputStream ensureSupportsMark(InputStream stream) {
-        if (stream != null) {
-            return stream.markSupported() ? stream : new BufferedInputStream(stream);
-        } else {
-            return null;
-        }
-}
-}
+/*
+ * Copyright 2012 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.server.atom.services;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
+import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.DocumentArtifactType;
+import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.common.SrampUserException;
+import org.overlord.sramp.repository.PersistenceManager.BatchItem;
+import org.overlord.sramp.repository.errors.DerivedArtifactCreateException;
+import org.overlord.sramp.server.mime.MimeTypes;
+import org.slf4j.Logger;
+
+/**
+ * Base class for all Atom API binding resources.
+ * @author eric.wittmann@redhat.com
+ */
+public abstract class AbstractResource {
+
+    /**
+     * Use the given logger to log the error.
+     * @param logger
+     * @param message
+     * @param error
+     */
+    protected static final void logError(Logger logger, String message, Throwable error) {
+        if (!(error instanceof SrampUserException)) {
+            logger.error(message, error);
+        }
+    }
+
+    protected static InputStream ensureSupportsMark(InputStream stream) {
+        if (stream != null) {
+            return stream.markSupported() ? stream : new BufferedInputStream(stream);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a batch item (for {@link org.overlord.sramp.repository.PersistenceManager#persistBatch(java.util.List)})
+     * that creates an artifact with the given meta-data and content, figuring out the mime type
+     * of the content along the way.  The content stream is closed if this fails.
+     * @param batchItemId
+     * @param metaData
+     * @param content the content (or null for a meta-data only artifact)
+     * @throws Exception
+     */
+    protected static BatchItem createBatchItem(String batchItemId, BaseArtifactType metaData, InputStream content)
+            throws Exception {
+        InputStream contentStream = ensureSupportsMark(content);
+        try {
+            ArtifactType artifactType = ArtifactType.valueOf(metaData);
+            if (artifactType.isDerived()) {
+                throw new DerivedArtifactCreateException(artifactType.getArtifactType());
+            }
+            String mimeType = MimeTypes.determineMimeType(metaData.getName(), contentStream, artifactType);
+            artifactType.setMimeType(mimeType);
+            if (metaData instanceof DocumentArtifactType) {
+                ((DocumentArtifactType) metaData).setContentType(mimeType);
+            }
+            return new BatchItem(batchItemId, metaData, contentStream);
+        } catch (Exception e) {
+            IOUtils.closeQuietly(contentStream);
+            throw e;
+        }
+    }
+
+}
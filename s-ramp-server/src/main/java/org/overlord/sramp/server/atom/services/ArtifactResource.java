@@ -15,10 +15,12 @@
  */
 package org.overlord.sramp.server.atom.services;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -31,11 +33,13 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.jboss.resteasy.plugins.providers.atom.Entry;
 import org.jboss.resteasy.plugins.providers.multipart.InputPart;
@@ -45,6 +49,10 @@ import org.jboss.resteasy.util.GenericType;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.overlord.sramp.atom.MediaType;
 import org.overlord.sramp.atom.SrampAtomUtils;
+import org.overlord.sramp.atom.archive.expand.DefaultMetaDataFactory;
+import org.overlord.sramp.atom.archive.expand.DiscoveredArtifact;
+import org.overlord.sramp.atom.archive.expand.ZipToSrampArchive;
+import org.overlord.sramp.atom.archive.expand.registry.ZipToSrampArchiveRegistry;
 import org.overlord.sramp.atom.err.SrampAtomException;
 import org.overlord.sramp.atom.visitors.ArtifactContentTypeVisitor;
 import org.overlord.sramp.atom.visitors.ArtifactToFullAtomEntryVisitor;
@@ -58,6 +66,8 @@ import org.overlord.sramp.common.SrampModelUtils;
 import org.overlord.sramp.common.visitors.ArtifactVisitorHelper;
 import org.overlord.sramp.repository.PersistenceFactory;
 import org.overlord.sramp.repository.PersistenceManager;
+import org.overlord.sramp.repository.PersistenceManager.BatchItem;
+import org.overlord.sramp.repository.PersistenceManager.BatchResultHandler;
 import org.overlord.sramp.repository.errors.DerivedArtifactCreateException;
 import org.overlord.sramp.repository.errors.DerivedArtifactDeleteException;
 import org.overlord.sramp.server.i18n.Messages;
@@ -136,10 +146,15 @@ public class ArtifactResource extends AbstractResource {
 
 	/**
 	 * S-RAMP atom POST to upload an artifact to the repository. The artifact content should be POSTed raw.
+	 * If expansion is requested (and the artifact is of an expandable type, e.g. a JAR or a
+	 * SwitchYard application), the artifacts found inside it are created as well, as part of the
+	 * same create - so the client doesn't have to expand the archive itself and upload the
+	 * result as a separate package.
 	 *
 	 * @param fileName
 	 * @param model
 	 * @param type
+	 * @param expand whether to also create the artifacts found inside the uploaded archive
 	 * @param is
 	 * @throws SrampAtomException
 	 */
@@ -147,8 +162,10 @@ public class ArtifactResource extends AbstractResource {
 	@Path("{model}/{type}")
 	@Produces(MediaType.APPLICATION_ATOM_XML_ENTRY)
 	public Entry create(@Context HttpServletRequest request, @HeaderParam("Slug") String fileName,
-		@PathParam("model") String model, @PathParam("type") String type, InputStream is)
+		@PathParam("model") String model, @PathParam("type") String type,
+		@QueryParam("expand") boolean expand, InputStream is)
 		throws SrampAtomException {
+		File expandFile = null;
 		try {
 			String baseUrl = sramp.getBaseUrl(request.getRequestURL().toString());
 			ArtifactType artifactType = ArtifactType.valueOf(model, type, true);
@@ -156,6 +173,13 @@ public class ArtifactResource extends AbstractResource {
 				throw new DerivedArtifactCreateException(artifactType.getArtifactType());
 			}
 
+			// The expander needs the archive as a file, so stash the content first and store
+			// it from there.
+			if (expand && ZipToSrampArchiveRegistry.canExpand(artifactType)) {
+				expandFile = stashContent(is);
+				is = FileUtils.openInputStream(expandFile);
+			}
+
 			is = ensureSupportsMark(is);
 
 			// Figure out the mime type (from the http header, filename, or default by artifact type)
@@ -182,6 +206,10 @@ public class ArtifactResource extends AbstractResource {
 			baseArtifactType.setName(fileName);
 			BaseArtifactType artifact = persistenceManager.persistArtifact(baseArtifactType, is);
 
+			if (expandFile != null) {
+				expandArtifact(artifact, artifactType, expandFile);
+			}
+
 			// return the entry containing the s-ramp artifact
 			ArtifactToFullAtomEntryVisitor visitor = new ArtifactToFullAtomEntryVisitor(baseUrl);
 			ArtifactVisitorHelper.visitArtifact(visitor, artifact);
@@ -191,7 +219,70 @@ public class ArtifactResource extends AbstractResource {
 			throw new SrampAtomException(e);
 		} finally {
 			IOUtils.closeQuietly(is);
+			FileUtils.deleteQuietly(expandFile);
+		}
+	}
+
+	/**
+	 * Creates the artifacts found inside the given (expandable) artifact, using the expander
+	 * registered for its type.  The expanded artifacts are related to the artifact they were
+	 * expanded from, just as when a client expands the archive itself.  An expanded artifact
+	 * that can't be created is logged and skipped, rather than failing the whole create.
+	 * @param artifact the artifact that was just created
+	 * @param artifactType its type
+	 * @param archiveFile its content
+	 * @throws Exception
+	 */
+	private void expandArtifact(BaseArtifactType artifact, ArtifactType artifactType, File archiveFile) throws Exception {
+		ZipToSrampArchive expander = null;
+		List<BatchItem> items = new ArrayList<BatchItem>();
+		try {
+			expander = ZipToSrampArchiveRegistry.createExpander(artifactType, archiveFile);
+			expander.setContextParam(DefaultMetaDataFactory.PARENT_UUID, artifact.getUuid());
+			for (DiscoveredArtifact discovered : expander.createDiscoveredArtifacts()) {
+				items.add(createBatchItem(discovered.getArchivePath(), discovered.getMetaData(), discovered.getContent()));
+			}
+
+			final String parentUuid = artifact.getUuid();
+			PersistenceManager persistenceManager = PersistenceFactory.newInstance();
+			persistenceManager.persistBatch(items, new BatchResultHandler() {
+				@Override
+				public void handle(BatchItem item, Object result) {
+					if (result instanceof Exception) {
+						logError(logger, Messages.i18n.format("ERROR_CREATING_EXPANDED_ARTY", //$NON-NLS-1$
+								item.batchItemId, parentUuid), (Exception) result);
+					}
+				}
+			});
+		} finally {
+			for (BatchItem item : items) {
+				IOUtils.closeQuietly(item.content);
+			}
+			ZipToSrampArchive.closeQuietly(expander);
+		}
+	}
+
+	/**
+	 * Stashes the given content in a temporary file.  Closes the content stream.
+	 * @param content
+	 * @throws IOException
+	 */
+	private static File stashContent(InputStream content) throws IOException {
+		File file = File.createTempFile("s-ramp-expand", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+		OutputStream output = null;
+		try {
+			output = FileUtils.openOutputStream(file);
+			IOUtils.copy(content, output);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(output);
+			output = null;
+			FileUtils.deleteQuietly(file);
+			throw e;
+		} finally {
+			IOUtils.closeQuietly(content);
+			IOUtils.closeQuietly(output);
 		}
+		return file;
 	}
 
     /**
@@ -28,6 +28,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.xml.bind.DatatypeConverter;
 
 import org.jboss.downloads.overlord.sramp._2013.auditing.AuditEntry;
 import org.jboss.resteasy.plugins.providers.atom.Entry;
@@ -104,7 +105,9 @@ public class AuditResource extends AbstractResource {
     }
 
     /**
-     * Called to get a Feed of all audit entries for an artifact.
+     * Called to get a Feed of all audit entries for an artifact.  The entries can optionally
+     * be limited to those made in a time range (since is inclusive, until exclusive - both
+     * xsd:dateTime formatted).
      * @throws SrampAtomException
      */
     @GET
@@ -114,7 +117,9 @@ public class AuditResource extends AbstractResource {
             @PathParam("artifactUuid") String artifactUuid,
             @QueryParam("startPage") Integer startPage,
             @QueryParam("startIndex") Integer startIndex,
-            @QueryParam("count") Integer count) throws SrampAtomException {
+            @QueryParam("count") Integer count,
+            @QueryParam("since") String since,
+            @QueryParam("until") String until) throws SrampAtomException {
         if (startIndex == null && startPage != null) {
             int c = count != null ? count.intValue() : 100;
             startIndex = (startPage.intValue() - 1) * c;
@@ -128,9 +133,15 @@ public class AuditResource extends AbstractResource {
         try {
             AuditManager auditManager = AuditManagerFactory.newInstance();
 
-            // Get all audit entries by artifact uuid
-            AuditEntrySet entries = auditManager.getArtifactAuditEntries(artifactUuid);
-            return createAuditFeed(entries, startIdx, endIdx);
+            // Get the page of audit entries by artifact uuid (plus one, to find out whether
+            // there are more)
+            AuditEntrySet entries = auditManager.getArtifactAuditEntries(artifactUuid, parseDate(since),
+                    parseDate(until), startIdx, count + 1);
+            try {
+                return createAuditFeed(entries, startIdx, endIdx);
+            } finally {
+                entries.close();
+            }
         } catch (Throwable e) {
             logError(logger, Messages.i18n.format("ERROR_GETTING_AUDIT_ENTRIES", artifactUuid), e); //$NON-NLS-1$
             throw new SrampAtomException(e);
@@ -138,7 +149,9 @@ public class AuditResource extends AbstractResource {
     }
 
     /**
-     * Called to get a Feed of all audit entries for an artifact.
+     * Called to get a Feed of all audit entries for a user.  The entries can optionally be
+     * limited to those made in a time range (since is inclusive, until exclusive - both
+     * xsd:dateTime formatted).
      * @throws SrampAtomException
      */
     @GET
@@ -148,7 +161,9 @@ public class AuditResource extends AbstractResource {
             @PathParam("username") String username,
             @QueryParam("startPage") Integer startPage,
             @QueryParam("startIndex") Integer startIndex,
-            @QueryParam("count") Integer count) throws SrampAtomException {
+            @QueryParam("count") Integer count,
+            @QueryParam("since") String since,
+            @QueryParam("until") String until) throws SrampAtomException {
         if (startIndex == null && startPage != null) {
             int c = count != null ? count.intValue() : 100;
             startIndex = (startPage.intValue() - 1) * c;
@@ -162,9 +177,15 @@ public class AuditResource extends AbstractResource {
         try {
             AuditManager auditManager = AuditManagerFactory.newInstance();
 
-            // Get all audit entries by artifact uuid
-            AuditEntrySet entries = auditManager.getUserAuditEntries(username);
-            return createAuditFeed(entries, startIdx, endIdx);
+            // Get the page of audit entries by user (plus one, to find out whether there
+            // are more)
+            AuditEntrySet entries = auditManager.getUserAuditEntries(username, parseDate(since),
+                    parseDate(until), startIdx, count + 1);
+            try {
+                return createAuditFeed(entries, startIdx, endIdx);
+            } finally {
+                entries.close();
+            }
         } catch (Throwable e) {
             logError(logger, Messages.i18n.format("ERROR_GETTING_AUDIT_ENTRIES_2", username), e); //$NON-NLS-1$
             throw new SrampAtomException(e);
@@ -172,7 +193,19 @@ public class AuditResource extends AbstractResource {
     }
 
     /**
-     * Creates a {@link Feed} of audit entries.
+     * Parses an (optional) xsd:dateTime formatted query param.
+     * @param value
+     */
+    private static Date parseDate(String value) {
+        if (value == null || value.trim().length() == 0)
+            return null;
+        return DatatypeConverter.parseDateTime(value.trim()).getTime();
+    }
+
+    /**
+     * Creates a {@link Feed} of audit entries.  The audit entry set holds the requested page
+     * of entries only (starting at fromRow), plus the first entry of the next page, if there
+     * is one.  So the total number of results is only known (and reported) on the last page.
      * @param auditEntrySet
      * @param fromRow
      * @param toRow
@@ -184,7 +217,6 @@ public class AuditResource extends AbstractResource {
         feed.getExtensionAttributes().put(SrampConstants.SRAMP_PROVIDER_QNAME, "JBoss Overlord"); //$NON-NLS-1$
         feed.getExtensionAttributes().put(SrampConstants.SRAMP_ITEMS_PER_PAGE_QNAME, String.valueOf((toRow - fromRow) + 1));
         feed.getExtensionAttributes().put(SrampConstants.SRAMP_START_INDEX_QNAME, String.valueOf(fromRow));
-        feed.getExtensionAttributes().put(SrampConstants.SRAMP_TOTAL_RESULTS_QNAME, String.valueOf(auditEntrySet.size()));
         feed.setId(new URI(UUID.randomUUID().toString()));
         feed.setTitle("S-RAMP Audit Feed"); //$NON-NLS-1$
         feed.setSubtitle("All Audit Entries for Artifact"); //$NON-NLS-1$
@@ -192,14 +224,7 @@ public class AuditResource extends AbstractResource {
 
         Iterator<AuditEntry> iterator = auditEntrySet.iterator();
 
-        // Skip any initial rows
-        for (int i = 0; i < fromRow; i++) {
-            if (!iterator.hasNext())
-                break;
-            iterator.next();
-        }
-
-        // Now get only the rows we're interested in.
+        // The set starts at fromRow - get only the rows we're interested in.
         for (int i = fromRow; i <= toRow; i++) {
             if (!iterator.hasNext())
                 break;
@@ -215,6 +240,12 @@ public class AuditResource extends AbstractResource {
             feed.getEntries().add(entry);
         }
 
+        // (an empty page past the end says nothing about the total)
+        if (!iterator.hasNext() && (fromRow == 0 || !feed.getEntries().isEmpty())) {
+            long totalResults = fromRow + feed.getEntries().size();
+            feed.getExtensionAttributes().put(SrampConstants.SRAMP_TOTAL_RESULTS_QNAME, String.valueOf(totalResults));
+        }
+
         return feed;
     }
 
@@ -15,10 +15,16 @@
  */
 package org.overlord.sramp.server.atom.services;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
@@ -26,19 +32,21 @@ import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Providers;
 
 import org.apache.commons.io.IOUtils;
-import org.jboss.resteasy.annotations.providers.multipart.PartType;
 import org.jboss.resteasy.plugins.providers.atom.Entry;
-import org.jboss.resteasy.plugins.providers.multipart.MultipartOutput;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
-import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.DocumentArtifactType;
 import org.overlord.sramp.atom.MediaType;
-import org.overlord.sramp.atom.archive.SrampArchive;
 import org.overlord.sramp.atom.archive.SrampArchiveEntry;
+import org.overlord.sramp.atom.archive.SrampArchiveReader;
 import org.overlord.sramp.atom.beans.HttpResponseBean;
 import org.overlord.sramp.atom.err.SrampAtomException;
+import org.overlord.sramp.atom.multipart.MultipartMixedWriter;
 import org.overlord.sramp.atom.visitors.ArtifactToFullAtomEntryVisitor;
 import org.overlord.sramp.common.ArtifactNotFoundException;
 import org.overlord.sramp.common.ArtifactType;
@@ -48,9 +56,9 @@ import org.overlord.sramp.common.visitors.ArtifactVisitorHelper;
 import org.overlord.sramp.repository.PersistenceFactory;
 import org.overlord.sramp.repository.PersistenceManager;
 import org.overlord.sramp.repository.PersistenceManager.BatchItem;
-import org.overlord.sramp.repository.errors.DerivedArtifactCreateException;
+import org.overlord.sramp.repository.PersistenceManager.BatchResultHandler;
+import org.overlord.sramp.repository.UnitOfWork;
 import org.overlord.sramp.server.i18n.Messages;
-import org.overlord.sramp.server.mime.MimeTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +74,8 @@ public class BatchResource extends AbstractResource {
 
 	private static Logger logger = LoggerFactory.getLogger(BatchResource.class);
 
+    private static final String BOUNDARY = "package"; //$NON-NLS-1$
+
     private final Sramp sramp = new Sramp();
 
 	/**
@@ -76,7 +86,11 @@ public class BatchResource extends AbstractResource {
 
     /**
      * S-RAMP atom POST of a package file (.zip) containing the artifacts and meta data that
-     * should be published in the repository.
+     * should be published in the repository.  The response is streamed: the part for each
+     * entry of the package is written as soon as the entry has been processed (and its
+     * changes committed), so the parts never pile up in memory.  Since the response has
+     * started by then, a failure to process an individual entry is reported in its part
+     * (409 Conflict) rather than failing the whole request.
      * @param fileName the name of the .zip file (optional)
      * @param content the zip content
      * @return a multipart/mixed response as defined in the S-RAMP Atom binding document
@@ -85,113 +99,235 @@ public class BatchResource extends AbstractResource {
     @POST
     @Consumes(MediaType.APPLICATION_ZIP)
     @Produces(MediaType.MULTIPART_MIXED)
-    @PartType("message/http")
-	public MultipartOutput zipPackage(@Context HttpServletRequest request,
+	public Response zipPackage(@Context HttpServletRequest request, @Context final Providers providers,
 	        @HeaderParam("Slug") String fileName, InputStream content) throws SrampAtomException {
-        PersistenceManager persistenceManager = PersistenceFactory.newInstance();
-
-        InputStream is = content;
-    	SrampArchive archive = null;
-    	String baseUrl = sramp.getBaseUrl(request.getRequestURL().toString());
+    	SrampArchiveReader archive = null;
+    	final String baseUrl = sramp.getBaseUrl(request.getRequestURL().toString());
         try {
-            archive = new SrampArchive(content);
+            archive = new SrampArchiveReader(content);
 
-            MultipartOutput output = new MultipartOutput();
-            output.setBoundary("package"); //$NON-NLS-1$
-
-            // Process all of the entries in the s-ramp package.  First, do all the create
-            // entries.  Once the creates are done, do the updates.
+            // Sort the entries in the s-ramp package into creates and updates.  The creates
+            // are done first (in a batch), then the updates.  An entry is an update if an
+            // artifact with its UUID already exists - which is checked for all entries at once.
             Collection<SrampArchiveEntry> entries = archive.getEntries();
-            List<BatchItem> createItems = new ArrayList<BatchItem>();
-            List<SrampArchiveEntry> updates = new ArrayList<SrampArchiveEntry>();
+            Set<String> existingUuids = getExistingUuids(entries);
+            final List<BatchItem> createItems = new ArrayList<BatchItem>();
+            final List<SrampArchiveEntry> updates = new ArrayList<SrampArchiveEntry>();
             for (SrampArchiveEntry entry : entries) {
                 String path = entry.getPath();
                 String contentId = String.format("<%1$s@package>", path); //$NON-NLS-1$
                 BaseArtifactType metaData = entry.getMetaData();
-                if (isCreate(metaData)) {
-                    InputStream contentStream = ensureSupportsMark(archive.getInputStream(entry));
-                    // Figure out the mime type
-                    ArtifactType artifactType = ArtifactType.valueOf(metaData);
-                    if (artifactType.isDerived()) {
-                        throw new DerivedArtifactCreateException(artifactType.getArtifactType());
-                    }
-                    String mimeType = MimeTypes.determineMimeType(metaData.getName(), contentStream, artifactType);
-                    artifactType.setMimeType(mimeType);
-                    if (metaData instanceof DocumentArtifactType) {
-                        ((DocumentArtifactType) metaData).setContentType(mimeType);
-                    }
-                    BatchItem bi = new BatchItem(contentId, metaData, contentStream);
-                    createItems.add(bi);
+                if (metaData.getUuid() == null || !existingUuids.contains(metaData.getUuid())) {
+                    createItems.add(createBatchItem(contentId, metaData, archive.getInputStream(entry)));
                 } else {
                     updates.add(entry);
                 }
             }
 
-            // Now, send the creates to the persistence manager in a batch and process the responses.
-            List<Object> batchResponses = persistenceManager.persistBatch(createItems);
-            for (int i = 0; i < createItems.size(); i++) {
-                BatchItem bi = createItems.get(i);
-                Object response = batchResponses.get(i);
-                if (response instanceof BaseArtifactType) {
-                    BaseArtifactType artifact = (BaseArtifactType) response;
-                    ArtifactToFullAtomEntryVisitor visitor = new ArtifactToFullAtomEntryVisitor(baseUrl);
-                    ArtifactVisitorHelper.visitArtifact(visitor, artifact);
-                    Entry atomEntry = visitor.getAtomEntry();
-                    addCreatedPart(output, bi.batchItemId, atomEntry);
-                } else if (response instanceof Exception) {
-                    addErrorPart(output, bi.batchItemId, (Exception) response);
+            final SrampArchiveReader batchArchive = archive;
+            archive = null;
+            StreamingOutput output = new StreamingOutput() {
+                @Override
+                public void write(OutputStream output) throws IOException, WebApplicationException {
+                    try {
+                        processBatch(batchArchive, createItems, updates, new MultipartMixedWriter(output,
+                                providers, BOUNDARY), baseUrl);
+                    } catch (IOException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        logError(logger, Messages.i18n.format("ERROR_CONSUMING_ZIP"), e); //$NON-NLS-1$
+                        throw new WebApplicationException(e);
+                    } finally {
+                        SrampArchiveReader.closeQuietly(batchArchive);
+                    }
+                }
+            };
+            return Response.ok(output, MediaType.MULTIPART_MIXED + "; boundary=" + BOUNDARY).build(); //$NON-NLS-1$
+        } catch (Exception e) {
+        	logError(logger, Messages.i18n.format("ERROR_CONSUMING_ZIP"), e); //$NON-NLS-1$
+			throw new SrampAtomException(e);
+        } finally {
+        	IOUtils.closeQuietly(content);
+        	if (archive != null)
+        		SrampArchiveReader.closeQuietly(archive);
+        }
+    }
+
+    /**
+     * Checks which of a set of artifacts already exist in the repository - for example so
+     * that a client can tell ahead of time which entries of a package would be updates.  The
+     * request lists the artifact UUIDs, one per line.  The response lists the UUIDs of the
+     * artifacts that exist (and only those), one per line, each followed by the artifact's
+     * type and (if it has one) its extended type - all tab separated.
+     * @param uuids the artifact UUIDs (one per line)
+     * @return the existing artifacts (one per line)
+     * @throws SrampAtomException
+     */
+    @POST
+    @Path("exists")
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces(MediaType.TEXT_PLAIN)
+    public String exists(String uuids) throws SrampAtomException {
+        try {
+            Set<String> uuidSet = new LinkedHashSet<String>();
+            for (String line : uuids.split("\\r?\\n")) { //$NON-NLS-1$
+                String uuid = line.trim();
+                if (uuid.length() > 0) {
+                    uuidSet.add(uuid);
                 }
             }
+            PersistenceManager persistenceManager = PersistenceFactory.newInstance();
+            Map<String, ArtifactType> types = persistenceManager.getArtifactTypes(uuidSet);
+            StringBuilder rval = new StringBuilder();
+            for (Map.Entry<String, ArtifactType> type : types.entrySet()) {
+                rval.append(type.getKey()).append('\t').append(type.getValue().getArtifactType().name());
+                if (type.getValue().getExtendedType() != null) {
+                    rval.append('\t').append(type.getValue().getExtendedType());
+                }
+                rval.append('\n');
+            }
+            return rval.toString();
+        } catch (Exception e) {
+            logError(logger, Messages.i18n.format("ERROR_CHECKING_ARTIFACTS"), e); //$NON-NLS-1$
+            throw new SrampAtomException(e);
+        }
+    }
 
-            // Finally, process all the updates.
-            for (SrampArchiveEntry updateEntry : updates) {
-                InputStream contentStream = ensureSupportsMark(archive.getInputStream(updateEntry));
-                String path = updateEntry.getPath();
-                String contentId = String.format("<%1$s@package>", path); //$NON-NLS-1$
+    /**
+     * Processes the entries of a package, writing the response part for each entry as soon
+     * as it is done.
+     * @param archive the package
+     * @param createItems the batch of entries to create
+     * @param updates the entries to update
+     * @param output the multipart response
+     * @param baseUrl
+     * @throws Exception
+     */
+    private void processBatch(SrampArchiveReader archive, List<BatchItem> createItems, List<SrampArchiveEntry> updates,
+            final MultipartMixedWriter output, final String baseUrl) throws Exception {
+        PersistenceManager persistenceManager = PersistenceFactory.newInstance();
+
+        // Send the creates to the persistence manager in a batch, writing the response for
+        // each item as it comes back.  The created artifacts are saved together, so they are
+        // all committed along with the first of them - if that fails, none of them exist.
+        final Exception[] commitError = new Exception[1];
+        persistenceManager.persistBatch(createItems, new BatchResultHandler() {
+            @Override
+            public void handle(BatchItem item, Object result) throws Exception {
+                Entry atomEntry = null;
+                Exception error = result instanceof Exception ? (Exception) result : commitError[0];
+                if (error == null && result instanceof BaseArtifactType) {
+                    try {
+                        commitChanges();
+                    } catch (SrampException e) {
+                        rollbackChanges();
+                        commitError[0] = error = e;
+                    }
+                    if (error == null) {
+                        try {
+                            BaseArtifactType artifact = (BaseArtifactType) result;
+                            ArtifactToFullAtomEntryVisitor visitor = new ArtifactToFullAtomEntryVisitor(baseUrl);
+                            ArtifactVisitorHelper.visitArtifact(visitor, artifact);
+                            atomEntry = visitor.getAtomEntry();
+                        } catch (Exception e) {
+                            logError(logger, Messages.i18n.format("ERROR_PROCESSING_BATCH_ENTRY", item.batchItemId), e); //$NON-NLS-1$
+                            error = e;
+                        }
+                    }
+                }
+
+                if (error != null) {
+                    addErrorPart(output, item.batchItemId, error);
+                } else if (atomEntry != null) {
+                    addCreatedPart(output, item.batchItemId, atomEntry);
+                }
+            }
+        });
+
+        // Finally, process all the updates.  A failed update is rolled back (so that whatever
+        // it changed before failing is not committed along with the next one) and reported in
+        // its part - the response has already started, so nothing may escape but a failure to
+        // write the response itself.
+        for (SrampArchiveEntry updateEntry : updates) {
+            String path = updateEntry.getPath();
+            String contentId = String.format("<%1$s@package>", path); //$NON-NLS-1$
+            Entry atomEntry = null;
+            Exception error = null;
+            InputStream contentStream = null;
+            try {
+                contentStream = ensureSupportsMark(archive.getInputStream(updateEntry));
                 BaseArtifactType metaData = updateEntry.getMetaData();
                 ArtifactType artifactType = ArtifactType.valueOf(metaData);
-                Entry atomEntry = processUpdate(artifactType, metaData, contentStream, baseUrl);
+                atomEntry = processUpdate(artifactType, metaData, contentStream, baseUrl);
+                commitChanges();
+            } catch (Exception e) {
+                if (!(e instanceof SrampException)) {
+                    logError(logger, Messages.i18n.format("ERROR_PROCESSING_BATCH_ENTRY", contentId), e); //$NON-NLS-1$
+                }
+                error = e;
+            } finally {
+                IOUtils.closeQuietly(contentStream);
+            }
+            if (error != null) {
+                rollbackChanges();
+                addErrorPart(output, contentId, error);
+            } else {
                 addUpdatedPart(output, contentId, atomEntry);
             }
+        }
 
-            return output;
-        } catch (Exception e) {
-        	logError(logger, Messages.i18n.format("ERROR_CONSUMING_ZIP"), e); //$NON-NLS-1$
-			throw new SrampAtomException(e);
-        } finally {
-        	IOUtils.closeQuietly(is);
-        	if (archive != null)
-        		SrampArchive.closeQuietly(archive);
+        output.close();
+    }
+
+    /**
+     * Commits the changes made so far in the request's unit of work (if there is one), so
+     * that a part reporting them is only written once they are durable.  Committing when
+     * there are no new changes is cheap.
+     * @throws SrampException
+     */
+    private void commitChanges() throws SrampException {
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) {
+            uow.commit();
         }
     }
 
-	/**
-     * Returns true if the given entry represents an artifact create operation.  Creates can be
-     * done either with or without content (document vs. non-document type artifacts).
-     * @param metaData
+    /**
+     * Rolls back the (uncommitted) changes made in the request's unit of work, if there is
+     * one.  If that fails, the unit of work can no longer be committed - so every entry after
+     * this one is reported as failed, rather than committing the changes of this one.
      */
-    private boolean isCreate(BaseArtifactType metaData) {
-        if (metaData.getUuid() == null) {
-            return true;
-        } else {
-            return !artifactExists(metaData);
+    private void rollbackChanges() {
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) {
+            try {
+                uow.rollback();
+            } catch (SrampException e) {
+                logError(logger, Messages.i18n.format("UOW_ROLLBACK_FAILED"), e); //$NON-NLS-1$
+            }
         }
     }
 
     /**
-     * Returns true if the given artifact already exists in the repository.
-     * @param metaData
+     * Returns the UUIDs (of the given s-ramp package entries) that belong to artifacts that
+     * already exist in the repository.  Existence is checked by UUID alone (whatever the type
+     * of the artifact), in a single call to the persistence manager.
+     * @param entries
+     * @throws SrampException
      */
-    private boolean artifactExists(BaseArtifactType metaData) {
-        try {
-            PersistenceManager persistenceManager = PersistenceFactory.newInstance();
-            ArtifactType artifactType = ArtifactType.valueOf(metaData);
-            // TODO Bug: this would allow a re-used UUID as long as the artifact type was different.  Should change this to query via UUID instead.
-            BaseArtifactType artifact = persistenceManager.getArtifact(metaData.getUuid(), artifactType);
-            return artifact != null;
-        } catch (SrampException e) {
-            return false;
+    private Set<String> getExistingUuids(Collection<SrampArchiveEntry> entries) throws SrampException {
+        List<String> uuids = new ArrayList<String>(entries.size());
+        for (SrampArchiveEntry entry : entries) {
+            String uuid = entry.getMetaData().getUuid();
+            if (uuid != null) {
+                uuids.add(uuid);
+            }
         }
+        if (uuids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        PersistenceManager persistenceManager = PersistenceFactory.newInstance();
+        return persistenceManager.getArtifactTypes(uuids).keySet();
     }
 
 	/**
@@ -227,29 +363,31 @@ public class BatchResource extends AbstractResource {
 	}
 
 	/**
-	 * Adds an appropriate part to the batch response.  This takes the form of an HTTP
+	 * Writes an appropriate part to the batch response.  This takes the form of an HTTP
 	 * response bean with the appropriate headers and data.
 	 * @param output
 	 * @param contentId
 	 * @param atomEntry
+	 * @throws IOException
 	 */
-	private void addCreatedPart(MultipartOutput output, String contentId, Entry atomEntry) {
+	private void addCreatedPart(MultipartMixedWriter output, String contentId, Entry atomEntry) throws IOException {
 		HttpResponseBean createdResponse = new HttpResponseBean(201, "Created"); //$NON-NLS-1$
 		createdResponse.setBody(atomEntry, MediaType.APPLICATION_ATOM_XML_ENTRY_TYPE);
-		output.addPart(createdResponse, MediaType.MESSAGE_HTTP_TYPE).getHeaders().putSingle("Content-ID", contentId); //$NON-NLS-1$
+		addPart(output, contentId, createdResponse);
 	}
 
     /**
-     * Adds an appropriate part to the batch response.  This takes the form of an HTTP
+     * Writes an appropriate part to the batch response.  This takes the form of an HTTP
      * response bean with the appropriate headers and data.
      * @param output
      * @param contentId
      * @param atomEntry
+     * @throws IOException
      */
-    private void addUpdatedPart(MultipartOutput output, String contentId, Entry atomEntry) {
+    private void addUpdatedPart(MultipartMixedWriter output, String contentId, Entry atomEntry) throws IOException {
         HttpResponseBean createdResponse = new HttpResponseBean(200, "OK"); //$NON-NLS-1$
         createdResponse.setBody(atomEntry, MediaType.APPLICATION_ATOM_XML_ENTRY_TYPE);
-        output.addPart(createdResponse, MediaType.MESSAGE_HTTP_TYPE).getHeaders().putSingle("Content-ID", contentId); //$NON-NLS-1$
+        addPart(output, contentId, createdResponse);
     }
 
 	/**
@@ -258,12 +396,24 @@ public class BatchResource extends AbstractResource {
 	 * @param output
 	 * @param contentId
 	 * @param error
+	 * @throws IOException
 	 */
-	private void addErrorPart(MultipartOutput output, String contentId, Exception error) {
+	private void addErrorPart(MultipartMixedWriter output, String contentId, Exception error) throws IOException {
         HttpResponseBean errorResponse = new HttpResponseBean(409, "Conflict"); //$NON-NLS-1$
         SrampAtomException e = new SrampAtomException(error);
         errorResponse.setBody(e, MediaType.APPLICATION_SRAMP_ATOM_EXCEPTION_TYPE);
-        output.addPart(errorResponse, MediaType.MESSAGE_HTTP_TYPE).getHeaders().putSingle("Content-ID", contentId); //$NON-NLS-1$
+        addPart(output, contentId, errorResponse);
 	}
 
+    /**
+     * Writes (and flushes) a part of the batch response.
+     * @param output
+     * @param contentId
+     * @param response
+     * @throws IOException
+     */
+    private void addPart(MultipartMixedWriter output, String contentId, HttpResponseBean response) throws IOException {
+        output.writePart(response, MediaType.MESSAGE_HTTP_TYPE, Collections.singletonMap("Content-ID", contentId)); //$NON-NLS-1$
+    }
+
 }
@@ -66,14 +66,15 @@ public class FeedResource extends AbstractFeedResource {
 			@QueryParam("count") Integer count,
 			@QueryParam("orderBy") String orderBy,
 			@QueryParam("ascending") Boolean asc,
-			@QueryParam("propertyName") Set<String> propNames) throws Exception {
+			@QueryParam("propertyName") Set<String> propNames,
+			@QueryParam("continuationToken") String continuationToken) throws Exception {
 		String xpath = String.format("/s-ramp/%1$s", model); //$NON-NLS-1$
 		String baseUrl = sramp.getBaseUrl(request.getRequestURL().toString());
 		if (startIndex == null && startPage != null) {
 			int c = count != null ? count.intValue() : 100;
 			startIndex = (startPage.intValue() - 1) * c;
 		}
-		return createArtifactFeed(xpath, startIndex, count, orderBy, asc, propNames, baseUrl);
+		return createArtifactFeed(xpath, startIndex, count, orderBy, asc, propNames, continuationToken, baseUrl);
 	}
 
 	/**
@@ -93,14 +94,15 @@ public class FeedResource extends AbstractFeedResource {
 			@QueryParam("count") Integer count,
 			@QueryParam("orderBy") String orderBy,
 			@QueryParam("ascending") Boolean asc,
-			@QueryParam("propertyName") Set<String> propNames) throws Exception {
+			@QueryParam("propertyName") Set<String> propNames,
+			@QueryParam("continuationToken") String continuationToken) throws Exception {
 		String xpath = String.format("/s-ramp/%1$s/%2$s", model, type); //$NON-NLS-1$
 		String baseUrl = sramp.getBaseUrl(request.getRequestURL().toString());
 		if (startIndex == null && startPage != null) {
 			int c = count != null ? count.intValue() : 100;
 			startIndex = (startPage.intValue() - 1) * c;
 		}
-		return createArtifactFeed(xpath, startIndex, count, orderBy, asc, propNames, baseUrl);
+		return createArtifactFeed(xpath, startIndex, count, orderBy, asc, propNames, continuationToken, baseUrl);
 	}
 
 }
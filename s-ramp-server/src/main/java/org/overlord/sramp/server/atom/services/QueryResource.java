@@ -65,6 +65,8 @@ public class QueryResource extends AbstractFeedResource {
 	 * @param count
 	 * @param orderBy
 	 * @param asc
+	 * @param propNames
+	 * @param continuationToken
 	 * @throws SrampAtomException
 	 */
 	@GET
@@ -77,14 +79,15 @@ public class QueryResource extends AbstractFeedResource {
 			@QueryParam("count") Integer count,
 			@QueryParam("orderBy") String orderBy,
 			@QueryParam("ascending") Boolean asc,
-			@QueryParam("propertyName") Set<String> propNames) throws SrampAtomException {
+			@QueryParam("propertyName") Set<String> propNames,
+			@QueryParam("continuationToken") String continuationToken) throws SrampAtomException {
 		try {
 			String baseUrl = sramp.getBaseUrl(request.getRequestURL().toString());
 			if (startIndex == null && startPage != null) {
 				int c = count != null ? count.intValue() : 100;
 				startIndex = (startPage.intValue() - 1) * c;
 			}
-			return query(query, startIndex, count, orderBy, asc, propNames, baseUrl);
+			return query(query, startIndex, count, orderBy, asc, propNames, continuationToken, baseUrl);
 		} catch (Throwable e) {
 			logError(logger, Messages.i18n.format("ERROR_EXECUTING_QUERY", query), e); //$NON-NLS-1$
 			throw new SrampAtomException(e);
@@ -109,6 +112,7 @@ public class QueryResource extends AbstractFeedResource {
 			Integer count = input.getFormDataPart("count", new GenericType<Integer>() { }); //$NON-NLS-1$
 			String orderBy = input.getFormDataPart("orderBy", new GenericType<String>() { }); //$NON-NLS-1$
 			Boolean asc = input.getFormDataPart("ascending", new GenericType<Boolean>() { }); //$NON-NLS-1$
+			String continuationToken = input.getFormDataPart("continuationToken", new GenericType<String>() { }); //$NON-NLS-1$
             Set<String> propNames = new HashSet<String>();
 			List<InputPart> list = input.getFormDataMap().get("propertyName"); //$NON-NLS-1$
 			if (list != null) {
@@ -121,7 +125,7 @@ public class QueryResource extends AbstractFeedResource {
 				int c = count != null ? count.intValue() : 100;
 				startIndex = (startPage.intValue() - 1) * c;
 			}
-			return query(query, startIndex, count, orderBy, asc, propNames, baseUrl);
+			return query(query, startIndex, count, orderBy, asc, propNames, continuationToken, baseUrl);
 		} catch (SrampAtomException e) {
 			throw e;
 		} catch (Throwable e) {
@@ -138,11 +142,12 @@ public class QueryResource extends AbstractFeedResource {
 	 * @param orderBy the property to sort the results by
 	 * @param ascending the sort direction
 	 * @param propNames the set of s-ramp property names - the extra properties that the query should return as part of the {@link Feed}
+	 * @param continuationToken the token (from the previous page's feed) to continue the query from
 	 * @return an Atom {@link Feed}
 	 * @throws SrampAtomException
 	 */
 	protected Feed query(String query, Integer startIndex, Integer count, String orderBy, Boolean ascending,
-			Set<String> propNames, String baseUrl) throws SrampAtomException {
+			Set<String> propNames, String continuationToken, String baseUrl) throws SrampAtomException {
 		if (query == null)
 			throw new SrampAtomException(Messages.i18n.format("MISSING_QUERY_PARAM")); //$NON-NLS-1$
 
@@ -155,6 +160,6 @@ public class QueryResource extends AbstractFeedResource {
 				xpath = "/s-ramp/" + query; //$NON-NLS-1$
 		}
 
-		return createArtifactFeed(xpath, startIndex, count, orderBy, ascending, propNames, baseUrl);
+		return createArtifactFeed(xpath, startIndex, count, orderBy, ascending, propNames, continuationToken, baseUrl);
 	}
 }
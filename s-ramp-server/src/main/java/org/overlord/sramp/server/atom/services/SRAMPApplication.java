@@ -25,6 +25,7 @@ import org.overlord.sramp.atom.providers.HttpResponseProvider;
 import org.overlord.sramp.atom.providers.OntologyProvider;
 import org.overlord.sramp.atom.providers.SrampAtomExceptionProvider;
 import org.overlord.sramp.server.atom.services.brms.BrmsResource;
+import org.overlord.sramp.server.filters.UnitOfWorkInterceptor;
 
 /**
  * The SRAMP RESTEasy application.  This is essentially the main entry point into a
@@ -53,6 +54,7 @@ public class SRAMPApplication extends Application {
 		classes.add(SrampAtomExceptionProvider.class);
         classes.add(OntologyProvider.class);
         classes.add(AuditEntryProvider.class);
+        classes.add(UnitOfWorkInterceptor.class);
 	}
 
 	@Override
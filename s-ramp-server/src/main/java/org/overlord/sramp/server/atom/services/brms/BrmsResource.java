@@ -87,9 +87,9 @@ public class BrmsResource {
     @Path("rest/packages/")
     @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_ATOM_XML})
     public Packages getRestAllPackages() throws SrampAtomException {
+        ArtifactSet artifactSet = null;
         try {
             //BRMS/Drools packages should be uploaded under ExtendedArtifactType of BrmsPkgDocument
-            ArtifactSet artifactSet = null;
             Packages brmsPackages = new Packages();
             QueryManager queryManager = QueryManagerFactory.newInstance();
             String query = String.format("/s-ramp/%1$s/%2$s", "ext", BrmsConstants.BRMS_PKG_DOCUMENT); //$NON-NLS-1$ //$NON-NLS-2$
@@ -109,6 +109,9 @@ public class BrmsResource {
             return brmsPackages;
         } catch (Throwable e) {
             throw new SrampAtomException(e);
+        } finally {
+            if (artifactSet != null)
+                artifactSet.close();
         }
     }
 
@@ -121,13 +124,14 @@ public class BrmsResource {
     @Produces({MediaType.APPLICATION_ATOM_XML, MediaType.APPLICATION_XML})
     public Assets getRestXMLAllAssetsInPackage(@PathParam("pkgName") String pkgName) throws SrampAtomException {
         Assets assets = new Assets();
+        ArtifactSet artifactSet = null;
         try {
             //BRMS/Drools packages should be uploaded under ExtendedArtifactType of BrmsPkgDocument
             pkgName += ".pkg"; //$NON-NLS-1$
             QueryManager queryManager = QueryManagerFactory.newInstance();
             String query = String.format("/s-ramp/%1$s/%2$s[@name='%3$s']", "ext", BrmsConstants.BRMS_PKG_DOCUMENT, pkgName); //$NON-NLS-1$ //$NON-NLS-2$
             SrampQuery srampQuery = queryManager.createQuery(query, "name", true); //$NON-NLS-1$
-            ArtifactSet artifactSet = srampQuery.executeQuery();
+            artifactSet = srampQuery.executeQuery();
             if (artifactSet.iterator().hasNext()) {
                 BaseArtifactType baseArtifact = artifactSet.iterator().next();
                 String assetsString = ""; //$NON-NLS-1$
@@ -148,6 +152,9 @@ public class BrmsResource {
             return assets;
         } catch (Throwable e) {
             throw new SrampAtomException(e);
+        } finally {
+            if (artifactSet != null)
+                artifactSet.close();
         }
     }
     /**
@@ -161,13 +168,14 @@ public class BrmsResource {
                                     @PathParam("assetName") String assetName)
        throws SrampAtomException {
 
+        ArtifactSet artifactSet = null;
         try {
             //BRMS/Drools packages should be uploaded under ExtendedArtifactType of BrmsPkgDocument
             pkgName += ".pkg"; //$NON-NLS-1$
             QueryManager queryManager = QueryManagerFactory.newInstance();
             String query = String.format("/s-ramp/%1$s/%2$s[@name='%3$s']", "ext", BrmsConstants.BRMS_PKG_DOCUMENT, pkgName); //$NON-NLS-1$ //$NON-NLS-2$
             SrampQuery srampQuery = queryManager.createQuery(query, "name", true); //$NON-NLS-1$
-            ArtifactSet artifactSet = srampQuery.executeQuery();
+            artifactSet = srampQuery.executeQuery();
             if (artifactSet.iterator().hasNext()) {
                 BaseArtifactType baseArtifact = artifactSet.iterator().next();
                 String assetsString = ""; //$NON-NLS-1$
@@ -206,6 +214,9 @@ public class BrmsResource {
             return null;
         } catch (Throwable e) {
             throw new SrampAtomException(e);
+        } finally {
+            if (artifactSet != null)
+                artifactSet.close();
         }
     }
     /**
@@ -239,12 +250,13 @@ public class BrmsResource {
     @GET
     @Path("rest/packages/{pkgName}/binary")
     public Response getRestPackage(@PathParam("pkgName") String pkgName) throws SrampAtomException {
+        ArtifactSet artifactSet = null;
         try {
             pkgName += ".pkg";  //S-RAMP stores the fileName not the package name //$NON-NLS-1$
             QueryManager queryManager = QueryManagerFactory.newInstance();
             String query = String.format("/s-ramp/%1$s/%2$s[@name='%3$s']", "ext", BrmsConstants.BRMS_PKG_DOCUMENT, pkgName); //$NON-NLS-1$ //$NON-NLS-2$
             SrampQuery srampQuery = queryManager.createQuery(query, "name", true); //$NON-NLS-1$
-            ArtifactSet artifactSet = srampQuery.executeQuery();
+            artifactSet = srampQuery.executeQuery();
             if (artifactSet.iterator().hasNext()) {
                 BaseArtifactType baseArtifact = artifactSet.iterator().next();
                 PersistenceManager persistenceManager = PersistenceFactory.newInstance();
@@ -272,6 +284,9 @@ public class BrmsResource {
             }
         } catch (Throwable e) {
             throw new SrampAtomException(e);
+        } finally {
+            if (artifactSet != null)
+                artifactSet.close();
         }
     }
 
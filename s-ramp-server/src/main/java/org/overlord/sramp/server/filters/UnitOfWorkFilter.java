@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.server.filters;
+
+import java.io.IOException;
+import java.security.Principal;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.overlord.sramp.repository.UnitOfWork;
+
+/**
+ * A filter that wraps each inbound request in a repository {@link UnitOfWork}.  All of
+ * the repository operations performed while handling the request share the resources
+ * bound to the unit of work (e.g. a single JCR session).  Their changes are committed by
+ * the {@link UnitOfWorkInterceptor} once the resource method has returned - before the
+ * response is written, so that a failed commit can still be reported.  Resources that
+ * stream their response (and so keep working while it is written) commit as they go.
+ * Anything that has not been committed when the request ends is discarded.
+ * <br/><br/>
+ * The unit of work also records who the request was authenticated as, so that the
+ * repository can re-use the storage sessions it created for the same caller.
+ */
+public class UnitOfWorkFilter implements Filter {
+
+    /**
+     * Constructor.
+     */
+    public UnitOfWorkFilter() {
+    }
+
+    /**
+     * @see javax.servlet.Filter#init(javax.servlet.FilterConfig)
+     */
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    /**
+     * @see javax.servlet.Filter#doFilter(javax.servlet.ServletRequest, javax.servlet.ServletResponse, javax.servlet.FilterChain)
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (UnitOfWork.current() != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        UnitOfWork uow = UnitOfWork.begin();
+        if (request instanceof HttpServletRequest) {
+            Principal principal = ((HttpServletRequest) request).getUserPrincipal();
+            if (principal != null) {
+                uow.setCallerName(principal.getName());
+            }
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            uow.end();
+        }
+    }
+
+    /**
+     * @see javax.servlet.Filter#destroy()
+     */
+    @Override
+    public void destroy() {
+    }
+
+}
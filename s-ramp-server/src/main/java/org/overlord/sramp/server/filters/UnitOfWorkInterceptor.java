@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.overlord.sramp.server.filters;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.core.ServerResponse;
+import org.jboss.resteasy.spi.interception.PostProcessInterceptor;
+import org.overlord.sramp.atom.err.SrampAtomException;
+import org.overlord.sramp.atom.providers.SrampAtomExceptionProvider;
+import org.overlord.sramp.common.SrampException;
+import org.overlord.sramp.repository.UnitOfWork;
+import org.overlord.sramp.server.i18n.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Commits the request's {@link UnitOfWork} (see {@link UnitOfWorkFilter}) once the resource
+ * method has returned, but before the response entity is written.  That way a failed commit
+ * can still be reported to the client (as a 500) instead of the success response it would
+ * otherwise get.  An error response rolls the unit of work back instead.
+ */
+@Provider
+@ServerInterceptor
+public class UnitOfWorkInterceptor implements PostProcessInterceptor {
+
+    private static Logger logger = LoggerFactory.getLogger(UnitOfWorkInterceptor.class);
+
+    /**
+     * Constructor.
+     */
+    public UnitOfWorkInterceptor() {
+    }
+
+    /**
+     * @see org.jboss.resteasy.spi.interception.PostProcessInterceptor#postProcess(org.jboss.resteasy.core.ServerResponse)
+     */
+    @Override
+    public void postProcess(ServerResponse response) {
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow == null) {
+            return;
+        }
+        try {
+            if (response.getStatus() >= 400) {
+                uow.rollback();
+            } else {
+                uow.commit();
+            }
+        } catch (SrampException e) {
+            logger.error(Messages.i18n.format("UOW_COMMIT_FAILED"), e); //$NON-NLS-1$
+            try {
+                uow.rollback();
+            } catch (SrampException re) {
+                // The filter discards whatever is left when it ends the unit of work.
+            }
+            Response error = new SrampAtomExceptionProvider().toResponse(new SrampAtomException(e));
+            response.setStatus(error.getStatus());
+            response.setEntity(error.getEntity());
+            response.setGenericType(String.class);
+            response.getMetadata().clear();
+            response.getMetadata().putAll(error.getMetadata());
+        }
+    }
+
+}
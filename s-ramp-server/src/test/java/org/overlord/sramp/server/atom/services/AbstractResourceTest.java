@@ -26,6 +26,7 @@ import org.overlord.sramp.common.test.resteasy.BaseResourceTest;
 import org.overlord.sramp.repository.PersistenceFactory;
 import org.overlord.sramp.repository.jcr.modeshape.AbstractNoAuditingJCRPersistenceTest;
 import org.overlord.sramp.repository.jcr.modeshape.JCRRepositoryCleaner;
+import org.overlord.sramp.server.filters.UnitOfWorkInterceptor;
 
 /**
  * Base class for s-ramp resource tests. Handles some of the setup boilerplate.
@@ -51,6 +52,7 @@ public abstract class AbstractResourceTest extends BaseResourceTest {
 		deployment.getProviderFactory().registerProvider(HttpResponseProvider.class);
         deployment.getProviderFactory().registerProvider(OntologyProvider.class);
         deployment.getProviderFactory().registerProvider(AuditEntryProvider.class);
+        deployment.getProviderFactory().registerProvider(UnitOfWorkInterceptor.class);
 	}
 
 	@Before
@@ -163,7 +163,7 @@ public class QueryResourceTest extends AbstractNoAuditingResourceTest {
         Assert.assertEquals(100, itemsPerPage);
         Assert.assertEquals(20, totalResults);
 
-        // Query with some params
+        // Query with some params - the total is only known on the last page
         request = new ClientRequest(generateURL("/s-ramp?query=ext&startIndex=5&count=2")); //$NON-NLS-1$
         response = request.get(Feed.class);
         feed = response.getEntity();
@@ -172,13 +172,25 @@ public class QueryResourceTest extends AbstractNoAuditingResourceTest {
         totalResultsAttr = feed.getExtensionAttributes().get(SrampConstants.SRAMP_TOTAL_RESULTS_QNAME);
         Assert.assertNotNull("The startIndex attribute wasn't returned!", startIndexAttr); //$NON-NLS-1$
         Assert.assertNotNull("The itemsPerPage attribute wasn't returned!", itemsPerPageAttr); //$NON-NLS-1$
-        Assert.assertNotNull("The totalResults attribute wasn't returned!", totalResultsAttr); //$NON-NLS-1$
+        Assert.assertNull("The totalResults attribute shouldn't be returned!", totalResultsAttr); //$NON-NLS-1$
         startIndex = Integer.parseInt(String.valueOf(startIndexAttr));
         itemsPerPage = Integer.parseInt(String.valueOf(itemsPerPageAttr));
-        totalResults = Integer.parseInt(String.valueOf(totalResultsAttr));
         Assert.assertEquals(5, startIndex);
         Assert.assertEquals(2, itemsPerPage);
+        Assert.assertEquals(2, feed.getEntries().size());
+
+        // The last page
+        request = new ClientRequest(generateURL("/s-ramp?query=ext&startIndex=18&count=5")); //$NON-NLS-1$
+        response = request.get(Feed.class);
+        feed = response.getEntity();
+        startIndexAttr = feed.getExtensionAttributes().get(SrampConstants.SRAMP_START_INDEX_QNAME);
+        totalResultsAttr = feed.getExtensionAttributes().get(SrampConstants.SRAMP_TOTAL_RESULTS_QNAME);
+        Assert.assertNotNull("The totalResults attribute wasn't returned!", totalResultsAttr); //$NON-NLS-1$
+        startIndex = Integer.parseInt(String.valueOf(startIndexAttr));
+        totalResults = Integer.parseInt(String.valueOf(totalResultsAttr));
+        Assert.assertEquals(18, startIndex);
         Assert.assertEquals(20, totalResults);
+        Assert.assertEquals(2, feed.getEntries().size());
     }
 
 	/**
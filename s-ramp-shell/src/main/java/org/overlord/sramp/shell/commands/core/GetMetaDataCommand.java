@@ -100,7 +100,7 @@ public class GetMetaDataCommand extends BuiltInShellCommand {
 				outFile = new File(outFile, fileName);
 			}
 			outFile.getParentFile().mkdirs();
-			SrampArchiveJaxbUtils.writeMetaData(outFile, artifact, false);
+			SrampArchiveJaxbUtils.writeMetaData(outFile, artifact, false, true);
 			print(Messages.i18n.format("GetMetaData.SavedTo", outFile.getCanonicalPath())); //$NON-NLS-1$
 		}
         return true;
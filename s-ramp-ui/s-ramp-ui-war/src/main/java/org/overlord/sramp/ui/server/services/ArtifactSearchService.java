@@ -96,15 +96,16 @@ public class ArtifactSearchService implements IArtifactSearchService {
                 artifacts.remove(artifacts.get(artifacts.size()-1));
                 hasMorePages = true;
             }
-            // Does the server support opensearch style attributes?  If so,
-            // use that information.  Else figure it out from the request params.
+            // Does the server report opensearch style attributes?  If so, use that
+            // information.  Else (e.g. the total is only reported on the last page)
+            // figure it out from the request params - there is at least one more page.
             if (resultSet.getTotalResults() != -1) {
                 rval.setItemsPerPage(pageSize);
                 rval.setStartIndex(resultSet.getStartIndex());
                 rval.setTotalResults(resultSet.getTotalResults());
             } else {
                 rval.setItemsPerPage(pageSize);
-                rval.setTotalResults(hasMorePages ? pageSize + 1 : artifacts.size());
+                rval.setTotalResults(req_startIndex + (hasMorePages ? pageSize + 1 : artifacts.size()));
                 rval.setStartIndex(req_startIndex);
             }
 
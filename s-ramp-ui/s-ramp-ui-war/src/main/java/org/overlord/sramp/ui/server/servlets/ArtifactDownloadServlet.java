@@ -19,7 +19,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Method;
 import java.util.Date;
 
 import javax.inject.Inject;
@@ -27,15 +26,16 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.bind.JAXBContext;
 
 import org.apache.commons.io.IOUtils;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.Artifact;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.DocumentArtifactType;
+import org.overlord.sramp.atom.PooledJaxbContext;
 import org.overlord.sramp.atom.visitors.ArtifactContentTypeVisitor;
 import org.overlord.sramp.client.SrampAtomApiClient;
 import org.overlord.sramp.common.ArtifactType;
+import org.overlord.sramp.common.ArtifactWrapperAccessors;
 import org.overlord.sramp.common.visitors.ArtifactVisitorHelper;
 import org.overlord.sramp.ui.server.api.SrampApiClientAccessor;
 
@@ -47,6 +47,7 @@ import org.overlord.sramp.ui.server.api.SrampApiClientAccessor;
 public class ArtifactDownloadServlet extends HttpServlet {
 
 	private static final long serialVersionUID = ArtifactDownloadServlet.class.hashCode();
+	private static final PooledJaxbContext jaxbContext = new PooledJaxbContext(Artifact.class);
 
     @Inject
     private SrampApiClientAccessor clientAccessor;
@@ -141,12 +142,10 @@ public class ArtifactDownloadServlet extends HttpServlet {
      */
     private void doDownloadMetaData(HttpServletResponse httpResponse, SrampAtomApiClient client,
             ArtifactType artyType, BaseArtifactType artifact) throws Exception {
-        JAXBContext jaxbContext = JAXBContext.newInstance(Artifact.class);
         Artifact wrapper = new Artifact();
-        Method method = Artifact.class.getMethod("set" + artifact.getClass().getSimpleName(), artifact.getClass()); //$NON-NLS-1$
-        method.invoke(wrapper, artifact);
+        ArtifactWrapperAccessors.set(wrapper, artifact);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        jaxbContext.createMarshaller().marshal(wrapper, baos);
+        jaxbContext.getMarshaller().marshal(wrapper, baos);
         InputStream is = new ByteArrayInputStream(baos.toByteArray());
         IOUtils.copy(is, httpResponse.getOutputStream());
     }
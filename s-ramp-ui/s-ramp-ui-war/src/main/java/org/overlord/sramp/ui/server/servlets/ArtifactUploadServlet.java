@@ -38,9 +38,6 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.oasis_open.docs.s_ramp.ns.s_ramp_v1.BaseArtifactType;
 import org.overlord.sramp.atom.archive.SrampArchive;
-import org.overlord.sramp.atom.archive.expand.DefaultMetaDataFactory;
-import org.overlord.sramp.atom.archive.expand.ZipToSrampArchive;
-import org.overlord.sramp.atom.archive.expand.registry.ZipToSrampArchiveRegistry;
 import org.overlord.sramp.atom.err.SrampAtomException;
 import org.overlord.sramp.common.ArtifactType;
 import org.overlord.sramp.ui.server.api.SrampApiClientAccessor;
@@ -195,34 +192,18 @@ public class ArtifactUploadServlet extends HttpServlet {
     private void uploadSingleArtifact(String artifactType, String fileName,
             File tempFile, Map<String, String> responseParams) throws Exception {
         ArtifactType at = ArtifactType.valueOf(artifactType);
-        String uuid = null;
-		// First, upload the artifact, no matter what kind
+		// Upload the artifact, no matter what kind - if it is an expandable file type, the
+		// server will expand it as well
         InputStream contentStream = null;
 		try {
 			contentStream = FileUtils.openInputStream(tempFile);
-			BaseArtifactType artifact = clientAccessor.getClient().uploadArtifact(at, contentStream, fileName);
+			BaseArtifactType artifact = clientAccessor.getClient().uploadArtifact(at, contentStream, fileName, true);
 			responseParams.put("model", at.getArtifactType().getModel()); //$NON-NLS-1$
 			responseParams.put("type", at.getArtifactType().getType()); //$NON-NLS-1$
 			responseParams.put("uuid", artifact.getUuid()); //$NON-NLS-1$
-			uuid = artifact.getUuid();
 		} finally {
 			IOUtils.closeQuietly(contentStream);
 		}
-
-		// Check if this is an expandable file type.  If it is, then expand it!
-        ZipToSrampArchive expander = null;
-        SrampArchive archive = null;
-        try {
-            expander = ZipToSrampArchiveRegistry.createExpander(at, tempFile);
-            if (expander != null) {
-                expander.setContextParam(DefaultMetaDataFactory.PARENT_UUID, uuid);
-                archive = expander.createSrampArchive();
-                clientAccessor.getClient().uploadBatch(archive);
-            }
-        } finally {
-            SrampArchive.closeQuietly(archive);
-            ZipToSrampArchive.closeQuietly(expander);
-        }
     }
 
 	/**